@@ -1,13 +1,19 @@
 package com.healthapp.mapservice;
 
 import org.springframework.boot.SpringApplication;
+import com.healthapp.mapservice.config.RankingProperties;
+import com.healthapp.mapservice.config.WarmupProperties;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cloud.netflix.eureka.EnableEurekaClient;
 import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @EnableEurekaClient
 @EnableCaching
+@EnableScheduling
+@EnableConfigurationProperties({WarmupProperties.class, RankingProperties.class})
 public class MapServiceApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,31 @@
+package com.healthapp.mapservice.config;
+
+import com.healthapp.mapservice.service.CacheInvalidationBus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+/**
+ * Subscribes the {@link CacheInvalidationBus} to its Redis channel when invalidation
+ * broadcasting is enabled. The container resubscribes on its own after a Redis outage;
+ * messages missed meanwhile are caught by the bus's sequence check.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.map.invalidation.enabled", havingValue = "true")
+public class CacheInvalidationConfig {
+
+    @Bean
+    public RedisMessageListenerContainer cacheInvalidationListenerContainer(
+            RedisConnectionFactory connectionFactory,
+            CacheInvalidationBus cacheInvalidationBus,
+            @Value("${app.map.invalidation.channel:map-service:invalidations}") String channel) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(cacheInvalidationBus, new ChannelTopic(channel));
+        return container;
+    }
+}
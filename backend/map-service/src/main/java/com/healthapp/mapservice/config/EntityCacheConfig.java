@@ -0,0 +1,73 @@
+package com.healthapp.mapservice.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import com.healthapp.mapservice.model.CacheRegions;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.time.Duration;
+import java.util.OptionalLong;
+
+/**
+ * Heap-bounded Caffeine regions for the Hibernate second-level and query caches.
+ *
+ * Regions are created here rather than in a Caffeine config file so sizes and TTLs live in
+ * {@code app.map.entity-cache}. Hibernate is set to fail on any region not created here, so
+ * every cached entity has an explicit bound. TTLs limit how long changes made by other
+ * services can be served stale; {@code EntityCacheEvictor} shortens that for providers.
+ */
+@Configuration
+public class EntityCacheConfig {
+
+    @Bean(destroyMethod = "close")
+    public CacheManager entityCacheManager(
+            @Value("${app.map.entity-cache.provider-max-entries:50000}") long providerMaxEntries,
+            @Value("${app.map.entity-cache.provider-ttl-seconds:600}") long providerTtlSeconds,
+            @Value("${app.map.entity-cache.reference-max-entries:5000}") long referenceMaxEntries,
+            @Value("${app.map.entity-cache.reference-ttl-seconds:3600}") long referenceTtlSeconds,
+            @Value("${app.map.entity-cache.query-max-entries:1000}") long queryMaxEntries,
+            @Value("${app.map.entity-cache.query-ttl-seconds:60}") long queryTtlSeconds) {
+        CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                .getCacheManager();
+
+        Duration providerTtl = Duration.ofSeconds(providerTtlSeconds);
+        cacheManager.createCache(CacheRegions.PROVIDER, region(providerMaxEntries, providerTtl));
+        cacheManager.createCache(CacheRegions.PROVIDER_SPECIALTIES, region(providerMaxEntries, providerTtl));
+        cacheManager.createCache(CacheRegions.PROVIDER_LANGUAGES, region(providerMaxEntries, providerTtl));
+
+        Duration referenceTtl = Duration.ofSeconds(referenceTtlSeconds);
+        cacheManager.createCache(CacheRegions.PROVIDER_TYPE, region(referenceMaxEntries, referenceTtl));
+        cacheManager.createCache(CacheRegions.SPECIALTY, region(referenceMaxEntries, referenceTtl));
+        cacheManager.createCache(CacheRegions.LANGUAGE, region(referenceMaxEntries, referenceTtl));
+
+        cacheManager.createCache(CacheRegions.QUERY_RESULTS,
+                region(queryMaxEntries, Duration.ofSeconds(queryTtlSeconds)));
+        // One entry per table; must outlive every query result that depends on it
+        cacheManager.createCache(CacheRegions.UPDATE_TIMESTAMPS, region(referenceMaxEntries, null));
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer entityCacheCustomizer(CacheManager entityCacheManager) {
+        return properties -> {
+            properties.put(ConfigSettings.CACHE_MANAGER, entityCacheManager);
+            properties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+        };
+    }
+
+    private static CaffeineConfiguration<Object, Object> region(long maxEntries, Duration ttl) {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setStoreByValue(false);
+        configuration.setMaximumSize(OptionalLong.of(maxEntries));
+        if (ttl != null) {
+            configuration.setExpireAfterWrite(OptionalLong.of(ttl.toNanos()));
+        }
+        return configuration;
+    }
+}
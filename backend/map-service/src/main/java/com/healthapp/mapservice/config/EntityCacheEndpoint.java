@@ -0,0 +1,78 @@
+package com.healthapp.mapservice.config;
+
+import com.healthapp.mapservice.service.EntityCacheEvictor;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Actuator endpoint ({@code /actuator/entitycache}) reporting second-level cache region
+ * statistics and exposing manual eviction. Requires {@code hibernate.generate_statistics}.
+ */
+@Component
+@Endpoint(id = "entitycache")
+public class EntityCacheEndpoint {
+
+    private final SessionFactory sessionFactory;
+    private final EntityCacheEvictor entityCacheEvictor;
+
+    public EntityCacheEndpoint(EntityManagerFactory entityManagerFactory, EntityCacheEvictor entityCacheEvictor) {
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        this.entityCacheEvictor = entityCacheEvictor;
+    }
+
+    @ReadOperation
+    public Map<String, Object> regions() {
+        Statistics statistics = sessionFactory.getStatistics();
+        Map<String, Object> regions = new TreeMap<>();
+        for (String name : statistics.getSecondLevelCacheRegionNames()) {
+            CacheRegionStatistics region = statistics.getCacheRegionStatistics(name);
+            if (region != null) {
+                regions.put(name, describe(region));
+            }
+        }
+
+        Map<String, Object> queryCache = new LinkedHashMap<>();
+        queryCache.put("hits", statistics.getQueryCacheHitCount());
+        queryCache.put("misses", statistics.getQueryCacheMissCount());
+        queryCache.put("puts", statistics.getQueryCachePutCount());
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("statisticsEnabled", statistics.isStatisticsEnabled());
+        result.put("regions", regions);
+        result.put("queryCache", queryCache);
+        return result;
+    }
+
+    @ReadOperation
+    public Map<String, Object> region(@Selector String name) {
+        CacheRegionStatistics region = sessionFactory.getStatistics().getCacheRegionStatistics(name);
+        return region != null ? describe(region) : null;
+    }
+
+    @DeleteOperation
+    public void evictAll() {
+        entityCacheEvictor.evictAll();
+    }
+
+    private static Map<String, Object> describe(CacheRegionStatistics region) {
+        long hits = region.getHitCount();
+        long misses = region.getMissCount();
+        Map<String, Object> description = new LinkedHashMap<>();
+        description.put("hits", hits);
+        description.put("misses", misses);
+        description.put("puts", region.getPutCount());
+        description.put("hitRatio", hits + misses > 0 ? (double) hits / (hits + misses) : 0.0);
+        return description;
+    }
+}
@@ -0,0 +1,31 @@
+package com.healthapp.mapservice.config;
+
+import com.healthapp.mapservice.service.HotViewportTracker;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Actuator endpoint ({@code /actuator/hotviewports}) reporting the most searched viewport
+ * tiles and filter combinations with their decayed search counts
+ */
+@Component
+@Endpoint(id = "hotviewports")
+public class HotViewportEndpoint {
+
+    private static final int DEFAULT_LIMIT = 50;
+
+    private final HotViewportTracker hotViewportTracker;
+
+    public HotViewportEndpoint(HotViewportTracker hotViewportTracker) {
+        this.hotViewportTracker = hotViewportTracker;
+    }
+
+    @ReadOperation
+    public Map<String, Object> heavyHitters(@Nullable Integer limit) {
+        return hotViewportTracker.report(limit != null && limit > 0 ? limit : DEFAULT_LIMIT);
+    }
+}
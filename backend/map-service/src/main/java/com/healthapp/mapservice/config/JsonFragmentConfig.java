@@ -0,0 +1,136 @@
+package com.healthapp.mapservice.config;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.ObjectCodec;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.BeanProperty;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.BeanSerializerModifier;
+import com.fasterxml.jackson.databind.ser.ContextualSerializer;
+import com.fasterxml.jackson.databind.ser.ResolvableSerializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.healthapp.mapservice.dto.ProviderResponse;
+import com.healthapp.mapservice.service.ProviderFragmentCache;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Supplier;
+
+/**
+ * Serves {@link ProviderResponse} JSON from {@link ProviderFragmentCache}.
+ *
+ * Spring Boot registers the module with its ObjectMapper, so every response body holding
+ * provider responses writes each cacheable one as raw pre-serialized bytes. Fragments are
+ * rendered by Jackson's own bean serializer, so the output is byte-for-byte what it would
+ * have been without the cache.
+ */
+@Configuration
+public class JsonFragmentConfig {
+
+    @Bean
+    public Module providerFragmentModule(ProviderFragmentCache fragmentCache) {
+        return new ProviderFragmentModule(fragmentCache);
+    }
+
+    private static final class ProviderFragmentModule extends SimpleModule {
+
+        private final ProviderFragmentCache fragmentCache;
+        private JsonFactory jsonFactory;
+
+        ProviderFragmentModule(ProviderFragmentCache fragmentCache) {
+            super("ProviderFragmentModule");
+            this.fragmentCache = fragmentCache;
+            setSerializerModifier(new BeanSerializerModifier() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public JsonSerializer<?> modifySerializer(SerializationConfig config, BeanDescription description,
+                                                          JsonSerializer<?> serializer) {
+                    if (description.getBeanClass() != ProviderResponse.class) {
+                        return serializer;
+                    }
+                    return new FragmentSerializer((JsonSerializer<Object>) serializer, fragmentCache, () -> jsonFactory);
+                }
+            });
+        }
+
+        @Override
+        public void setupModule(SetupContext context) {
+            ObjectCodec owner = context.getOwner();
+            this.jsonFactory = owner instanceof ObjectMapper ? ((ObjectMapper) owner).getFactory() : new JsonFactory();
+            super.setupModule(context);
+        }
+    }
+
+    /**
+     * Writes cacheable responses as raw fragments and delegates everything else to the bean serializer
+     */
+    private static final class FragmentSerializer extends StdSerializer<ProviderResponse>
+            implements ContextualSerializer, ResolvableSerializer {
+
+        private final JsonSerializer<Object> delegate;
+        private final ProviderFragmentCache fragmentCache;
+        private final Supplier<JsonFactory> jsonFactory;
+
+        FragmentSerializer(JsonSerializer<Object> delegate, ProviderFragmentCache fragmentCache,
+                           Supplier<JsonFactory> jsonFactory) {
+            super(ProviderResponse.class);
+            this.delegate = delegate;
+            this.fragmentCache = fragmentCache;
+            this.jsonFactory = jsonFactory;
+        }
+
+        @Override
+        public void serialize(ProviderResponse value, JsonGenerator generator, SerializerProvider provider)
+                throws IOException {
+            if (!fragmentCache.isCacheable(value)) {
+                delegate.serialize(value, generator, provider);
+                return;
+            }
+            try {
+                generator.writeRawValue(fragmentCache.get(value, response -> render(response, provider)));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+
+        private byte[] render(ProviderResponse response, SerializerProvider provider) {
+            ByteArrayBuilder bytes = new ByteArrayBuilder();
+            try (JsonGenerator generator = jsonFactory.get().createGenerator(bytes)) {
+                delegate.serialize(response, generator, provider);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return bytes.toByteArray();
+        }
+
+        @Override
+        public void resolve(SerializerProvider provider) throws JsonMappingException {
+            if (delegate instanceof ResolvableSerializer) {
+                ((ResolvableSerializer) delegate).resolve(provider);
+            }
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public JsonSerializer<?> createContextual(SerializerProvider provider, BeanProperty property)
+                throws JsonMappingException {
+            if (!(delegate instanceof ContextualSerializer)) {
+                return this;
+            }
+            JsonSerializer<?> contextual = ((ContextualSerializer) delegate).createContextual(provider, property);
+            return contextual == delegate
+                    ? this
+                    : new FragmentSerializer((JsonSerializer<Object>) contextual, fragmentCache, jsonFactory);
+        }
+    }
+}
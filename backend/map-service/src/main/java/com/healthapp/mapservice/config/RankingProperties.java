@@ -0,0 +1,100 @@
+package com.healthapp.mapservice.config;
+
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Relevance ranking configuration bound from {@code app.map.ranking}.
+ *
+ * Spring Cloud rebinds this bean when the environment changes, so new weights take
+ * effect on {@code POST /actuator/refresh} without a restart. Rebinding sets the fields
+ * one at a time, so searches read {@link #snapshot()} instead: an immutable copy that is
+ * replaced only once binding has finished.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.map.ranking")
+public class RankingProperties implements InitializingBean {
+
+    /**
+     * Weight of proximity to the user, or to the viewport centre without a user location
+     */
+    private double distanceWeight = 0.35;
+
+    /**
+     * Weight of the provider being verified
+     */
+    private double verifiedWeight = 0.2;
+
+    /**
+     * Weight of the provider being a registered user
+     */
+    private double registeredWeight = 0.1;
+
+    /**
+     * Weight of years of experience, scaled up to {@code experienceCapYears}
+     */
+    private double experienceWeight = 0.15;
+
+    /**
+     * Weight of how well the search term matches the provider or location name
+     */
+    private double textMatchWeight = 0.2;
+
+    /**
+     * Distance at which the proximity score falls to one half
+     */
+    private double distanceHalfScoreKm = 5;
+
+    /**
+     * Experience beyond this many years scores the same
+     */
+    private int experienceCapYears = 30;
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private volatile Snapshot snapshot = new Snapshot(this);
+
+    /**
+     * The weights as of the last completed bind
+     */
+    public Snapshot snapshot() {
+        return snapshot;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        snapshot = new Snapshot(this);
+    }
+
+    /**
+     * Immutable copy of the ranking weights
+     */
+    @lombok.Value
+    public static class Snapshot {
+        double distanceWeight;
+        double verifiedWeight;
+        double registeredWeight;
+        double experienceWeight;
+        double textMatchWeight;
+        double distanceHalfScoreKm;
+        int experienceCapYears;
+
+        Snapshot(RankingProperties properties) {
+            this.distanceWeight = properties.distanceWeight;
+            this.verifiedWeight = properties.verifiedWeight;
+            this.registeredWeight = properties.registeredWeight;
+            this.experienceWeight = properties.experienceWeight;
+            this.textMatchWeight = properties.textMatchWeight;
+            this.distanceHalfScoreKm = properties.distanceHalfScoreKm;
+            this.experienceCapYears = properties.experienceCapYears;
+        }
+    }
+}
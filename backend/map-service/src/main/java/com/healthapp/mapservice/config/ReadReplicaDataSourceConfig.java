@@ -0,0 +1,89 @@
+package com.healthapp.mapservice.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Data source setup for read-replica routing.
+ *
+ * Active when {@code app.datasource.routing.enabled=true}. The primary pool is built from
+ * {@code spring.datasource} with pool settings bound from {@code spring.datasource.hikari},
+ * as the auto-configured pool would be; each entry in {@code app.datasource.replicas} gets its own
+ * Hikari pool. Read-only transactions ({@code @Transactional(readOnly = true)} and
+ * read-only {@code TransactionTemplate}s) are routed to replicas.
+ */
+@Configuration
+@EnableConfigurationProperties(ReplicaDataSourceProperties.class)
+@ConditionalOnProperty(name = "app.datasource.routing.enabled", havingValue = "true")
+public class ReadReplicaDataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties dataSourceProperties) {
+        HikariDataSource primary = dataSourceProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        primary.setPoolName("primary");
+        return primary;
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(HikariDataSource primaryDataSource,
+                                                             DataSourceProperties dataSourceProperties,
+                                                             ReplicaDataSourceProperties replicaProperties,
+                                                             MeterRegistry meterRegistry) {
+        MicrometerMetricsTrackerFactory metricsTrackerFactory = new MicrometerMetricsTrackerFactory(meterRegistry);
+        if (primaryDataSource.getMetricsTrackerFactory() == null && primaryDataSource.getMetricRegistry() == null) {
+            primaryDataSource.setMetricsTrackerFactory(metricsTrackerFactory);
+        }
+
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        int index = 0;
+        for (ReplicaDataSourceProperties.Replica replica : replicaProperties.getReplicas()) {
+            String name = replica.getName() != null ? replica.getName() : "replica-" + (++index);
+
+            HikariDataSource dataSource = new HikariDataSource();
+            dataSource.setPoolName(name);
+            dataSource.setJdbcUrl(replica.getUrl());
+            dataSource.setUsername(replica.getUsername() != null
+                    ? replica.getUsername() : dataSourceProperties.getUsername());
+            dataSource.setPassword(replica.getPassword() != null
+                    ? replica.getPassword() : dataSourceProperties.getPassword());
+            dataSource.setDriverClassName(dataSourceProperties.determineDriverClassName());
+            dataSource.setMaximumPoolSize(replica.getMaximumPoolSize());
+            dataSource.setReadOnly(true);
+            dataSource.setMetricsTrackerFactory(metricsTrackerFactory);
+
+            replicas.put(name, dataSource);
+            weights.put(name, replica.getWeight());
+        }
+
+        ReplicaDataSourceProperties.Routing routing = replicaProperties.getRouting();
+        return new ReplicaRoutingDataSource(primaryDataSource, replicas, weights,
+                routing.getMaxLagSeconds(), routing.getFailureThreshold(), meterRegistry);
+    }
+
+    /**
+     * Defers connection acquisition until the first statement, after the transaction's
+     * read-only flag is known to the router
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+}
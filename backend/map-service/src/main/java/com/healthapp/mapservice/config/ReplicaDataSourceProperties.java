@@ -0,0 +1,62 @@
+package com.healthapp.mapservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read-replica configuration bound from {@code app.datasource}
+ */
+@Data
+@ConfigurationProperties(prefix = "app.datasource")
+public class ReplicaDataSourceProperties {
+
+    private Routing routing = new Routing();
+
+    private List<Replica> replicas = new ArrayList<>();
+
+    @Data
+    public static class Routing {
+
+        /**
+         * Route read-only transactions to replicas
+         */
+        private boolean enabled = false;
+
+        /**
+         * Replicas lagging further behind the primary than this are not used
+         */
+        private double maxLagSeconds = 5;
+
+        /**
+         * Interval between replica health and lag checks
+         */
+        private long checkIntervalMs = 5000;
+
+        /**
+         * Consecutive failed checks before a replica is taken out of rotation
+         */
+        private int failureThreshold = 2;
+    }
+
+    @Data
+    public static class Replica {
+
+        private String name;
+
+        private String url;
+
+        private String username;
+
+        private String password;
+
+        /**
+         * Relative share of read traffic for this replica
+         */
+        private int weight = 1;
+
+        private int maximumPoolSize = 10;
+    }
+}
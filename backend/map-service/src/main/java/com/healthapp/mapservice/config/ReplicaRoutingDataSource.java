@@ -0,0 +1,184 @@
+package com.healthapp.mapservice.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Routes read-only transactions to replicas and everything else to the primary.
+ *
+ * Replicas are checked on a schedule for reachability and replication lag. A replica
+ * receives traffic only while it is healthy and its lag is within
+ * {@code app.datasource.routing.max-lag-seconds}; among eligible replicas the choice is
+ * random, weighted by configured weight scaled down as lag approaches the threshold.
+ * When no replica is eligible, read-only work falls back to the primary.
+ *
+ * Must be wrapped in a {@code LazyConnectionDataSourceProxy} so the routing decision is
+ * made after the transaction's read-only flag has been bound.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    static final String PRIMARY = "primary";
+
+    private static final double MIN_LAG_SCORE = 0.1;
+
+    private static final String LAG_QUERY =
+            "SELECT CASE " +
+            "WHEN NOT pg_is_in_recovery() THEN 0 " +
+            "WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 " +
+            "ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()), 0) END";
+
+    private final List<ReplicaState> replicas = new ArrayList<>();
+    private final double maxLagSeconds;
+    private final int failureThreshold;
+    private final Counter primaryRoutes;
+    private final Counter fallbackRoutes;
+
+    public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicaDataSources,
+                                    Map<String, Integer> weights, double maxLagSeconds, int failureThreshold,
+                                    MeterRegistry meterRegistry) {
+        this.maxLagSeconds = maxLagSeconds;
+        this.failureThreshold = failureThreshold;
+        this.primaryRoutes = meterRegistry.counter("map.datasource.routes", "target", PRIMARY);
+        this.fallbackRoutes = meterRegistry.counter("map.datasource.routes", "target", "fallback");
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        replicaDataSources.forEach((name, dataSource) -> {
+            ReplicaState state = new ReplicaState(name, dataSource, weights.getOrDefault(name, 1),
+                    meterRegistry.counter("map.datasource.routes", "target", name));
+            replicas.add(state);
+            targets.put(name, dataSource);
+            meterRegistry.gauge("map.datasource.replica.lag.seconds",
+                    List.of(Tag.of("replica", name)), state, s -> s.lagSeconds);
+            meterRegistry.gauge("map.datasource.replica.eligible",
+                    List.of(Tag.of("replica", name)), state, s -> isEligible(s) ? 1 : 0);
+        });
+
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            primaryRoutes.increment();
+            return PRIMARY;
+        }
+
+        ReplicaState replica = chooseReplica();
+        if (replica == null) {
+            fallbackRoutes.increment();
+            return PRIMARY;
+        }
+        replica.routes.increment();
+        return replica.name;
+    }
+
+    /**
+     * Check every replica's reachability and replication lag
+     */
+    @Scheduled(fixedDelayString = "${app.datasource.routing.check-interval-ms:5000}")
+    public void checkReplicas() {
+        for (ReplicaState replica : replicas) {
+            try (Connection connection = replica.dataSource.getConnection();
+                 Statement statement = connection.createStatement()) {
+                statement.setQueryTimeout(2);
+                try (ResultSet resultSet = statement.executeQuery(LAG_QUERY)) {
+                    resultSet.next();
+                    replica.lagSeconds = resultSet.getDouble(1);
+                }
+                if (replica.consecutiveFailures >= failureThreshold) {
+                    log.info("Replica {} is reachable again (lag {}s)", replica.name, replica.lagSeconds);
+                }
+                replica.consecutiveFailures = 0;
+                replica.checked = true;
+            } catch (Exception e) {
+                replica.consecutiveFailures++;
+                if (replica.consecutiveFailures == failureThreshold) {
+                    log.warn("Replica {} removed from rotation: {}", replica.name, e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Close the primary and replica pools on shutdown
+     */
+    public void close() {
+        for (DataSource dataSource : getResolvedDataSources().values()) {
+            if (dataSource instanceof AutoCloseable) {
+                try {
+                    ((AutoCloseable) dataSource).close();
+                } catch (Exception e) {
+                    log.warn("Failed to close data source: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private ReplicaState chooseReplica() {
+        double totalWeight = 0;
+        double[] effective = new double[replicas.size()];
+        for (int i = 0; i < replicas.size(); i++) {
+            ReplicaState replica = replicas.get(i);
+            if (isEligible(replica)) {
+                double lagScore = Math.max(MIN_LAG_SCORE, 1 - replica.lagSeconds / maxLagSeconds);
+                effective[i] = replica.weight * lagScore;
+                totalWeight += effective[i];
+            }
+        }
+        if (totalWeight <= 0) {
+            return null;
+        }
+
+        double pick = ThreadLocalRandom.current().nextDouble(totalWeight);
+        for (int i = 0; i < effective.length; i++) {
+            pick -= effective[i];
+            if (effective[i] > 0 && pick < 0) {
+                return replicas.get(i);
+            }
+        }
+        return null;
+    }
+
+    private boolean isEligible(ReplicaState replica) {
+        return replica.checked
+                && replica.consecutiveFailures < failureThreshold
+                && replica.lagSeconds <= maxLagSeconds;
+    }
+
+    private static final class ReplicaState {
+
+        final String name;
+        final DataSource dataSource;
+        final int weight;
+        final Counter routes;
+
+        volatile boolean checked;
+        volatile int consecutiveFailures;
+        volatile double lagSeconds;
+
+        ReplicaState(String name, DataSource dataSource, int weight, Counter routes) {
+            this.name = name;
+            this.dataSource = dataSource;
+            this.weight = weight;
+            this.routes = routes;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.healthapp.mapservice.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Records the time from JVM start to the first successfully served API request
+ * as {@code map.startup.first.request.seconds}.
+ */
+@Component
+@Slf4j
+public class StartupMetrics implements HandlerInterceptor {
+
+    private final AtomicBoolean recorded = new AtomicBoolean();
+    private volatile double secondsToFirstRequest;
+
+    public StartupMetrics(MeterRegistry meterRegistry) {
+        meterRegistry.gauge("map.startup.first.request.seconds", this, metrics -> metrics.secondsToFirstRequest);
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response,
+                                Object handler, Exception ex) {
+        if (ex != null || response.getStatus() >= 400 || !recorded.compareAndSet(false, true)) {
+            return;
+        }
+        long startedAt = ManagementFactory.getRuntimeMXBean().getStartTime();
+        secondsToFirstRequest = (System.currentTimeMillis() - startedAt) / 1000.0;
+        log.info("First request served {} s after JVM start", secondsToFirstRequest);
+    }
+}
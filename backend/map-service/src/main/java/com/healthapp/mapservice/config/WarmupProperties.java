@@ -0,0 +1,41 @@
+package com.healthapp.mapservice.config;
+
+import com.healthapp.mapservice.dto.ProviderSearchRequest;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Startup warm-up configuration bound from {@code app.map.warmup}
+ */
+@Data
+@ConfigurationProperties(prefix = "app.map.warmup")
+public class WarmupProperties {
+
+    /**
+     * Run the warm-up before the readiness probe reports the service as ready
+     */
+    private boolean enabled = true;
+
+    /**
+     * Connections opened and held at the same time to fill each pool, primary and replicas
+     */
+    private int poolConnections = 10;
+
+    /**
+     * Times each representative search is replayed
+     */
+    private int iterations = 3;
+
+    /**
+     * Warm-up stops replaying searches once this budget is spent
+     */
+    private long maxDurationMs = 60000;
+
+    /**
+     * Representative searches; the centre of each viewport is also replayed as a nearby search
+     */
+    private List<ProviderSearchRequest> searches = new ArrayList<>();
+}
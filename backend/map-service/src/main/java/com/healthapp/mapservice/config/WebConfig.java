@@ -1,12 +1,17 @@
 package com.healthapp.mapservice.config;
 
+import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 @Configuration
+@RequiredArgsConstructor
 public class WebConfig implements WebMvcConfigurer {
 
+    private final StartupMetrics startupMetrics;
+
     @Override
     public void addCorsMappings(CorsRegistry registry) {
         registry.addMapping("/**")
@@ -15,4 +20,9 @@ public class WebConfig implements WebMvcConfigurer {
                 .allowedHeaders("*");
                 // Removing allowCredentials as it can't be used with allowedOrigins("*")
     }
-} 
\ No newline at end of file
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(startupMetrics).addPathPatterns("/providers/**");
+    }
+}
@@ -1,8 +1,20 @@
 package com.healthapp.mapservice.controller;
 
+import com.healthapp.mapservice.dto.BatchSearchRequest;
+import com.healthapp.mapservice.dto.BatchSearchResponse;
+import com.healthapp.mapservice.dto.HeatmapResponse;
+import com.healthapp.mapservice.dto.NearbySearchResponse;
+import com.healthapp.mapservice.dto.ProviderDetailsResponse;
 import com.healthapp.mapservice.dto.ProviderSearchRequest;
 import com.healthapp.mapservice.dto.ProviderSearchResponse;
+import com.healthapp.mapservice.dto.RouteSearchRequest;
+import com.healthapp.mapservice.dto.RouteSearchResponse;
+import com.healthapp.mapservice.service.DatabaseUnavailableException;
+import com.healthapp.mapservice.service.DensityHeatmapService;
 import com.healthapp.mapservice.service.ProviderMapService;
+import com.healthapp.mapservice.service.ServiceOverloadedException;
+import com.healthapp.mapservice.service.TileAffinityRouter;
+import com.healthapp.mapservice.service.ViewportChangeStream;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -11,11 +23,14 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import javax.validation.Valid;
 import javax.validation.constraints.Max;
@@ -30,7 +45,13 @@ import java.util.List;
 @Tag(name = "Provider Map API", description = "APIs for discovering healthcare providers on a map")
 public class ProviderMapController {
 
+    private static final String SESSION_HEADER = "X-Client-Session";
+    private static final String STALE_WARNING = "110 - \"Response is Stale\"";
+
     private final ProviderMapService providerMapService;
+    private final DensityHeatmapService densityHeatmapService;
+    private final TileAffinityRouter tileAffinityRouter;
+    private final ViewportChangeStream viewportChangeStream;
 
     @Operation(
         summary = "Search for providers within viewport",
@@ -48,23 +69,80 @@ public class ProviderMapController {
             @ApiResponse(
                 responseCode = "500",
                 description = "Internal server error"
+            ),
+            @ApiResponse(
+                responseCode = "503",
+                description = "Service at capacity, retry after the Retry-After interval"
             )
         }
     )
     @PostMapping("/search")
     public ResponseEntity<ProviderSearchResponse> searchProviders(
-            @Valid @RequestBody ProviderSearchRequest request) {
+            @Valid @RequestBody ProviderSearchRequest request,
+            
+            @Parameter(description = "Client session identifier used for viewport prefetching (optional)")
+            @RequestHeader(value = SESSION_HEADER, required = false) String sessionId,
+            
+            @Parameter(hidden = true)
+            @RequestHeader(value = TileAffinityRouter.FORWARDED_HEADER, required = false) String forwardedBy) {
         
         try {
             log.debug("Searching for providers with request: {}", request);
-            ProviderSearchResponse response = providerMapService.searchProviders(request);
-            return ResponseEntity.ok(response);
+            ProviderSearchResponse response = tileAffinityRouter.forward(request, sessionId, forwardedBy)
+                    .orElseGet(() -> providerMapService.searchProviders(request, sessionId));
+            return searchResponse(response);
+        } catch (ServiceOverloadedException | DatabaseUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error searching for providers: {}", e.getMessage(), e);
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error processing provider search", e);
         }
     }
 
+    @Operation(
+        summary = "Run several provider searches in one round trip",
+        description = "Executes up to 10 viewport searches, sharing one spatial scan across overlapping viewports. " +
+                "Responses are returned in request order.",
+        responses = {
+            @ApiResponse(
+                responseCode = "200",
+                description = "Successful operation",
+                content = @Content(schema = @Schema(implementation = BatchSearchResponse.class))
+            ),
+            @ApiResponse(
+                responseCode = "400",
+                description = "Invalid request parameters"
+            ),
+            @ApiResponse(
+                responseCode = "500",
+                description = "Internal server error"
+            ),
+            @ApiResponse(
+                responseCode = "503",
+                description = "Service at capacity, retry after the Retry-After interval"
+            )
+        }
+    )
+    @PostMapping("/search/batch")
+    public ResponseEntity<BatchSearchResponse> searchProvidersBatch(
+            @Valid @RequestBody BatchSearchRequest request,
+            
+            @Parameter(description = "Client session identifier used for viewport prefetching (optional)")
+            @RequestHeader(value = SESSION_HEADER, required = false) String sessionId) {
+        
+        try {
+            log.debug("Batch search with {} requests", request.getRequests().size());
+            List<ProviderSearchResponse> responses =
+                    providerMapService.searchProvidersBatch(request.getRequests(), sessionId);
+            return ResponseEntity.ok(BatchSearchResponse.builder().responses(responses).build());
+        } catch (ServiceOverloadedException | DatabaseUnavailableException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Error processing batch provider search: {}", e.getMessage(), e);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error processing batch provider search", e);
+        }
+    }
+
     @Operation(
         summary = "Simple provider search by viewport",
         description = "Simpler GET endpoint for searching providers by map viewport coordinates",
@@ -81,6 +159,10 @@ public class ProviderMapController {
             @ApiResponse(
                 responseCode = "500",
                 description = "Internal server error"
+            ),
+            @ApiResponse(
+                responseCode = "503",
+                description = "Service at capacity, retry after the Retry-After interval"
             )
         }
     )
@@ -128,11 +210,26 @@ public class ProviderMapController {
             @Parameter(description = "User longitude for distance calculations (optional)")
             @RequestParam(required = false) Double userLng,
             
-            @Parameter(description = "Sort by field (distance, name)")
+            @Parameter(description = "Sort by field (distance, name, relevance)")
             @RequestParam(defaultValue = "distance") String sortBy,
             
             @Parameter(description = "Sort direction (asc, desc)")
-            @RequestParam(defaultValue = "asc") String sortDirection) {
+            @RequestParam(defaultValue = "asc") String sortDirection,
+            
+            @Parameter(description = "Include facet counts for specialty, language, provider type and verified status")
+            @RequestParam(defaultValue = "false") Boolean includeFacets,
+            
+            @Parameter(description = "Maximum values returned per facet")
+            @RequestParam(defaultValue = "10") @Min(1) @Max(50) Integer facetLimit,
+            
+            @Parameter(description = "Match the search term by trigram similarity, tolerating misspellings, and order results by similarity")
+            @RequestParam(defaultValue = "false") Boolean fuzzy,
+            
+            @Parameter(description = "Client session identifier used for viewport prefetching (optional)")
+            @RequestHeader(value = SESSION_HEADER, required = false) String sessionId,
+            
+            @Parameter(hidden = true)
+            @RequestHeader(value = TileAffinityRouter.FORWARDED_HEADER, required = false) String forwardedBy) {
         
         try {
             // Validate that south latitude is less than north latitude
@@ -163,24 +260,327 @@ public class ProviderMapController {
                     .userLng(userLng)
                     .sortBy(sortBy)
                     .sortDirection(sortDirection)
+                    .includeFacets(includeFacets)
+                    .facetLimit(facetLimit)
+                    .fuzzy(fuzzy)
                     .build();
             
             log.debug("GET request for providers in viewport: {}", request);
-            ProviderSearchResponse response = providerMapService.searchProviders(request);
-            return ResponseEntity.ok(response);
+            ProviderSearchResponse response = tileAffinityRouter.forward(request, sessionId, forwardedBy)
+                    .orElseGet(() -> providerMapService.searchProviders(request, sessionId));
+            return searchResponse(response);
         } catch (IllegalArgumentException e) {
             log.error("Invalid viewport parameters: {}", e.getMessage());
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        } catch (ServiceOverloadedException | DatabaseUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error retrieving providers in viewport: {}", e.getMessage(), e);
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error processing provider search", e);
         }
     }
     
+    @Operation(
+        summary = "Stream provider changes in a viewport",
+        description = "Opens a server-sent event stream of changes to provider locations in the viewport that " +
+                "pass the filters. 'add' and 'update' events carry the provider with the changed location, " +
+                "'remove' events the location and provider IDs of a location that moved out, was deleted or " +
+                "no longer matches. After a 'resync' event the client should search the viewport again. " +
+                "Subscribe again with the new bounds when the viewport moves.",
+        responses = {
+            @ApiResponse(
+                responseCode = "200",
+                description = "Event stream opened"
+            ),
+            @ApiResponse(
+                responseCode = "400",
+                description = "Invalid viewport bounds or unsupported search term"
+            ),
+            @ApiResponse(
+                responseCode = "404",
+                description = "Viewport streaming is disabled"
+            ),
+            @ApiResponse(
+                responseCode = "503",
+                description = "Stream limit reached, retry after the Retry-After interval"
+            )
+        }
+    )
+    @GetMapping(value = "/map/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamViewportChanges(
+            @Parameter(description = "North latitude bound", required = true)
+            @RequestParam @Min(-90) @Max(90) Double northLat,
+            
+            @Parameter(description = "South latitude bound", required = true)
+            @RequestParam @Min(-90) @Max(90) Double southLat,
+            
+            @Parameter(description = "East longitude bound", required = true)
+            @RequestParam @Min(-180) @Max(180) Double eastLng,
+            
+            @Parameter(description = "West longitude bound", required = true)
+            @RequestParam @Min(-180) @Max(180) Double westLng,
+            
+            @Parameter(description = "Search term (optional)")
+            @RequestParam(required = false) String searchTerm,
+            
+            @Parameter(description = "Filter by specialty IDs (optional)")
+            @RequestParam(required = false) List<Integer> specialtyIds,
+            
+            @Parameter(description = "Filter by provider type IDs (optional)")
+            @RequestParam(required = false) List<Integer> providerTypeIds,
+            
+            @Parameter(description = "Filter by language IDs (optional)")
+            @RequestParam(required = false) List<Integer> languageIds,
+            
+            @Parameter(description = "Filter for verified providers only")
+            @RequestParam(defaultValue = "false") Boolean verifiedOnly,
+            
+            @Parameter(description = "Filter for registered providers only")
+            @RequestParam(defaultValue = "false") Boolean registeredOnly) {
+        
+        if (!viewportChangeStream.isEnabled()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Viewport streaming is disabled");
+        }
+        try {
+            if (southLat >= northLat) {
+                throw new IllegalArgumentException("South latitude must be less than north latitude");
+            }
+            if (westLng >= eastLng) {
+                throw new IllegalArgumentException("West longitude must be less than east longitude");
+            }
+            
+            ProviderSearchRequest request = ProviderSearchRequest.builder()
+                    .northLat(northLat)
+                    .southLat(southLat)
+                    .eastLng(eastLng)
+                    .westLng(westLng)
+                    .searchTerm(searchTerm)
+                    .specialtyIds(specialtyIds)
+                    .providerTypeIds(providerTypeIds)
+                    .languageIds(languageIds)
+                    .isVerifiedOnly(verifiedOnly)
+                    .isRegisteredOnly(registeredOnly)
+                    .build();
+            return viewportChangeStream.subscribe(request);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        } catch (ServiceOverloadedException | DatabaseUnavailableException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Error opening viewport stream: {}", e.getMessage(), e);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error opening viewport stream", e);
+        }
+    }
+    
+    @Operation(
+        summary = "Get details of several providers",
+        description = "Returns full provider details, including every location, for up to the configured " +
+                "number of provider IDs in the order requested. IDs with no provider location are listed " +
+                "under notFound.",
+        responses = {
+            @ApiResponse(
+                responseCode = "200",
+                description = "Successful operation",
+                content = @Content(schema = @Schema(implementation = ProviderDetailsResponse.class))
+            ),
+            @ApiResponse(
+                responseCode = "400",
+                description = "Missing or too many provider IDs"
+            ),
+            @ApiResponse(
+                responseCode = "500",
+                description = "Internal server error"
+            ),
+            @ApiResponse(
+                responseCode = "503",
+                description = "Service at capacity, retry after the Retry-After interval"
+            )
+        }
+    )
+    @GetMapping
+    public ResponseEntity<ProviderDetailsResponse> getProviderDetails(
+            @Parameter(description = "Comma-separated provider IDs", required = true)
+            @RequestParam List<Long> ids) {
+        
+        try {
+            log.debug("Detail lookup for {} providers", ids.size());
+            return ResponseEntity.ok(providerMapService.getProviderDetails(ids));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        } catch (ServiceOverloadedException | DatabaseUnavailableException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Error loading provider details: {}", e.getMessage(), e);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error loading provider details", e);
+        }
+    }
+    
+    @Operation(
+        summary = "Find providers near a point",
+        description = "Returns the providers nearest to the given coordinates within a radius, ordered by distance. " +
+                "The radius is clamped to the configured maximum.",
+        responses = {
+            @ApiResponse(
+                responseCode = "200",
+                description = "Successful operation",
+                content = @Content(schema = @Schema(implementation = NearbySearchResponse.class))
+            ),
+            @ApiResponse(
+                responseCode = "400",
+                description = "Invalid request parameters"
+            ),
+            @ApiResponse(
+                responseCode = "500",
+                description = "Internal server error"
+            ),
+            @ApiResponse(
+                responseCode = "503",
+                description = "Service at capacity, retry after the Retry-After interval"
+            )
+        }
+    )
+    @GetMapping("/nearby")
+    public ResponseEntity<NearbySearchResponse> getNearbyProviders(
+            @Parameter(description = "Latitude of the search center", required = true)
+            @RequestParam @Min(-90) @Max(90) Double lat,
+            
+            @Parameter(description = "Longitude of the search center", required = true)
+            @RequestParam @Min(-180) @Max(180) Double lng,
+            
+            @Parameter(description = "Search radius in kilometers (optional, defaults to the configured radius)")
+            @RequestParam(required = false) @Min(0) Double radiusKm,
+            
+            @Parameter(description = "Maximum number of providers to return")
+            @RequestParam(defaultValue = "20") @Min(1) @Max(100) Integer limit) {
+        
+        try {
+            log.debug("Nearby search at ({}, {}) radius {} km limit {}", lat, lng, radiusKm, limit);
+            return ResponseEntity.ok(providerMapService.findNearbyProviders(lat, lng, radiusKm, limit));
+        } catch (ServiceOverloadedException | DatabaseUnavailableException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Error finding nearby providers: {}", e.getMessage(), e);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error processing nearby search", e);
+        }
+    }
+    
+    @Operation(
+        summary = "Find providers along a route",
+        description = "Returns provider locations within a corridor around a route given as an encoded polyline, " +
+                "ordered by position along the route. Each provider carries its distance along the route " +
+                "(routeDistanceKm) and from it (distanceInKm). The buffer and limit are clamped to the configured maximums.",
+        responses = {
+            @ApiResponse(
+                responseCode = "200",
+                description = "Successful operation",
+                content = @Content(schema = @Schema(implementation = RouteSearchResponse.class))
+            ),
+            @ApiResponse(
+                responseCode = "400",
+                description = "Invalid request parameters or malformed polyline"
+            ),
+            @ApiResponse(
+                responseCode = "500",
+                description = "Internal server error"
+            ),
+            @ApiResponse(
+                responseCode = "503",
+                description = "Service at capacity, retry after the Retry-After interval"
+            )
+        }
+    )
+    @PostMapping("/along-route")
+    public ResponseEntity<RouteSearchResponse> getProvidersAlongRoute(
+            @Valid @RequestBody RouteSearchRequest request) {
+        
+        try {
+            log.debug("Route search with buffer {} km limit {}", request.getBufferKm(), request.getLimit());
+            return ResponseEntity.ok(providerMapService.findProvidersAlongRoute(request));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        } catch (ServiceOverloadedException | DatabaseUnavailableException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Error searching along route: {}", e.getMessage(), e);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error processing route search", e);
+        }
+    }
+    
+    @Operation(
+        summary = "Provider density heatmap for a viewport",
+        description = "Returns location counts on a grid covering the viewport, read from pre-aggregated " +
+                "density cells. The grid has about 'resolution' cells along the viewport's larger span " +
+                "and can be restricted to one specialty and/or provider type.",
+        responses = {
+            @ApiResponse(
+                responseCode = "200",
+                description = "Successful operation",
+                content = @Content(schema = @Schema(implementation = HeatmapResponse.class))
+            ),
+            @ApiResponse(
+                responseCode = "400",
+                description = "Invalid request parameters"
+            ),
+            @ApiResponse(
+                responseCode = "500",
+                description = "Internal server error"
+            ),
+            @ApiResponse(
+                responseCode = "503",
+                description = "Service at capacity, retry after the Retry-After interval"
+            )
+        }
+    )
+    @GetMapping("/heatmap")
+    public ResponseEntity<HeatmapResponse> getHeatmap(
+            @Parameter(description = "North latitude bound", required = true)
+            @RequestParam @Min(-90) @Max(90) Double northLat,
+            
+            @Parameter(description = "South latitude bound", required = true)
+            @RequestParam @Min(-90) @Max(90) Double southLat,
+            
+            @Parameter(description = "East longitude bound", required = true)
+            @RequestParam @Min(-180) @Max(180) Double eastLng,
+            
+            @Parameter(description = "West longitude bound", required = true)
+            @RequestParam @Min(-180) @Max(180) Double westLng,
+            
+            @Parameter(description = "Only count providers with this specialty (optional)")
+            @RequestParam(required = false) Integer specialtyId,
+            
+            @Parameter(description = "Only count providers of this type (optional)")
+            @RequestParam(required = false) Integer providerTypeId,
+            
+            @Parameter(description = "Approximate number of cells along the viewport's larger span")
+            @RequestParam(defaultValue = "32") @Min(1) @Max(64) Integer resolution) {
+        
+        if (southLat >= northLat || westLng >= eastLng) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Viewport bounds are inverted or empty");
+        }
+        try {
+            log.debug("Heatmap for viewport N:{}, S:{}, E:{}, W:{} specialty {} type {}",
+                    northLat, southLat, eastLng, westLng, specialtyId, providerTypeId);
+            return ResponseEntity.ok(densityHeatmapService.getHeatmap(
+                    westLng, southLat, eastLng, northLat, specialtyId, providerTypeId, resolution));
+        } catch (ServiceOverloadedException | DatabaseUnavailableException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Error building heatmap: {}", e.getMessage(), e);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error processing heatmap", e);
+        }
+    }
+    
     @ExceptionHandler(ResponseStatusException.class)
     public ResponseEntity<String> handleResponseStatusException(ResponseStatusException ex) {
         return ResponseEntity
                 .status(ex.getStatus())
                 .body(ex.getReason());
     }
-}
\ No newline at end of file
+    
+    private static ResponseEntity<ProviderSearchResponse> searchResponse(ProviderSearchResponse response) {
+        if (response.isStale()) {
+            return ResponseEntity.ok().header(HttpHeaders.WARNING, STALE_WARNING).body(response);
+        }
+        return ResponseEntity.ok(response);
+    }
+}
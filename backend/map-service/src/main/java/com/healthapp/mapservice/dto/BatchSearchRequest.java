@@ -0,0 +1,23 @@
+package com.healthapp.mapservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Size;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchSearchRequest {
+
+    @Valid
+    @NotEmpty(message = "At least one search request is required")
+    @Size(max = 10, message = "A batch must not contain more than 10 search requests")
+    private List<ProviderSearchRequest> requests;
+}
@@ -0,0 +1,20 @@
+package com.healthapp.mapservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchSearchResponse implements Serializable {
+    private static final long serialVersionUID = 1L;
+    
+    // One response per request, in request order
+    private List<ProviderSearchResponse> responses;
+}
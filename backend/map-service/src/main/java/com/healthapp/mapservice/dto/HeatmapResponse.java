@@ -0,0 +1,36 @@
+package com.healthapp.mapservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class HeatmapResponse implements Serializable {
+    private static final long serialVersionUID = 1L;
+    
+    // Grid zoom level and square cell size in degrees
+    private Integer zoom;
+    private Double cellSize;
+    
+    // South-west corner of the first cell
+    private Double westLng;
+    private Double southLat;
+    
+    private Integer columns;
+    private Integer rows;
+    
+    // Location counts, row-major from south to north, each row from west to east
+    private int[] counts;
+    private Integer maxCount;
+    private Long totalCount;
+    
+    // Filters applied, null when the heatmap covers all specialties or types
+    private Integer specialtyId;
+    private Integer providerTypeId;
+}
@@ -0,0 +1,26 @@
+package com.healthapp.mapservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class NearbySearchResponse implements Serializable {
+    private static final long serialVersionUID = 1L;
+    
+    // Providers ordered by distance, nearest first
+    private List<ProviderResponse> providers;
+    private Double latitude;
+    private Double longitude;
+    
+    // Radius actually searched, after clamping to the configured maximum
+    private Double radiusKm;
+    private Integer count;
+}
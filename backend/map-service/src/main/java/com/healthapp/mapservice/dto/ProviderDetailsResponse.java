@@ -0,0 +1,23 @@
+package com.healthapp.mapservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProviderDetailsResponse implements Serializable {
+    private static final long serialVersionUID = 1L;
+    
+    // Providers in the order requested, each with all of its locations
+    private List<ProviderResponse> providers;
+    
+    // Requested IDs with no provider location
+    private List<Long> notFound;
+}
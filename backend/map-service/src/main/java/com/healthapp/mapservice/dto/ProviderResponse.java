@@ -1,5 +1,6 @@
 package com.healthapp.mapservice.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -30,4 +31,11 @@ public class ProviderResponse implements Serializable {
     
     // Used when a user location is provided for search
     private Double distanceInKm;
+    
+    // Set by route searches: distance along the route to the point nearest the location
+    private Double routeDistanceKm;
+    
+    // Changes whenever the rendered content may change; keys the pre-serialized JSON fragment
+    @JsonIgnore
+    private Long version;
 }
\ No newline at end of file
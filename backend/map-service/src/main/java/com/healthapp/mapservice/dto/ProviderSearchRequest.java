@@ -57,10 +57,20 @@ public class ProviderSearchRequest {
     private Double userLat;
     private Double userLng;
     
-    private String sortBy = "distance"; // distance, rating, name
+    private String sortBy = "distance"; // distance, rating, name, relevance
     
     private String sortDirection = "asc"; // asc, desc
 
+    // Facet counts over the filtered results (optional)
+    private Boolean includeFacets = false;
+
+    @Min(value = 1, message = "Facet limit must be at least 1")
+    @Max(value = 50, message = "Facet limit must not exceed 50")
+    private Integer facetLimit = 10;
+
+    // Match the search term by trigram similarity and order results by it (optional)
+    private Boolean fuzzy = false;
+
     // Explicit getters and setters
     public Double getNorthLat() {
         return northLat;
@@ -190,6 +200,49 @@ public class ProviderSearchRequest {
         this.sortDirection = sortDirection;
     }
 
+    public Boolean getIncludeFacets() {
+        return includeFacets;
+    }
+
+    public void setIncludeFacets(Boolean includeFacets) {
+        this.includeFacets = includeFacets;
+    }
+
+    public Integer getFacetLimit() {
+        return facetLimit;
+    }
+
+    public void setFacetLimit(Integer facetLimit) {
+        this.facetLimit = facetLimit;
+    }
+
+    public Boolean getFuzzy() {
+        return fuzzy;
+    }
+
+    public void setFuzzy(Boolean fuzzy) {
+        this.fuzzy = fuzzy;
+    }
+
+    /**
+     * First specialty filter; searches apply only the first ID of each filter list
+     */
+    public Integer firstSpecialtyId() {
+        return firstOrNull(specialtyIds);
+    }
+
+    public Integer firstProviderTypeId() {
+        return firstOrNull(providerTypeIds);
+    }
+
+    public Integer firstLanguageId() {
+        return firstOrNull(languageIds);
+    }
+
+    private static Integer firstOrNull(List<Integer> ids) {
+        return ids != null && !ids.isEmpty() ? ids.get(0) : null;
+    }
+
     // Builder pattern implementation
     public static Builder builder() {
         return new Builder();
@@ -212,6 +265,9 @@ public class ProviderSearchRequest {
         private Double userLng;
         private String sortBy = "distance";
         private String sortDirection = "asc";
+        private Boolean includeFacets = false;
+        private Integer facetLimit = 10;
+        private Boolean fuzzy = false;
 
         public Builder northLat(Double northLat) {
             this.northLat = northLat;
@@ -293,13 +349,30 @@ public class ProviderSearchRequest {
             return this;
         }
 
+        public Builder includeFacets(Boolean includeFacets) {
+            this.includeFacets = includeFacets;
+            return this;
+        }
+
+        public Builder facetLimit(Integer facetLimit) {
+            this.facetLimit = facetLimit;
+            return this;
+        }
+
+        public Builder fuzzy(Boolean fuzzy) {
+            this.fuzzy = fuzzy;
+            return this;
+        }
+
         public ProviderSearchRequest build() {
             return new ProviderSearchRequest(
                     northLat, southLat, eastLng, westLng,
                     searchTerm, specialtyIds, providerTypeIds, languageIds,
                     isVerifiedOnly, isRegisteredOnly,
                     page, pageSize, userLat, userLng,
-                    sortBy, sortDirection
+                    sortBy, sortDirection,
+                    includeFacets, facetLimit,
+                    fuzzy
             );
         }
     }
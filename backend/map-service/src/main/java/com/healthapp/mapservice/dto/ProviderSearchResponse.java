@@ -9,7 +9,7 @@ import java.io.Serializable;
 import java.util.List;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class ProviderSearchResponse implements Serializable {
@@ -24,6 +24,12 @@ public class ProviderSearchResponse implements Serializable {
     // ViewportMetadata
     private ViewportMetadata viewportMetadata;
     
+    // Facet counts over the filtered results, present only when requested
+    private Facets facets;
+    
+    // Set when the database was unavailable and this is the last known good response
+    private boolean stale;
+    
     @Data
     @Builder
     @NoArgsConstructor
@@ -38,4 +44,32 @@ public class ProviderSearchResponse implements Serializable {
         private Integer providersInViewport;
         private Integer filteredCount;
     }
-}
\ No newline at end of file
+    
+    /**
+     * Location counts per filter value over the filtered results. Each list holds the
+     * most frequent values, up to the request's facet limit, by descending count.
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Facets implements Serializable {
+        private static final long serialVersionUID = 1L;
+        
+        private List<FacetCount> specialties;
+        private List<FacetCount> languages;
+        private List<FacetCount> providerTypes;
+        private Long verified;
+        private Long unverified;
+    }
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class FacetCount implements Serializable {
+        private static final long serialVersionUID = 1L;
+        
+        private Integer id;
+        private Long count;
+    }
+}
@@ -0,0 +1,49 @@
+package com.healthapp.mapservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotBlank;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RouteSearchRequest {
+
+    // Route as an encoded polyline (Google polyline algorithm)
+    @NotBlank(message = "Polyline is required")
+    private String polyline;
+
+    // Decimal places of the encoded coordinates: 5, or 6 for polyline6
+    @Builder.Default
+    @Min(value = 5, message = "Polyline precision must be 5 or 6")
+    @Max(value = 6, message = "Polyline precision must be 5 or 6")
+    private Integer precision = 5;
+
+    // Corridor half-width (optional, defaults to the configured buffer and is clamped to its maximum)
+    @DecimalMin(value = "0", inclusive = false, message = "Buffer must be positive")
+    private Double bufferKm;
+
+    @Builder.Default
+    @Min(value = 1, message = "Limit must be at least 1")
+    private Integer limit = 50;
+
+    // Optional filters
+    private Integer specialtyId;
+
+    private Integer providerTypeId;
+
+    private Integer languageId;
+
+    @Builder.Default
+    private Boolean isVerifiedOnly = false;
+
+    @Builder.Default
+    private Boolean isRegisteredOnly = false;
+}
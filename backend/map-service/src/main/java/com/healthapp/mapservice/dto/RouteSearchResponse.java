@@ -0,0 +1,30 @@
+package com.healthapp.mapservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RouteSearchResponse implements Serializable {
+    private static final long serialVersionUID = 1L;
+    
+    // Provider locations ordered by position along the route, with routeDistanceKm set and
+    // distanceInKm the distance from the route
+    private List<ProviderResponse> providers;
+    private Integer count;
+    
+    // Buffer actually searched, after clamping to the configured maximum
+    private Double bufferKm;
+    private Double routeLengthKm;
+    
+    // Vertices of the decoded route and of the simplified route that was searched
+    private Integer routeVertices;
+    private Integer searchedVertices;
+}
@@ -0,0 +1,24 @@
+package com.healthapp.mapservice.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ViewportChangeEvent implements Serializable {
+    private static final long serialVersionUID = 1L;
+    
+    private Long locationId;
+    private Long providerId;
+    
+    // The provider with the changed location as its only location; absent on remove events
+    private ProviderResponse provider;
+}
@@ -0,0 +1,20 @@
+package com.healthapp.mapservice.model;
+
+/**
+ * Hibernate second-level cache region names
+ */
+public final class CacheRegions {
+
+    public static final String PROVIDER = "provider";
+    public static final String PROVIDER_SPECIALTIES = "provider.specialties";
+    public static final String PROVIDER_LANGUAGES = "provider.languages";
+    public static final String PROVIDER_TYPE = "providerType";
+    public static final String SPECIALTY = "specialty";
+    public static final String LANGUAGE = "language";
+
+    public static final String QUERY_RESULTS = "default-query-results-region";
+    public static final String UPDATE_TIMESTAMPS = "default-update-timestamps-region";
+
+    private CacheRegions() {
+    }
+}
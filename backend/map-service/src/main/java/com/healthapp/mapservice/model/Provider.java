@@ -4,6 +4,8 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.locationtech.jts.geom.Point;
 
 import javax.persistence.*;
@@ -16,6 +18,8 @@ import java.util.Set;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheRegions.PROVIDER)
 @Table(name = "provider", schema = "provider")
 public class Provider {
 
@@ -69,6 +73,7 @@ public class Provider {
     private Set<ProviderLocation> locations = new HashSet<>();
 
     @ManyToMany(fetch = FetchType.LAZY)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheRegions.PROVIDER_SPECIALTIES)
     @JoinTable(
         name = "provider_specialty",
         schema = "provider",
@@ -78,6 +83,7 @@ public class Provider {
     private Set<Specialty> specialties = new HashSet<>();
 
     @ManyToMany(fetch = FetchType.LAZY)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheRegions.PROVIDER_LANGUAGES)
     @JoinTable(
         name = "provider_language",
         schema = "provider",
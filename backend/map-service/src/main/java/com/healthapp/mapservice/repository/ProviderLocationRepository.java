@@ -1,15 +1,20 @@
 package com.healthapp.mapservice.repository;
 
+import com.healthapp.mapservice.model.Provider;
 import com.healthapp.mapservice.model.ProviderLocation;
 import org.locationtech.jts.geom.Polygon;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface ProviderLocationRepository extends JpaRepository<ProviderLocation, Long> {
@@ -22,25 +27,38 @@ public interface ProviderLocationRepository extends JpaRepository<ProviderLocati
     )
     List<ProviderLocation> findAllInViewport(@Param("viewport") Polygon viewport);
     
-    // Find providers within viewport with filtering and pagination
+    // Location IDs within viewport with filtering and pagination, from the denormalized search_doc table.
+    // Sort properties are search_doc columns; name order is LOWER(d.provider_name), location_id.
     @Query(value = 
-            "SELECT l FROM ProviderLocation l " +
-            "JOIN l.provider p " +
-            "LEFT JOIN p.specialties s " +
-            "LEFT JOIN p.languages lang " +
-            "WHERE ST_Intersects(:viewport, l.geolocation) = true " +
-            "AND (:searchTerm IS NULL OR " +
-                "LOWER(p.name) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR " +
-                "LOWER(l.name) LIKE LOWER(CONCAT('%', :searchTerm, '%'))) " +
-            "AND (:specialtyId IS NULL OR s.id = :specialtyId) " +
-            "AND (:providerTypeId IS NULL OR p.providerTypeId = :providerTypeId) " +
-            "AND (:languageId IS NULL OR lang.id = :languageId) " +
-            "AND (:verifiedOnly = false OR p.isVerified = true) " +
-            "AND (:registeredOnly = false OR p.isRegisteredUser = true) " +
-            "GROUP BY l.id, p.id"
-    )
-    Page<ProviderLocation> findAllInViewportWithFilters(
-            @Param("viewport") Polygon viewport,
+            "SELECT CAST(d.location_id AS BIGINT) FROM provider.search_doc d " +
+            "WHERE ST_Intersects(ST_MakeEnvelope(:westLng, :southLat, :eastLng, :northLat, 4326), d.geom) " +
+            "AND d.region_key IN (:regions) " +
+            "AND (CAST(:searchTerm AS TEXT) IS NULL OR " +
+                "d.search_text LIKE CONCAT('%', LOWER(CAST(:searchTerm AS TEXT)), '%')) " +
+            "AND (CAST(:specialtyId AS INTEGER) IS NULL OR d.specialty_ids @> ARRAY[CAST(:specialtyId AS INTEGER)]) " +
+            "AND (CAST(:providerTypeId AS INTEGER) IS NULL OR d.provider_type_id = CAST(:providerTypeId AS INTEGER)) " +
+            "AND (CAST(:languageId AS INTEGER) IS NULL OR d.language_ids @> ARRAY[CAST(:languageId AS INTEGER)]) " +
+            "AND (:verifiedOnly = false OR d.is_verified) " +
+            "AND (:registeredOnly = false OR d.is_registered_user)",
+            countQuery = 
+            "SELECT COUNT(*) FROM provider.search_doc d " +
+            "WHERE ST_Intersects(ST_MakeEnvelope(:westLng, :southLat, :eastLng, :northLat, 4326), d.geom) " +
+            "AND d.region_key IN (:regions) " +
+            "AND (CAST(:searchTerm AS TEXT) IS NULL OR " +
+                "d.search_text LIKE CONCAT('%', LOWER(CAST(:searchTerm AS TEXT)), '%')) " +
+            "AND (CAST(:specialtyId AS INTEGER) IS NULL OR d.specialty_ids @> ARRAY[CAST(:specialtyId AS INTEGER)]) " +
+            "AND (CAST(:providerTypeId AS INTEGER) IS NULL OR d.provider_type_id = CAST(:providerTypeId AS INTEGER)) " +
+            "AND (CAST(:languageId AS INTEGER) IS NULL OR d.language_ids @> ARRAY[CAST(:languageId AS INTEGER)]) " +
+            "AND (:verifiedOnly = false OR d.is_verified) " +
+            "AND (:registeredOnly = false OR d.is_registered_user)",
+            nativeQuery = true
+    )
+    Page<Long> findSearchDocLocationIds(
+            @Param("westLng") double westLng,
+            @Param("southLat") double southLat,
+            @Param("eastLng") double eastLng,
+            @Param("northLat") double northLat,
+            @Param("regions") Collection<Integer> regions,
             @Param("searchTerm") String searchTerm,
             @Param("specialtyId") Integer specialtyId,
             @Param("providerTypeId") Integer providerTypeId,
@@ -50,24 +68,183 @@ public interface ProviderLocationRepository extends JpaRepository<ProviderLocati
             Pageable pageable
     );
     
-    // Count providers within viewport with filtering
+    // Count locations within viewport with filtering, from search_doc
     @Query(value = 
-            "SELECT COUNT(DISTINCT l.id) FROM ProviderLocation l " +
-            "JOIN l.provider p " +
-            "LEFT JOIN p.specialties s " +
-            "LEFT JOIN p.languages lang " +
-            "WHERE ST_Intersects(:viewport, l.geolocation) = true " +
-            "AND (:searchTerm IS NULL OR " +
-                "LOWER(p.name) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR " +
-                "LOWER(l.name) LIKE LOWER(CONCAT('%', :searchTerm, '%'))) " +
-            "AND (:specialtyId IS NULL OR s.id = :specialtyId) " +
-            "AND (:providerTypeId IS NULL OR p.providerTypeId = :providerTypeId) " +
-            "AND (:languageId IS NULL OR lang.id = :languageId) " +
-            "AND (:verifiedOnly = false OR p.isVerified = true) " +
-            "AND (:registeredOnly = false OR p.isRegisteredUser = true)"
-    )
-    Long countInViewportWithFilters(
-            @Param("viewport") Polygon viewport,
+            "SELECT COUNT(*) FROM provider.search_doc d " +
+            "WHERE ST_Intersects(ST_MakeEnvelope(:westLng, :southLat, :eastLng, :northLat, 4326), d.geom) " +
+            "AND d.region_key IN (:regions) " +
+            "AND (CAST(:searchTerm AS TEXT) IS NULL OR " +
+                "d.search_text LIKE CONCAT('%', LOWER(CAST(:searchTerm AS TEXT)), '%')) " +
+            "AND (CAST(:specialtyId AS INTEGER) IS NULL OR d.specialty_ids @> ARRAY[CAST(:specialtyId AS INTEGER)]) " +
+            "AND (CAST(:providerTypeId AS INTEGER) IS NULL OR d.provider_type_id = CAST(:providerTypeId AS INTEGER)) " +
+            "AND (CAST(:languageId AS INTEGER) IS NULL OR d.language_ids @> ARRAY[CAST(:languageId AS INTEGER)]) " +
+            "AND (:verifiedOnly = false OR d.is_verified) " +
+            "AND (:registeredOnly = false OR d.is_registered_user)",
+            nativeQuery = true
+    )
+    Long countSearchDocLocations(
+            @Param("westLng") double westLng,
+            @Param("southLat") double southLat,
+            @Param("eastLng") double eastLng,
+            @Param("northLat") double northLat,
+            @Param("regions") Collection<Integer> regions,
+            @Param("searchTerm") String searchTerm,
+            @Param("specialtyId") Integer specialtyId,
+            @Param("providerTypeId") Integer providerTypeId,
+            @Param("languageId") Integer languageId,
+            @Param("verifiedOnly") boolean verifiedOnly,
+            @Param("registeredOnly") boolean registeredOnly
+    );
+    
+    // Location IDs within viewport restricted to a pre-resolved candidate provider set, from search_doc
+    @Query(value = 
+            "SELECT CAST(d.location_id AS BIGINT) FROM provider.search_doc d " +
+            "WHERE ST_Intersects(ST_MakeEnvelope(:westLng, :southLat, :eastLng, :northLat, 4326), d.geom) " +
+            "AND d.region_key IN (:regions) " +
+            "AND d.provider_id IN :providerIds " +
+            "AND (CAST(:searchTerm AS TEXT) IS NULL OR " +
+                "d.search_text LIKE CONCAT('%', LOWER(CAST(:searchTerm AS TEXT)), '%')) " +
+            "AND (CAST(:specialtyId AS INTEGER) IS NULL OR d.specialty_ids @> ARRAY[CAST(:specialtyId AS INTEGER)]) " +
+            "AND (CAST(:providerTypeId AS INTEGER) IS NULL OR d.provider_type_id = CAST(:providerTypeId AS INTEGER)) " +
+            "AND (CAST(:languageId AS INTEGER) IS NULL OR d.language_ids @> ARRAY[CAST(:languageId AS INTEGER)]) " +
+            "AND (:verifiedOnly = false OR d.is_verified) " +
+            "AND (:registeredOnly = false OR d.is_registered_user)",
+            countQuery = 
+            "SELECT COUNT(*) FROM provider.search_doc d " +
+            "WHERE ST_Intersects(ST_MakeEnvelope(:westLng, :southLat, :eastLng, :northLat, 4326), d.geom) " +
+            "AND d.region_key IN (:regions) " +
+            "AND d.provider_id IN :providerIds " +
+            "AND (CAST(:searchTerm AS TEXT) IS NULL OR " +
+                "d.search_text LIKE CONCAT('%', LOWER(CAST(:searchTerm AS TEXT)), '%')) " +
+            "AND (CAST(:specialtyId AS INTEGER) IS NULL OR d.specialty_ids @> ARRAY[CAST(:specialtyId AS INTEGER)]) " +
+            "AND (CAST(:providerTypeId AS INTEGER) IS NULL OR d.provider_type_id = CAST(:providerTypeId AS INTEGER)) " +
+            "AND (CAST(:languageId AS INTEGER) IS NULL OR d.language_ids @> ARRAY[CAST(:languageId AS INTEGER)]) " +
+            "AND (:verifiedOnly = false OR d.is_verified) " +
+            "AND (:registeredOnly = false OR d.is_registered_user)",
+            nativeQuery = true
+    )
+    Page<Long> findSearchDocLocationIdsForProviders(
+            @Param("providerIds") Collection<Long> providerIds,
+            @Param("westLng") double westLng,
+            @Param("southLat") double southLat,
+            @Param("eastLng") double eastLng,
+            @Param("northLat") double northLat,
+            @Param("regions") Collection<Integer> regions,
+            @Param("searchTerm") String searchTerm,
+            @Param("specialtyId") Integer specialtyId,
+            @Param("providerTypeId") Integer providerTypeId,
+            @Param("languageId") Integer languageId,
+            @Param("verifiedOnly") boolean verifiedOnly,
+            @Param("registeredOnly") boolean registeredOnly,
+            Pageable pageable
+    );
+    
+    // Count locations within viewport restricted to a pre-resolved candidate provider set, from search_doc
+    @Query(value = 
+            "SELECT COUNT(*) FROM provider.search_doc d " +
+            "WHERE ST_Intersects(ST_MakeEnvelope(:westLng, :southLat, :eastLng, :northLat, 4326), d.geom) " +
+            "AND d.region_key IN (:regions) " +
+            "AND d.provider_id IN :providerIds " +
+            "AND (CAST(:searchTerm AS TEXT) IS NULL OR " +
+                "d.search_text LIKE CONCAT('%', LOWER(CAST(:searchTerm AS TEXT)), '%')) " +
+            "AND (CAST(:specialtyId AS INTEGER) IS NULL OR d.specialty_ids @> ARRAY[CAST(:specialtyId AS INTEGER)]) " +
+            "AND (CAST(:providerTypeId AS INTEGER) IS NULL OR d.provider_type_id = CAST(:providerTypeId AS INTEGER)) " +
+            "AND (CAST(:languageId AS INTEGER) IS NULL OR d.language_ids @> ARRAY[CAST(:languageId AS INTEGER)]) " +
+            "AND (:verifiedOnly = false OR d.is_verified) " +
+            "AND (:registeredOnly = false OR d.is_registered_user)",
+            nativeQuery = true
+    )
+    Long countSearchDocLocationsForProviders(
+            @Param("providerIds") Collection<Long> providerIds,
+            @Param("westLng") double westLng,
+            @Param("southLat") double southLat,
+            @Param("eastLng") double eastLng,
+            @Param("northLat") double northLat,
+            @Param("regions") Collection<Integer> regions,
+            @Param("searchTerm") String searchTerm,
+            @Param("specialtyId") Integer specialtyId,
+            @Param("providerTypeId") Integer providerTypeId,
+            @Param("languageId") Integer languageId,
+            @Param("verifiedOnly") boolean verifiedOnly,
+            @Param("registeredOnly") boolean registeredOnly
+    );
+    
+    // Position of every search document as (provider_id, latitude, longitude), ordered by provider
+    // and streamed in fetch-size batches (requires a transaction); seeds viewport stream positions
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "5000"))
+    @Query(value = 
+            "SELECT CAST(d.provider_id AS BIGINT), ST_Y(d.geom), ST_X(d.geom) " +
+            "FROM provider.search_doc d ORDER BY d.provider_id",
+            nativeQuery = true
+    )
+    Stream<Object[]> streamSearchDocPositions();
+    
+    // Relevance ranking inputs for every filtered location in the viewport, streamed in
+    // fetch-size batches (requires a transaction): location_id, latitude, longitude,
+    // is_verified, is_registered_user, experience_years, search_text
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "1000"))
+    @Query(value = 
+            "SELECT d.location_id, ST_Y(d.geom), ST_X(d.geom), d.is_verified, d.is_registered_user, " +
+                "d.experience_years, d.search_text " +
+            "FROM provider.search_doc d " +
+            "WHERE ST_Intersects(ST_MakeEnvelope(:westLng, :southLat, :eastLng, :northLat, 4326), d.geom) " +
+            "AND d.region_key IN (:regions) " +
+            "AND (CAST(:searchTerm AS TEXT) IS NULL OR " +
+                "d.search_text LIKE CONCAT('%', LOWER(CAST(:searchTerm AS TEXT)), '%')) " +
+            "AND (CAST(:specialtyId AS INTEGER) IS NULL OR d.specialty_ids @> ARRAY[CAST(:specialtyId AS INTEGER)]) " +
+            "AND (CAST(:providerTypeId AS INTEGER) IS NULL OR d.provider_type_id = CAST(:providerTypeId AS INTEGER)) " +
+            "AND (CAST(:languageId AS INTEGER) IS NULL OR d.language_ids @> ARRAY[CAST(:languageId AS INTEGER)]) " +
+            "AND (:verifiedOnly = false OR d.is_verified) " +
+            "AND (:registeredOnly = false OR d.is_registered_user)",
+            nativeQuery = true
+    )
+    Stream<Object[]> streamSearchDocRankingRows(
+            @Param("westLng") double westLng,
+            @Param("southLat") double southLat,
+            @Param("eastLng") double eastLng,
+            @Param("northLat") double northLat,
+            @Param("regions") Collection<Integer> regions,
+            @Param("searchTerm") String searchTerm,
+            @Param("specialtyId") Integer specialtyId,
+            @Param("providerTypeId") Integer providerTypeId,
+            @Param("languageId") Integer languageId,
+            @Param("verifiedOnly") boolean verifiedOnly,
+            @Param("registeredOnly") boolean registeredOnly
+    );
+    
+    // Facet counts over the filtered viewport as (dimension, value, count) rows: 's' specialty,
+    // 'l' language, 't' provider type, 'v' verified (1) or not (0). The filtered rows are
+    // materialized once, so search_doc is scanned a single time for all four facets.
+    @Query(value = 
+            "WITH f AS MATERIALIZED (" +
+                "SELECT d.specialty_ids, d.language_ids, d.provider_type_id, d.is_verified " +
+                "FROM provider.search_doc d " +
+                "WHERE ST_Intersects(ST_MakeEnvelope(:westLng, :southLat, :eastLng, :northLat, 4326), d.geom) " +
+                "AND d.region_key IN (:regions) " +
+                "AND (CAST(:searchTerm AS TEXT) IS NULL OR " +
+                    "d.search_text LIKE CONCAT('%', LOWER(CAST(:searchTerm AS TEXT)), '%')) " +
+                "AND (CAST(:specialtyId AS INTEGER) IS NULL OR d.specialty_ids @> ARRAY[CAST(:specialtyId AS INTEGER)]) " +
+                "AND (CAST(:providerTypeId AS INTEGER) IS NULL OR d.provider_type_id = CAST(:providerTypeId AS INTEGER)) " +
+                "AND (CAST(:languageId AS INTEGER) IS NULL OR d.language_ids @> ARRAY[CAST(:languageId AS INTEGER)]) " +
+                "AND (:verifiedOnly = false OR d.is_verified) " +
+                "AND (:registeredOnly = false OR d.is_registered_user)" +
+            ") " +
+            "SELECT 's', s.id, COUNT(*) FROM f CROSS JOIN LATERAL unnest(f.specialty_ids) AS s(id) GROUP BY s.id " +
+            "UNION ALL " +
+            "SELECT 'l', l.id, COUNT(*) FROM f CROSS JOIN LATERAL unnest(f.language_ids) AS l(id) GROUP BY l.id " +
+            "UNION ALL " +
+            "SELECT 't', f.provider_type_id, COUNT(*) FROM f WHERE f.provider_type_id IS NOT NULL " +
+                "GROUP BY f.provider_type_id " +
+            "UNION ALL " +
+            "SELECT 'v', CASE WHEN f.is_verified THEN 1 ELSE 0 END, COUNT(*) FROM f GROUP BY f.is_verified",
+            nativeQuery = true
+    )
+    List<Object[]> findSearchDocFacetCounts(
+            @Param("westLng") double westLng,
+            @Param("southLat") double southLat,
+            @Param("eastLng") double eastLng,
+            @Param("northLat") double northLat,
+            @Param("regions") Collection<Integer> regions,
             @Param("searchTerm") String searchTerm,
             @Param("specialtyId") Integer specialtyId,
             @Param("providerTypeId") Integer providerTypeId,
@@ -76,6 +253,163 @@ public interface ProviderLocationRepository extends JpaRepository<ProviderLocati
             @Param("registeredOnly") boolean registeredOnly
     );
     
+    // Fuzzy name search: location IDs within viewport whose provider or location name is word-similar
+    // to the search term, most similar first. The <% operator is served by the search_text trigram
+    // index and matches above pg_trgm.word_similarity_threshold (see setWordSimilarityThreshold).
+    @Query(value = 
+            "SELECT CAST(d.location_id AS BIGINT) FROM provider.search_doc d " +
+            "WHERE ST_Intersects(ST_MakeEnvelope(:westLng, :southLat, :eastLng, :northLat, 4326), d.geom) " +
+            "AND d.region_key IN (:regions) " +
+            "AND LOWER(CAST(:searchTerm AS TEXT)) <% d.search_text " +
+            "AND (CAST(:specialtyId AS INTEGER) IS NULL OR d.specialty_ids @> ARRAY[CAST(:specialtyId AS INTEGER)]) " +
+            "AND (CAST(:providerTypeId AS INTEGER) IS NULL OR d.provider_type_id = CAST(:providerTypeId AS INTEGER)) " +
+            "AND (CAST(:languageId AS INTEGER) IS NULL OR d.language_ids @> ARRAY[CAST(:languageId AS INTEGER)]) " +
+            "AND (:verifiedOnly = false OR d.is_verified) " +
+            "AND (:registeredOnly = false OR d.is_registered_user) " +
+            "ORDER BY word_similarity(LOWER(CAST(:searchTerm AS TEXT)), d.search_text) DESC, " +
+                "similarity(LOWER(CAST(:searchTerm AS TEXT)), d.search_text) DESC, d.location_id",
+            countQuery = 
+            "SELECT COUNT(*) FROM provider.search_doc d " +
+            "WHERE ST_Intersects(ST_MakeEnvelope(:westLng, :southLat, :eastLng, :northLat, 4326), d.geom) " +
+            "AND d.region_key IN (:regions) " +
+            "AND LOWER(CAST(:searchTerm AS TEXT)) <% d.search_text " +
+            "AND (CAST(:specialtyId AS INTEGER) IS NULL OR d.specialty_ids @> ARRAY[CAST(:specialtyId AS INTEGER)]) " +
+            "AND (CAST(:providerTypeId AS INTEGER) IS NULL OR d.provider_type_id = CAST(:providerTypeId AS INTEGER)) " +
+            "AND (CAST(:languageId AS INTEGER) IS NULL OR d.language_ids @> ARRAY[CAST(:languageId AS INTEGER)]) " +
+            "AND (:verifiedOnly = false OR d.is_verified) " +
+            "AND (:registeredOnly = false OR d.is_registered_user)",
+            nativeQuery = true
+    )
+    Page<Long> findSearchDocLocationIdsBySimilarity(
+            @Param("westLng") double westLng,
+            @Param("southLat") double southLat,
+            @Param("eastLng") double eastLng,
+            @Param("northLat") double northLat,
+            @Param("regions") Collection<Integer> regions,
+            @Param("searchTerm") String searchTerm,
+            @Param("specialtyId") Integer specialtyId,
+            @Param("providerTypeId") Integer providerTypeId,
+            @Param("languageId") Integer languageId,
+            @Param("verifiedOnly") boolean verifiedOnly,
+            @Param("registeredOnly") boolean registeredOnly,
+            Pageable pageable
+    );
+    
+    // Facet counts over the fuzzy-matched viewport, as findSearchDocFacetCounts
+    @Query(value = 
+            "WITH f AS MATERIALIZED (" +
+                "SELECT d.specialty_ids, d.language_ids, d.provider_type_id, d.is_verified " +
+                "FROM provider.search_doc d " +
+                "WHERE ST_Intersects(ST_MakeEnvelope(:westLng, :southLat, :eastLng, :northLat, 4326), d.geom) " +
+                "AND d.region_key IN (:regions) " +
+                "AND LOWER(CAST(:searchTerm AS TEXT)) <% d.search_text " +
+                "AND (CAST(:specialtyId AS INTEGER) IS NULL OR d.specialty_ids @> ARRAY[CAST(:specialtyId AS INTEGER)]) " +
+                "AND (CAST(:providerTypeId AS INTEGER) IS NULL OR d.provider_type_id = CAST(:providerTypeId AS INTEGER)) " +
+                "AND (CAST(:languageId AS INTEGER) IS NULL OR d.language_ids @> ARRAY[CAST(:languageId AS INTEGER)]) " +
+                "AND (:verifiedOnly = false OR d.is_verified) " +
+                "AND (:registeredOnly = false OR d.is_registered_user)" +
+            ") " +
+            "SELECT 's', s.id, COUNT(*) FROM f CROSS JOIN LATERAL unnest(f.specialty_ids) AS s(id) GROUP BY s.id " +
+            "UNION ALL " +
+            "SELECT 'l', l.id, COUNT(*) FROM f CROSS JOIN LATERAL unnest(f.language_ids) AS l(id) GROUP BY l.id " +
+            "UNION ALL " +
+            "SELECT 't', f.provider_type_id, COUNT(*) FROM f WHERE f.provider_type_id IS NOT NULL " +
+                "GROUP BY f.provider_type_id " +
+            "UNION ALL " +
+            "SELECT 'v', CASE WHEN f.is_verified THEN 1 ELSE 0 END, COUNT(*) FROM f GROUP BY f.is_verified",
+            nativeQuery = true
+    )
+    List<Object[]> findSearchDocFuzzyFacetCounts(
+            @Param("westLng") double westLng,
+            @Param("southLat") double southLat,
+            @Param("eastLng") double eastLng,
+            @Param("northLat") double northLat,
+            @Param("regions") Collection<Integer> regions,
+            @Param("searchTerm") String searchTerm,
+            @Param("specialtyId") Integer specialtyId,
+            @Param("providerTypeId") Integer providerTypeId,
+            @Param("languageId") Integer languageId,
+            @Param("verifiedOnly") boolean verifiedOnly,
+            @Param("registeredOnly") boolean registeredOnly
+    );
+    
+    // Word-similarity threshold for the <% operator, local to the current transaction
+    @Query(value = "SELECT set_config('pg_trgm.word_similarity_threshold', CAST(:threshold AS TEXT), true)",
+            nativeQuery = true)
+    String setWordSimilarityThreshold(@Param("threshold") double threshold);
+    
+    // Candidate providers offering a specialty (filter-first plans); not query-cached, since native
+    // queries carry no table spaces and link edits would never evict the cached ids
+    @Query(value = 
+            "SELECT CAST(ps.provider_id AS BIGINT) " +
+            "FROM provider.provider_specialty ps " +
+            "WHERE ps.specialty_id = :specialtyId " +
+            "LIMIT :limit",
+            nativeQuery = true
+    )
+    List<Long> findProviderIdsBySpecialty(
+            @Param("specialtyId") Integer specialtyId,
+            @Param("limit") int limit
+    );
+    
+    // Candidate providers speaking a language (filter-first plans); not query-cached, since native
+    // queries carry no table spaces and link edits would never evict the cached ids
+    @Query(value = 
+            "SELECT CAST(pl.provider_id AS BIGINT) " +
+            "FROM provider.provider_language pl " +
+            "WHERE pl.language_id = :languageId " +
+            "LIMIT :limit",
+            nativeQuery = true
+    )
+    List<Long> findProviderIdsByLanguage(
+            @Param("languageId") Integer languageId,
+            @Param("limit") int limit
+    );
+    
+    // Candidate providers whose name or any location name matches the search term (text-first plans)
+    @Query(value = 
+            "SELECT DISTINCT CAST(d.provider_id AS BIGINT) FROM provider.search_doc d " +
+            "WHERE d.search_text LIKE CONCAT('%', LOWER(:searchTerm), '%') " +
+            "LIMIT :limit",
+            nativeQuery = true
+    )
+    List<Long> findProviderIdsByText(
+            @Param("searchTerm") String searchTerm,
+            @Param("limit") int limit
+    );
+    
+    // Planner statistics: location counts per one-degree grid cell
+    @Query(value = 
+            "SELECT CAST(FLOOR(ST_Y(l.geolocation::geometry)) AS INTEGER) AS lat_cell, " +
+            "CAST(FLOOR(ST_X(l.geolocation::geometry)) AS INTEGER) AS lng_cell, " +
+            "COUNT(*) AS location_count " +
+            "FROM provider.location l " +
+            "GROUP BY lat_cell, lng_cell",
+            nativeQuery = true
+    )
+    List<Object[]> countLocationsByGridCell();
+    
+    // Planner statistics: provider counts per specialty
+    @Query(value = 
+            "SELECT ps.specialty_id, COUNT(*) FROM provider.provider_specialty ps GROUP BY ps.specialty_id",
+            nativeQuery = true
+    )
+    List<Object[]> countProvidersBySpecialty();
+    
+    // Planner statistics: provider counts per language
+    @Query(value = 
+            "SELECT pl.language_id, COUNT(*) FROM provider.provider_language pl GROUP BY pl.language_id",
+            nativeQuery = true
+    )
+    List<Object[]> countProvidersByLanguage();
+    
+    // Planner statistics: number of distinct providers with at least one location
+    @Query(value = 
+            "SELECT COUNT(DISTINCT l.provider_id) FROM provider.location l",
+            nativeQuery = true
+    )
+    Long countProvidersWithLocations();
+    
     // Native query to find providers within viewport with distance calculation
     @Query(value = 
             "SELECT l.id, " +
@@ -115,17 +449,230 @@ public interface ProviderLocationRepository extends JpaRepository<ProviderLocati
             @Param("offset") int offset
     );
     
+    // Nearest locations within a radius, using each region partition's GiST index for both the
+    // radius filter and the KNN order
+    @Query(value = 
+            "SELECT CAST(d.location_id AS BIGINT) AS id, " +
+            "ST_Distance(d.geolocation, ST_SetSRID(ST_MakePoint(:lng, :lat), 4326)::geography) AS distance_m " +
+            "FROM provider.search_doc d " +
+            "WHERE d.region_key IN (:regions) " +
+            "AND ST_DWithin(d.geolocation, ST_SetSRID(ST_MakePoint(:lng, :lat), 4326)::geography, :radiusMeters) " +
+            "ORDER BY d.geolocation <-> ST_SetSRID(ST_MakePoint(:lng, :lat), 4326)::geography " +
+            "LIMIT :limit",
+            nativeQuery = true
+    )
+    List<Object[]> findNearestWithinRadius(
+            @Param("lat") double lat,
+            @Param("lng") double lng,
+            @Param("radiusMeters") double radiusMeters,
+            @Param("regions") Collection<Integer> regions,
+            @Param("limit") int limit
+    );
+    
+    // Locations within bufferMeters of a route given as an encoded polyline, as (location_id, metres along
+    // the route, metres from the route) in route order. Candidates come from the simplified route given as
+    // a WKT linestring, widened to probeMeters: each of its segments probes the geolocation GiST index on
+    // its own, so a long diagonal route never scans its whole bounding box. A location near several
+    // segments is placed at the nearest one, then kept only if it lies within bufferMeters of the original.
+    @Query(value = 
+            "WITH route AS (" +
+                "SELECT ST_GeomFromText(CAST(:routeWkt AS TEXT), 4326) AS geom" +
+            "), original AS (" +
+                "SELECT ST_SetSRID(ST_LineFromEncodedPolyline(CAST(:polyline AS TEXT), :precision), 4326)::geography AS geog" +
+            "), segments AS (" +
+                "SELECT s.geom, s.length_m, SUM(s.length_m) OVER (ORDER BY s.i) - s.length_m AS start_m " +
+                "FROM (" +
+                    "SELECT i, seg.geom, ST_Length(seg.geom::geography) AS length_m " +
+                    "FROM route r " +
+                    "CROSS JOIN LATERAL generate_series(1, ST_NPoints(r.geom) - 1) AS i " +
+                    "CROSS JOIN LATERAL (SELECT ST_MakeLine(ST_PointN(r.geom, i), ST_PointN(r.geom, i + 1)) AS geom) seg" +
+                ") s" +
+            "), hits AS (" +
+                "SELECT DISTINCT ON (d.location_id) d.location_id, d.geolocation, " +
+                    "s.start_m + ST_LineLocatePoint(s.geom, d.geom) * s.length_m AS route_m, " +
+                    "ST_Distance(d.geolocation, s.geom::geography) AS segment_m " +
+                "FROM segments s " +
+                "JOIN provider.search_doc d " +
+                    "ON d.region_key IN (:regions) " +
+                    "AND ST_DWithin(d.geolocation, s.geom::geography, :probeMeters) " +
+                "WHERE (CAST(:specialtyId AS INTEGER) IS NULL OR d.specialty_ids @> ARRAY[CAST(:specialtyId AS INTEGER)]) " +
+                "AND (CAST(:providerTypeId AS INTEGER) IS NULL OR d.provider_type_id = CAST(:providerTypeId AS INTEGER)) " +
+                "AND (CAST(:languageId AS INTEGER) IS NULL OR d.language_ids @> ARRAY[CAST(:languageId AS INTEGER)]) " +
+                "AND (:verifiedOnly = false OR d.is_verified) " +
+                "AND (:registeredOnly = false OR d.is_registered_user) " +
+                "ORDER BY d.location_id, segment_m" +
+            ") " +
+            "SELECT CAST(h.location_id AS BIGINT), h.route_m, ST_Distance(h.geolocation, o.geog) AS offset_m " +
+            "FROM hits h CROSS JOIN original o " +
+            "WHERE ST_DWithin(h.geolocation, o.geog, :bufferMeters) " +
+            "ORDER BY h.route_m, h.location_id " +
+            "LIMIT :limit",
+            nativeQuery = true
+    )
+    List<Object[]> findAlongRoute(
+            @Param("routeWkt") String routeWkt,
+            @Param("probeMeters") double probeMeters,
+            @Param("polyline") String polyline,
+            @Param("precision") int precision,
+            @Param("bufferMeters") double bufferMeters,
+            @Param("regions") Collection<Integer> regions,
+            @Param("specialtyId") Integer specialtyId,
+            @Param("providerTypeId") Integer providerTypeId,
+            @Param("languageId") Integer languageId,
+            @Param("verifiedOnly") boolean verifiedOnly,
+            @Param("registeredOnly") boolean registeredOnly,
+            @Param("limit") int limit
+    );
+    
+    // Location IDs within bounds, from search_doc (tile loads)
+    @Query(value = 
+            "SELECT CAST(d.location_id AS BIGINT) FROM provider.search_doc d " +
+            "WHERE ST_Intersects(ST_MakeEnvelope(:westLng, :southLat, :eastLng, :northLat, 4326), d.geom) " +
+            "AND d.region_key IN (:regions)",
+            nativeQuery = true
+    )
+    List<Long> findSearchDocLocationIdsInBounds(
+            @Param("westLng") double westLng,
+            @Param("southLat") double southLat,
+            @Param("eastLng") double eastLng,
+            @Param("northLat") double northLat,
+            @Param("regions") Collection<Integer> regions
+    );
+    
+    // At most :limit location IDs within bounds, from search_doc (batch shared scans)
+    @Query(value = 
+            "SELECT CAST(d.location_id AS BIGINT) FROM provider.search_doc d " +
+            "WHERE ST_Intersects(ST_MakeEnvelope(:westLng, :southLat, :eastLng, :northLat, 4326), d.geom) " +
+            "AND d.region_key IN (:regions) " +
+            "LIMIT :limit",
+            nativeQuery = true
+    )
+    List<Long> findSearchDocLocationIdsInBoundsLimited(
+            @Param("westLng") double westLng,
+            @Param("southLat") double southLat,
+            @Param("eastLng") double eastLng,
+            @Param("northLat") double northLat,
+            @Param("regions") Collection<Integer> regions,
+            @Param("limit") int limit
+    );
+    
+    // Load locations by ID with provider, specialties and languages
+    @Query(value = 
+            "SELECT DISTINCT l FROM ProviderLocation l " +
+            "JOIN FETCH l.provider p " +
+            "LEFT JOIN FETCH p.specialties " +
+            "LEFT JOIN FETCH p.languages " +
+            "WHERE l.id IN :ids"
+    )
+    List<ProviderLocation> findAllByIdWithDetails(@Param("ids") Collection<Long> ids);
+
+    // Load every location of the given providers with provider, specialties and languages
+    @Query(value = 
+            "SELECT DISTINCT l FROM ProviderLocation l " +
+            "JOIN FETCH l.provider p " +
+            "LEFT JOIN FETCH p.specialties " +
+            "LEFT JOIN FETCH p.languages " +
+            "WHERE p.id IN :providerIds"
+    )
+    List<ProviderLocation> findAllByProviderIdWithDetails(@Param("providerIds") Collection<Long> providerIds);
+
+    // Load providers with specialties and languages, for details of providers without locations
+    @Query(value = 
+            "SELECT DISTINCT p FROM Provider p " +
+            "LEFT JOIN FETCH p.specialties " +
+            "LEFT JOIN FETCH p.languages " +
+            "WHERE p.id IN :providerIds"
+    )
+    List<Provider> findProvidersByIdWithDetails(@Param("providerIds") Collection<Long> providerIds);
+
+    // All location IDs, used to stream the search snapshot in batches
+    @Query("SELECT l.id FROM ProviderLocation l ORDER BY l.id")
+    List<Long> findAllIds();
+
+    // Latest provider, location or search document change, in epoch milliseconds; search_doc.updated_at
+    // is the only timestamp that moves when a provider's specialty or language links change
+    @Query(value =
+            "SELECT CAST(FLOOR(EXTRACT(EPOCH FROM GREATEST(" +
+            "COALESCE((SELECT MAX(l.updated_at) FROM provider.location l), to_timestamp(0)), " +
+            "COALESCE((SELECT MAX(p.updated_at) FROM provider.provider p), to_timestamp(0)), " +
+            "COALESCE((SELECT MAX(d.updated_at) FROM provider.search_doc d), to_timestamp(0)))) * 1000) AS BIGINT)",
+            nativeQuery = true
+    )
+    Long findLatestUpdateEpochMillis();
+
+    // Locations whose row, provider or search document changed after the given epoch milliseconds
+    @Query(value =
+            "SELECT CAST(l.id AS BIGINT) FROM provider.location l " +
+            "JOIN provider.provider p ON p.id = l.provider_id " +
+            "WHERE l.updated_at > to_timestamp(:sinceMillis / 1000.0) " +
+            "OR p.updated_at > to_timestamp(:sinceMillis / 1000.0) " +
+            "OR l.id IN (SELECT d.location_id FROM provider.search_doc d " +
+            "WHERE d.updated_at > to_timestamp(:sinceMillis / 1000.0))",
+            nativeQuery = true
+    )
+    List<Long> findLocationIdsUpdatedSince(@Param("sinceMillis") long sinceMillis);
+
+    // Providers whose row, any location or any search document changed after the given epoch milliseconds, one row per
+    // location as (provider_id, latitude, longitude); coordinates are null for providers without locations
+    @Query(value =
+            "SELECT CAST(p.id AS BIGINT), ST_Y(l.geolocation::geometry), ST_X(l.geolocation::geometry) " +
+            "FROM provider.provider p " +
+            "LEFT JOIN provider.location l ON l.provider_id = p.id " +
+            "WHERE p.updated_at > to_timestamp(:sinceMillis / 1000.0) " +
+            "OR l.updated_at > to_timestamp(:sinceMillis / 1000.0) " +
+            "OR p.id IN (SELECT d.provider_id FROM provider.search_doc d " +
+            "WHERE d.updated_at > to_timestamp(:sinceMillis / 1000.0))",
+            nativeQuery = true
+    )
+    List<Object[]> findChangedProviderLocations(@Param("sinceMillis") long sinceMillis);
+
+    // Latest change to provider types, specialties or languages, in epoch milliseconds
+    @Query(value =
+            "SELECT CAST(FLOOR(EXTRACT(EPOCH FROM GREATEST(" +
+            "COALESCE((SELECT MAX(t.updated_at) FROM provider.provider_type t), to_timestamp(0)), " +
+            "COALESCE((SELECT MAX(s.updated_at) FROM provider.specialty s), to_timestamp(0)), " +
+            "COALESCE((SELECT MAX(g.updated_at) FROM provider.language g), to_timestamp(0)))) * 1000) AS BIGINT)",
+            nativeQuery = true
+    )
+    Long findLatestReferenceUpdateEpochMillis();
+
+    // Heatmap: non-empty density cells in a block of rows and columns at one zoom level
+    @Query(value =
+            "SELECT g.cell_x, g.cell_y, g.location_count FROM provider.density_grid g " +
+            "WHERE g.zoom = :zoom " +
+            "AND g.specialty_id = :specialtyId " +
+            "AND g.provider_type_id = :providerTypeId " +
+            "AND g.cell_y IN (:rows) " +
+            "AND g.cell_x BETWEEN :minX AND :maxX " +
+            "AND g.location_count > 0",
+            nativeQuery = true
+    )
+    List<Object[]> findDensityCells(
+            @Param("zoom") int zoom,
+            @Param("specialtyId") int specialtyId,
+            @Param("providerTypeId") int providerTypeId,
+            @Param("rows") Collection<Integer> rows,
+            @Param("minX") int minX,
+            @Param("maxX") int maxX
+    );
+
+    // Heatmap: fold pending search_doc changes into the density grid; must run on the primary
+    @Query(value = "SELECT provider.apply_density_deltas()", nativeQuery = true)
+    Integer applyDensityDeltas();
+
     // Count total providers in viewport without pagination
     @Query(value = 
-            "SELECT COUNT(DISTINCT l.id) " +
-            "FROM provider.location l " +
-            "WHERE ST_Intersects(ST_MakeEnvelope(:westLng, :southLat, :eastLng, :northLat, 4326), l.geolocation)",
+            "SELECT COUNT(*) " +
+            "FROM provider.search_doc d " +
+            "WHERE ST_Intersects(ST_MakeEnvelope(:westLng, :southLat, :eastLng, :northLat, 4326), d.geom) " +
+            "AND d.region_key IN (:regions)",
             nativeQuery = true
     )
     Long countProvidersInViewport(
             @Param("westLng") double westLng,
             @Param("southLat") double southLat,
             @Param("eastLng") double eastLng,
-            @Param("northLat") double northLat
+            @Param("northLat") double northLat,
+            @Param("regions") Collection<Integer> regions
     );
 }
\ No newline at end of file
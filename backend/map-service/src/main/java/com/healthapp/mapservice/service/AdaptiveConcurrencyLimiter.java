@@ -0,0 +1,153 @@
+package com.healthapp.mapservice.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionException;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * AIMD concurrency limiter for database-bound work.
+ *
+ * The limit grows by roughly one per limit's worth of fast, successful calls and is
+ * multiplied by {@code app.map.limiter.backoff-ratio} when a database call fails or times
+ * out, or any call takes longer than {@code app.map.limiter.latency-threshold-ms}; caller
+ * errors do not count as failures. Only calls started after the last
+ * decrease can decrease it again, so a burst of concurrent slow calls backs off once per
+ * round trip rather than once per call. Requests over the limit are
+ * rejected immediately with {@link ServiceOverloadedException} instead of queueing for a
+ * pooled connection. Viewport scans may only use {@code app.map.limiter.viewport-share}
+ * of the limit, keeping headroom for detail lookups, and background tile loads only
+ * {@code app.map.limiter.background-share}, so speculative work is shed before user searches.
+ */
+@Component
+@Slf4j
+public class AdaptiveConcurrencyLimiter {
+
+    private final AtomicInteger inflight = new AtomicInteger();
+    private final Map<RequestPriority, Counter> rejections = new EnumMap<>(RequestPriority.class);
+
+    private final boolean enabled;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyThresholdNanos;
+    private final double backoffRatio;
+    private final double viewportShare;
+    private final double backgroundShare;
+    private final long retryAfterSeconds;
+
+    private volatile double limit;
+    // Guarded by this
+    private long lastDecreaseNanos;
+
+    public AdaptiveConcurrencyLimiter(MeterRegistry meterRegistry,
+                                      @Value("${app.map.limiter.enabled:true}") boolean enabled,
+                                      @Value("${app.map.limiter.initial-limit:10}") int initialLimit,
+                                      @Value("${app.map.limiter.min-limit:2}") int minLimit,
+                                      @Value("${app.map.limiter.max-limit:40}") int maxLimit,
+                                      @Value("${app.map.limiter.latency-threshold-ms:500}") long latencyThresholdMs,
+                                      @Value("${app.map.limiter.backoff-ratio:0.9}") double backoffRatio,
+                                      @Value("${app.map.limiter.viewport-share:0.8}") double viewportShare,
+                                      @Value("${app.map.limiter.background-share:0.4}") double backgroundShare,
+                                      @Value("${app.map.limiter.retry-after-seconds:1}") long retryAfterSeconds) {
+        this.enabled = enabled;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThresholdNanos = latencyThresholdMs * 1_000_000L;
+        this.backoffRatio = backoffRatio;
+        this.viewportShare = viewportShare;
+        this.backgroundShare = backgroundShare;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.limit = initialLimit;
+        this.lastDecreaseNanos = System.nanoTime();
+
+        for (RequestPriority priority : RequestPriority.values()) {
+            rejections.put(priority, meterRegistry.counter("map.limiter.rejected",
+                    "priority", priority.name().toLowerCase()));
+        }
+        meterRegistry.gauge("map.limiter.limit", this, limiter -> limiter.limit);
+        meterRegistry.gauge("map.limiter.inflight", inflight);
+    }
+
+    /**
+     * Run work under the limiter, rejecting it immediately if no capacity is available
+     */
+    public <T> T execute(RequestPriority priority, Supplier<T> work) {
+        if (!enabled) {
+            return work.get();
+        }
+
+        acquire(priority);
+        long start = System.nanoTime();
+        // Caller errors such as invalid input say nothing about database capacity; only
+        // database failures and timeouts, or slow calls, shrink the limit
+        boolean success = true;
+        try {
+            return work.get();
+        } catch (DataAccessException | TransactionException e) {
+            success = false;
+            throw e;
+        } finally {
+            inflight.decrementAndGet();
+            onComplete(start, System.nanoTime(), success);
+        }
+    }
+
+    /**
+     * Whether work of the given priority would currently be admitted; a hint for optional
+     * work deciding whether to start at all, not a reservation
+     */
+    public boolean hasCapacity(RequestPriority priority) {
+        return !enabled || inflight.get() < allowedFor(priority);
+    }
+
+    private void acquire(RequestPriority priority) {
+        int allowed = allowedFor(priority);
+        while (true) {
+            int current = inflight.get();
+            if (current >= allowed) {
+                rejections.get(priority).increment();
+                throw new ServiceOverloadedException(
+                        "Service is at capacity, retry after " + retryAfterSeconds + "s", retryAfterSeconds);
+            }
+            if (inflight.compareAndSet(current, current + 1)) {
+                return;
+            }
+        }
+    }
+
+    private int allowedFor(RequestPriority priority) {
+        double current = limit;
+        if (priority == RequestPriority.VIEWPORT) {
+            return Math.max(1, (int) (current * viewportShare));
+        }
+        if (priority == RequestPriority.BACKGROUND) {
+            return Math.max(1, (int) (current * backgroundShare));
+        }
+        return Math.max(1, (int) current);
+    }
+
+    private synchronized void onComplete(long startNanos, long endNanos, boolean success) {
+        double current = limit;
+        long latencyNanos = endNanos - startNanos;
+        if (!success || latencyNanos > latencyThresholdNanos) {
+            if (startNanos - lastDecreaseNanos < 0) {
+                // In flight when the limit last dropped; that decrease already covered it
+                return;
+            }
+            lastDecreaseNanos = endNanos;
+            limit = Math.max(minLimit, current * backoffRatio);
+            log.debug("Concurrency limit decreased to {} (latency {} ms, success {})",
+                    (int) limit, latencyNanos / 1_000_000, success);
+        } else {
+            limit = Math.min(maxLimit, current + 1.0 / current);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.healthapp.mapservice.service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Invalidation message exchanged over the {@link CacheInvalidationBus}.
+ *
+ * Received messages are republished as application events for the local caches to apply.
+ * A message with {@code resync} set is only raised locally, after a sequence gap, and
+ * asks for every local cache to be cleared.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_DEFAULT)
+public class CacheInvalidation {
+
+    private String origin;
+    private long sequence;
+    // Latest provider and reference data change the sender has applied, in epoch milliseconds
+    private long providerVersion;
+    private long referenceVersion;
+    private List<Long> providerIds;
+    // Tiles at CacheInvalidationBus.TILE_ZOOM holding changed locations, as zoom/x/y
+    private List<String> tiles;
+    private boolean referenceData;
+    private boolean resync;
+}
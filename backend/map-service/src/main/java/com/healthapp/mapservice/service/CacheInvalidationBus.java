@@ -0,0 +1,215 @@
+package com.healthapp.mapservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Broadcasts cache invalidations between map-service instances over Redis pub/sub.
+ *
+ * The instance whose change poll finds changed providers publishes their IDs, the tiles
+ * holding their locations and the data versions it has seen; every other instance applies
+ * the message to its local caches through a {@link CacheInvalidation} application event.
+ *
+ * Pub/sub delivery is at most once, so each message carries a sequence number taken from a
+ * shared Redis counter. The counter is incremented and the message published by one Lua
+ * script, so messages reach the channel in sequence order even with concurrent publishers.
+ * A receiver that sees the sequence jump, or finds the counter ahead of
+ * the last message it received on two consecutive checks, has missed a message and clears
+ * all local caches instead. Local caches can then keep entries for long TTLs.
+ */
+@Component
+@Slf4j
+public class CacheInvalidationBus implements MessageListener {
+
+    static final int TILE_ZOOM = 14;
+
+    /**
+     * Take the next sequence number and publish the message with it in one atomic step.
+     * ARGV[2] is the message JSON without a sequence; it is spliced in after the opening brace.
+     */
+    private static final RedisScript<Long> PUBLISH_SCRIPT = new DefaultRedisScript<>(
+            "local sequence = redis.call('INCR', KEYS[1]) " +
+            "redis.call('PUBLISH', ARGV[1], '{\"sequence\":' .. sequence .. ',' .. string.sub(ARGV[2], 2)) " +
+            "return sequence",
+            Long.class);
+
+    private final ObjectProvider<StringRedisTemplate> redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final String origin = UUID.randomUUID().toString();
+
+    private final Counter published;
+    private final Counter received;
+    private final Counter resyncs;
+
+    @Value("${app.map.invalidation.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.map.invalidation.channel:map-service:invalidations}")
+    private String channel;
+
+    @Value("${app.map.invalidation.sequence-key:map-service:invalidations:seq}")
+    private String sequenceKey;
+
+    // Guarded by this
+    private long lastSequence = -1;
+    private long suspectedSequence = -1;
+
+    public CacheInvalidationBus(ObjectProvider<StringRedisTemplate> redisTemplate,
+                                ObjectMapper objectMapper,
+                                ApplicationEventPublisher eventPublisher,
+                                MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.eventPublisher = eventPublisher;
+        this.published = meterRegistry.counter("map.invalidation.messages", "direction", "published");
+        this.received = meterRegistry.counter("map.invalidation.messages", "direction", "received");
+        this.resyncs = meterRegistry.counter("map.invalidation.resyncs");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            long current = currentSequence();
+            synchronized (this) {
+                lastSequence = Math.max(lastSequence, current);
+            }
+        } catch (Exception e) {
+            log.warn("Could not read the invalidation sequence: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Publish changes this instance has already applied locally
+     */
+    public void publish(Collection<Long> providerIds, Collection<TileKey> tiles, long providerVersion,
+                        boolean referenceData, long referenceVersion) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            StringRedisTemplate redis = redisTemplate.getObject();
+            List<String> paths = new ArrayList<>(tiles.size());
+            tiles.forEach(tile -> paths.add(tile.toPath()));
+            CacheInvalidation message = CacheInvalidation.builder()
+                    .origin(origin)
+                    .providerVersion(providerVersion)
+                    .referenceVersion(referenceVersion)
+                    .providerIds(new ArrayList<>(providerIds))
+                    .tiles(paths)
+                    .referenceData(referenceData)
+                    .build();
+            // The zero sequence is left out of the JSON, which always has at least an origin
+            redis.execute(PUBLISH_SCRIPT, List.of(sequenceKey), channel, objectMapper.writeValueAsString(message));
+            published.increment();
+        } catch (Exception e) {
+            // Other instances detect the skipped sequence number, or fall back to their own polls
+            log.warn("Failed to publish cache invalidation: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        CacheInvalidation invalidation;
+        try {
+            invalidation = objectMapper.readValue(message.getBody(), CacheInvalidation.class);
+        } catch (Exception e) {
+            log.warn("Ignoring unreadable cache invalidation: {}", e.getMessage());
+            return;
+        }
+        received.increment();
+
+        boolean gap;
+        synchronized (this) {
+            long sequence = invalidation.getSequence();
+            if (lastSequence >= 0 && sequence <= lastSequence) {
+                // Older than a resync that already cleared everything
+                return;
+            }
+            gap = lastSequence >= 0 && sequence > lastSequence + 1;
+            lastSequence = sequence;
+        }
+
+        if (gap) {
+            resync("sequence gap before " + invalidation.getSequence());
+        } else if (!origin.equals(invalidation.getOrigin())) {
+            eventPublisher.publishEvent(invalidation);
+        }
+    }
+
+    /**
+     * Detect lost trailing messages, which no later message would reveal
+     */
+    @Scheduled(fixedDelayString = "${app.map.invalidation.gap-check-ms:15000}",
+            initialDelayString = "${app.map.invalidation.gap-check-ms:15000}")
+    public void checkSequence() {
+        if (!enabled) {
+            return;
+        }
+        long current;
+        try {
+            current = currentSequence();
+        } catch (Exception e) {
+            log.debug("Could not read the invalidation sequence: {}", e.getMessage());
+            return;
+        }
+
+        String reason = null;
+        synchronized (this) {
+            if (lastSequence < 0) {
+                lastSequence = current;
+            } else if (current < lastSequence) {
+                reason = "sequence counter reset";
+                lastSequence = current;
+                suspectedSequence = -1;
+            } else if (current > lastSequence && suspectedSequence > lastSequence) {
+                // Published before the previous check and still not received
+                reason = "missed messages up to " + current;
+                lastSequence = current;
+                suspectedSequence = -1;
+            } else {
+                suspectedSequence = current > lastSequence ? current : -1;
+            }
+        }
+        if (reason != null) {
+            resync(reason);
+        }
+    }
+
+    private void resync(String reason) {
+        resyncs.increment();
+        log.info("Clearing local caches after cache invalidation {}", reason);
+        eventPublisher.publishEvent(CacheInvalidation.builder().origin(origin).resync(true).build());
+    }
+
+    private long currentSequence() {
+        String value = redisTemplate.getObject().opsForValue().get(sequenceKey);
+        return value != null ? Long.parseLong(value) : 0;
+    }
+}
@@ -0,0 +1,185 @@
+package com.healthapp.mapservice.service;
+
+import com.healthapp.mapservice.dto.ProviderResponse;
+import com.healthapp.mapservice.dto.ProviderSearchRequest;
+import com.healthapp.mapservice.dto.ProviderSearchResponse;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * Evaluates a search request against candidates already held in memory.
+ *
+ * Mirrors the semantics of {@code ProviderLocationRepository.findSearchDocLocationIds}:
+ * only the first ID of each filter list applies, the search term matches provider or
+ * location names case-insensitively, and results sort by provider name, location ID or
+ * relevance score.
+ */
+final class CandidateSearch {
+
+    private static final Comparator<SearchCandidate> BY_LOCATION_ID =
+            Comparator.comparingLong(SearchCandidate::getLocationId);
+
+    // Lower-cased name in code point order, nulls last, as the database sorts name pages
+    private static final Comparator<SearchCandidate> BY_PROVIDER_NAME =
+            Comparator.comparing((SearchCandidate candidate) ->
+                                    candidate.getProviderName() != null ? candidate.getProviderNameLower() : null,
+                            Comparator.nullsLast(Comparator.<String>naturalOrder()))
+                    .thenComparing(BY_LOCATION_ID);
+
+    private static final int DEFAULT_FACET_LIMIT = 10;
+
+    private CandidateSearch() {
+    }
+
+    /**
+     * Whether the request can be answered in memory. Search terms containing LIKE
+     * wildcards or the LIKE escape character and fuzzy searches are left to the database
+     * so results stay identical.
+     */
+    static boolean supports(ProviderSearchRequest request) {
+        if (Boolean.TRUE.equals(request.getFuzzy())) {
+            return false;
+        }
+        String searchTerm = request.getSearchTerm();
+        return searchTerm == null
+                || (searchTerm.indexOf('%') < 0 && searchTerm.indexOf('_') < 0 && searchTerm.indexOf('\\') < 0);
+    }
+
+    /**
+     * Whether a search is ordered by provider name; "rating" falls back to name order
+     */
+    static boolean sortsByName(ProviderSearchRequest request) {
+        return "name".equalsIgnoreCase(request.getSortBy()) || "rating".equalsIgnoreCase(request.getSortBy());
+    }
+
+    /**
+     * Whether a candidate satisfies the request filters, ignoring the viewport
+     */
+    static boolean matches(SearchCandidate candidate, ProviderSearchRequest request) {
+        String searchTerm = request.getSearchTerm();
+        if (searchTerm != null) {
+            String term = searchTerm.toLowerCase(Locale.ROOT);
+            if (!candidate.getProviderNameLower().contains(term) && !candidate.getLocationNameLower().contains(term)) {
+                return false;
+            }
+        }
+
+        Integer specialtyId = request.firstSpecialtyId();
+        if (specialtyId != null && !candidate.getSpecialtyIds().contains(specialtyId)) {
+            return false;
+        }
+
+        Integer providerTypeId = request.firstProviderTypeId();
+        if (providerTypeId != null && !providerTypeId.equals(candidate.getProviderTypeId())) {
+            return false;
+        }
+
+        Integer languageId = request.firstLanguageId();
+        if (languageId != null && !candidate.getLanguageIds().contains(languageId)) {
+            return false;
+        }
+
+        if (Boolean.TRUE.equals(request.getIsVerifiedOnly()) && !candidate.isVerified()) {
+            return false;
+        }
+
+        return !Boolean.TRUE.equals(request.getIsRegisteredOnly()) || candidate.isRegistered();
+    }
+
+    /**
+     * Filter, sort and page candidates into a search response. Facets, when requested,
+     * are counted in the same pass that filters the candidates; relevance ordering keeps
+     * only the top page in a bounded heap instead of sorting every match.
+     */
+    static ProviderSearchResponse search(Collection<SearchCandidate> candidates, ProviderSearchRequest request,
+                                         RelevanceRanker ranker) {
+        FacetCounter facets = includesFacets(request) ? new FacetCounter() : null;
+        List<SearchCandidate> filtered = new ArrayList<>();
+        long inViewport = 0;
+        for (SearchCandidate candidate : candidates) {
+            if (!candidate.isWithin(
+                    request.getWestLng(), request.getSouthLat(), request.getEastLng(), request.getNorthLat())) {
+                continue;
+            }
+            inViewport++;
+            if (matches(candidate, request)) {
+                filtered.add(candidate);
+                if (facets != null) {
+                    facets.add(candidate);
+                }
+            }
+        }
+
+        List<ProviderResponse> page;
+        if (RelevanceRanker.requested(request)) {
+            page = ranker.page(filtered, request).stream()
+                    .map(SearchCandidate::getResponse)
+                    .collect(Collectors.toList());
+        } else {
+            Comparator<SearchCandidate> order = sortsByName(request)
+                    ? BY_PROVIDER_NAME
+                    : BY_LOCATION_ID;
+            if ("desc".equalsIgnoreCase(request.getSortDirection())) {
+                order = order.reversed();
+            }
+
+            page = filtered.stream()
+                    .sorted(order)
+                    .skip((long) (request.getPage() - 1) * request.getPageSize())
+                    .limit(request.getPageSize())
+                    .map(SearchCandidate::getResponse)
+                    .collect(Collectors.toList());
+        }
+
+        ProviderSearchResponse response = buildResponse(request, page, filtered.size(), inViewport);
+        if (facets != null) {
+            response.setFacets(facets.build(facetLimit(request)));
+        }
+        return response;
+    }
+
+    /**
+     * Whether the request asks for facet counts
+     */
+    static boolean includesFacets(ProviderSearchRequest request) {
+        return Boolean.TRUE.equals(request.getIncludeFacets());
+    }
+
+    /**
+     * Number of values to return per facet
+     */
+    static int facetLimit(ProviderSearchRequest request) {
+        return request.getFacetLimit() != null ? request.getFacetLimit() : DEFAULT_FACET_LIMIT;
+    }
+
+    /**
+     * Assemble a search response with pagination and viewport metadata
+     */
+    static ProviderSearchResponse buildResponse(ProviderSearchRequest request, List<ProviderResponse> providers,
+                                                long totalCount, long providersInViewport) {
+        int totalPages = (int) Math.ceil((double) totalCount / request.getPageSize());
+
+        ProviderSearchResponse.ViewportMetadata viewportMetadata = ProviderSearchResponse.ViewportMetadata.builder()
+                .northLat(request.getNorthLat())
+                .southLat(request.getSouthLat())
+                .eastLng(request.getEastLng())
+                .westLng(request.getWestLng())
+                .providersInViewport((int) providersInViewport)
+                .filteredCount((int) totalCount)
+                .build();
+
+        return ProviderSearchResponse.builder()
+                .providers(providers)
+                .totalCount(totalCount)
+                .page(request.getPage())
+                .pageSize(request.getPageSize())
+                .totalPages(totalPages)
+                .viewportMetadata(viewportMetadata)
+                .build();
+    }
+}
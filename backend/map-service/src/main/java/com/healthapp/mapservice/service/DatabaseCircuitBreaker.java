@@ -0,0 +1,229 @@
+package com.healthapp.mapservice.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionException;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Circuit breaker around database-bound work.
+ *
+ * The outcomes of the last {@code app.map.breaker.window-size} calls are kept in a ring. Once
+ * at least {@code minimum-calls} are recorded and the share of failures reaches
+ * {@code failure-rate-threshold}, the breaker opens and rejects calls immediately with
+ * {@link DatabaseUnavailableException} for {@code open-duration-ms}. It then lets
+ * {@code half-open-calls} trial calls through, closing once they all succeed and reopening
+ * on the first failure. Data access and transaction errors count as failures, including
+ * statement timeouts from the {@code query-timeout-seconds} deadline, as do calls slower
+ * than {@code slow-call-ms}. Other errors, such as rejections by the concurrency limiter,
+ * are not recorded.
+ */
+@Component
+@Slf4j
+public class DatabaseCircuitBreaker {
+
+    public enum State {
+        CLOSED, HALF_OPEN, OPEN
+    }
+
+    private final boolean enabled;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openDurationNanos;
+    private final long slowCallNanos;
+    private final int halfOpenCalls;
+    private final int queryTimeoutSeconds;
+
+    private final Counter rejected;
+    private final Map<State, Counter> transitions = new EnumMap<>(State.class);
+
+    // Guarded by this
+    private final boolean[] failedCalls;
+    private int next;
+    private int recorded;
+    private int failures;
+    private State state = State.CLOSED;
+    private long generation;
+    private long openedAtNanos;
+    private int trialsRemaining;
+    private int trialsSucceeded;
+
+    public DatabaseCircuitBreaker(MeterRegistry meterRegistry,
+                                  @Value("${app.map.breaker.enabled:true}") boolean enabled,
+                                  @Value("${app.map.breaker.window-size:50}") int windowSize,
+                                  @Value("${app.map.breaker.minimum-calls:10}") int minimumCalls,
+                                  @Value("${app.map.breaker.failure-rate-threshold:0.5}") double failureRateThreshold,
+                                  @Value("${app.map.breaker.open-duration-ms:10000}") long openDurationMs,
+                                  @Value("${app.map.breaker.slow-call-ms:3000}") long slowCallMs,
+                                  @Value("${app.map.breaker.half-open-calls:3}") int halfOpenCalls,
+                                  @Value("${app.map.breaker.query-timeout-seconds:5}") int queryTimeoutSeconds) {
+        this.enabled = enabled;
+        this.failedCalls = new boolean[windowSize];
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.openDurationNanos = openDurationMs * 1_000_000L;
+        this.slowCallNanos = slowCallMs * 1_000_000L;
+        this.halfOpenCalls = halfOpenCalls;
+        this.queryTimeoutSeconds = queryTimeoutSeconds;
+
+        this.rejected = meterRegistry.counter("map.db.breaker.rejected");
+        for (State target : State.values()) {
+            transitions.put(target, meterRegistry.counter("map.db.breaker.transitions",
+                    "state", target.name().toLowerCase()));
+        }
+        meterRegistry.gauge("map.db.breaker.state", this, breaker -> breaker.getState().ordinal());
+        meterRegistry.gauge("map.db.breaker.failure.rate", this, DatabaseCircuitBreaker::failureRate);
+    }
+
+    /**
+     * Deadline applied to read transactions, in seconds
+     */
+    public int getQueryTimeoutSeconds() {
+        return queryTimeoutSeconds;
+    }
+
+    public synchronized State getState() {
+        if (state == State.OPEN && System.nanoTime() - openedAtNanos >= openDurationNanos) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    /**
+     * Whether a call would currently be rejected
+     */
+    public boolean isOpen() {
+        return enabled && getState() == State.OPEN;
+    }
+
+    /**
+     * Seconds until the open breaker lets trial calls through
+     */
+    public synchronized long retryAfterSeconds() {
+        if (state != State.OPEN) {
+            return 1;
+        }
+        long remainingNanos = openDurationNanos - (System.nanoTime() - openedAtNanos);
+        return Math.max(1, (remainingNanos + 999_999_999L) / 1_000_000_000L);
+    }
+
+    /**
+     * Whether an error means the database failed or timed out, as opposed to a caller error
+     */
+    public static boolean isTransientFailure(Throwable e) {
+        return e instanceof TransientDataAccessException || e instanceof TransactionException;
+    }
+
+    /**
+     * Run database work through the breaker
+     */
+    public <T> T execute(Supplier<T> work) {
+        if (!enabled) {
+            return work.get();
+        }
+
+        long permit = acquire();
+        long start = System.nanoTime();
+        try {
+            T result = work.get();
+            onComplete(permit, System.nanoTime() - start <= slowCallNanos);
+            return result;
+        } catch (DataAccessException | TransactionException e) {
+            onComplete(permit, false);
+            throw e;
+        } catch (RuntimeException | Error e) {
+            release(permit);
+            throw e;
+        }
+    }
+
+    private synchronized long acquire() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAtNanos < openDurationNanos) {
+                rejected.increment();
+                throw new DatabaseUnavailableException(
+                        "Database is unavailable, retry after " + retryAfterSeconds() + "s", retryAfterSeconds());
+            }
+            transition(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialsRemaining == 0) {
+                rejected.increment();
+                throw new DatabaseUnavailableException("Database is recovering, retry after 1s", 1);
+            }
+            trialsRemaining--;
+        }
+        return generation;
+    }
+
+    private synchronized void onComplete(long permit, boolean success) {
+        if (permit != generation) {
+            // Started before the last transition; its outcome says nothing about the current state
+            return;
+        }
+        if (state == State.HALF_OPEN) {
+            if (!success) {
+                transition(State.OPEN);
+            } else if (++trialsSucceeded >= halfOpenCalls) {
+                transition(State.CLOSED);
+            }
+            return;
+        }
+
+        if (recorded == failedCalls.length) {
+            if (failedCalls[next]) {
+                failures--;
+            }
+        } else {
+            recorded++;
+        }
+        failedCalls[next] = !success;
+        if (!success) {
+            failures++;
+        }
+        next = (next + 1) % failedCalls.length;
+
+        if (recorded >= minimumCalls && failureRate() >= failureRateThreshold) {
+            transition(State.OPEN);
+        }
+    }
+
+    private synchronized void release(long permit) {
+        if (permit == generation && state == State.HALF_OPEN) {
+            trialsRemaining++;
+        }
+    }
+
+    private void transition(State target) {
+        log.info("Database circuit breaker {} -> {} (failure rate {})", state, target, failureRate());
+        state = target;
+        generation++;
+        transitions.get(target).increment();
+        switch (target) {
+            case OPEN:
+                openedAtNanos = System.nanoTime();
+                break;
+            case HALF_OPEN:
+                trialsRemaining = halfOpenCalls;
+                trialsSucceeded = 0;
+                break;
+            case CLOSED:
+                next = 0;
+                recorded = 0;
+                failures = 0;
+                break;
+        }
+    }
+
+    private synchronized double failureRate() {
+        return recorded > 0 ? (double) failures / recorded : 0.0;
+    }
+}
@@ -0,0 +1,27 @@
+package com.healthapp.mapservice.service;
+
+/**
+ * Thrown when database-bound work is rejected by the open circuit breaker, or failed
+ * transiently and no stale response could be served in its place.
+ *
+ * Unlike {@link ServiceOverloadedException} this reports the database being down rather than
+ * this instance shedding load, so callers that treat shedding as routine do not swallow it.
+ */
+public class DatabaseUnavailableException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public DatabaseUnavailableException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public DatabaseUnavailableException(String message, long retryAfterSeconds, Throwable cause) {
+        super(message, cause);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,151 @@
+package com.healthapp.mapservice.service;
+
+import com.healthapp.mapservice.dto.HeatmapResponse;
+import com.healthapp.mapservice.repository.ProviderLocationRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Provider density heatmaps served from the pre-aggregated {@code provider.density_grid}.
+ *
+ * The grid holds location counts per {@link TileKey} cell for zoom levels 0 to
+ * {@code MAX_ZOOM}, overall and per specialty and provider type. A request picks the zoom
+ * level at which its viewport spans about {@code resolution} cells and reads only those
+ * cells, so the cost depends on the resolution rather than on how many providers exist.
+ * Changes queued by database triggers are folded into the grid every
+ * {@code app.map.heatmap.refresh-interval-ms}.
+ */
+@Service
+@Slf4j
+public class DensityHeatmapService {
+
+    static final int MAX_ZOOM = 15;
+
+    private final ProviderLocationRepository providerLocationRepository;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final DatabaseCircuitBreaker databaseCircuitBreaker;
+    private final TransactionTemplate readOnlyTransaction;
+    private final TransactionTemplate writeTransaction;
+    private final Counter appliedCells;
+
+    @Value("${app.map.heatmap.enabled:true}")
+    private boolean enabled;
+
+    public DensityHeatmapService(ProviderLocationRepository providerLocationRepository,
+                                 AdaptiveConcurrencyLimiter concurrencyLimiter,
+                                 DatabaseCircuitBreaker databaseCircuitBreaker,
+                                 PlatformTransactionManager transactionManager,
+                                 MeterRegistry meterRegistry) {
+        this.providerLocationRepository = providerLocationRepository;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.databaseCircuitBreaker = databaseCircuitBreaker;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.appliedCells = meterRegistry.counter("map.heatmap.cells.applied");
+    }
+
+    /**
+     * Density grid covering a viewport with about {@code resolution} cells along its larger span.
+     * The grid query runs through the circuit breaker and the concurrency limiter like a
+     * viewport search; timeouts and an open breaker surface as {@link DatabaseUnavailableException}.
+     */
+    public HeatmapResponse getHeatmap(double westLng, double southLat, double eastLng, double northLat,
+                                      Integer specialtyId, Integer providerTypeId, int resolution) {
+        int zoom = zoomFor(westLng, southLat, eastLng, northLat, resolution);
+        double size = TileKey.sizeAt(zoom);
+        int minX = TileKey.index(westLng + 180, size);
+        int maxX = TileKey.index(eastLng + 180, size);
+        int minY = TileKey.index(southLat + 90, size);
+        int maxY = TileKey.index(northLat + 90, size);
+        int columns = maxX - minX + 1;
+        int rows = maxY - minY + 1;
+
+        List<Integer> rowIndexes = new ArrayList<>(rows);
+        for (int y = minY; y <= maxY; y++) {
+            rowIndexes.add(y);
+        }
+
+        List<Object[]> cells;
+        try {
+            cells = databaseCircuitBreaker.execute(() -> concurrencyLimiter.execute(RequestPriority.VIEWPORT,
+                    () -> readOnlyTransaction.execute(status -> providerLocationRepository.findDensityCells(
+                            zoom,
+                            specialtyId != null ? specialtyId : 0,
+                            providerTypeId != null ? providerTypeId : 0,
+                            rowIndexes, minX, maxX))));
+        } catch (RuntimeException e) {
+            if (!DatabaseCircuitBreaker.isTransientFailure(e)) {
+                throw e;
+            }
+            throw new DatabaseUnavailableException(
+                    "Database did not answer in time", databaseCircuitBreaker.retryAfterSeconds(), e);
+        }
+
+        int[] counts = new int[columns * rows];
+        int maxCount = 0;
+        long totalCount = 0;
+        for (Object[] cell : cells) {
+            int x = ((Number) cell[0]).intValue();
+            int y = ((Number) cell[1]).intValue();
+            int count = ((Number) cell[2]).intValue();
+            counts[(y - minY) * columns + (x - minX)] = count;
+            maxCount = Math.max(maxCount, count);
+            totalCount += count;
+        }
+
+        return HeatmapResponse.builder()
+                .zoom(zoom)
+                .cellSize(size)
+                .westLng(-180 + minX * size)
+                .southLat(-90 + minY * size)
+                .columns(columns)
+                .rows(rows)
+                .counts(counts)
+                .maxCount(maxCount)
+                .totalCount(totalCount)
+                .specialtyId(specialtyId)
+                .providerTypeId(providerTypeId)
+                .build();
+    }
+
+    /**
+     * Fold queued location changes into the density grid
+     */
+    @Scheduled(fixedDelayString = "${app.map.heatmap.refresh-interval-ms:10000}")
+    public void applyPendingChanges() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Integer changed = writeTransaction.execute(status -> providerLocationRepository.applyDensityDeltas());
+            if (changed != null && changed > 0) {
+                appliedCells.increment(changed);
+                log.debug("Applied {} density grid cell changes", changed);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to apply density grid changes: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Deepest zoom level at which the viewport spans at most {@code resolution} cells
+     */
+    static int zoomFor(double westLng, double southLat, double eastLng, double northLat, int resolution) {
+        double span = Math.max(northLat - southLat, eastLng - westLng);
+        if (span <= 0) {
+            return MAX_ZOOM;
+        }
+        int zoom = (int) Math.floor(Math.log(360.0 * resolution / span) / Math.log(2));
+        return Math.max(0, Math.min(MAX_ZOOM, zoom));
+    }
+}
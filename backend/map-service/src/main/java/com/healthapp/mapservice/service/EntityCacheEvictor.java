@@ -0,0 +1,220 @@
+package com.healthapp.mapservice.service;
+
+import com.healthapp.mapservice.model.Language;
+import com.healthapp.mapservice.model.Provider;
+import com.healthapp.mapservice.model.ProviderType;
+import com.healthapp.mapservice.model.Specialty;
+import com.healthapp.mapservice.repository.ProviderLocationRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Eviction hooks for the Hibernate second-level cache, the provider JSON fragment and detail
+ * caches and the viewport tile cache.
+ *
+ * Updates made through this service's own entity manager are kept consistent by the
+ * READ_WRITE cache strategy. Providers are also written by other services, so provider
+ * rows whose {@code updated_at} advanced are polled every
+ * {@code app.map.entity-cache.change-poll-ms} and evicted together with their specialty and
+ * language collections; reference regions are cleared whenever any reference row changes.
+ * Each poll looks back {@code app.map.entity-cache.change-overlap-ms} to cover transactions
+ * that committed after the previous poll with an earlier {@code updated_at}.
+ *
+ * Changes a poll finds are broadcast on the {@link CacheInvalidationBus}, and changes
+ * broadcast by other instances are applied here and advance the watermarks, so only one
+ * instance usually queries for each change. Either way a {@link ProvidersChangedEvent} is
+ * raised once the local caches are clear.
+ */
+@Component
+@Slf4j
+public class EntityCacheEvictor {
+
+    private static final String SPECIALTIES_ROLE = Provider.class.getName() + ".specialties";
+    private static final String LANGUAGES_ROLE = Provider.class.getName() + ".languages";
+
+    private final ProviderLocationRepository providerLocationRepository;
+    private final SessionFactory sessionFactory;
+    private final ProviderFragmentCache providerFragmentCache;
+    private final ProviderDetailCache providerDetailCache;
+    private final ViewportTileCache viewportTileCache;
+    private final SearchSnapshotManager searchSnapshotManager;
+    private final CacheInvalidationBus cacheInvalidationBus;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Counter providerEvictions;
+    private final Counter referenceEvictions;
+
+    @Value("${app.map.entity-cache.change-overlap-ms:5000}")
+    private long changeOverlapMs;
+
+    // Guarded by this
+    private long providerWatermark = -1;
+    private long referenceWatermark = -1;
+
+    public EntityCacheEvictor(ProviderLocationRepository providerLocationRepository,
+                              EntityManagerFactory entityManagerFactory,
+                              ProviderFragmentCache providerFragmentCache,
+                              ProviderDetailCache providerDetailCache,
+                              ViewportTileCache viewportTileCache,
+                              SearchSnapshotManager searchSnapshotManager,
+                              CacheInvalidationBus cacheInvalidationBus,
+                              ApplicationEventPublisher eventPublisher,
+                              MeterRegistry meterRegistry) {
+        this.providerLocationRepository = providerLocationRepository;
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        this.providerFragmentCache = providerFragmentCache;
+        this.providerDetailCache = providerDetailCache;
+        this.viewportTileCache = viewportTileCache;
+        this.searchSnapshotManager = searchSnapshotManager;
+        this.cacheInvalidationBus = cacheInvalidationBus;
+        this.eventPublisher = eventPublisher;
+        this.providerEvictions = meterRegistry.counter("map.entity.cache.evictions", "type", "provider");
+        this.referenceEvictions = meterRegistry.counter("map.entity.cache.evictions", "type", "reference");
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        pollChanges();
+    }
+
+    /**
+     * Evict a provider, its specialty and language collections, its JSON fragments and its details
+     */
+    public void evictProvider(Long providerId) {
+        evictProviderEntities(providerId);
+        providerFragmentCache.evictProviders(List.of(providerId));
+        providerDetailCache.evictProviders(List.of(providerId));
+    }
+
+    public void evictProviders(Collection<Long> providerIds) {
+        providerIds.forEach(this::evictProviderEntities);
+        providerFragmentCache.evictProviders(providerIds);
+        providerDetailCache.evictProviders(providerIds);
+    }
+
+    private void evictProviderEntities(Long providerId) {
+        org.hibernate.Cache cache = sessionFactory.getCache();
+        cache.evictEntityData(Provider.class, providerId);
+        cache.evictCollectionData(SPECIALTIES_ROLE, providerId);
+        cache.evictCollectionData(LANGUAGES_ROLE, providerId);
+        providerEvictions.increment();
+    }
+
+    /**
+     * Clear provider types, specialties, languages and cached query results
+     */
+    public void evictReferenceData() {
+        org.hibernate.Cache cache = sessionFactory.getCache();
+        cache.evictEntityData(ProviderType.class);
+        cache.evictEntityData(Specialty.class);
+        cache.evictEntityData(Language.class);
+        cache.evictQueryRegions();
+        // Fragments and details embed provider type, specialty and language names
+        providerFragmentCache.invalidateAll();
+        providerDetailCache.invalidateAll();
+        referenceEvictions.increment();
+    }
+
+    /**
+     * Clear every second-level cache region
+     */
+    public void evictAll() {
+        sessionFactory.getCache().evictAll();
+        providerFragmentCache.invalidateAll();
+        providerDetailCache.invalidateAll();
+        log.info("Evicted all second-level cache regions");
+    }
+
+    /**
+     * Apply an invalidation broadcast by another instance, or clear everything after a missed one
+     */
+    @EventListener
+    public synchronized void onInvalidation(CacheInvalidation invalidation) {
+        if (invalidation.isResync()) {
+            evictAll();
+            viewportTileCache.invalidateAll();
+            eventPublisher.publishEvent(ProvidersChangedEvent.resync());
+            return;
+        }
+
+        List<Long> providerIds = invalidation.getProviderIds() != null ? invalidation.getProviderIds() : List.of();
+        List<TileKey> tiles = new ArrayList<>();
+        if (invalidation.getTiles() != null) {
+            invalidation.getTiles().forEach(path -> tiles.add(TileKey.fromPath(path)));
+        }
+        evictProviders(providerIds);
+        evictTiles(tiles, providerIds);
+        if (invalidation.isReferenceData()) {
+            evictReferenceData();
+        }
+        if (!providerIds.isEmpty()) {
+            eventPublisher.publishEvent(ProvidersChangedEvent.of(providerIds));
+        }
+        providerWatermark = Math.max(providerWatermark, invalidation.getProviderVersion());
+        referenceWatermark = Math.max(referenceWatermark, invalidation.getReferenceVersion());
+    }
+
+    @Scheduled(fixedDelayString = "${app.map.entity-cache.change-poll-ms:30000}",
+            initialDelayString = "${app.map.entity-cache.change-poll-ms:30000}")
+    public synchronized void pollChanges() {
+        try {
+            long latestProviderChange = providerLocationRepository.findLatestUpdateEpochMillis();
+            Set<Long> changed = new LinkedHashSet<>();
+            Set<TileKey> tiles = new LinkedHashSet<>();
+            if (providerWatermark >= 0) {
+                for (Object[] row : providerLocationRepository.findChangedProviderLocations(
+                        providerWatermark - changeOverlapMs)) {
+                    changed.add(((Number) row[0]).longValue());
+                    if (row[1] != null && row[2] != null) {
+                        tiles.add(TileKey.containing(((Number) row[2]).doubleValue(),
+                                ((Number) row[1]).doubleValue(), CacheInvalidationBus.TILE_ZOOM));
+                    }
+                }
+                evictProviders(changed);
+                evictTiles(tiles, changed);
+                if (!changed.isEmpty()) {
+                    log.debug("Evicted {} changed providers from local caches", changed.size());
+                    eventPublisher.publishEvent(ProvidersChangedEvent.of(List.copyOf(changed)));
+                }
+            }
+            providerWatermark = Math.max(providerWatermark, latestProviderChange);
+
+            long latestReferenceChange = providerLocationRepository.findLatestReferenceUpdateEpochMillis();
+            boolean referenceChanged = referenceWatermark >= 0 && latestReferenceChange > referenceWatermark;
+            if (referenceChanged) {
+                evictReferenceData();
+                log.debug("Reference data changed, evicted reference cache regions");
+            }
+            referenceWatermark = Math.max(referenceWatermark, latestReferenceChange);
+
+            if (!changed.isEmpty() || referenceChanged) {
+                cacheInvalidationBus.publish(changed, tiles, providerWatermark, referenceChanged, referenceWatermark);
+            }
+        } catch (Exception e) {
+            log.warn("Second-level cache change poll failed: {}", e.getMessage());
+        }
+    }
+
+    private void evictTiles(Collection<TileKey> tiles, Collection<Long> providerIds) {
+        if (tiles.isEmpty() && providerIds.isEmpty()) {
+            return;
+        }
+        // Tiles reload from the snapshot when one is mapped, so bring its overlay up to date first
+        searchSnapshotManager.catchUp();
+        viewportTileCache.evict(tiles, providerIds);
+    }
+}
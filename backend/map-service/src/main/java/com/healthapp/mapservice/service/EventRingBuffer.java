@@ -0,0 +1,73 @@
+package com.healthapp.mapservice.service;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free ring buffer for many producers and one consumer.
+ *
+ * Producers claim a slot by advancing the tail with a CAS and then publish into it;
+ * {@link #offer} never blocks and returns false when the buffer is full. The single
+ * consumer drains published slots in order, stopping at a claimed slot whose element is
+ * not yet visible.
+ */
+final class EventRingBuffer<T> {
+
+    private final AtomicReferenceArray<T> slots;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+
+    EventRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    int capacity() {
+        return slots.length();
+    }
+
+    int size() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+
+    /**
+     * Add an element unless the buffer is full
+     */
+    boolean offer(T element) {
+        while (true) {
+            long claimed = tail.get();
+            if (claimed - head.get() >= slots.length()) {
+                return false;
+            }
+            if (tail.compareAndSet(claimed, claimed + 1)) {
+                slots.set((int) (claimed & mask), element);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Move up to {@code max} elements into {@code target}; only one thread may drain
+     */
+    int drainTo(List<T> target, int max) {
+        long next = head.get();
+        int drained = 0;
+        while (drained < max && next < tail.get()) {
+            int index = (int) (next & mask);
+            T element = slots.get(index);
+            if (element == null) {
+                // Claimed but not yet published
+                break;
+            }
+            slots.set(index, null);
+            target.add(element);
+            next++;
+            drained++;
+            head.set(next);
+        }
+        return drained;
+    }
+}
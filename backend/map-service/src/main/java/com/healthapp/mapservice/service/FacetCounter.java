@@ -0,0 +1,98 @@
+package com.healthapp.mapservice.service;
+
+import com.healthapp.mapservice.dto.ProviderSearchResponse;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Accumulates facet counts for a search, either candidate by candidate during the
+ * in-memory filter pass or from the grouped rows of the search_doc facet query.
+ */
+final class FacetCounter {
+
+    static final String SPECIALTY = "s";
+    static final String LANGUAGE = "l";
+    static final String PROVIDER_TYPE = "t";
+    static final String VERIFIED = "v";
+
+    private static final Comparator<Map.Entry<Integer, Long>> BY_COUNT_DESC =
+            Map.Entry.<Integer, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey());
+
+    private final Map<Integer, Long> specialties = new HashMap<>();
+    private final Map<Integer, Long> languages = new HashMap<>();
+    private final Map<Integer, Long> providerTypes = new HashMap<>();
+    private long verified;
+    private long unverified;
+
+    /**
+     * Count one filtered candidate
+     */
+    void add(SearchCandidate candidate) {
+        for (Integer specialtyId : candidate.getSpecialtyIds()) {
+            specialties.merge(specialtyId, 1L, Long::sum);
+        }
+        for (Integer languageId : candidate.getLanguageIds()) {
+            languages.merge(languageId, 1L, Long::sum);
+        }
+        if (candidate.getProviderTypeId() != null) {
+            providerTypes.merge(candidate.getProviderTypeId(), 1L, Long::sum);
+        }
+        if (candidate.isVerified()) {
+            verified++;
+        } else {
+            unverified++;
+        }
+    }
+
+    /**
+     * Add a pre-aggregated count for one value of a dimension. Verified status uses
+     * 1 for verified and 0 for unverified.
+     */
+    void add(String dimension, int value, long count) {
+        switch (dimension) {
+            case SPECIALTY:
+                specialties.merge(value, count, Long::sum);
+                break;
+            case LANGUAGE:
+                languages.merge(value, count, Long::sum);
+                break;
+            case PROVIDER_TYPE:
+                providerTypes.merge(value, count, Long::sum);
+                break;
+            case VERIFIED:
+                if (value != 0) {
+                    verified += count;
+                } else {
+                    unverified += count;
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown facet dimension: " + dimension);
+        }
+    }
+
+    /**
+     * Build the facets, keeping the {@code limit} most frequent values per dimension
+     */
+    ProviderSearchResponse.Facets build(int limit) {
+        return ProviderSearchResponse.Facets.builder()
+                .specialties(top(specialties, limit))
+                .languages(top(languages, limit))
+                .providerTypes(top(providerTypes, limit))
+                .verified(verified)
+                .unverified(unverified)
+                .build();
+    }
+
+    private static List<ProviderSearchResponse.FacetCount> top(Map<Integer, Long> counts, int limit) {
+        return counts.entrySet().stream()
+                .sorted(BY_COUNT_DESC)
+                .limit(limit)
+                .map(entry -> new ProviderSearchResponse.FacetCount(entry.getKey(), entry.getValue()))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,133 @@
+package com.healthapp.mapservice.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Approximate counts of a key stream with its most frequent keys.
+ *
+ * Counts are kept in a count-min sketch of {@code depth} rows by {@code width} counters with
+ * conservative updates, so an estimate never undercounts and overcounts by a small share of
+ * the total. The {@code capacity} keys with the highest estimates are tracked by key. Counts
+ * decay through {@link #decay(double)}, so old traffic fades and new heavy hitters surface.
+ */
+final class HeavyHitterSketch<K> {
+
+    private final int depth;
+    private final int mask;
+    private final double[][] counts;
+    private final int capacity;
+
+    // Guarded by this
+    private final Map<K, Double> top = new HashMap<>();
+    private double floor;
+    private double total;
+
+    HeavyHitterSketch(int depth, int width, int capacity) {
+        this.depth = depth;
+        int columns = Integer.highestOneBit(Math.max(2, width - 1)) << 1;
+        this.mask = columns - 1;
+        this.counts = new double[depth][columns];
+        this.capacity = capacity;
+    }
+
+    synchronized void add(K key) {
+        long hash = mix(key.hashCode());
+        int first = (int) hash;
+        int second = (int) (hash >>> 32);
+
+        double estimate = Double.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counts[row][(first + row * second) & mask]);
+        }
+        estimate += 1;
+        // Conservative update: raise only the counters below the new estimate
+        for (int row = 0; row < depth; row++) {
+            int column = (first + row * second) & mask;
+            counts[row][column] = Math.max(counts[row][column], estimate);
+        }
+        total += 1;
+
+        if (top.containsKey(key) || top.size() < capacity) {
+            top.put(key, estimate);
+            return;
+        }
+        // The floor only lags the true minimum from below, so this skips most keys cheaply
+        if (estimate <= floor) {
+            return;
+        }
+        K smallest = null;
+        double smallestEstimate = Double.MAX_VALUE;
+        for (Map.Entry<K, Double> entry : top.entrySet()) {
+            if (entry.getValue() < smallestEstimate) {
+                smallest = entry.getKey();
+                smallestEstimate = entry.getValue();
+            }
+        }
+        if (estimate > smallestEstimate) {
+            top.remove(smallest);
+            top.put(key, estimate);
+            floor = top.values().stream().mapToDouble(Double::doubleValue).min().orElse(0);
+        } else {
+            floor = smallestEstimate;
+        }
+    }
+
+    /**
+     * Scale every count by a factor between 0 and 1, dropping tracked keys that fall below one
+     */
+    synchronized void decay(double factor) {
+        for (double[] row : counts) {
+            for (int column = 0; column < row.length; column++) {
+                row[column] *= factor;
+            }
+        }
+        total *= factor;
+        floor *= factor;
+        Iterator<Map.Entry<K, Double>> entries = top.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<K, Double> entry = entries.next();
+            double decayed = entry.getValue() * factor;
+            if (decayed < 1) {
+                entries.remove();
+            } else {
+                entry.setValue(decayed);
+            }
+        }
+    }
+
+    /**
+     * Up to {@code limit} tracked keys with their estimated counts, most frequent first
+     */
+    synchronized List<Map.Entry<K, Double>> top(int limit) {
+        List<Map.Entry<K, Double>> sorted = new ArrayList<>(top.size());
+        for (Map.Entry<K, Double> entry : top.entrySet()) {
+            sorted.add(Map.entry(entry.getKey(), entry.getValue()));
+        }
+        sorted.sort(Map.Entry.<K, Double>comparingByValue().reversed());
+        return sorted.size() > limit ? sorted.subList(0, limit) : sorted;
+    }
+
+    synchronized int size() {
+        return top.size();
+    }
+
+    /**
+     * Decayed number of keys added
+     */
+    synchronized double total() {
+        return total;
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,296 @@
+package com.healthapp.mapservice.service;
+
+import com.healthapp.mapservice.dto.ProviderSearchRequest;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks the most searched viewport tiles and filter combinations and keeps the hot tiles cached.
+ *
+ * Every search hands the tiles covering its viewport and its filter combination to a bounded
+ * lock-free {@link EventRingBuffer} (hits are dropped when it is full), and every
+ * {@code apply-interval-ms} a scheduled task drains them into {@link HeavyHitterSketch}es,
+ * so the request thread never takes the sketch lock. Counts halve every
+ * {@code app.map.hot-viewports.half-life-seconds}.
+ * Every {@code warm-interval-ms} the {@code warm-count} hottest tiles seen at least
+ * {@code min-hits} times are loaded into the {@link ViewportTileCache} when they are missing
+ * or expire within {@code refresh-ahead-seconds}, so popular areas never fall back to the
+ * database. Warming loads run at background priority, and a pass stops as soon as the
+ * concurrency limiter has no background capacity left, so it never competes with user
+ * searches. Tiles hold candidates for every filter, so warming is per tile; filter
+ * combinations are tracked for reporting on {@code /actuator/hotviewports}.
+ */
+@Component
+@Slf4j
+public class HotViewportTracker {
+
+    private final ViewportTileCache viewportTileCache;
+    private final SearchQueryPlanner searchQueryPlanner;
+    private final DatabaseCircuitBreaker databaseCircuitBreaker;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final HeavyHitterSketch<TileKey> tiles;
+    private final HeavyHitterSketch<String> filters;
+    private final EventRingBuffer<SearchHit> hits;
+    private final ThreadPoolExecutor executor;
+
+    private final Counter warmed;
+    private final Counter failed;
+    private final Counter skipped;
+    private final Counter shed;
+    private final Counter dropped;
+
+    @Value("${app.map.hot-viewports.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.map.hot-viewports.warm-count:50}")
+    private int warmCount;
+
+    @Value("${app.map.hot-viewports.min-hits:5}")
+    private double minHits;
+
+    @Value("${app.map.hot-viewports.refresh-ahead-seconds:40}")
+    private long refreshAheadSeconds;
+
+    @Value("${app.map.hot-viewports.max-tile-rows:5000}")
+    private double maxTileRows;
+
+    @Value("${app.map.hot-viewports.half-life-seconds:900}")
+    private double halfLifeSeconds;
+
+    @Value("${app.map.hot-viewports.decay-interval-ms:60000}")
+    private long decayIntervalMs;
+
+    public HotViewportTracker(ViewportTileCache viewportTileCache,
+                              SearchQueryPlanner searchQueryPlanner,
+                              DatabaseCircuitBreaker databaseCircuitBreaker,
+                              AdaptiveConcurrencyLimiter concurrencyLimiter,
+                              MeterRegistry meterRegistry,
+                              @Value("${app.map.hot-viewports.sketch-depth:4}") int sketchDepth,
+                              @Value("${app.map.hot-viewports.sketch-width:4096}") int sketchWidth,
+                              @Value("${app.map.hot-viewports.top-k:200}") int topK,
+                              @Value("${app.map.hot-viewports.buffer-capacity:4096}") int bufferCapacity) {
+        this.viewportTileCache = viewportTileCache;
+        this.searchQueryPlanner = searchQueryPlanner;
+        this.databaseCircuitBreaker = databaseCircuitBreaker;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.tiles = new HeavyHitterSketch<>(sketchDepth, sketchWidth, topK);
+        this.filters = new HeavyHitterSketch<>(sketchDepth, sketchWidth, topK);
+        this.hits = new EventRingBuffer<>(bufferCapacity);
+        // One warming pass at a time, off the shared scheduler thread
+        this.executor = new ThreadPoolExecutor(
+                1, 1, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(1),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "hot-viewport-warmer");
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+
+        this.warmed = meterRegistry.counter("map.hot.warms", "result", "loaded");
+        this.failed = meterRegistry.counter("map.hot.warms", "result", "failed");
+        this.skipped = meterRegistry.counter("map.hot.warms", "result", "too_large");
+        this.shed = meterRegistry.counter("map.hot.warms", "result", "shed");
+        this.dropped = meterRegistry.counter("map.hot.dropped");
+        meterRegistry.gauge("map.hot.tracked", tiles, HeavyHitterSketch::size);
+    }
+
+    /**
+     * Count a foreground search; never blocks
+     */
+    public void onSearch(ProviderSearchRequest request) {
+        if (!enabled || !CandidateSearch.supports(request)) {
+            return;
+        }
+        SearchHit hit = new SearchHit(TileKey.covering(
+                request.getWestLng(), request.getSouthLat(), request.getEastLng(), request.getNorthLat()),
+                filterSignature(request));
+        if (!hits.offer(hit)) {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * Fold buffered search hits into the sketches, at most one buffer's worth per run
+     */
+    @Scheduled(fixedDelayString = "${app.map.hot-viewports.apply-interval-ms:200}")
+    public void applyHits() {
+        if (hits.size() == 0) {
+            return;
+        }
+        List<SearchHit> batch = new ArrayList<>(hits.capacity());
+        hits.drainTo(batch, hits.capacity());
+        for (SearchHit hit : batch) {
+            for (TileKey tile : hit.tiles) {
+                tiles.add(tile);
+            }
+            filters.add(hit.filter);
+        }
+    }
+
+    @Scheduled(fixedRateString = "${app.map.hot-viewports.decay-interval-ms:60000}")
+    public void decay() {
+        double factor = Math.pow(0.5, decayIntervalMs / (halfLifeSeconds * 1000));
+        tiles.decay(factor);
+        filters.decay(factor);
+    }
+
+    @Scheduled(fixedDelayString = "${app.map.hot-viewports.warm-interval-ms:20000}",
+            initialDelayString = "${app.map.hot-viewports.warm-interval-ms:20000}")
+    public void warm() {
+        if (!enabled || databaseCircuitBreaker.isOpen()
+                || !concurrencyLimiter.hasCapacity(RequestPriority.BACKGROUND)) {
+            return;
+        }
+        try {
+            executor.execute(this::warmHotTiles);
+        } catch (RejectedExecutionException e) {
+            log.debug("Previous hot tile warming pass still running");
+        }
+    }
+
+    /**
+     * Current heavy hitters, hottest first
+     */
+    public Map<String, Object> report(int limit) {
+        List<Map<String, Object>> hotTiles = new ArrayList<>();
+        for (Map.Entry<TileKey, Double> entry : tiles.top(limit)) {
+            TileKey tile = entry.getKey();
+            Map<String, Object> description = new LinkedHashMap<>();
+            description.put("tile", tile.toPath());
+            description.put("bounds", List.of(tile.getWestLng(), tile.getSouthLat(), tile.getEastLng(), tile.getNorthLat()));
+            description.put("searches", Math.round(entry.getValue()));
+            description.put("cached", viewportTileCache.contains(tile));
+            hotTiles.add(description);
+        }
+
+        List<Map<String, Object>> hotFilters = new ArrayList<>();
+        for (Map.Entry<String, Double> entry : filters.top(limit)) {
+            Map<String, Object> description = new LinkedHashMap<>();
+            description.put("filters", entry.getKey());
+            description.put("searches", Math.round(entry.getValue()));
+            hotFilters.add(description);
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", enabled);
+        result.put("halfLifeSeconds", halfLifeSeconds);
+        result.put("searches", Math.round(filters.total()));
+        result.put("tiles", hotTiles);
+        result.put("filters", hotFilters);
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void warmHotTiles() {
+        // Without statistics the max-tile-rows guard cannot see dense tiles
+        if (!searchQueryPlanner.hasStatistics()) {
+            return;
+        }
+        Duration refreshAhead = Duration.ofSeconds(refreshAheadSeconds);
+        for (Map.Entry<TileKey, Double> entry : tiles.top(warmCount)) {
+            TileKey tile = entry.getKey();
+            if (entry.getValue() < minHits) {
+                break;
+            }
+            if (!viewportTileCache.expiresWithin(tile, refreshAhead)) {
+                continue;
+            }
+            if (searchQueryPlanner.estimateViewportRows(tile.getWestLng(), tile.getSouthLat(),
+                    tile.getEastLng(), tile.getNorthLat()) > maxTileRows) {
+                skipped.increment();
+                continue;
+            }
+            if (!concurrencyLimiter.hasCapacity(RequestPriority.BACKGROUND)) {
+                // Foreground searches need the connections; the rest waits for the next pass
+                shed.increment();
+                return;
+            }
+            try {
+                viewportTileCache.load(tile, false);
+                warmed.increment();
+            } catch (ServiceOverloadedException e) {
+                shed.increment();
+                return;
+            } catch (Exception e) {
+                failed.increment();
+                log.debug("Warming of hot tile {} failed: {}", tile, e.getMessage());
+                if (e instanceof DatabaseUnavailableException) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Filter combination of a search in request parameter form; the search term itself is
+     * left out to keep user input out of the report
+     */
+    static String filterSignature(ProviderSearchRequest request) {
+        StringJoiner signature = new StringJoiner("&");
+        appendIds(signature, "specialtyIds", request.getSpecialtyIds());
+        appendIds(signature, "providerTypeIds", request.getProviderTypeIds());
+        appendIds(signature, "languageIds", request.getLanguageIds());
+        if (Boolean.TRUE.equals(request.getIsVerifiedOnly())) {
+            signature.add("isVerifiedOnly=true");
+        }
+        if (Boolean.TRUE.equals(request.getIsRegisteredOnly())) {
+            signature.add("isRegisteredOnly=true");
+        }
+        if (request.getSearchTerm() != null && !request.getSearchTerm().isBlank()) {
+            signature.add("searchTerm=*");
+        }
+        return signature.length() > 0 ? signature.toString() : "none";
+    }
+
+    private static void appendIds(StringJoiner signature, String name, Collection<Integer> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return;
+        }
+        TreeSet<Integer> sorted = new TreeSet<>();
+        for (Integer id : ids) {
+            if (id != null) {
+                sorted.add(id);
+            }
+        }
+        if (!sorted.isEmpty()) {
+            StringJoiner values = new StringJoiner(",");
+            sorted.forEach(id -> values.add(id.toString()));
+            signature.add(name + "=" + values);
+        }
+    }
+
+    private static final class SearchHit {
+
+        final List<TileKey> tiles;
+        final String filter;
+
+        SearchHit(List<TileKey> tiles, String filter) {
+            this.tiles = tiles;
+            this.filter = filter;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.healthapp.mapservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.healthapp.mapservice.dto.ProviderResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Full provider details, with every location, keyed by provider ID.
+ *
+ * Lookups are multi-gets so a batch of IDs costs one pass over the cache, and only the
+ * misses are loaded from the database. Entries are evicted by the {@link EntityCacheEvictor}
+ * when their provider changes and cleared when reference names change. Each eviction bumps a
+ * generation counter (striped by provider ID), and loaded details are only cached if their
+ * provider's generation has not moved since the load began, so a load racing an eviction
+ * cannot put stale details back.
+ */
+@Component
+public class ProviderDetailCache {
+
+    private static final int GENERATION_STRIPES = 1024;
+
+    private final boolean enabled;
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+    private final AtomicLong epoch = new AtomicLong();
+    private final Cache<Long, ProviderResponse> details;
+    private final Counter hits;
+    private final Counter misses;
+
+    public ProviderDetailCache(MeterRegistry meterRegistry,
+                               @Value("${app.map.details.cache-enabled:true}") boolean enabled,
+                               @Value("${app.map.details.max-entries:50000}") long maxEntries,
+                               @Value("${app.map.details.ttl-seconds:600}") long ttlSeconds) {
+        this.enabled = enabled;
+        this.details = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .maximumSize(maxEntries)
+                .build();
+        this.hits = meterRegistry.counter("map.details.lookups", "result", "hit");
+        this.misses = meterRegistry.counter("map.details.lookups", "result", "miss");
+        meterRegistry.gauge("map.details.cached", details, cache -> cache.estimatedSize());
+    }
+
+    /**
+     * Cached details for those of the providers that are present
+     */
+    public Map<Long, ProviderResponse> getAll(Collection<Long> providerIds) {
+        if (!enabled) {
+            misses.increment(providerIds.size());
+            return Map.of();
+        }
+        Map<Long, ProviderResponse> present = details.getAllPresent(providerIds);
+        hits.increment(present.size());
+        misses.increment(providerIds.size() - present.size());
+        return present;
+    }
+
+    /**
+     * Current generation of each provider, to be passed to {@link #putAll} with what is loaded
+     */
+    public Map<Long, Long> generations(Collection<Long> providerIds) {
+        Map<Long, Long> result = new HashMap<>();
+        for (Long providerId : providerIds) {
+            result.put(providerId, generation(providerId));
+        }
+        return result;
+    }
+
+    /**
+     * Cache loaded details whose provider has not been evicted since its generation was taken
+     */
+    public void putAll(Map<Long, ProviderResponse> loaded, Map<Long, Long> loadedGenerations) {
+        if (!enabled) {
+            return;
+        }
+        loaded.forEach((providerId, response) -> {
+            Long generation = loadedGenerations.get(providerId);
+            if (generation == null || generation != generation(providerId)) {
+                return;
+            }
+            details.put(providerId, response);
+            // An eviction between the check and the put may have missed the new entry
+            if (generation != generation(providerId)) {
+                details.invalidate(providerId);
+            }
+        });
+    }
+
+    public void evictProviders(Collection<Long> providerIds) {
+        for (Long providerId : providerIds) {
+            generations.incrementAndGet(stripe(providerId));
+        }
+        details.invalidateAll(providerIds);
+    }
+
+    public void invalidateAll() {
+        epoch.incrementAndGet();
+        details.invalidateAll();
+    }
+
+    // Both counters only grow, so the sum changes whenever either does
+    private long generation(long providerId) {
+        return epoch.get() + generations.get(stripe(providerId));
+    }
+
+    private static int stripe(long providerId) {
+        return (int) ((providerId ^ (providerId >>> 32)) & (GENERATION_STRIPES - 1));
+    }
+}
@@ -0,0 +1,104 @@
+package com.healthapp.mapservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.healthapp.mapservice.dto.ProviderResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Pre-serialized JSON for provider responses, keyed by provider, location and version.
+ *
+ * Popular providers appear in many search responses; serializing each once and splicing
+ * the bytes into later responses saves the repeated Jackson work. A response's version
+ * changes with its provider or location row, so updated rows get new keys. Specialty and
+ * language link edits leave the version alone; the entity cache evictor sees them through
+ * search_doc and drops those providers' fragments, and clears everything when reference
+ * names change. Fragments expire a fixed time after being written, so one rendered from a
+ * read that raced an eviction is not kept alive by traffic. Responses carrying a
+ * per-request distance are never cached.
+ */
+@Component
+public class ProviderFragmentCache {
+
+    private final boolean enabled;
+    private final Cache<FragmentKey, JsonFragment> fragments;
+    private final Counter hits;
+    private final Counter misses;
+
+    public ProviderFragmentCache(MeterRegistry meterRegistry,
+                                 @Value("${app.map.fragments.enabled:true}") boolean enabled,
+                                 @Value("${app.map.fragments.max-bytes:67108864}") long maxBytes,
+                                 @Value("${app.map.fragments.ttl-seconds:600}") long ttlSeconds) {
+        this.enabled = enabled;
+        this.fragments = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .maximumWeight(maxBytes)
+                .weigher((FragmentKey key, JsonFragment fragment) -> fragment.byteLength())
+                .build();
+        this.hits = meterRegistry.counter("map.fragments.lookups", "result", "hit");
+        this.misses = meterRegistry.counter("map.fragments.lookups", "result", "miss");
+        meterRegistry.gauge("map.fragments.cached", fragments, cache -> cache.estimatedSize());
+    }
+
+    /**
+     * Whether the response can be served from a fragment
+     */
+    public boolean isCacheable(ProviderResponse response) {
+        return enabled
+                && response.getId() != null
+                && response.getVersion() != null
+                && response.getDistanceInKm() == null
+                && response.getRouteDistanceKm() == null
+                && response.getLocations() != null
+                && response.getLocations().size() == 1
+                && response.getLocations().get(0).getId() != null;
+    }
+
+    /**
+     * The fragment for a cacheable response, rendering it on a miss
+     */
+    public JsonFragment get(ProviderResponse response, Function<ProviderResponse, byte[]> render) {
+        FragmentKey key = new FragmentKey(
+                response.getId(), response.getLocations().get(0).getId(), response.getVersion());
+        JsonFragment fragment = fragments.getIfPresent(key);
+        if (fragment != null) {
+            hits.increment();
+            return fragment;
+        }
+        misses.increment();
+        fragment = new JsonFragment(render.apply(response));
+        fragments.put(key, fragment);
+        return fragment;
+    }
+
+    /**
+     * Drop every fragment of the given providers
+     */
+    public void evictProviders(Collection<Long> providerIds) {
+        if (providerIds.isEmpty()) {
+            return;
+        }
+        Set<Long> evicted = new HashSet<>(providerIds);
+        fragments.asMap().keySet().removeIf(key -> evicted.contains(key.getProviderId()));
+    }
+
+    public void invalidateAll() {
+        fragments.invalidateAll();
+    }
+
+    @lombok.Value
+    static class FragmentKey {
+        long providerId;
+        long locationId;
+        long version;
+    }
+}
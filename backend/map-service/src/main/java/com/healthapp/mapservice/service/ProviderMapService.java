@@ -1,40 +1,63 @@
 package com.healthapp.mapservice.service;
 
-import com.healthapp.mapservice.dto.LocationResponse;
+import com.healthapp.mapservice.dto.NearbySearchResponse;
+import com.healthapp.mapservice.dto.ProviderDetailsResponse;
 import com.healthapp.mapservice.dto.ProviderResponse;
 import com.healthapp.mapservice.dto.ProviderSearchRequest;
 import com.healthapp.mapservice.dto.ProviderSearchResponse;
-import com.healthapp.mapservice.model.Language;
-import com.healthapp.mapservice.model.Provider;
+import com.healthapp.mapservice.dto.RouteSearchRequest;
+import com.healthapp.mapservice.dto.RouteSearchResponse;
 import com.healthapp.mapservice.model.ProviderLocation;
-import com.healthapp.mapservice.model.Specialty;
 import com.healthapp.mapservice.repository.ProviderLocationRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.locationtech.jts.geom.Coordinate;
-import org.locationtech.jts.geom.GeometryFactory;
-import org.locationtech.jts.geom.Polygon;
-import org.locationtech.jts.geom.PrecisionModel;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.JpaSort;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class ProviderMapService {
 
+    private static final int MIN_FUZZY_TERM_LENGTH = 3;
+
     private final ProviderLocationRepository providerLocationRepository;
-    private final GeometryFactory geometryFactory = new GeometryFactory(new PrecisionModel(), 4326);
+    private final SearchQueryPlanner searchQueryPlanner;
+    private final ProviderResponseMapper providerResponseMapper;
+    private final SearchRequestCoalescer searchRequestCoalescer;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final ViewportTileCache viewportTileCache;
+    private final ViewportPrefetcher viewportPrefetcher;
+    private final HotViewportTracker hotViewportTracker;
+    private final SearchCandidateLoader searchCandidateLoader;
+    private final RelevanceRanker relevanceRanker;
+    private final DatabaseCircuitBreaker databaseCircuitBreaker;
+    private final StaleResponseCache staleResponseCache;
+    private final ProviderDetailCache providerDetailCache;
+    private final SearchAnalyticsRecorder searchAnalytics;
+    private final PlatformTransactionManager transactionManager;
     
     @Value("${app.map.default-search-radius-km:5}")
     private double defaultSearchRadiusKm;
@@ -44,28 +67,445 @@ public class ProviderMapService {
     
     @Value("${app.map.max-results:100}")
     private int maxResults;
+    
+    @Value("${app.map.batch.max-shared-candidates:5000}")
+    private int maxSharedCandidates;
+    
+    @Value("${app.map.details.max-ids:300}")
+    private int maxDetailIds;
+    
+    @Value("${app.map.fuzzy.enabled:true}")
+    private boolean fuzzyEnabled;
+    
+    @Value("${app.map.fuzzy.similarity-threshold:0.5}")
+    private double fuzzySimilarityThreshold;
+    
+    @Value("${app.map.route.default-buffer-km:2}")
+    private double defaultRouteBufferKm;
+    
+    @Value("${app.map.route.max-buffer-km:10}")
+    private double maxRouteBufferKm;
+    
+    @Value("${app.map.route.max-results:200}")
+    private int maxRouteResults;
+    
+    @Value("${app.map.route.max-input-vertices:50000}")
+    private int maxRouteInputVertices;
+    
+    @Value("${app.map.route.max-segments:500}")
+    private int maxRouteSegments;
+    
+    @Value("${app.map.route.simplify-tolerance-ratio:0.1}")
+    private double routeSimplifyToleranceRatio;
+    
+    @Value("${app.map.route.max-simplify-tolerance-ratio:0.5}")
+    private double routeMaxSimplifyToleranceRatio;
 
     /**
      * Search for providers within a given viewport with optional filtering
      */
-    @Transactional(readOnly = true)
     public ProviderSearchResponse searchProviders(ProviderSearchRequest request) {
-        // Create a polygon representing the viewport
-        Polygon viewport = createViewportPolygon(
-                request.getWestLng(), 
-                request.getSouthLat(), 
-                request.getEastLng(), 
-                request.getNorthLat()
-        );
+        return searchProviders(request, null);
+    }
+    
+    /**
+     * Search for providers on behalf of a client session.
+     * The session's pan and zoom history drives background prefetching of the tiles it is
+     * likely to request next; searches whose viewport is fully covered by cached tiles are
+     * answered from memory. Remaining identical concurrent searches are coalesced into one
+     * database round trip, and the read-only transaction is opened by the leader only so
+     * waiting followers do not hold pooled connections. The database search runs under the
+     * adaptive concurrency limiter and is shed with {@link ServiceOverloadedException}
+     * when the service is at capacity. If the database circuit breaker is open or the query
+     * misses its deadline, the last good response for the same search is served marked stale
+     * and refreshed in the background. Every search, including failed ones, is recorded for
+     * analytics.
+     */
+    public ProviderSearchResponse searchProviders(ProviderSearchRequest request, String sessionId) {
+        long start = System.nanoTime();
+        viewportPrefetcher.onSearch(sessionId, request);
+        hotViewportTracker.onSearch(request);
+        
+        Optional<ProviderSearchResponse> cached = viewportTileCache.search(request);
+        if (cached.isPresent()) {
+            searchAnalytics.record(request, cached.get(), SearchAnalyticsRecorder.Source.TILE_CACHE, start);
+            return cached.get();
+        }
+        
+        return searchWithFallback(request, SearchRequestKey.of(request), () -> querySearch(request), start);
+    }
+    
+    /**
+     * Answer a search that missed the tile cache through the coalescer, falling back to the
+     * stale response for its key when the database is unavailable or fails transiently
+     */
+    private ProviderSearchResponse searchWithFallback(ProviderSearchRequest request, SearchRequestKey key,
+                                                      Supplier<ProviderSearchResponse> query, long start) {
+        try {
+            ProviderSearchResponse response = searchDatabase(key, query);
+            searchAnalytics.record(request, response, SearchAnalyticsRecorder.Source.DATABASE, start);
+            return response;
+        } catch (RuntimeException e) {
+            boolean unavailable = e instanceof DatabaseUnavailableException;
+            Optional<ProviderSearchResponse> stale = unavailable || DatabaseCircuitBreaker.isTransientFailure(e)
+                    ? staleResponseCache.serve(key, () -> searchDatabase(key, () -> querySearch(request)))
+                    : Optional.empty();
+            if (stale.isPresent()) {
+                log.debug("Serving stale search response: {}", e.getMessage());
+                searchAnalytics.record(request, stale.get(), SearchAnalyticsRecorder.Source.STALE, start);
+                return stale.get();
+            }
+            searchAnalytics.record(request, null, SearchAnalyticsRecorder.Source.FAILED, start);
+            if (unavailable || !DatabaseCircuitBreaker.isTransientFailure(e)) {
+                throw e;
+            }
+            throw new DatabaseUnavailableException(
+                    "Database did not answer in time", databaseCircuitBreaker.retryAfterSeconds(), e);
+        }
+    }
+    
+    /**
+     * Run a search without prefetching, hot-tile tracking or analytics, for synthetic
+     * searches such as the startup warm-up that must not look like client traffic
+     */
+    ProviderSearchResponse searchUntracked(ProviderSearchRequest request) {
+        return viewportTileCache.search(request)
+                .orElseGet(() -> searchDatabase(SearchRequestKey.of(request), () -> querySearch(request)));
+    }
+    
+    private ProviderSearchResponse searchDatabase(SearchRequestKey key, Supplier<ProviderSearchResponse> query) {
+        ProviderSearchResponse response = searchRequestCoalescer.execute(key, query);
+        staleResponseCache.put(key, response);
+        return response;
+    }
+    
+    private ProviderSearchResponse querySearch(ProviderSearchRequest request) {
+        return databaseCircuitBreaker.execute(() -> concurrencyLimiter.execute(RequestPriority.VIEWPORT,
+                () -> inReadOnlyTransaction(() -> executeSearch(request))));
+    }
+    
+    /**
+     * Run several searches in one call.
+     * Requests not already answerable from cached tiles share a single spatial scan over the
+     * union of their viewports; each request's filters, sort and paging are then applied to
+     * the shared candidates in memory. If the union is estimated, or found while scanning, to
+     * hold more than {@code app.map.batch.max-shared-candidates} locations, or planner
+     * statistics have not loaded yet, the requests run individually. Each request still goes
+     * through the coalescer and falls back to its stale response like a single search.
+     */
+    public List<ProviderSearchResponse> searchProvidersBatch(List<ProviderSearchRequest> requests, String sessionId) {
+        long start = System.nanoTime();
+        ProviderSearchResponse[] responses = new ProviderSearchResponse[requests.size()];
+        List<Integer> pending = new ArrayList<>();
+        
+        for (int i = 0; i < requests.size(); i++) {
+            ProviderSearchRequest request = requests.get(i);
+            Optional<ProviderSearchResponse> cached = viewportTileCache.search(request);
+            if (cached.isPresent()) {
+                responses[i] = cached.get();
+                searchAnalytics.record(request, cached.get(), SearchAnalyticsRecorder.Source.TILE_CACHE, start);
+            } else if (CandidateSearch.supports(request)) {
+                pending.add(i);
+            } else {
+                responses[i] = searchProviders(request, sessionId);
+            }
+        }
+        
+        if (!pending.isEmpty()) {
+            double westLng = Double.MAX_VALUE;
+            double southLat = Double.MAX_VALUE;
+            double eastLng = -Double.MAX_VALUE;
+            double northLat = -Double.MAX_VALUE;
+            for (int i : pending) {
+                ProviderSearchRequest request = requests.get(i);
+                westLng = Math.min(westLng, request.getWestLng());
+                southLat = Math.min(southLat, request.getSouthLat());
+                eastLng = Math.max(eastLng, request.getEastLng());
+                northLat = Math.max(northLat, request.getNorthLat());
+            }
+            
+            // Estimates are 0 until statistics load, so nothing is shared before then
+            if (pending.size() > 1 && searchQueryPlanner.hasStatistics()
+                    && searchQueryPlanner.estimateViewportRows(westLng, southLat, eastLng, northLat) <= maxSharedCandidates) {
+                SharedScan shared = new SharedScan(westLng, southLat, eastLng, northLat);
+                for (int i : pending) {
+                    ProviderSearchRequest request = requests.get(i);
+                    responses[i] = searchWithFallback(request, SearchRequestKey.of(request), () -> {
+                        List<SearchCandidate> candidates = shared.get();
+                        return candidates != null
+                                ? CandidateSearch.search(candidates, request, relevanceRanker)
+                                : querySearch(request);
+                    }, start);
+                }
+            } else {
+                for (int i : pending) {
+                    responses[i] = searchProviders(requests.get(i), sessionId);
+                }
+            }
+        }
         
+        return List.of(responses);
+    }
+    
+    /**
+     * Union scan shared by the searches of one batch, loaded by the first of them that is not
+     * answered by a coalesced search. Holds null when the union has more than
+     * {@code app.map.batch.max-shared-candidates} locations; a failed load is remembered so the
+     * remaining searches go straight to their stale fallbacks instead of retrying the union.
+     */
+    private final class SharedScan {
+        
+        private final double westLng;
+        private final double southLat;
+        private final double eastLng;
+        private final double northLat;
+        private boolean loaded;
+        private List<SearchCandidate> candidates;
+        private RuntimeException failure;
+        
+        SharedScan(double westLng, double southLat, double eastLng, double northLat) {
+            this.westLng = westLng;
+            this.southLat = southLat;
+            this.eastLng = eastLng;
+            this.northLat = northLat;
+        }
+        
+        List<SearchCandidate> get() {
+            if (failure != null) {
+                throw failure;
+            }
+            if (!loaded) {
+                try {
+                    candidates = databaseCircuitBreaker.execute(
+                            () -> concurrencyLimiter.execute(RequestPriority.VIEWPORT,
+                                    () -> inReadOnlyTransaction(() -> searchCandidateLoader.loadInBounds(
+                                            westLng, southLat, eastLng, northLat, maxSharedCandidates))));
+                } catch (RuntimeException e) {
+                    failure = e;
+                    throw e;
+                }
+                loaded = true;
+                if (candidates != null) {
+                    log.debug("Batch searches share a scan of {} candidates", candidates.size());
+                }
+            }
+            return candidates;
+        }
+    }
+    
+    /**
+     * Full details of several providers, each with all of its locations.
+     * Cached details are served with one multi-get; the misses are loaded with one batched
+     * query under the detail priority of the concurrency limiter and then cached.
+     */
+    public ProviderDetailsResponse getProviderDetails(List<Long> providerIds) {
+        Set<Long> ids = new LinkedHashSet<>(providerIds);
+        ids.remove(null);
+        if (ids.isEmpty()) {
+            throw new IllegalArgumentException("At least one provider ID is required");
+        }
+        if (ids.size() > maxDetailIds) {
+            throw new IllegalArgumentException("At most " + maxDetailIds + " provider IDs may be requested");
+        }
+        
+        Map<Long, ProviderResponse> details = new HashMap<>(providerDetailCache.getAll(ids));
+        if (details.size() < ids.size()) {
+            List<Long> missing = ids.stream().filter(id -> !details.containsKey(id)).collect(Collectors.toList());
+            // Taken before loading, so details loaded across an eviction are not cached
+            Map<Long, Long> generations = providerDetailCache.generations(missing);
+            Map<Long, ProviderResponse> loaded = databaseCircuitBreaker.execute(
+                    () -> concurrencyLimiter.execute(RequestPriority.DETAIL,
+                            () -> inReadOnlyTransaction(() -> loadProviderDetails(missing))));
+            providerDetailCache.putAll(loaded, generations);
+            details.putAll(loaded);
+        }
+        
+        List<ProviderResponse> providers = new ArrayList<>(ids.size());
+        List<Long> notFound = new ArrayList<>();
+        for (Long id : ids) {
+            ProviderResponse detail = details.get(id);
+            if (detail != null) {
+                providers.add(detail);
+            } else {
+                notFound.add(id);
+            }
+        }
+        return ProviderDetailsResponse.builder()
+                .providers(providers)
+                .notFound(notFound)
+                .build();
+    }
+    
+    private Map<Long, ProviderResponse> loadProviderDetails(List<Long> providerIds) {
+        Map<Long, List<ProviderLocation>> locationsByProvider = providerLocationRepository
+                .findAllByProviderIdWithDetails(providerIds).stream()
+                .collect(Collectors.groupingBy(location -> location.getProvider().getId()));
+        
+        Map<Long, ProviderResponse> loaded = new HashMap<>();
+        locationsByProvider.forEach((providerId, locations) -> loaded.put(providerId,
+                providerResponseMapper.toProviderDetail(locations.get(0).getProvider(), locations)));
+        
+        // Providers without any location exist all the same and are returned with none
+        List<Long> withoutLocations = providerIds.stream()
+                .filter(id -> !loaded.containsKey(id))
+                .collect(Collectors.toList());
+        if (!withoutLocations.isEmpty()) {
+            providerLocationRepository.findProvidersByIdWithDetails(withoutLocations).forEach(provider -> loaded.put(
+                    provider.getId(), providerResponseMapper.toProviderDetail(provider, List.of())));
+        }
+        return loaded;
+    }
+    
+    /**
+     * Find the providers nearest to a point, ordered by distance.
+     * The radius defaults to {@code app.map.default-search-radius-km} and is clamped to
+     * {@code app.map.max-search-radius-km}; the limit is clamped to {@code app.map.max-results}.
+     * Unlike a viewport search no count query is run.
+     */
+    public NearbySearchResponse findNearbyProviders(double lat, double lng, Double radiusKm, int limit) {
+        double appliedRadiusKm = Math.min(radiusKm != null ? radiusKm : defaultSearchRadiusKm, maxSearchRadiusKm);
+        int appliedLimit = Math.min(limit, maxResults);
+        
+        List<ProviderResponse> providers = databaseCircuitBreaker.execute(
+                () -> concurrencyLimiter.execute(RequestPriority.VIEWPORT,
+                        () -> inReadOnlyTransaction(() -> executeNearbySearch(lat, lng, appliedRadiusKm, appliedLimit))));
+        
+        return NearbySearchResponse.builder()
+                .providers(providers)
+                .latitude(lat)
+                .longitude(lng)
+                .radiusKm(appliedRadiusKm)
+                .count(providers.size())
+                .build();
+    }
+    
+    private List<ProviderResponse> executeNearbySearch(double lat, double lng, double radiusKm, int limit) {
+        List<Object[]> nearest = providerLocationRepository.findNearestWithinRadius(
+                lat, lng, radiusKm * 1000, RegionPartitions.coveringRadius(lat, lng, radiusKm), limit);
+        if (nearest.isEmpty()) {
+            return new ArrayList<>();
+        }
+        
+        Map<Long, Double> distanceKmById = new LinkedHashMap<>();
+        for (Object[] row : nearest) {
+            distanceKmById.put(((Number) row[0]).longValue(), ((Number) row[1]).doubleValue() / 1000);
+        }
+        
+        Map<Long, ProviderLocation> locationsById = providerLocationRepository
+                .findAllByIdWithDetails(distanceKmById.keySet()).stream()
+                .collect(Collectors.toMap(ProviderLocation::getId, location -> location));
+        
+        List<ProviderResponse> providers = new ArrayList<>(distanceKmById.size());
+        distanceKmById.forEach((id, distanceKm) -> {
+            ProviderLocation location = locationsById.get(id);
+            if (location != null) {
+                ProviderResponse response = providerResponseMapper.toProviderResponse(location);
+                response.setDistanceInKm(distanceKm);
+                providers.add(response);
+            }
+        });
+        return providers;
+    }
+    
+    /**
+     * Find provider locations within a corridor around a route, ordered by position along it.
+     * The route is simplified to at most {@code app.map.route.max-segments} segments with a
+     * tolerance of {@code simplify-tolerance-ratio} of the buffer, doubled as needed up to
+     * {@code max-simplify-tolerance-ratio}; routes that need more are rejected. One query then
+     * probes the spatial index once per simplified segment with the buffer widened by the
+     * tolerance, and keeps the locations within the buffer of the original route. The buffer defaults to
+     * {@code app.map.route.default-buffer-km} and is clamped to {@code max-buffer-km}; the limit
+     * is clamped to {@code max-results}.
+     */
+    public RouteSearchResponse findProvidersAlongRoute(RouteSearchRequest request) {
+        RoutePolyline route = RoutePolyline.decode(request.getPolyline(),
+                request.getPrecision() != null ? request.getPrecision() : 5, maxRouteInputVertices);
+        double bufferKm = Math.min(request.getBufferKm() != null ? request.getBufferKm() : defaultRouteBufferKm,
+                maxRouteBufferKm);
+        if (!(bufferKm > 0)) {
+            throw new IllegalArgumentException("Buffer must be positive");
+        }
+        RoutePolyline.Simplified searched = route.simplify(bufferKm * routeSimplifyToleranceRatio,
+                bufferKm * routeMaxSimplifyToleranceRatio, maxRouteSegments + 1);
+        int limit = Math.min(request.getLimit() != null ? request.getLimit() : maxRouteResults, maxRouteResults);
+        
+        List<ProviderResponse> providers = databaseCircuitBreaker.execute(
+                () -> concurrencyLimiter.execute(RequestPriority.VIEWPORT,
+                        () -> inReadOnlyTransaction(() -> executeRouteSearch(searched, bufferKm, limit, request))));
+        
+        return RouteSearchResponse.builder()
+                .providers(providers)
+                .count(providers.size())
+                .bufferKm(bufferKm)
+                .routeLengthKm(route.lengthKm())
+                .routeVertices(route.size())
+                .searchedVertices(searched.route.size())
+                .build();
+    }
+    
+    private List<ProviderResponse> executeRouteSearch(RoutePolyline.Simplified searched, double bufferKm, int limit,
+                                                      RouteSearchRequest request) {
+        double probeKm = bufferKm + searched.toleranceKm;
+        List<Object[]> hits = providerLocationRepository.findAlongRoute(
+                searched.route.toWkt(),
+                probeKm * 1000,
+                request.getPolyline(),
+                request.getPrecision() != null ? request.getPrecision() : 5,
+                bufferKm * 1000,
+                searched.route.regions(probeKm),
+                request.getSpecialtyId(),
+                request.getProviderTypeId(),
+                request.getLanguageId(),
+                Boolean.TRUE.equals(request.getIsVerifiedOnly()),
+                Boolean.TRUE.equals(request.getIsRegisteredOnly()),
+                limit);
+        if (hits.isEmpty()) {
+            return new ArrayList<>();
+        }
+        
+        Map<Long, Object[]> hitsById = new LinkedHashMap<>();
+        for (Object[] row : hits) {
+            hitsById.put(((Number) row[0]).longValue(), row);
+        }
+        
+        Map<Long, ProviderLocation> locationsById = providerLocationRepository
+                .findAllByIdWithDetails(hitsById.keySet()).stream()
+                .collect(Collectors.toMap(ProviderLocation::getId, location -> location));
+        
+        List<ProviderResponse> providers = new ArrayList<>(hitsById.size());
+        hitsById.forEach((id, row) -> {
+            ProviderLocation location = locationsById.get(id);
+            if (location != null) {
+                ProviderResponse response = providerResponseMapper.toProviderResponse(location);
+                response.setRouteDistanceKm(((Number) row[1]).doubleValue() / 1000);
+                response.setDistanceInKm(((Number) row[2]).doubleValue() / 1000);
+                providers.add(response);
+            }
+        });
+        return providers;
+    }
+    
+    /**
+     * Run a viewport search against the database
+     */
+    private ProviderSearchResponse executeSearch(ProviderSearchRequest request) {
         // Count total providers in viewport
         Long totalProvidersInViewport = providerLocationRepository.countProvidersInViewport(
                 request.getWestLng(),
                 request.getSouthLat(),
                 request.getEastLng(),
-                request.getNorthLat()
+                request.getNorthLat(),
+                regions(request)
         );
         
+        // Choose an execution strategy and resolve its candidate providers; fuzzy matching
+        // cannot use the exact text-first candidates, so it always scans the viewport
+        boolean fuzzy = fuzzyRequested(request);
+        SearchPlan plan = searchQueryPlanner.plan(request);
+        List<Long> candidateProviderIds = fuzzy ? null : resolveCandidateProviderIds(plan, request);
+        log.debug("Search plan {} (spatial estimate {}, candidates {})", plan.getStrategy(),
+                plan.getEstimatedSpatialRows(), candidateProviderIds != null ? candidateProviderIds.size() : "n/a");
+        
         // Determine if we need distance-based sorting
         boolean useDistanceSorting = request.getUserLat() != null && request.getUserLng() != null && 
                 "distance".equalsIgnoreCase(request.getSortBy());
@@ -73,47 +513,122 @@ public class ProviderMapService {
         List<ProviderResponse> providerResponses;
         long totalCount;
         
-        if (useDistanceSorting) {
+        if (candidateProviderIds != null && candidateProviderIds.isEmpty()) {
+            // No provider can match the selective filter, skip the viewport scan entirely
+            providerResponses = new ArrayList<>();
+            totalCount = 0;
+        } else if (fuzzy) {
+            // Rank fuzzy name matches by similarity, ignoring the requested sort
+            Page<Long> matches = searchProvidersBySimilarity(request);
+            providerResponses = loadInOrder(matches.getContent());
+            totalCount = matches.getTotalElements();
+        } else if (RelevanceRanker.requested(request)) {
+            // Score every filtered location, materializing only the requested page
+            Page<ProviderResponse> ranked = searchProvidersByRelevance(request);
+            providerResponses = ranked.getContent();
+            totalCount = ranked.getTotalElements();
+        } else if (useDistanceSorting) {
             // Use native query with distance calculation
-            providerResponses = searchProvidersWithDistance(request);
+            providerResponses = searchProvidersWithDistance(request, candidateProviderIds);
             
             // Count total filtered results
-            totalCount = countFilteredProvidersInViewport(request, viewport);
+            totalCount = countFilteredProvidersInViewport(request, candidateProviderIds);
         } else {
-            // Use JPA query with standard sorting
-            providerResponses = searchProvidersWithJpa(request, viewport);
-            
-            // Total count is retrieved from JPA pagination
-            totalCount = providerResponses.size(); // This will be updated below
+            // Use JPA query with standard sorting; the total comes from the page's count query
+            Page<ProviderResponse> page = searchProvidersWithJpa(request, candidateProviderIds);
+            providerResponses = page.getContent();
+            totalCount = page.getTotalElements();
         }
         
-        int totalPages = (int) Math.ceil((double) totalCount / request.getPageSize());
+        // Build and return response with viewport metadata
+        ProviderSearchResponse response = CandidateSearch.buildResponse(
+                request, providerResponses, totalCount, totalProvidersInViewport);
+        if (CandidateSearch.includesFacets(request)) {
+            FacetCounter facets = new FacetCounter();
+            if (candidateProviderIds == null || !candidateProviderIds.isEmpty()) {
+                countFacets(request, fuzzy, facets);
+            }
+            response.setFacets(facets.build(CandidateSearch.facetLimit(request)));
+        }
+        return response;
+    }
+    
+    /**
+     * Count facets for the filtered viewport with one grouped query over search_doc
+     */
+    private void countFacets(ProviderSearchRequest request, boolean fuzzy, FacetCounter facets) {
+        List<Object[]> rows = fuzzy
+                ? providerLocationRepository.findSearchDocFuzzyFacetCounts(
+                        request.getWestLng(),
+                        request.getSouthLat(),
+                        request.getEastLng(),
+                        request.getNorthLat(),
+                        regions(request),
+                        request.getSearchTerm().trim(),
+                        request.firstSpecialtyId(),
+                        request.firstProviderTypeId(),
+                        request.firstLanguageId(),
+                        request.getIsVerifiedOnly(),
+                        request.getIsRegisteredOnly())
+                : providerLocationRepository.findSearchDocFacetCounts(
+                        request.getWestLng(),
+                        request.getSouthLat(),
+                        request.getEastLng(),
+                        request.getNorthLat(),
+                        regions(request),
+                        request.getSearchTerm(),
+                        request.firstSpecialtyId(),
+                        request.firstProviderTypeId(),
+                        request.firstLanguageId(),
+                        request.getIsVerifiedOnly(),
+                        request.getIsRegisteredOnly());
+        for (Object[] row : rows) {
+            facets.add(String.valueOf(row[0]), ((Number) row[1]).intValue(), ((Number) row[2]).longValue());
+        }
+    }
+    
+    /**
+     * Resolve the candidate provider IDs for filter-first and text-first plans.
+     * Returns null when the viewport should be scanned directly (spatial-first),
+     * including when the candidate set turns out larger than the planner allows.
+     */
+    private List<Long> resolveCandidateProviderIds(SearchPlan plan, ProviderSearchRequest request) {
+        int limit = searchQueryPlanner.getMaxCandidates() + 1;
+        List<Long> candidates;
         
-        // Build viewport metadata
-        ProviderSearchResponse.ViewportMetadata viewportMetadata = ProviderSearchResponse.ViewportMetadata.builder()
-                .northLat(request.getNorthLat())
-                .southLat(request.getSouthLat())
-                .eastLng(request.getEastLng())
-                .westLng(request.getWestLng())
-                .providersInViewport(totalProvidersInViewport.intValue())
-                .filteredCount((int) totalCount)
-                .build();
+        switch (plan.getStrategy()) {
+            case FILTER_FIRST:
+                Integer specialtyId = request.firstSpecialtyId();
+                Integer languageId = request.firstLanguageId();
+                // Any remaining filter is still applied by the viewport query itself
+                candidates = specialtyId != null
+                        ? providerLocationRepository.findProviderIdsBySpecialty(specialtyId, limit)
+                        : null;
+                if ((candidates == null || candidates.size() >= limit) && languageId != null) {
+                    candidates = providerLocationRepository.findProviderIdsByLanguage(languageId, limit);
+                }
+                break;
+            case TEXT_FIRST:
+                candidates = providerLocationRepository.findProviderIdsByText(request.getSearchTerm().trim(), limit);
+                break;
+            default:
+                return null;
+        }
         
-        // Build and return response
-        return ProviderSearchResponse.builder()
-                .providers(providerResponses)
-                .totalCount(totalCount)
-                .page(request.getPage())
-                .pageSize(request.getPageSize())
-                .totalPages(totalPages)
-                .viewportMetadata(viewportMetadata)
-                .build();
+        if (candidates == null || candidates.size() >= limit) {
+            log.debug("Candidate set for {} exceeded {} providers, falling back to spatial-first",
+                    plan.getStrategy(), limit - 1);
+            return null;
+        }
+        return candidates;
     }
     
     /**
-     * Search for providers using standard JPA queries (no distance calculation)
+     * Search for providers with a single-table scan of search_doc (no distance calculation),
+     * then load the page's locations with their provider details
      */
-    private List<ProviderResponse> searchProvidersWithJpa(ProviderSearchRequest request, Polygon viewport) {
+    private Page<ProviderResponse> searchProvidersWithJpa(ProviderSearchRequest request,
+                                                          List<Long> candidateProviderIds) {
         // Determine sort direction
         Sort.Direction direction = "desc".equalsIgnoreCase(request.getSortDirection()) 
                 ? Sort.Direction.DESC 
@@ -123,91 +638,190 @@ public class ProviderMapService {
         Pageable pageable = PageRequest.of(
                 request.getPage() - 1, 
                 request.getPageSize(),
-                Sort.by(direction, getSortField(request.getSortBy()))
+                getSort(request, direction)
         );
         
         // Get specialty, provider type, and language IDs for filtering
-        Integer specialtyId = request.getSpecialtyIds() != null && !request.getSpecialtyIds().isEmpty() 
-                ? request.getSpecialtyIds().get(0) 
-                : null;
+        Integer specialtyId = request.firstSpecialtyId();
+        Integer providerTypeId = request.firstProviderTypeId();
+        Integer languageId = request.firstLanguageId();
         
-        Integer providerTypeId = request.getProviderTypeIds() != null && !request.getProviderTypeIds().isEmpty() 
-                ? request.getProviderTypeIds().get(0) 
-                : null;
+        // Execute query with filters, restricted to the planner's candidates when present
+        Page<Long> locationIds = candidateProviderIds != null
+                ? providerLocationRepository.findSearchDocLocationIdsForProviders(
+                        candidateProviderIds,
+                        request.getWestLng(),
+                        request.getSouthLat(),
+                        request.getEastLng(),
+                        request.getNorthLat(),
+                        regions(request),
+                        request.getSearchTerm(),
+                        specialtyId,
+                        providerTypeId,
+                        languageId,
+                        request.getIsVerifiedOnly(),
+                        request.getIsRegisteredOnly(),
+                        pageable)
+                : providerLocationRepository.findSearchDocLocationIds(
+                        request.getWestLng(),
+                        request.getSouthLat(),
+                        request.getEastLng(),
+                        request.getNorthLat(),
+                        regions(request),
+                        request.getSearchTerm(),
+                        specialtyId,
+                        providerTypeId,
+                        languageId,
+                        request.getIsVerifiedOnly(),
+                        request.getIsRegisteredOnly(),
+                        pageable);
         
-        Integer languageId = request.getLanguageIds() != null && !request.getLanguageIds().isEmpty() 
-                ? request.getLanguageIds().get(0) 
-                : null;
+        return new PageImpl<>(loadInOrder(locationIds.getContent()), pageable, locationIds.getTotalElements());
+    }
+    
+    /**
+     * Whether the search term should be matched by trigram similarity. Terms shorter than a
+     * trigram have no useful similarity and use the exact substring match instead.
+     */
+    private boolean fuzzyRequested(ProviderSearchRequest request) {
+        return fuzzyEnabled && Boolean.TRUE.equals(request.getFuzzy()) && request.getSearchTerm() != null
+                && request.getSearchTerm().trim().length() >= MIN_FUZZY_TERM_LENGTH;
+    }
+    
+    /**
+     * Page of locations whose provider or location name is word-similar to the search term,
+     * most similar first. The similarity threshold is set for the current transaction only.
+     */
+    private Page<Long> searchProvidersBySimilarity(ProviderSearchRequest request) {
+        providerLocationRepository.setWordSimilarityThreshold(fuzzySimilarityThreshold);
+        return providerLocationRepository.findSearchDocLocationIdsBySimilarity(
+                request.getWestLng(),
+                request.getSouthLat(),
+                request.getEastLng(),
+                request.getNorthLat(),
+                regions(request),
+                request.getSearchTerm().trim(),
+                request.firstSpecialtyId(),
+                request.firstProviderTypeId(),
+                request.firstLanguageId(),
+                request.getIsVerifiedOnly(),
+                request.getIsRegisteredOnly(),
+                PageRequest.of(request.getPage() - 1, request.getPageSize()));
+    }
+    
+    /**
+     * Rank the filtered viewport by relevance. Scoring inputs are streamed from search_doc
+     * into a heap bounded by the end of the requested page, so only that page is loaded
+     * and mapped however many locations match.
+     */
+    private Page<ProviderResponse> searchProvidersByRelevance(ProviderSearchRequest request) {
+        RelevanceRanker.Scorer scorer = relevanceRanker.scorer(request);
+        int offset = (request.getPage() - 1) * request.getPageSize();
+        TopK<Long> top = new TopK<>(offset + request.getPageSize());
         
-        // Execute query with filters
-        Page<ProviderLocation> providerLocations = providerLocationRepository.findAllInViewportWithFilters(
-                viewport,
+        try (Stream<Object[]> rows = providerLocationRepository.streamSearchDocRankingRows(
+                request.getWestLng(),
+                request.getSouthLat(),
+                request.getEastLng(),
+                request.getNorthLat(),
+                regions(request),
                 request.getSearchTerm(),
-                specialtyId,
-                providerTypeId,
-                languageId,
+                request.firstSpecialtyId(),
+                request.firstProviderTypeId(),
+                request.firstLanguageId(),
                 request.getIsVerifiedOnly(),
-                request.getIsRegisteredOnly(),
-                pageable
-        );
+                request.getIsRegisteredOnly())) {
+            rows.forEach(row -> {
+                long locationId = ((Number) row[0]).longValue();
+                // search_text is the lower-case provider and location names joined by chr(31)
+                String searchText = (String) row[6];
+                int separator = searchText.indexOf('\u001f');
+                double score = scorer.score(
+                        ((Number) row[1]).doubleValue(),
+                        ((Number) row[2]).doubleValue(),
+                        Boolean.TRUE.equals(row[3]),
+                        Boolean.TRUE.equals(row[4]),
+                        row[5] != null ? ((Number) row[5]).intValue() : null,
+                        separator >= 0 ? searchText.substring(0, separator) : searchText,
+                        separator >= 0 ? searchText.substring(separator + 1) : "");
+                top.offer(score, locationId, locationId);
+            });
+        }
+        
+        return new PageImpl<>(loadInOrder(top.best(offset)),
+                PageRequest.of(request.getPage() - 1, request.getPageSize()), top.offered());
+    }
+    
+    /**
+     * Load locations with their provider details and convert them to DTOs in the given order
+     */
+    private List<ProviderResponse> loadInOrder(List<Long> locationIds) {
+        if (locationIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        
+        Map<Long, ProviderLocation> locationsById = providerLocationRepository
+                .findAllByIdWithDetails(locationIds).stream()
+                .collect(Collectors.toMap(ProviderLocation::getId, location -> location));
         
-        // Convert results to DTOs
-        return providerLocations.getContent().stream()
-                .map(this::convertToProviderResponse)
+        return locationIds.stream()
+                .map(locationsById::get)
+                .filter(Objects::nonNull)
+                .map(providerResponseMapper::toProviderResponse)
                 .collect(Collectors.toList());
     }
     
     /**
      * Search for providers using native query with distance calculation
      */
-    private List<ProviderResponse> searchProvidersWithDistance(ProviderSearchRequest request) {
+    private List<ProviderResponse> searchProvidersWithDistance(ProviderSearchRequest request,
+                                                               List<Long> candidateProviderIds) {
         try {
             log.debug("Executing provider search with distance calculation");
             
-            // Create viewport polygon
-            Polygon viewport = createViewportPolygon(
-                    request.getWestLng(), 
-                    request.getSouthLat(), 
-                    request.getEastLng(), 
-                    request.getNorthLat()
-            );
-            
             // For now, use JPA query while we troubleshoot the native query
             log.debug("Using JPA query as alternative to native query with distance");
-            return searchProvidersWithJpa(request, viewport);
+            return searchProvidersWithJpa(request, candidateProviderIds).getContent();
             
         } catch (Exception e) {
             log.error("Error searching for providers with distance: {}", e.getMessage(), e);
             // Fallback to standard JPA query without distance sorting
-            Polygon viewport = createViewportPolygon(
-                    request.getWestLng(), 
-                    request.getSouthLat(), 
-                    request.getEastLng(), 
-                    request.getNorthLat()
-            );
-            return searchProvidersWithJpa(request, viewport);
+            return searchProvidersWithJpa(request, candidateProviderIds).getContent();
         }
     }
     
     /**
      * Count filtered providers in viewport
      */
-    private long countFilteredProvidersInViewport(ProviderSearchRequest request, Polygon viewport) {
+    private long countFilteredProvidersInViewport(ProviderSearchRequest request, List<Long> candidateProviderIds) {
         // Get specialty, provider type, and language IDs for filtering
-        Integer specialtyId = request.getSpecialtyIds() != null && !request.getSpecialtyIds().isEmpty() 
-                ? request.getSpecialtyIds().get(0) 
-                : null;
-        
-        Integer providerTypeId = request.getProviderTypeIds() != null && !request.getProviderTypeIds().isEmpty() 
-                ? request.getProviderTypeIds().get(0) 
-                : null;
+        Integer specialtyId = request.firstSpecialtyId();
+        Integer providerTypeId = request.firstProviderTypeId();
+        Integer languageId = request.firstLanguageId();
         
-        Integer languageId = request.getLanguageIds() != null && !request.getLanguageIds().isEmpty() 
-                ? request.getLanguageIds().get(0) 
-                : null;
+        if (candidateProviderIds != null) {
+            return providerLocationRepository.countSearchDocLocationsForProviders(
+                    candidateProviderIds,
+                    request.getWestLng(),
+                    request.getSouthLat(),
+                    request.getEastLng(),
+                    request.getNorthLat(),
+                    regions(request),
+                    request.getSearchTerm(),
+                    specialtyId,
+                    providerTypeId,
+                    languageId,
+                    request.getIsVerifiedOnly(),
+                    request.getIsRegisteredOnly()
+            );
+        }
         
-        return providerLocationRepository.countInViewportWithFilters(
-                viewport,
+        return providerLocationRepository.countSearchDocLocations(
+                request.getWestLng(),
+                request.getSouthLat(),
+                request.getEastLng(),
+                request.getNorthLat(),
+                regions(request),
                 request.getSearchTerm(),
                 specialtyId,
                 providerTypeId,
@@ -217,83 +831,32 @@ public class ProviderMapService {
         );
     }
     
-    /**
-     * Convert ProviderLocation entity to ProviderResponse DTO
-     */
-    private ProviderResponse convertToProviderResponse(ProviderLocation location) {
-        Provider provider = location.getProvider();
-        
-        // Create location response
-        LocationResponse locationResponse = LocationResponse.builder()
-                .id(location.getId())
-                .name(location.getName())
-                .addressLine1(location.getAddressLine1())
-                .addressLine2(location.getAddressLine2())
-                .city(location.getCity())
-                .state(location.getState())
-                .postalCode(location.getPostalCode())
-                .country(location.getCountry())
-                .latitude(location.getLatitude())
-                .longitude(location.getLongitude())
-                .isPrimary(location.getIsPrimary())
-                .phone(location.getPhone())
-                .email(location.getEmail())
-                .website(location.getWebsite())
-                .build();
-        
-        // Extract specialties
-        List<String> specialties = provider.getSpecialties().stream()
-                .map(Specialty::getName)
-                .collect(Collectors.toList());
-        
-        // Extract languages
-        List<String> languages = provider.getLanguages().stream()
-                .map(Language::getName)
-                .collect(Collectors.toList());
-        
-        // Build provider response
-        return ProviderResponse.builder()
-                .id(provider.getId())
-                .name(provider.getName())
-                .providerType(provider.getProviderType() != null ? provider.getProviderType().getName() : null)
-                .about(provider.getAbout())
-                .phone(provider.getPhone())
-                .email(provider.getEmail())
-                .isVerified(provider.getIsVerified())
-                .isRegisteredUser(provider.getIsRegisteredUser())
-                .experienceYears(provider.getExperienceYears())
-                .locations(List.of(locationResponse))
-                .specialties(specialties)
-                .languages(languages)
-                .build();
+    private <T> T inReadOnlyTransaction(Supplier<T> work) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(true);
+        // Statement timeouts turn a stalled database into a fast failure the breaker can count
+        transaction.setTimeout(databaseCircuitBreaker.getQueryTimeoutSeconds());
+        return transaction.execute(status -> work.get());
     }
     
     /**
-     * Create a polygon representing the viewport
+     * Region partitions of search_doc covering the request's viewport
      */
-    private Polygon createViewportPolygon(double westLng, double southLat, double eastLng, double northLat) {
-        Coordinate[] coordinates = new Coordinate[5];
-        coordinates[0] = new Coordinate(westLng, southLat);
-        coordinates[1] = new Coordinate(eastLng, southLat);
-        coordinates[2] = new Coordinate(eastLng, northLat);
-        coordinates[3] = new Coordinate(westLng, northLat);
-        coordinates[4] = new Coordinate(westLng, southLat); // Close the polygon
-        
-        return geometryFactory.createPolygon(coordinates);
+    private static List<Integer> regions(ProviderSearchRequest request) {
+        return RegionPartitions.covering(
+                request.getWestLng(), request.getSouthLat(), request.getEastLng(), request.getNorthLat());
     }
     
     /**
-     * Get the appropriate sort field based on the sortBy parameter
+     * Sort for a search_doc page query. Name order is by lower-cased provider name in code
+     * point order with the location ID as tie-break, the order {@link CandidateSearch} applies
+     * to cached tiles, so cached and database pages agree.
      */
-    private String getSortField(String sortBy) {
-        switch (sortBy.toLowerCase()) {
-            case "name":
-                return "provider.name";
-            case "rating":
-                // If rating field is implemented later
-                return "provider.name"; // Fallback to name
-            default:
-                return "id"; // Default sort by ID
+    private static Sort getSort(ProviderSearchRequest request, Sort.Direction direction) {
+        Sort byLocationId = Sort.by(direction, "location_id");
+        if (!CandidateSearch.sortsByName(request)) {
+            return byLocationId;
         }
+        return JpaSort.unsafe(direction, "LOWER(d.provider_name) COLLATE \"C\"").and(byLocationId);
     }
-}
\ No newline at end of file
+}
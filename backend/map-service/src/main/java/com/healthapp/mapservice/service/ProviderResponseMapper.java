@@ -0,0 +1,114 @@
+package com.healthapp.mapservice.service;
+
+import com.healthapp.mapservice.dto.LocationResponse;
+import com.healthapp.mapservice.dto.ProviderResponse;
+import com.healthapp.mapservice.model.Language;
+import com.healthapp.mapservice.model.Provider;
+import com.healthapp.mapservice.model.ProviderLocation;
+import com.healthapp.mapservice.model.Specialty;
+import org.springframework.stereotype.Component;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Maps provider entities to response DTOs
+ */
+@Component
+public class ProviderResponseMapper {
+
+    /**
+     * Convert ProviderLocation entity to ProviderResponse DTO
+     */
+    public ProviderResponse toProviderResponse(ProviderLocation location) {
+        Provider provider = location.getProvider();
+        return build(provider, List.of(toLocationResponse(location)),
+                version(provider.getUpdatedAt(), location.getUpdatedAt()));
+    }
+    
+    /**
+     * Convert a provider and all of its locations to a ProviderResponse DTO,
+     * listing the primary location first
+     */
+    public ProviderResponse toProviderDetail(Provider provider, Collection<ProviderLocation> locations) {
+        List<ProviderLocation> ordered = new ArrayList<>(locations);
+        ordered.sort(Comparator
+                .comparing((ProviderLocation location) -> !Boolean.TRUE.equals(location.getIsPrimary()))
+                .thenComparing(ProviderLocation::getId));
+        
+        Long version = version(provider.getUpdatedAt(), null);
+        List<LocationResponse> locationResponses = new ArrayList<>(ordered.size());
+        for (ProviderLocation location : ordered) {
+            locationResponses.add(toLocationResponse(location));
+            Long locationVersion = version(provider.getUpdatedAt(), location.getUpdatedAt());
+            if (locationVersion != null && (version == null || locationVersion > version)) {
+                version = locationVersion;
+            }
+        }
+        return build(provider, locationResponses, version);
+    }
+    
+    private static LocationResponse toLocationResponse(ProviderLocation location) {
+        return LocationResponse.builder()
+                .id(location.getId())
+                .name(location.getName())
+                .addressLine1(location.getAddressLine1())
+                .addressLine2(location.getAddressLine2())
+                .city(location.getCity())
+                .state(location.getState())
+                .postalCode(location.getPostalCode())
+                .country(location.getCountry())
+                .latitude(location.getLatitude())
+                .longitude(location.getLongitude())
+                .isPrimary(location.getIsPrimary())
+                .phone(location.getPhone())
+                .email(location.getEmail())
+                .website(location.getWebsite())
+                .build();
+    }
+    
+    private static ProviderResponse build(Provider provider, List<LocationResponse> locations, Long version) {
+        // Extract specialties
+        List<String> specialties = provider.getSpecialties().stream()
+                .map(Specialty::getName)
+                .collect(Collectors.toList());
+        
+        // Extract languages
+        List<String> languages = provider.getLanguages().stream()
+                .map(Language::getName)
+                .collect(Collectors.toList());
+        
+        // Build provider response
+        return ProviderResponse.builder()
+                .id(provider.getId())
+                .name(provider.getName())
+                .providerType(provider.getProviderType() != null ? provider.getProviderType().getName() : null)
+                .about(provider.getAbout())
+                .phone(provider.getPhone())
+                .email(provider.getEmail())
+                .isVerified(provider.getIsVerified())
+                .isRegisteredUser(provider.getIsRegisteredUser())
+                .experienceYears(provider.getExperienceYears())
+                .locations(locations)
+                .specialties(specialties)
+                .languages(languages)
+                .version(version)
+                .build();
+    }
+    
+    /**
+     * The later of the provider and location update times in epoch milliseconds, or null if neither is known
+     */
+    private static Long version(OffsetDateTime providerUpdatedAt, OffsetDateTime locationUpdatedAt) {
+        if (providerUpdatedAt == null && locationUpdatedAt == null) {
+            return null;
+        }
+        long provider = providerUpdatedAt != null ? providerUpdatedAt.toInstant().toEpochMilli() : Long.MIN_VALUE;
+        long location = locationUpdatedAt != null ? locationUpdatedAt.toInstant().toEpochMilli() : Long.MIN_VALUE;
+        return Math.max(provider, location);
+    }
+}
@@ -0,0 +1,25 @@
+package com.healthapp.mapservice.service;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Application event raised after the local caches dropped changed providers, whether the
+ * change was found by this instance's poll or broadcast by another instance. A resync event
+ * carries no IDs and means changes may have been missed.
+ */
+@Value
+public class ProvidersChangedEvent {
+
+    List<Long> providerIds;
+    boolean resync;
+
+    public static ProvidersChangedEvent of(List<Long> providerIds) {
+        return new ProvidersChangedEvent(providerIds, false);
+    }
+
+    public static ProvidersChangedEvent resync() {
+        return new ProvidersChangedEvent(List.of(), true);
+    }
+}
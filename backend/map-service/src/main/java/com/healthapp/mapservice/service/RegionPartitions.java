@@ -0,0 +1,82 @@
+package com.healthapp.mapservice.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Region keys of the search_doc partitions a bounding box can touch.
+ *
+ * Mirrors {@code provider.region_key(lat, lng)} in {@code 07-search-doc-partitions.sql}: the
+ * 2-degree grid cell of a point, numbered row-major from (-90, -180), modulo 16. Every
+ * search_doc query passes the keys covering its bounds so Postgres prunes the remaining
+ * partitions. The constants must match the SQL function, or rows would be missed.
+ */
+final class RegionPartitions {
+
+    static final double CELL_DEGREES = 2.0;
+    static final int CELLS_PER_ROW = 180;
+    static final int PARTITIONS = 16;
+
+    /**
+     * Shortest length of a degree on the WGS84 ellipsoid: a degree of latitude at the equator.
+     * Converting kilometres with it can only overestimate the degrees a radius spans, so
+     * pruning may keep an extra partition but never drops one that holds a match.
+     */
+    static final double MIN_KM_PER_DEGREE = 110.57;
+
+    private RegionPartitions() {
+    }
+
+    /**
+     * Distinct region keys of every grid cell intersecting the bounds
+     */
+    static List<Integer> covering(double westLng, double southLat, double eastLng, double northLat) {
+        int minRow = row(southLat);
+        int maxRow = row(northLat);
+        int minColumn = column(westLng);
+        int maxColumn = column(eastLng);
+
+        boolean[] seen = new boolean[PARTITIONS];
+        List<Integer> keys = new ArrayList<>(PARTITIONS);
+        for (int row = minRow; row <= maxRow; row++) {
+            for (int column = minColumn; column <= maxColumn; column++) {
+                int key = Math.floorMod(row * CELLS_PER_ROW + column, PARTITIONS);
+                if (!seen[key]) {
+                    seen[key] = true;
+                    keys.add(key);
+                    if (keys.size() == PARTITIONS) {
+                        return keys;
+                    }
+                }
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Region keys of the bounding box around a circle
+     */
+    static List<Integer> coveringRadius(double lat, double lng, double radiusKm) {
+        double latDelta = radiusKm / MIN_KM_PER_DEGREE;
+        // A degree of longitude is shortest on the circle's poleward edge
+        double cosLat = Math.cos(Math.toRadians(Math.min(90, Math.abs(lat) + latDelta)));
+        double lngDelta = cosLat > 1e-6 ? radiusKm / (MIN_KM_PER_DEGREE * cosLat) : 360;
+        if (lng - lngDelta < -180 || lng + lngDelta > 180) {
+            // The circle wraps the antimeridian; geography distance would find both sides
+            return covering(-180, Math.max(-90, lat - latDelta), 180, Math.min(90, lat + latDelta));
+        }
+        return covering(
+                Math.max(-180, lng - lngDelta),
+                Math.max(-90, lat - latDelta),
+                Math.min(180, lng + lngDelta),
+                Math.min(90, lat + latDelta));
+    }
+
+    private static int row(double lat) {
+        return (int) Math.floor((lat + 90) / CELL_DEGREES);
+    }
+
+    private static int column(double lng) {
+        return (int) Math.floor((lng + 180) / CELL_DEGREES);
+    }
+}
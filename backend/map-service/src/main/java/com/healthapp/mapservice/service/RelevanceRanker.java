@@ -0,0 +1,154 @@
+package com.healthapp.mapservice.service;
+
+import com.healthapp.mapservice.config.RankingProperties;
+import com.healthapp.mapservice.dto.ProviderSearchRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Scores search results for {@code sortBy=relevance}.
+ *
+ * A location's score is a weighted sum of components in [0, 1]: proximity (halving every
+ * {@code distance-half-score-km}), verification, registration, capped experience and how
+ * well the search term matches the provider or location name. Weights come from
+ * {@link RankingProperties} and may be changed at runtime.
+ */
+@Component
+@RequiredArgsConstructor
+public class RelevanceRanker {
+
+    static final String SORT_KEY = "relevance";
+
+    private static final double EARTH_RADIUS_KM = 6371.0088;
+
+    private final RankingProperties properties;
+
+    /**
+     * Whether the request asks for relevance ordering
+     */
+    static boolean requested(ProviderSearchRequest request) {
+        return SORT_KEY.equalsIgnoreCase(request.getSortBy());
+    }
+
+    /**
+     * Fix the weights and scoring origin for one search
+     */
+    Scorer scorer(ProviderSearchRequest request) {
+        boolean hasUserLocation = request.getUserLat() != null && request.getUserLng() != null;
+        double originLat = hasUserLocation ? request.getUserLat() : (request.getNorthLat() + request.getSouthLat()) / 2;
+        double originLng = hasUserLocation ? request.getUserLng() : (request.getEastLng() + request.getWestLng()) / 2;
+        String searchTerm = request.getSearchTerm();
+        String term = searchTerm != null && !searchTerm.isBlank() ? searchTerm.trim().toLowerCase(Locale.ROOT) : null;
+        return new Scorer(properties.snapshot(), originLat, originLng, term);
+    }
+
+    /**
+     * Select one page of candidates by descending score
+     */
+    List<SearchCandidate> page(Collection<SearchCandidate> candidates, ProviderSearchRequest request) {
+        Scorer scorer = scorer(request);
+        int offset = (request.getPage() - 1) * request.getPageSize();
+        TopK<SearchCandidate> top = new TopK<>(offset + request.getPageSize());
+        for (SearchCandidate candidate : candidates) {
+            Integer experienceYears = candidate.getResponse() != null ? candidate.getResponse().getExperienceYears() : null;
+            double score = scorer.score(candidate.getLatitude(), candidate.getLongitude(), candidate.isVerified(),
+                    candidate.isRegistered(), experienceYears, candidate.getProviderNameLower(),
+                    candidate.getLocationNameLower());
+            top.offer(score, candidate.getLocationId(), candidate);
+        }
+        return top.best(offset);
+    }
+
+    /**
+     * Scoring function with weights taken from one configuration snapshot
+     */
+    static final class Scorer {
+
+        private final double distanceWeight;
+        private final double verifiedWeight;
+        private final double registeredWeight;
+        private final double experienceWeight;
+        private final double textMatchWeight;
+        private final double distanceHalfScoreKm;
+        private final int experienceCapYears;
+        private final double originLat;
+        private final double originLng;
+        private final String term;
+
+        Scorer(RankingProperties.Snapshot properties, double originLat, double originLng, String term) {
+            this.distanceWeight = properties.getDistanceWeight();
+            this.verifiedWeight = properties.getVerifiedWeight();
+            this.registeredWeight = properties.getRegisteredWeight();
+            this.experienceWeight = properties.getExperienceWeight();
+            this.textMatchWeight = properties.getTextMatchWeight();
+            this.distanceHalfScoreKm = Math.max(0.001, properties.getDistanceHalfScoreKm());
+            this.experienceCapYears = Math.max(1, properties.getExperienceCapYears());
+            this.originLat = originLat;
+            this.originLng = originLng;
+            this.term = term;
+        }
+
+        double score(double latitude, double longitude, boolean verified, boolean registered,
+                     Integer experienceYears, String providerNameLower, String locationNameLower) {
+            double score = distanceWeight / (1 + distanceKm(latitude, longitude) / distanceHalfScoreKm);
+            if (verified) {
+                score += verifiedWeight;
+            }
+            if (registered) {
+                score += registeredWeight;
+            }
+            if (experienceYears != null && experienceYears > 0) {
+                score += experienceWeight * Math.min(experienceYears, experienceCapYears) / experienceCapYears;
+            }
+            if (term != null) {
+                score += textMatchWeight * textMatch(providerNameLower, locationNameLower);
+            }
+            return score;
+        }
+
+        /**
+         * Exact provider name, then name prefix, then word prefix, then any substring;
+         * location name matches score below provider name matches
+         */
+        private double textMatch(String providerNameLower, String locationNameLower) {
+            double provider = nameMatch(providerNameLower);
+            return provider > 0 ? provider : nameMatch(locationNameLower) / 2;
+        }
+
+        private double nameMatch(String name) {
+            if (name == null) {
+                return 0;
+            }
+            if (name.equals(term)) {
+                return 1.0;
+            }
+            if (name.startsWith(term)) {
+                return 0.8;
+            }
+            int index = name.indexOf(term);
+            if (index < 0) {
+                return 0;
+            }
+            // A later occurrence may start a word even when the first does not
+            for (; index > 0; index = name.indexOf(term, index + 1)) {
+                if (!Character.isLetterOrDigit(name.charAt(index - 1))) {
+                    return 0.6;
+                }
+            }
+            return 0.4;
+        }
+
+        private double distanceKm(double latitude, double longitude) {
+            double dLat = Math.toRadians(latitude - originLat);
+            double dLng = Math.toRadians(longitude - originLng);
+            double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                    + Math.cos(Math.toRadians(originLat)) * Math.cos(Math.toRadians(latitude))
+                    * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+            return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+        }
+    }
+}
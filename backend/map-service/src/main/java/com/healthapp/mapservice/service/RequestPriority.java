@@ -0,0 +1,22 @@
+package com.healthapp.mapservice.service;
+
+/**
+ * Priority classes used by the adaptive concurrency limiter
+ */
+public enum RequestPriority {
+
+    /**
+     * Provider detail lookups; may use the full concurrency limit
+     */
+    DETAIL,
+
+    /**
+     * Bulk viewport scans; restricted to a share of the limit
+     */
+    VIEWPORT,
+
+    /**
+     * Speculative tile loads (prefetching, warming); shed first, restricted to a smaller share
+     */
+    BACKGROUND
+}
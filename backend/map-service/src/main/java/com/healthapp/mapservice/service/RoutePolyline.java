@@ -0,0 +1,335 @@
+package com.healthapp.mapservice.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A travel route as a list of (latitude, longitude) vertices.
+ *
+ * Routes arrive as encoded polylines (the Google polyline algorithm, 5 or 6 decimal places).
+ * Before querying they are thinned radially and simplified with a bounded Douglas-Peucker pass
+ * so that long routes with thousands of nearly collinear vertices become a few hundred
+ * segments, each probed on the search_doc spatial index separately. The simplified route strays from the original by up to the
+ * tolerance, so probes widen the buffer by it and matches are filtered on their distance to
+ * the original route.
+ */
+final class RoutePolyline {
+
+    private static final double EARTH_RADIUS_KM = 6371.0088;
+    // Longest length of a degree on the WGS84 ellipsoid, a degree of latitude at the poles, so
+    // vertex deviations are never underestimated
+    private static final double MAX_KM_PER_DEGREE = 111.70;
+    // Point-to-segment distances one Douglas-Peucker pass may compute, a few milliseconds of work
+    private static final long MAX_DP_EVALUATIONS = 2_000_000;
+
+    private final double[] lats;
+    private final double[] lngs;
+
+    private RoutePolyline(double[] lats, double[] lngs) {
+        this.lats = lats;
+        this.lngs = lngs;
+    }
+
+    /**
+     * Decode an encoded polyline; rejects malformed input and routes with fewer than two
+     * distinct vertices or more than {@code maxVertices}
+     */
+    static RoutePolyline decode(String encoded, int precision, int maxVertices) {
+        if (encoded == null || encoded.isEmpty()) {
+            throw new IllegalArgumentException("Polyline is required");
+        }
+        if (precision != 5 && precision != 6) {
+            throw new IllegalArgumentException("Polyline precision must be 5 or 6");
+        }
+        double factor = Math.pow(10, precision);
+        List<double[]> points = new ArrayList<>();
+        int index = 0;
+        long lat = 0;
+        long lng = 0;
+        while (index < encoded.length()) {
+            long[] delta = new long[2];
+            for (int coordinate = 0; coordinate < 2; coordinate++) {
+                long result = 0;
+                int shift = 0;
+                int chunk;
+                do {
+                    if (index >= encoded.length() || shift > 60) {
+                        throw new IllegalArgumentException("Polyline is truncated or malformed");
+                    }
+                    chunk = encoded.charAt(index++) - 63;
+                    if (chunk < 0 || chunk > 63) {
+                        throw new IllegalArgumentException("Polyline contains an invalid character");
+                    }
+                    result |= (long) (chunk & 0x1f) << shift;
+                    shift += 5;
+                } while (chunk >= 0x20);
+                delta[coordinate] = (result & 1) != 0 ? ~(result >> 1) : result >> 1;
+            }
+            lat += delta[0];
+            lng += delta[1];
+            double latitude = lat / factor;
+            double longitude = lng / factor;
+            if (latitude < -90 || latitude > 90 || longitude < -180 || longitude > 180) {
+                throw new IllegalArgumentException("Polyline has coordinates out of range");
+            }
+            double[] last = points.isEmpty() ? null : points.get(points.size() - 1);
+            if (last == null || last[0] != latitude || last[1] != longitude) {
+                if (points.size() == maxVertices) {
+                    throw new IllegalArgumentException("Polyline must not have more than " + maxVertices + " vertices");
+                }
+                points.add(new double[]{latitude, longitude});
+            }
+        }
+        if (points.size() < 2) {
+            throw new IllegalArgumentException("Polyline must have at least two distinct vertices");
+        }
+
+        double[] lats = new double[points.size()];
+        double[] lngs = new double[points.size()];
+        for (int i = 0; i < points.size(); i++) {
+            lats[i] = points.get(i)[0];
+            lngs[i] = points.get(i)[1];
+        }
+        return new RoutePolyline(lats, lngs);
+    }
+
+    int size() {
+        return lats.length;
+    }
+
+    /**
+     * Drop vertices so that none of this route ends up further than the tolerance from the
+     * result: half of it goes to a radial pass that thins runs of vertices closer than that
+     * to the last kept one, the other half to Douglas-Peucker over what remains
+     */
+    RoutePolyline simplify(double toleranceKm) {
+        return simplify(toleranceKm, MAX_DP_EVALUATIONS);
+    }
+
+    RoutePolyline simplify(double toleranceKm, long maxEvaluations) {
+        RoutePolyline thinned = thinRadially(toleranceKm / 2);
+        return thinned.retainAbove(thinned.significance(toleranceKm / 2, maxEvaluations), toleranceKm / 2);
+    }
+
+    /**
+     * Simplify with the tolerance, doubling it up to {@code maxToleranceKm} until the route has
+     * at most {@code maxVertices}. The radial pass and the Douglas-Peucker split hierarchy are
+     * computed once, at the starting tolerance; since the splits do not depend on the tolerance,
+     * each doubling only filters that hierarchy again in linear time. No vertex of this route
+     * ends up further than the returned tolerance from the simplified route.
+     *
+     * @throws IllegalArgumentException if even the maximum tolerance leaves too many vertices
+     */
+    Simplified simplify(double toleranceKm, double maxToleranceKm, int maxVertices) {
+        double tolerance = Math.min(toleranceKm, maxToleranceKm);
+        double radius = tolerance / 2;
+        RoutePolyline thinned = thinRadially(radius);
+        double[] significance = thinned.significance(tolerance - radius, MAX_DP_EVALUATIONS);
+        while (true) {
+            RoutePolyline simplified = thinned.retainAbove(significance, tolerance - radius);
+            if (simplified.size() <= maxVertices) {
+                return new Simplified(simplified, tolerance);
+            }
+            if (tolerance >= maxToleranceKm) {
+                throw new IllegalArgumentException("Route is too detailed to search with this buffer; "
+                        + "use a wider buffer or a shorter route");
+            }
+            tolerance = Math.min(tolerance * 2, maxToleranceKm);
+        }
+    }
+
+    /**
+     * Keep a vertex only once it is further than the radius from the last kept one; every
+     * dropped vertex lies within the radius of a kept vertex. Linear, so it shrinks densely
+     * sampled routes before the quadratic worst case of Douglas-Peucker.
+     */
+    private RoutePolyline thinRadially(double radiusKm) {
+        boolean[] keep = new boolean[lats.length];
+        keep[0] = true;
+        keep[lats.length - 1] = true;
+        int lastKept = 0;
+        for (int i = 1; i < lats.length - 1; i++) {
+            if (distanceKm(i, lastKept) > radiusKm) {
+                keep[i] = true;
+                lastKept = i;
+            }
+        }
+        return retain(keep);
+    }
+
+    /**
+     * Douglas-Peucker split hierarchy down to {@code minToleranceKm}: the largest tolerance at
+     * which each vertex is still kept, so Douglas-Peucker at any tolerance from the minimum up
+     * keeps exactly the vertices whose value exceeds it. After {@code maxEvaluations}
+     * point-to-segment distances the ranges not yet split keep all of their vertices for as
+     * long as the range itself exists, which bounds the work without loosening the tolerance.
+     */
+    private double[] significance(double minToleranceKm, long maxEvaluations) {
+        double[] significance = new double[lats.length];
+        significance[0] = Double.POSITIVE_INFINITY;
+        significance[lats.length - 1] = Double.POSITIVE_INFINITY;
+
+        // Iterative, so very long routes cannot overflow the stack; each range carries the
+        // largest tolerance at which Douglas-Peucker still reaches it
+        Deque<double[]> ranges = new ArrayDeque<>();
+        ranges.push(new double[]{0, lats.length - 1, Double.POSITIVE_INFINITY});
+        long evaluations = 0;
+        while (!ranges.isEmpty()) {
+            double[] range = ranges.pop();
+            int first = (int) range[0];
+            int last = (int) range[1];
+            double reached = range[2];
+            if (evaluations >= maxEvaluations) {
+                for (int i = first + 1; i < last; i++) {
+                    significance[i] = reached;
+                }
+                continue;
+            }
+            evaluations += last - first - 1;
+            double farthest = 0;
+            int split = -1;
+            for (int i = first + 1; i < last; i++) {
+                double distance = distanceToSegmentKm(i, first, last);
+                if (distance > farthest) {
+                    farthest = distance;
+                    split = i;
+                }
+            }
+            if (split >= 0 && farthest > minToleranceKm) {
+                significance[split] = Math.min(farthest, reached);
+                ranges.push(new double[]{first, split, significance[split]});
+                ranges.push(new double[]{split, last, significance[split]});
+            }
+        }
+        return significance;
+    }
+
+    private RoutePolyline retainAbove(double[] significance, double toleranceKm) {
+        boolean[] keep = new boolean[lats.length];
+        for (int i = 0; i < lats.length; i++) {
+            keep[i] = significance[i] > toleranceKm;
+        }
+        return retain(keep);
+    }
+
+    private RoutePolyline retain(boolean[] keep) {
+        int kept = 0;
+        for (boolean k : keep) {
+            if (k) {
+                kept++;
+            }
+        }
+        if (kept == lats.length) {
+            return this;
+        }
+        double[] keptLats = new double[kept];
+        double[] keptLngs = new double[kept];
+        for (int i = 0, j = 0; i < lats.length; i++) {
+            if (keep[i]) {
+                keptLats[j] = lats[i];
+                keptLngs[j++] = lngs[i];
+            }
+        }
+        return new RoutePolyline(keptLats, keptLngs);
+    }
+
+    double lengthKm() {
+        double length = 0;
+        for (int i = 1; i < lats.length; i++) {
+            length += haversineKm(lats[i - 1], lngs[i - 1], lats[i], lngs[i]);
+        }
+        return length;
+    }
+
+    /**
+     * Region keys of every segment's bounding box widened by the buffer
+     */
+    List<Integer> regions(double bufferKm) {
+        double latDelta = bufferKm / RegionPartitions.MIN_KM_PER_DEGREE;
+        boolean[] seen = new boolean[RegionPartitions.PARTITIONS];
+        List<Integer> keys = new ArrayList<>(RegionPartitions.PARTITIONS);
+        for (int i = 1; i < lats.length && keys.size() < RegionPartitions.PARTITIONS; i++) {
+            double maxAbsLat = Math.min(89.9, Math.max(Math.abs(lats[i - 1]), Math.abs(lats[i])) + latDelta);
+            double lngDelta = latDelta / Math.cos(Math.toRadians(maxAbsLat));
+            for (int key : RegionPartitions.covering(
+                    Math.max(-180, Math.min(lngs[i - 1], lngs[i]) - lngDelta),
+                    Math.max(-90, Math.min(lats[i - 1], lats[i]) - latDelta),
+                    Math.min(180, Math.max(lngs[i - 1], lngs[i]) + lngDelta),
+                    Math.min(90, Math.max(lats[i - 1], lats[i]) + latDelta))) {
+                if (!seen[key]) {
+                    seen[key] = true;
+                    keys.add(key);
+                }
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * The route as WKT in (longitude latitude) order
+     */
+    String toWkt() {
+        StringBuilder wkt = new StringBuilder(lats.length * 24).append("LINESTRING(");
+        for (int i = 0; i < lats.length; i++) {
+            if (i > 0) {
+                wkt.append(',');
+            }
+            wkt.append(String.format(Locale.ROOT, "%.6f %.6f", lngs[i], lats[i]));
+        }
+        return wkt.append(')').toString();
+    }
+
+    /**
+     * Distance between two vertices on the same projection as {@link #distanceToSegmentKm}
+     */
+    private double distanceKm(int i, int other) {
+        double cosLat = Math.cos(Math.toRadians(lats[i]));
+        return Math.hypot((lngs[i] - lngs[other]) * cosLat, lats[i] - lats[other]) * MAX_KM_PER_DEGREE;
+    }
+
+    /**
+     * Distance from vertex {@code i} to the segment between two other vertices, on a local
+     * equirectangular projection, which is accurate at corridor scale
+     */
+    private double distanceToSegmentKm(int i, int from, int to) {
+        double cosLat = Math.cos(Math.toRadians(lats[i]));
+        double ax = lngs[from] * cosLat;
+        double ay = lats[from];
+        double bx = lngs[to] * cosLat;
+        double by = lats[to];
+        double px = lngs[i] * cosLat;
+        double py = lats[i];
+
+        double dx = bx - ax;
+        double dy = by - ay;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared > 0 ? Math.max(0, Math.min(1, ((px - ax) * dx + (py - ay) * dy) / lengthSquared)) : 0;
+        return Math.hypot(px - (ax + t * dx), py - (ay + t * dy)) * MAX_KM_PER_DEGREE;
+    }
+
+    private static double haversineKm(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    /**
+     * A simplified route and the tolerance it was simplified with
+     */
+    static final class Simplified {
+
+        final RoutePolyline route;
+        final double toleranceKm;
+
+        Simplified(RoutePolyline route, double toleranceKm) {
+            this.route = route;
+            this.toleranceKm = toleranceKm;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.healthapp.mapservice.service;
+
+import com.healthapp.mapservice.dto.ProviderSearchRequest;
+import com.healthapp.mapservice.dto.ProviderSearchResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records every viewport search into {@code analytics.search_event}.
+ *
+ * The request path only appends an event to a bounded lock-free {@link EventRingBuffer}
+ * and drops it if the buffer is full. A scheduled writer drains the buffer every
+ * {@code app.map.analytics.flush-interval-ms}, normalizes the requests and inserts them in
+ * multi-row INSERT statements on the primary. Writes are skipped while the database circuit
+ * breaker is open, and a batch whose insert fails is dropped, so analytics never slows or
+ * fails a search. Drops are exported as {@code map.analytics.dropped{reason}}.
+ */
+@Component
+@Slf4j
+public class SearchAnalyticsRecorder {
+
+    public enum Source {
+        TILE_CACHE, DATABASE, STALE, FAILED
+    }
+
+    private static final String COLUMNS = "occurred_at, source, zoom, west_lng, south_lat, east_lng, north_lat, " +
+            "search_term, specialty_ids, provider_type_ids, language_ids, verified_only, registered_only, " +
+            "has_user_location, sort_by, page, page_size, include_facets, result_count, latency_ms";
+    private static final int COLUMN_COUNT = 20;
+    private static final int ROWS_PER_STATEMENT = 500;
+    private static final double COORDINATE_SCALE = 10_000;
+
+    private final DataSource dataSource;
+    private final DatabaseCircuitBreaker databaseCircuitBreaker;
+    private final EventRingBuffer<SearchEvent> buffer;
+
+    private final boolean enabled;
+    private final int batchSize;
+
+    private final Counter recorded;
+    private final Counter droppedFull;
+    private final Counter droppedFailed;
+    private final Counter written;
+
+    public SearchAnalyticsRecorder(DataSource dataSource,
+                                   DatabaseCircuitBreaker databaseCircuitBreaker,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${app.map.analytics.enabled:true}") boolean enabled,
+                                   @Value("${app.map.analytics.buffer-capacity:8192}") int bufferCapacity,
+                                   @Value("${app.map.analytics.batch-size:2000}") int batchSize) {
+        this.dataSource = dataSource;
+        this.databaseCircuitBreaker = databaseCircuitBreaker;
+        this.buffer = new EventRingBuffer<>(bufferCapacity);
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+
+        this.recorded = meterRegistry.counter("map.analytics.recorded");
+        this.droppedFull = meterRegistry.counter("map.analytics.dropped", "reason", "buffer_full");
+        this.droppedFailed = meterRegistry.counter("map.analytics.dropped", "reason", "write_failed");
+        this.written = meterRegistry.counter("map.analytics.written");
+        meterRegistry.gauge("map.analytics.buffered", buffer, EventRingBuffer::size);
+    }
+
+    /**
+     * Record a finished search; never blocks. The response is null when the search failed.
+     */
+    public void record(ProviderSearchRequest request, ProviderSearchResponse response, Source source, long startNanos) {
+        if (!enabled) {
+            return;
+        }
+        SearchEvent event = new SearchEvent(System.currentTimeMillis(), request, source,
+                response != null ? response.getTotalCount() : null, System.nanoTime() - startNanos);
+        if (buffer.offer(event)) {
+            recorded.increment();
+        } else {
+            droppedFull.increment();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.map.analytics.flush-interval-ms:1000}")
+    public void flush() {
+        if (!enabled || buffer.size() == 0 || databaseCircuitBreaker.isOpen()) {
+            return;
+        }
+        List<SearchEvent> batch = new ArrayList<>(Math.min(batchSize, buffer.capacity()));
+        // At most one buffer's worth per flush, so a steady stream cannot pin the writer
+        int remaining = buffer.capacity();
+        while (remaining > 0 && buffer.drainTo(batch, Math.min(batchSize, remaining)) > 0) {
+            remaining -= batch.size();
+            try {
+                insert(batch);
+                written.increment(batch.size());
+            } catch (Exception e) {
+                droppedFailed.increment(batch.size());
+                log.warn("Dropped {} search analytics events: {}", batch.size(), e.getMessage());
+                return;
+            }
+            batch.clear();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private void insert(List<SearchEvent> events) throws SQLException {
+        // Outside a read-only transaction, so the router sends it to the primary
+        try (Connection connection = dataSource.getConnection()) {
+            for (int from = 0; from < events.size(); from += ROWS_PER_STATEMENT) {
+                List<SearchEvent> chunk = events.subList(from, Math.min(events.size(), from + ROWS_PER_STATEMENT));
+                try (PreparedStatement statement = connection.prepareStatement(insertSql(chunk.size()))) {
+                    int parameter = 1;
+                    for (SearchEvent event : chunk) {
+                        parameter = bind(statement, parameter, event, connection);
+                    }
+                    statement.executeUpdate();
+                }
+            }
+        }
+    }
+
+    private static String insertSql(int rows) {
+        String row = "(" + "?, ".repeat(COLUMN_COUNT - 1) + "?)";
+        StringBuilder sql = new StringBuilder("INSERT INTO analytics.search_event (")
+                .append(COLUMNS).append(") VALUES ");
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(row);
+        }
+        return sql.toString();
+    }
+
+    private static int bind(PreparedStatement statement, int parameter, SearchEvent event, Connection connection)
+            throws SQLException {
+        ProviderSearchRequest request = event.request;
+        String searchTerm = request.getSearchTerm() != null ? request.getSearchTerm().trim().toLowerCase(Locale.ROOT) : null;
+        String sortBy = request.getSortBy() != null ? request.getSortBy().trim().toLowerCase(Locale.ROOT) : null;
+
+        statement.setTimestamp(parameter++, new Timestamp(event.occurredAtMillis));
+        statement.setString(parameter++, event.source.name().toLowerCase(Locale.ROOT));
+        statement.setInt(parameter++, TileKey.zoomFor(
+                request.getWestLng(), request.getSouthLat(), request.getEastLng(), request.getNorthLat()));
+        statement.setDouble(parameter++, round(request.getWestLng()));
+        statement.setDouble(parameter++, round(request.getSouthLat()));
+        statement.setDouble(parameter++, round(request.getEastLng()));
+        statement.setDouble(parameter++, round(request.getNorthLat()));
+        statement.setString(parameter++, searchTerm == null || searchTerm.isEmpty() ? null : searchTerm);
+        statement.setArray(parameter++, connection.createArrayOf("integer", normalized(request.getSpecialtyIds())));
+        statement.setArray(parameter++, connection.createArrayOf("integer", normalized(request.getProviderTypeIds())));
+        statement.setArray(parameter++, connection.createArrayOf("integer", normalized(request.getLanguageIds())));
+        statement.setBoolean(parameter++, Boolean.TRUE.equals(request.getIsVerifiedOnly()));
+        statement.setBoolean(parameter++, Boolean.TRUE.equals(request.getIsRegisteredOnly()));
+        statement.setBoolean(parameter++, request.getUserLat() != null && request.getUserLng() != null);
+        statement.setString(parameter++, sortBy);
+        setInteger(statement, parameter++, request.getPage());
+        setInteger(statement, parameter++, request.getPageSize());
+        statement.setBoolean(parameter++, Boolean.TRUE.equals(request.getIncludeFacets()));
+        if (event.resultCount != null) {
+            statement.setLong(parameter++, event.resultCount);
+        } else {
+            statement.setNull(parameter++, Types.BIGINT);
+        }
+        statement.setFloat(parameter++, event.latencyNanos / (float) TimeUnit.MILLISECONDS.toNanos(1));
+        return parameter;
+    }
+
+    private static void setInteger(PreparedStatement statement, int parameter, Integer value) throws SQLException {
+        if (value != null) {
+            statement.setInt(parameter, value);
+        } else {
+            statement.setNull(parameter, Types.INTEGER);
+        }
+    }
+
+    private static double round(Double coordinate) {
+        return coordinate != null ? Math.round(coordinate * COORDINATE_SCALE) / COORDINATE_SCALE : 0;
+    }
+
+    private static Integer[] normalized(Collection<Integer> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return new Integer[0];
+        }
+        TreeSet<Integer> sorted = new TreeSet<>();
+        for (Integer id : ids) {
+            if (id != null) {
+                sorted.add(id);
+            }
+        }
+        return sorted.toArray(new Integer[0]);
+    }
+
+    private static final class SearchEvent {
+
+        final long occurredAtMillis;
+        final ProviderSearchRequest request;
+        final Source source;
+        final Long resultCount;
+        final long latencyNanos;
+
+        SearchEvent(long occurredAtMillis, ProviderSearchRequest request, Source source,
+                    Long resultCount, long latencyNanos) {
+            this.occurredAtMillis = occurredAtMillis;
+            this.request = request;
+            this.source = source;
+            this.resultCount = resultCount;
+            this.latencyNanos = latencyNanos;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.healthapp.mapservice.service;
+
+import com.healthapp.mapservice.dto.ProviderResponse;
+import com.healthapp.mapservice.model.Language;
+import com.healthapp.mapservice.model.Provider;
+import com.healthapp.mapservice.model.ProviderLocation;
+import com.healthapp.mapservice.model.Specialty;
+import lombok.Value;
+
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * A provider location held in memory together with the attributes search filters need.
+ * The pre-built response is shared by every search that returns this location.
+ */
+@Value
+public class SearchCandidate {
+
+    long locationId;
+    long providerId;
+    double latitude;
+    double longitude;
+    Integer providerTypeId;
+    Set<Integer> specialtyIds;
+    Set<Integer> languageIds;
+    boolean verified;
+    boolean registered;
+    String providerName;
+    String providerNameLower;
+    String locationNameLower;
+    ProviderResponse response;
+
+    /**
+     * Build a candidate from a location whose provider, specialties and languages are loaded
+     */
+    public static SearchCandidate of(ProviderLocation location, ProviderResponse response) {
+        Provider provider = location.getProvider();
+        return new SearchCandidate(
+                location.getId(),
+                provider.getId(),
+                location.getLatitude(),
+                location.getLongitude(),
+                provider.getProviderTypeId(),
+                provider.getSpecialties().stream().map(Specialty::getId).collect(Collectors.toUnmodifiableSet()),
+                provider.getLanguages().stream().map(Language::getId).collect(Collectors.toUnmodifiableSet()),
+                Boolean.TRUE.equals(provider.getIsVerified()),
+                Boolean.TRUE.equals(provider.getIsRegisteredUser()),
+                provider.getName(),
+                provider.getName() != null ? provider.getName().toLowerCase(Locale.ROOT) : "",
+                location.getName() != null ? location.getName().toLowerCase(Locale.ROOT) : "",
+                response
+        );
+    }
+
+    public boolean isWithin(double westLng, double southLat, double eastLng, double northLat) {
+        return latitude >= southLat && latitude <= northLat && longitude >= westLng && longitude <= eastLng;
+    }
+}
@@ -0,0 +1,79 @@
+package com.healthapp.mapservice.service;
+
+import com.healthapp.mapservice.model.ProviderLocation;
+import com.healthapp.mapservice.repository.ProviderLocationRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Loads locations, by bounding box or by ID, as in-memory search candidates.
+ * Callers are responsible for running it inside a read-only transaction.
+ */
+@Component
+@RequiredArgsConstructor
+public class SearchCandidateLoader {
+
+    // Keeps the IN list of each details query well below the JDBC bind parameter limit
+    private static final int ID_BATCH_SIZE = 1000;
+
+    private final ProviderLocationRepository providerLocationRepository;
+    private final ProviderResponseMapper providerResponseMapper;
+
+    /**
+     * Load the locations inside the bounds. IDs come from the region partitions of search_doc
+     * covering the bounds; details are then loaded in batches.
+     */
+    public List<SearchCandidate> loadInBounds(double westLng, double southLat, double eastLng, double northLat) {
+        return loadByIdsInBatches(providerLocationRepository.findSearchDocLocationIdsInBounds(
+                westLng, southLat, eastLng, northLat,
+                RegionPartitions.covering(westLng, southLat, eastLng, northLat)));
+    }
+
+    /**
+     * Load the locations inside the bounds unless there are more than {@code maxRows};
+     * returns null in that case without loading any details
+     */
+    public List<SearchCandidate> loadInBounds(double westLng, double southLat, double eastLng, double northLat,
+                                              int maxRows) {
+        List<Long> locationIds = providerLocationRepository.findSearchDocLocationIdsInBoundsLimited(
+                westLng, southLat, eastLng, northLat,
+                RegionPartitions.covering(westLng, southLat, eastLng, northLat), maxRows + 1);
+        return locationIds.size() > maxRows ? null : loadByIdsInBatches(locationIds);
+    }
+
+    private List<SearchCandidate> loadByIdsInBatches(List<Long> locationIds) {
+        List<SearchCandidate> candidates = new ArrayList<>(locationIds.size());
+        for (int from = 0; from < locationIds.size(); from += ID_BATCH_SIZE) {
+            candidates.addAll(loadByIds(locationIds.subList(from, Math.min(from + ID_BATCH_SIZE, locationIds.size()))));
+        }
+        return candidates;
+    }
+
+    public List<SearchCandidate> loadByIds(Collection<Long> locationIds) {
+        return toCandidates(providerLocationRepository.findAllByIdWithDetails(locationIds));
+    }
+
+    /**
+     * Load every location of the given providers, in batches of provider IDs
+     */
+    public List<SearchCandidate> loadByProviderIds(List<Long> providerIds) {
+        List<SearchCandidate> candidates = new ArrayList<>();
+        for (int from = 0; from < providerIds.size(); from += ID_BATCH_SIZE) {
+            candidates.addAll(toCandidates(providerLocationRepository.findAllByProviderIdWithDetails(
+                    providerIds.subList(from, Math.min(from + ID_BATCH_SIZE, providerIds.size())))));
+        }
+        return candidates;
+    }
+
+    private List<SearchCandidate> toCandidates(List<ProviderLocation> locations) {
+        List<SearchCandidate> candidates = new ArrayList<>(locations.size());
+        for (ProviderLocation location : locations) {
+            candidates.add(SearchCandidate.of(location, providerResponseMapper.toProviderResponse(location)));
+        }
+        return candidates;
+    }
+}
@@ -0,0 +1,32 @@
+package com.healthapp.mapservice.service;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Outcome of planning a viewport search: the chosen strategy and the estimates behind it
+ */
+@Value
+@Builder
+public class SearchPlan {
+
+    SearchStrategy strategy;
+
+    /**
+     * Estimated locations inside the viewport before filtering
+     */
+    double estimatedSpatialRows;
+
+    /**
+     * Estimated rows the chosen strategy has to visit
+     */
+    double estimatedCandidateRows;
+
+    public static SearchPlan spatialFirst(double estimatedSpatialRows) {
+        return SearchPlan.builder()
+                .strategy(SearchStrategy.SPATIAL_FIRST)
+                .estimatedSpatialRows(estimatedSpatialRows)
+                .estimatedCandidateRows(estimatedSpatialRows)
+                .build();
+    }
+}
@@ -0,0 +1,247 @@
+package com.healthapp.mapservice.service;
+
+import com.healthapp.mapservice.dto.ProviderSearchRequest;
+import com.healthapp.mapservice.repository.ProviderLocationRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Chooses an execution strategy for each viewport search.
+ *
+ * Selectivity is estimated from statistics cached in memory and refreshed on a schedule:
+ * location counts per one-degree grid cell, provider counts per specialty and language,
+ * and the average number of locations per provider. The cheapest strategy wins, but
+ * filter-first and text-first plans are only used when their candidate set fits within
+ * {@code app.map.planner.max-candidates}, since the candidates are bound as an IN list.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SearchQueryPlanner {
+
+    private static final int MIN_TRIGRAM_TERM_LENGTH = 3;
+
+    private final ProviderLocationRepository providerLocationRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.map.planner.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.map.planner.max-candidates:5000}")
+    private int maxCandidates;
+
+    @Value("${app.map.planner.text-selectivity:0.01}")
+    private double textSelectivity;
+
+    @Value("${app.map.planner.min-advantage:2.0}")
+    private double minAdvantage;
+
+    private volatile Statistics statistics = Statistics.EMPTY;
+
+    /**
+     * Plan a search request. Falls back to spatial-first when statistics are unavailable.
+     */
+    public SearchPlan plan(ProviderSearchRequest request) {
+        Statistics stats = statistics;
+        double spatialRows = stats.estimateViewportRows(
+                request.getWestLng(), request.getSouthLat(), request.getEastLng(), request.getNorthLat());
+
+        SearchPlan plan = SearchPlan.spatialFirst(spatialRows);
+        if (enabled && stats.totalLocations > 0) {
+            // Candidates are bound as provider IDs but scanned as locations
+            double filterProviders = estimateFilterProviders(request, stats);
+            double textProviders = estimateTextProviders(request, stats);
+            double filterRows = filterProviders * stats.locationsPerProvider();
+            double textRows = textProviders * stats.locationsPerProvider();
+
+            if (filterRows <= textRows && isWorthSwitching(filterProviders, filterRows, spatialRows)) {
+                plan = plan(SearchStrategy.FILTER_FIRST, spatialRows, filterRows);
+            } else if (isWorthSwitching(textProviders, textRows, spatialRows)) {
+                plan = plan(SearchStrategy.TEXT_FIRST, spatialRows, textRows);
+            }
+        }
+
+        record(plan);
+        return plan;
+    }
+
+    /**
+     * Estimated number of locations inside the bounds, or 0 when statistics are unavailable
+     */
+    public double estimateViewportRows(double westLng, double southLat, double eastLng, double northLat) {
+        return statistics.estimateViewportRows(westLng, southLat, eastLng, northLat);
+    }
+
+    /**
+     * Whether statistics have been loaded; row estimates are 0 until then
+     */
+    public boolean hasStatistics() {
+        return statistics.totalLocations > 0;
+    }
+
+    /**
+     * Maximum number of candidate providers a filter-first or text-first plan may bind
+     */
+    public int getMaxCandidates() {
+        return maxCandidates;
+    }
+
+    /**
+     * Refresh cached statistics once the application is ready
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        refreshStatistics();
+    }
+
+    /**
+     * Periodically refresh cached planner statistics
+     */
+    @Scheduled(
+            initialDelayString = "${app.map.planner.stats-refresh-ms:300000}",
+            fixedDelayString = "${app.map.planner.stats-refresh-ms:300000}")
+    public void refreshStatistics() {
+        try {
+            Map<Long, Long> gridCounts = new HashMap<>();
+            long totalLocations = 0;
+            for (Object[] row : providerLocationRepository.countLocationsByGridCell()) {
+                long count = ((Number) row[2]).longValue();
+                gridCounts.put(cellKey(((Number) row[0]).intValue(), ((Number) row[1]).intValue()), count);
+                totalLocations += count;
+            }
+
+            Long providers = providerLocationRepository.countProvidersWithLocations();
+            long totalProviders = providers != null ? providers : 0;
+
+            statistics = new Statistics(
+                    gridCounts,
+                    toCountMap(providerLocationRepository.countProvidersBySpecialty()),
+                    toCountMap(providerLocationRepository.countProvidersByLanguage()),
+                    totalLocations,
+                    totalProviders);
+
+            log.debug("Refreshed planner statistics: {} locations, {} providers, {} grid cells",
+                    totalLocations, totalProviders, gridCounts.size());
+        } catch (Exception e) {
+            log.warn("Failed to refresh planner statistics, keeping previous snapshot: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Estimated number of providers passing the most selective specialty or language filter
+     */
+    private double estimateFilterProviders(ProviderSearchRequest request, Statistics stats) {
+        double providers = Double.POSITIVE_INFINITY;
+        Integer specialtyId = request.firstSpecialtyId();
+        if (specialtyId != null) {
+            providers = Math.min(providers, stats.specialtyCounts.getOrDefault(specialtyId, 0L));
+        }
+        Integer languageId = request.firstLanguageId();
+        if (languageId != null) {
+            providers = Math.min(providers, stats.languageCounts.getOrDefault(languageId, 0L));
+        }
+        return providers;
+    }
+
+    /**
+     * Estimated number of providers matching the search term
+     */
+    private double estimateTextProviders(ProviderSearchRequest request, Statistics stats) {
+        String searchTerm = request.getSearchTerm();
+        if (searchTerm == null || searchTerm.trim().length() < MIN_TRIGRAM_TERM_LENGTH) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return stats.totalProviders * textSelectivity;
+    }
+
+    /**
+     * The candidate providers must fit the IN list, and their locations must be clearly fewer
+     * than the viewport's
+     */
+    private boolean isWorthSwitching(double candidateProviders, double candidateRows, double spatialRows) {
+        return candidateProviders <= maxCandidates && candidateRows * minAdvantage < spatialRows;
+    }
+
+    private SearchPlan plan(SearchStrategy strategy, double spatialRows, double candidateRows) {
+        return SearchPlan.builder()
+                .strategy(strategy)
+                .estimatedSpatialRows(spatialRows)
+                .estimatedCandidateRows(candidateRows)
+                .build();
+    }
+
+    private void record(SearchPlan plan) {
+        String strategy = plan.getStrategy().name().toLowerCase();
+        meterRegistry.counter("map.search.plan", "strategy", strategy).increment();
+        meterRegistry.summary("map.search.plan.estimated.rows", "strategy", strategy)
+                .record(plan.getEstimatedCandidateRows());
+    }
+
+    private static Map<Integer, Long> toCountMap(List<Object[]> rows) {
+        Map<Integer, Long> counts = new HashMap<>();
+        for (Object[] row : rows) {
+            counts.put(((Number) row[0]).intValue(), ((Number) row[1]).longValue());
+        }
+        return counts;
+    }
+
+    private static long cellKey(int latCell, int lngCell) {
+        return ((long) latCell << 32) | (lngCell & 0xffffffffL);
+    }
+
+    /**
+     * Immutable snapshot of planner statistics
+     */
+    private static final class Statistics {
+
+        static final Statistics EMPTY = new Statistics(
+                Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap(), 0, 0);
+
+        final Map<Long, Long> gridCounts;
+        final Map<Integer, Long> specialtyCounts;
+        final Map<Integer, Long> languageCounts;
+        final long totalLocations;
+        final long totalProviders;
+
+        Statistics(Map<Long, Long> gridCounts, Map<Integer, Long> specialtyCounts,
+                   Map<Integer, Long> languageCounts, long totalLocations, long totalProviders) {
+            this.gridCounts = gridCounts;
+            this.specialtyCounts = specialtyCounts;
+            this.languageCounts = languageCounts;
+            this.totalLocations = totalLocations;
+            this.totalProviders = totalProviders;
+        }
+
+        double locationsPerProvider() {
+            return totalProviders > 0 ? (double) totalLocations / totalProviders : 1.0;
+        }
+
+        /**
+         * Sum grid cell counts weighted by the fraction of each cell covered by the viewport
+         */
+        double estimateViewportRows(double westLng, double southLat, double eastLng, double northLat) {
+            double rows = 0;
+            for (Map.Entry<Long, Long> cell : gridCounts.entrySet()) {
+                int latCell = (int) (cell.getKey() >> 32);
+                int lngCell = (int) (long) cell.getKey();
+                double latOverlap = Math.min(northLat, latCell + 1) - Math.max(southLat, latCell);
+                double lngOverlap = Math.min(eastLng, lngCell + 1) - Math.max(westLng, lngCell);
+                if (latOverlap > 0 && lngOverlap > 0) {
+                    rows += cell.getValue() * latOverlap * lngOverlap;
+                }
+            }
+            return rows;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.healthapp.mapservice.service;
+
+import com.healthapp.mapservice.dto.ProviderSearchResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight coalescing of identical concurrent searches.
+ *
+ * The first caller for a {@link SearchRequestKey} runs the search on its own thread and
+ * publishes the result; callers arriving while it is in flight wait for that result until
+ * the leader's own deadline, the statement timeout plus {@code app.map.coalescing.wait-margin-ms}
+ * from when it started, so a slow database does not turn every follower into a query.
+ * If the leader fails transiently or is shed, followers retry once through a new coalesced
+ * round rather than inheriting one caller's failure; other failures are rethrown to the
+ * group. Only a follower whose leader overruns its deadline runs its own search, so equal
+ * keys can still get responses read at different moments.
+ */
+@Component
+@Slf4j
+public class SearchRequestCoalescer {
+
+    private final ConcurrentMap<SearchRequestKey, InFlight> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter leaders;
+    private final Counter followers;
+    private final Counter timeouts;
+    private final Counter leaderFailures;
+    private final Counter retries;
+
+    @Value("${app.map.coalescing.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.map.breaker.query-timeout-seconds:5}")
+    private int queryTimeoutSeconds;
+
+    @Value("${app.map.coalescing.wait-margin-ms:500}")
+    private long waitMarginMs;
+
+    public SearchRequestCoalescer(MeterRegistry meterRegistry) {
+        this.leaders = meterRegistry.counter("map.search.coalesce.leaders");
+        this.followers = meterRegistry.counter("map.search.coalesce.saved");
+        this.timeouts = meterRegistry.counter("map.search.coalesce.fallback", "reason", "timeout");
+        this.leaderFailures = meterRegistry.counter("map.search.coalesce.failures");
+        this.retries = meterRegistry.counter("map.search.coalesce.retries");
+        meterRegistry.gauge("map.search.coalesce.inflight", inFlight, ConcurrentMap::size);
+        meterRegistry.gauge("map.search.coalesce.rate", this, SearchRequestCoalescer::coalesceRate);
+    }
+
+    /**
+     * Run the search, sharing the result with identical searches already in flight
+     */
+    public ProviderSearchResponse execute(SearchRequestKey key, Supplier<ProviderSearchResponse> search) {
+        if (!enabled) {
+            return search.get();
+        }
+        return execute(key, search, true);
+    }
+
+    private ProviderSearchResponse execute(SearchRequestKey key, Supplier<ProviderSearchResponse> search,
+                                           boolean retryLeaderFailure) {
+        InFlight pending = new InFlight(System.nanoTime()
+                + TimeUnit.SECONDS.toNanos(queryTimeoutSeconds) + TimeUnit.MILLISECONDS.toNanos(waitMarginMs));
+        InFlight existing = inFlight.putIfAbsent(key, pending);
+        if (existing == null) {
+            return lead(key, pending, search);
+        }
+
+        try {
+            long waitNanos = Math.max(0, existing.deadlineNanos - System.nanoTime());
+            ProviderSearchResponse response = existing.result.get(waitNanos, TimeUnit.NANOSECONDS);
+            followers.increment();
+            return response;
+        } catch (TimeoutException e) {
+            timeouts.increment();
+            log.debug("Coalesced search overran its deadline, searching independently");
+        } catch (ExecutionException e) {
+            leaderFailures.increment();
+            Throwable cause = e.getCause();
+            if (retryLeaderFailure && isRetryable(cause)) {
+                retries.increment();
+                return execute(key, search, false);
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("Coalesced search failed", cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for coalesced search", e);
+        }
+        return search.get();
+    }
+
+    private ProviderSearchResponse lead(SearchRequestKey key, InFlight pending, Supplier<ProviderSearchResponse> search) {
+        leaders.increment();
+        try {
+            ProviderSearchResponse response = search.get();
+            pending.result.complete(response);
+            return response;
+        } catch (Throwable t) {
+            pending.result.completeExceptionally(t);
+            throw t;
+        } finally {
+            inFlight.remove(key, pending);
+        }
+    }
+
+    private static boolean isRetryable(Throwable cause) {
+        return cause instanceof ServiceOverloadedException || DatabaseCircuitBreaker.isTransientFailure(cause);
+    }
+
+    private double coalesceRate() {
+        double total = leaders.count() + followers.count();
+        return total > 0 ? followers.count() / total : 0.0;
+    }
+
+    private static final class InFlight {
+        final CompletableFuture<ProviderSearchResponse> result = new CompletableFuture<>();
+        final long deadlineNanos;
+
+        InFlight(long deadlineNanos) {
+            this.deadlineNanos = deadlineNanos;
+        }
+    }
+}
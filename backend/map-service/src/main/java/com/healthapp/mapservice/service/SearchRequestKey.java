@@ -0,0 +1,81 @@
+package com.healthapp.mapservice.service;
+
+import com.healthapp.mapservice.dto.ProviderSearchRequest;
+import lombok.Value;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Normalized identity of a viewport search.
+ *
+ * Two requests with equal keys ask for the same response: coordinates are rounded to
+ * six decimal places, the search term is lower-cased (matching is case-insensitive)
+ * and null or empty filters collapse to the same value. Filter list order is kept
+ * because the search only applies the first ID of each list.
+ */
+@Value
+public class SearchRequestKey {
+
+    private static final double COORDINATE_SCALE = 1_000_000d;
+
+    long northLat;
+    long southLat;
+    long eastLng;
+    long westLng;
+    String searchTerm;
+    List<Integer> specialtyIds;
+    List<Integer> providerTypeIds;
+    List<Integer> languageIds;
+    boolean verifiedOnly;
+    boolean registeredOnly;
+    int page;
+    int pageSize;
+    Long userLat;
+    Long userLng;
+    String sortBy;
+    String sortDirection;
+    boolean includeFacets;
+    int facetLimit;
+    boolean fuzzy;
+
+    public static SearchRequestKey of(ProviderSearchRequest request) {
+        return new SearchRequestKey(
+                round(request.getNorthLat()),
+                round(request.getSouthLat()),
+                round(request.getEastLng()),
+                round(request.getWestLng()),
+                normalizeTerm(request.getSearchTerm()),
+                normalizeIds(request.getSpecialtyIds()),
+                normalizeIds(request.getProviderTypeIds()),
+                normalizeIds(request.getLanguageIds()),
+                Boolean.TRUE.equals(request.getIsVerifiedOnly()),
+                Boolean.TRUE.equals(request.getIsRegisteredOnly()),
+                request.getPage() != null ? request.getPage() : 1,
+                request.getPageSize() != null ? request.getPageSize() : 20,
+                request.getUserLat() != null ? round(request.getUserLat()) : null,
+                request.getUserLng() != null ? round(request.getUserLng()) : null,
+                request.getSortBy() != null ? request.getSortBy().toLowerCase() : null,
+                request.getSortDirection() != null ? request.getSortDirection().toLowerCase() : null,
+                CandidateSearch.includesFacets(request),
+                CandidateSearch.includesFacets(request) ? CandidateSearch.facetLimit(request) : 0,
+                Boolean.TRUE.equals(request.getFuzzy())
+        );
+    }
+
+    private static long round(double coordinate) {
+        return Math.round(coordinate * COORDINATE_SCALE);
+    }
+
+    private static String normalizeTerm(String searchTerm) {
+        if (searchTerm == null || searchTerm.isEmpty()) {
+            return null;
+        }
+        return searchTerm.toLowerCase();
+    }
+
+    private static List<Integer> normalizeIds(List<Integer> ids) {
+        return ids == null || ids.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(new ArrayList<>(ids));
+    }
+}
@@ -0,0 +1,419 @@
+package com.healthapp.mapservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.healthapp.mapservice.dto.ProviderResponse;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Read-only, memory-mapped snapshot of the search dataset.
+ *
+ * File layout (version 1, big-endian), one row per location, rows sorted by latitude:
+ * <pre>
+ *   header (64 bytes)   magic, version, createdAt, watermark, rowCount,
+ *                       specialtyValueCount, languageValueCount, displayBytes
+ *   double[rows]        latitude
+ *   double[rows]        longitude
+ *   long[rows]          location ID
+ *   long[rows]          provider ID
+ *   int[rows]           provider type ID (-1 when absent)
+ *   byte[rows]          flags (bit 0 verified, bit 1 registered)
+ *   int[rows + 1]       specialty offsets, followed by int[] specialty IDs
+ *   int[rows + 1]       language offsets, followed by int[] language IDs
+ *   long[rows + 1]      display offsets, followed by UTF-8 JSON of each ProviderResponse
+ * </pre>
+ * Variable-length sections start on 8-byte boundaries. The watermark is the latest
+ * {@code updated_at} seen when the snapshot was taken; newer changes are caught up from
+ * the database. A single mapping limits snapshots to 2 GB.
+ */
+public final class SearchSnapshot {
+
+    static final int MAGIC = 0x50465353;
+    static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+
+    private static final byte FLAG_VERIFIED = 1;
+    private static final byte FLAG_REGISTERED = 2;
+
+    private final MappedByteBuffer buffer;
+    private final long createdAtMillis;
+    private final long watermarkMillis;
+    private final int rowCount;
+    private final Layout layout;
+
+    private SearchSnapshot(MappedByteBuffer buffer) {
+        if (buffer.capacity() < HEADER_BYTES) {
+            throw new IllegalStateException("Search snapshot is truncated or corrupt");
+        }
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IllegalStateException("Not a search snapshot file");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IllegalStateException("Unsupported search snapshot version " + buffer.getInt(4));
+        }
+        this.buffer = buffer;
+        this.createdAtMillis = buffer.getLong(8);
+        this.watermarkMillis = buffer.getLong(16);
+        this.rowCount = buffer.getInt(24);
+        this.layout = new Layout(rowCount, buffer.getInt(28), buffer.getInt(32), buffer.getLong(40));
+        if (rowCount < 0 || buffer.getInt(28) < 0 || buffer.getInt(32) < 0 || buffer.getLong(40) < 0
+                || layout.totalBytes != buffer.capacity()) {
+            throw new IllegalStateException("Search snapshot is truncated or corrupt");
+        }
+    }
+
+    /**
+     * Map a snapshot file into memory
+     */
+    public static SearchSnapshot open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new SearchSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public long getCreatedAtMillis() {
+        return createdAtMillis;
+    }
+
+    public long getWatermarkMillis() {
+        return watermarkMillis;
+    }
+
+    /**
+     * Decode the rows inside the bounds, skipping any location in {@code excludedLocationIds}
+     */
+    public List<SearchCandidate> candidatesInBounds(double westLng, double southLat, double eastLng, double northLat,
+                                                    Set<Long> excludedLocationIds, ObjectMapper objectMapper)
+            throws IOException {
+        List<SearchCandidate> candidates = new ArrayList<>();
+        for (int row = firstRowAtOrAbove(southLat); row < rowCount; row++) {
+            double latitude = doubleAt(layout.latitudes + row * 8L);
+            if (latitude > northLat) {
+                break;
+            }
+            double longitude = doubleAt(layout.longitudes + row * 8L);
+            if (longitude < westLng || longitude > eastLng) {
+                continue;
+            }
+            long locationId = longAt(layout.locationIds + row * 8L);
+            if (!excludedLocationIds.contains(locationId)) {
+                candidates.add(decode(row, latitude, longitude, locationId, objectMapper));
+            }
+        }
+        return candidates;
+    }
+
+    private int firstRowAtOrAbove(double latitude) {
+        int low = 0;
+        int high = rowCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (doubleAt(layout.latitudes + mid * 8L) < latitude) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private SearchCandidate decode(int row, double latitude, double longitude, long locationId,
+                                   ObjectMapper objectMapper) throws IOException {
+        int providerTypeId = intAt(layout.providerTypeIds + row * 4L);
+        byte flags = buffer.get((int) (layout.flags + row));
+
+        long displayStart = longAt(layout.displayOffsets + row * 8L);
+        long displayEnd = longAt(layout.displayOffsets + (row + 1) * 8L);
+        byte[] display = new byte[(int) (displayEnd - displayStart)];
+        buffer.get((int) (layout.display + displayStart), display);
+        ProviderResponse response = objectMapper.readValue(display, ProviderResponse.class);
+        // Rows changed after the watermark are overlaid from the database, so it versions every row here
+        response.setVersion(watermarkMillis);
+
+        String locationName = response.getLocations() != null && !response.getLocations().isEmpty()
+                ? response.getLocations().get(0).getName()
+                : null;
+
+        return new SearchCandidate(
+                locationId,
+                longAt(layout.providerIds + row * 8L),
+                latitude,
+                longitude,
+                providerTypeId >= 0 ? providerTypeId : null,
+                readIds(layout.specialtyOffsets, layout.specialtyValues, row),
+                readIds(layout.languageOffsets, layout.languageValues, row),
+                (flags & FLAG_VERIFIED) != 0,
+                (flags & FLAG_REGISTERED) != 0,
+                response.getName(),
+                response.getName() != null ? response.getName().toLowerCase(Locale.ROOT) : "",
+                locationName != null ? locationName.toLowerCase(Locale.ROOT) : "",
+                response
+        );
+    }
+
+    private Set<Integer> readIds(long offsets, long values, int row) {
+        int start = intAt(offsets + row * 4L);
+        int end = intAt(offsets + (row + 1) * 4L);
+        Set<Integer> ids = new HashSet<>(end - start);
+        for (int i = start; i < end; i++) {
+            ids.add(intAt(values + i * 4L));
+        }
+        return Set.copyOf(ids);
+    }
+
+    // Mapped files are capped at 2 GB, so every offset fits in an int
+    private double doubleAt(long offset) {
+        return buffer.getDouble((int) offset);
+    }
+
+    private long longAt(long offset) {
+        return buffer.getLong((int) offset);
+    }
+
+    private int intAt(long offset) {
+        return buffer.getInt((int) offset);
+    }
+
+    /**
+     * Create a writer that spools display fields to a temporary file next to the target
+     */
+    public static Writer writer(Path target, ObjectMapper objectMapper) throws IOException {
+        return new Writer(target, objectMapper);
+    }
+
+    /**
+     * Builds a snapshot file. Per-row metadata is kept in memory so rows can be sorted by
+     * latitude; display JSON is spooled to disk and copied in sorted order.
+     */
+    public static final class Writer implements AutoCloseable {
+
+        private final Path target;
+        private final Path spool;
+        private final ObjectMapper objectMapper;
+        private final OutputStream spoolOut;
+        private final List<Row> rows = new ArrayList<>();
+        private long spoolBytes;
+        private int specialtyValueCount;
+        private int languageValueCount;
+
+        private Writer(Path target, ObjectMapper objectMapper) throws IOException {
+            this.target = target;
+            this.objectMapper = objectMapper;
+            Path directory = target.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            this.spool = Files.createTempFile(directory, "search-snapshot", ".spool");
+            this.spoolOut = new BufferedOutputStream(Files.newOutputStream(spool));
+        }
+
+        public void add(SearchCandidate candidate) throws IOException {
+            byte[] display = objectMapper.writeValueAsBytes(candidate.getResponse());
+            spoolOut.write(display);
+
+            int[] specialties = candidate.getSpecialtyIds().stream().mapToInt(Integer::intValue).sorted().toArray();
+            int[] languages = candidate.getLanguageIds().stream().mapToInt(Integer::intValue).sorted().toArray();
+            byte flags = (byte) ((candidate.isVerified() ? FLAG_VERIFIED : 0)
+                    | (candidate.isRegistered() ? FLAG_REGISTERED : 0));
+
+            rows.add(new Row(candidate.getLatitude(), candidate.getLongitude(), candidate.getLocationId(),
+                    candidate.getProviderId(),
+                    candidate.getProviderTypeId() != null ? candidate.getProviderTypeId() : -1,
+                    flags, specialties, languages, spoolBytes, display.length));
+            spoolBytes += display.length;
+            specialtyValueCount += specialties.length;
+            languageValueCount += languages.length;
+        }
+
+        /**
+         * Write the snapshot atomically to the target path
+         */
+        public void finish(long watermarkMillis) throws IOException {
+            spoolOut.close();
+            rows.sort(Comparator.comparingDouble((Row row) -> row.latitude).thenComparingLong(row -> row.locationId));
+
+            int n = rows.size();
+            Layout layout = new Layout(n, specialtyValueCount, languageValueCount, spoolBytes);
+            if (layout.totalBytes > Integer.MAX_VALUE) {
+                throw new IOException("Search snapshot would exceed 2 GB");
+            }
+
+            Path partial = target.resolveSibling(target.getFileName() + ".partial");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(partial), 1 << 16));
+                 FileChannel spoolChannel = FileChannel.open(spool, StandardOpenOption.READ)) {
+
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(System.currentTimeMillis());
+                out.writeLong(watermarkMillis);
+                out.writeInt(n);
+                out.writeInt(specialtyValueCount);
+                out.writeInt(languageValueCount);
+                out.writeInt(0);
+                out.writeLong(spoolBytes);
+                out.write(new byte[HEADER_BYTES - 48]);
+
+                for (Row row : rows) {
+                    out.writeDouble(row.latitude);
+                }
+                for (Row row : rows) {
+                    out.writeDouble(row.longitude);
+                }
+                for (Row row : rows) {
+                    out.writeLong(row.locationId);
+                }
+                for (Row row : rows) {
+                    out.writeLong(row.providerId);
+                }
+                for (Row row : rows) {
+                    out.writeInt(row.providerTypeId);
+                }
+                for (Row row : rows) {
+                    out.writeByte(row.flags);
+                }
+                pad(out, layout.specialtyOffsets);
+                writeIdSection(out, rows, true);
+                pad(out, layout.languageOffsets);
+                writeIdSection(out, rows, false);
+                pad(out, layout.displayOffsets);
+
+                long offset = 0;
+                for (Row row : rows) {
+                    out.writeLong(offset);
+                    offset += row.displayLength;
+                }
+                out.writeLong(offset);
+
+                ByteBuffer display = ByteBuffer.allocate(1 << 16);
+                for (Row row : rows) {
+                    if (display.capacity() < row.displayLength) {
+                        display = ByteBuffer.allocate(row.displayLength);
+                    }
+                    display.clear().limit(row.displayLength);
+                    long position = row.displayOffset;
+                    while (display.hasRemaining()) {
+                        position += spoolChannel.read(display, position);
+                    }
+                    out.write(display.array(), 0, row.displayLength);
+                }
+            }
+
+            Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        @Override
+        public void close() throws IOException {
+            spoolOut.close();
+            Files.deleteIfExists(spool);
+        }
+
+        private static void writeIdSection(DataOutputStream out, List<Row> rows, boolean specialties)
+                throws IOException {
+            int offset = 0;
+            for (Row row : rows) {
+                out.writeInt(offset);
+                offset += (specialties ? row.specialtyIds : row.languageIds).length;
+            }
+            out.writeInt(offset);
+            for (Row row : rows) {
+                for (int id : specialties ? row.specialtyIds : row.languageIds) {
+                    out.writeInt(id);
+                }
+            }
+        }
+
+        private static void pad(DataOutputStream out, long sectionStart) throws IOException {
+            while (out.size() < sectionStart) {
+                out.writeByte(0);
+            }
+        }
+    }
+
+    private static final class Row {
+
+        final double latitude;
+        final double longitude;
+        final long locationId;
+        final long providerId;
+        final int providerTypeId;
+        final byte flags;
+        final int[] specialtyIds;
+        final int[] languageIds;
+        final long displayOffset;
+        final int displayLength;
+
+        Row(double latitude, double longitude, long locationId, long providerId, int providerTypeId, byte flags,
+            int[] specialtyIds, int[] languageIds, long displayOffset, int displayLength) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.locationId = locationId;
+            this.providerId = providerId;
+            this.providerTypeId = providerTypeId;
+            this.flags = flags;
+            this.specialtyIds = Arrays.copyOf(specialtyIds, specialtyIds.length);
+            this.languageIds = Arrays.copyOf(languageIds, languageIds.length);
+            this.displayOffset = displayOffset;
+            this.displayLength = displayLength;
+        }
+    }
+
+    /**
+     * Byte offsets of each section for a given row and value count
+     */
+    private static final class Layout {
+
+        final long latitudes;
+        final long longitudes;
+        final long locationIds;
+        final long providerIds;
+        final long providerTypeIds;
+        final long flags;
+        final long specialtyOffsets;
+        final long specialtyValues;
+        final long languageOffsets;
+        final long languageValues;
+        final long displayOffsets;
+        final long display;
+        final long totalBytes;
+
+        Layout(int rows, int specialtyValueCount, int languageValueCount, long displayBytes) {
+            latitudes = HEADER_BYTES;
+            longitudes = latitudes + rows * 8L;
+            locationIds = longitudes + rows * 8L;
+            providerIds = locationIds + rows * 8L;
+            providerTypeIds = providerIds + rows * 8L;
+            flags = providerTypeIds + rows * 4L;
+            specialtyOffsets = align(flags + rows);
+            specialtyValues = specialtyOffsets + (rows + 1) * 4L;
+            languageOffsets = align(specialtyValues + specialtyValueCount * 4L);
+            languageValues = languageOffsets + (rows + 1) * 4L;
+            displayOffsets = align(languageValues + languageValueCount * 4L);
+            display = displayOffsets + (rows + 1) * 8L;
+            totalBytes = display + displayBytes;
+        }
+
+        private static long align(long offset) {
+            return (offset + 7) & ~7L;
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.healthapp.mapservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.healthapp.mapservice.repository.ProviderLocationRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Owns the memory-mapped {@link SearchSnapshot} used to serve tile loads without the database.
+ *
+ * On startup the snapshot at {@code app.map.snapshot.path} is mapped before the first request.
+ * Locations changed since the snapshot's watermark are then loaded from the database into an
+ * overlay that takes precedence over snapshot rows, and the overlay is refreshed every
+ * {@code app.map.snapshot.catch-up-interval-ms}; each catch-up looks back
+ * {@code app.map.snapshot.change-overlap-ms} to cover transactions that committed after the
+ * previous one with an earlier {@code updated_at}. The snapshot is rewritten from the database
+ * every {@code app.map.snapshot.rewrite-interval-ms}, or at startup when none exists.
+ *
+ * Change detection relies on the {@code updated_at} of locations, providers and search
+ * documents, so specialty and language reassignments are caught up like any other edit;
+ * only deleted locations remain visible until the next rewrite.
+ */
+@Component
+@Slf4j
+public class SearchSnapshotManager {
+
+    private static final int LOAD_BATCH_SIZE = 1000;
+
+    private final ProviderLocationRepository providerLocationRepository;
+    private final SearchCandidateLoader searchCandidateLoader;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate readOnlyTransaction;
+    private final Timer openTimer;
+    private final Timer writeTimer;
+    private final AtomicBoolean writing = new AtomicBoolean();
+
+    private final boolean enabled;
+    private final Path path;
+
+    // Snapshot and overlay are published together, so readers never pair a new snapshot with an old overlay
+    private volatile Mapped mapped;
+    // Guarded by this
+    private long caughtUpToMillis;
+
+    @Value("${app.map.snapshot.change-overlap-ms:5000}")
+    private long changeOverlapMs;
+
+    public SearchSnapshotManager(ProviderLocationRepository providerLocationRepository,
+                                 SearchCandidateLoader searchCandidateLoader,
+                                 ObjectMapper objectMapper,
+                                 PlatformTransactionManager transactionManager,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${app.map.snapshot.enabled:false}") boolean enabled,
+                                 @Value("${app.map.snapshot.path:data/search-snapshot.bin}") String path) {
+        this.providerLocationRepository = providerLocationRepository;
+        this.searchCandidateLoader = searchCandidateLoader;
+        this.objectMapper = objectMapper;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.enabled = enabled;
+        this.path = Paths.get(path);
+
+        this.openTimer = meterRegistry.timer("map.snapshot.open");
+        this.writeTimer = meterRegistry.timer("map.snapshot.write");
+        meterRegistry.gauge("map.snapshot.rows", this, manager -> manager.mapped != null
+                ? manager.mapped.snapshot.getRowCount() : 0);
+        meterRegistry.gauge("map.snapshot.overlay", this, manager -> manager.mapped != null
+                ? manager.mapped.overlay.size() : 0);
+        meterRegistry.gauge("map.snapshot.age.seconds", this, manager -> manager.mapped != null
+                ? (System.currentTimeMillis() - manager.mapped.snapshot.getCreatedAtMillis()) / 1000.0 : 0);
+    }
+
+    /**
+     * Map the snapshot file, if any, before the application starts serving
+     */
+    @PostConstruct
+    public void open() {
+        if (!enabled || !Files.exists(path)) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            SearchSnapshot opened = SearchSnapshot.open(path);
+            openTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            install(opened);
+            log.info("Mapped search snapshot {} with {} rows in {} ms", path, opened.getRowCount(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (IOException | RuntimeException e) {
+            log.warn("Ignoring unreadable search snapshot {}: {}", path, e.getMessage());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!enabled) {
+            return;
+        }
+        if (mapped == null) {
+            Thread writer = new Thread(this::rewrite, "search-snapshot-writer");
+            writer.setDaemon(true);
+            writer.start();
+        } else {
+            catchUp();
+        }
+    }
+
+    /**
+     * Whether tile loads can currently be served from the snapshot
+     */
+    public boolean isAvailable() {
+        return mapped != null;
+    }
+
+    /**
+     * Candidates inside the bounds from the snapshot merged with caught-up changes,
+     * or empty when no snapshot is mapped
+     */
+    public Optional<List<SearchCandidate>> candidatesInBounds(double westLng, double southLat,
+                                                              double eastLng, double northLat) {
+        Mapped current = mapped;
+        if (current == null) {
+            return Optional.empty();
+        }
+        Map<Long, SearchCandidate> changes = current.overlay;
+        try {
+            List<SearchCandidate> candidates = current.snapshot.candidatesInBounds(
+                    westLng, southLat, eastLng, northLat, changes.keySet(), objectMapper);
+            for (SearchCandidate changed : changes.values()) {
+                if (changed.isWithin(westLng, southLat, eastLng, northLat)) {
+                    candidates.add(changed);
+                }
+            }
+            return Optional.of(candidates);
+        } catch (IOException e) {
+            log.warn("Failed to read search snapshot, falling back to the database: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Load locations changed since the last catch-up into the overlay
+     */
+    @Scheduled(fixedDelayString = "${app.map.snapshot.catch-up-interval-ms:60000}",
+            initialDelayString = "${app.map.snapshot.catch-up-interval-ms:60000}")
+    public synchronized void catchUp() {
+        Mapped current = mapped;
+        if (!enabled || current == null) {
+            return;
+        }
+        try {
+            // Read before the changes, so anything committed meanwhile is found next time
+            long watermark = providerLocationRepository.findLatestUpdateEpochMillis();
+            // No shortcut on an unchanged watermark: a late commit with an earlier updated_at does not move it
+            List<Long> changedIds = providerLocationRepository.findLocationIdsUpdatedSince(
+                    caughtUpToMillis - changeOverlapMs);
+            for (SearchCandidate candidate : loadInBatches(changedIds)) {
+                current.overlay.put(candidate.getLocationId(), candidate);
+            }
+            caughtUpToMillis = Math.max(caughtUpToMillis, watermark);
+            log.debug("Search snapshot caught up {} changed locations", changedIds.size());
+        } catch (Exception e) {
+            log.warn("Search snapshot catch-up failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Rebuild the snapshot file from the database and map the new file
+     */
+    @Scheduled(fixedDelayString = "${app.map.snapshot.rewrite-interval-ms:3600000}",
+            initialDelayString = "${app.map.snapshot.rewrite-interval-ms:3600000}")
+    public void rewrite() {
+        if (!enabled || !writing.compareAndSet(false, true)) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            // Taken before reading rows so changes made during the write are caught up later
+            long watermark = providerLocationRepository.findLatestUpdateEpochMillis();
+            List<Long> ids = providerLocationRepository.findAllIds();
+            try (SearchSnapshot.Writer writer = SearchSnapshot.writer(path, objectMapper)) {
+                for (int from = 0; from < ids.size(); from += LOAD_BATCH_SIZE) {
+                    List<Long> batch = ids.subList(from, Math.min(ids.size(), from + LOAD_BATCH_SIZE));
+                    for (SearchCandidate candidate : readOnlyTransaction.execute(
+                            status -> searchCandidateLoader.loadByIds(batch))) {
+                        writer.add(candidate);
+                    }
+                }
+                writer.finish(watermark);
+            }
+            writeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            install(SearchSnapshot.open(path));
+            log.info("Wrote search snapshot {} with {} rows in {} ms", path, ids.size(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            catchUp();
+        } catch (Exception e) {
+            log.warn("Failed to write search snapshot {}: {}", path, e.getMessage());
+        } finally {
+            writing.set(false);
+        }
+    }
+
+    private synchronized void install(SearchSnapshot opened) {
+        caughtUpToMillis = opened.getWatermarkMillis();
+        mapped = new Mapped(opened, new ConcurrentHashMap<>());
+    }
+
+    private List<SearchCandidate> loadInBatches(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<SearchCandidate> candidates = new ArrayList<>(ids.size());
+        for (int from = 0; from < ids.size(); from += LOAD_BATCH_SIZE) {
+            List<Long> batch = ids.subList(from, Math.min(ids.size(), from + LOAD_BATCH_SIZE));
+            candidates.addAll(readOnlyTransaction.execute(status -> searchCandidateLoader.loadByIds(batch)));
+        }
+        return candidates;
+    }
+
+    private static final class Mapped {
+
+        final SearchSnapshot snapshot;
+        final Map<Long, SearchCandidate> overlay;
+
+        Mapped(SearchSnapshot snapshot, Map<Long, SearchCandidate> overlay) {
+            this.snapshot = snapshot;
+            this.overlay = overlay;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.healthapp.mapservice.service;
+
+/**
+ * Execution strategies the query planner can choose for a viewport search
+ */
+public enum SearchStrategy {
+
+    /**
+     * Scan the viewport through the GiST index, then apply filters
+     */
+    SPATIAL_FIRST,
+
+    /**
+     * Resolve providers for a selective specialty or language, then check the viewport
+     */
+    FILTER_FIRST,
+
+    /**
+     * Resolve providers matching the search term through trigram indexes, then check the viewport
+     */
+    TEXT_FIRST
+}
@@ -0,0 +1,122 @@
+package com.healthapp.mapservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.healthapp.mapservice.dto.ProviderSearchResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Last known good response of each viewport search, served when the database is unavailable.
+ *
+ * Every search answered by the database is kept for {@code app.map.stale.ttl-seconds}. When
+ * an identical search later fails because the circuit breaker is open or the query missed its
+ * deadline, the kept response is returned as a copy marked {@code stale}, and the search is
+ * re-run once in the background so fresh results replace it as soon as the database recovers.
+ */
+@Component
+@Slf4j
+public class StaleResponseCache {
+
+    private final boolean enabled;
+    private final Cache<SearchRequestKey, ProviderSearchResponse> responses;
+    private final Set<SearchRequestKey> revalidating = ConcurrentHashMap.newKeySet();
+    private final ThreadPoolExecutor executor;
+
+    private final Counter served;
+    private final Counter missing;
+    private final Counter revalidated;
+    private final Counter revalidationFailed;
+
+    public StaleResponseCache(MeterRegistry meterRegistry,
+                              @Value("${app.map.stale.enabled:true}") boolean enabled,
+                              @Value("${app.map.stale.max-entries:10000}") long maxEntries,
+                              @Value("${app.map.stale.ttl-seconds:3600}") long ttlSeconds,
+                              @Value("${app.map.stale.revalidation-queue-capacity:16}") int queueCapacity) {
+        this.enabled = enabled;
+        this.responses = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .maximumSize(maxEntries)
+                .build();
+        this.executor = new ThreadPoolExecutor(
+                1, 1, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "stale-revalidation");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+
+        this.served = meterRegistry.counter("map.search.stale", "result", "served");
+        this.missing = meterRegistry.counter("map.search.stale", "result", "missing");
+        this.revalidated = meterRegistry.counter("map.search.revalidations", "result", "success");
+        this.revalidationFailed = meterRegistry.counter("map.search.revalidations", "result", "failed");
+        meterRegistry.gauge("map.search.stale.cached", responses, cache -> cache.estimatedSize());
+    }
+
+    /**
+     * Remember a response the database just produced
+     */
+    public void put(SearchRequestKey key, ProviderSearchResponse response) {
+        if (enabled) {
+            responses.put(key, response);
+        }
+    }
+
+    /**
+     * The last good response for the search marked stale, scheduling a background re-run
+     * of the search; empty when none is kept
+     */
+    public Optional<ProviderSearchResponse> serve(SearchRequestKey key, Supplier<ProviderSearchResponse> search) {
+        ProviderSearchResponse last = enabled ? responses.getIfPresent(key) : null;
+        if (last == null) {
+            missing.increment();
+            return Optional.empty();
+        }
+        served.increment();
+        revalidate(key, search);
+        return Optional.of(last.toBuilder().stale(true).build());
+    }
+
+    private void revalidate(SearchRequestKey key, Supplier<ProviderSearchResponse> search) {
+        if (!revalidating.add(key)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    responses.put(key, search.get());
+                    revalidated.increment();
+                } catch (Exception e) {
+                    revalidationFailed.increment();
+                    log.debug("Background revalidation failed: {}", e.getMessage());
+                } finally {
+                    revalidating.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Queue full; a later stale serve retries
+            revalidating.remove(key);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,144 @@
+package com.healthapp.mapservice.service;
+
+import com.healthapp.mapservice.config.ReplicaRoutingDataSource;
+import com.healthapp.mapservice.config.WarmupProperties;
+import com.healthapp.mapservice.dto.ProviderSearchRequest;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Primes hot paths before the service reports itself ready.
+ *
+ * Runs as an {@link ApplicationRunner}, so it completes before Spring Boot publishes
+ * {@code ReadinessState.ACCEPTING_TRAFFIC} and the readiness probe stays out of service
+ * meanwhile. It fills the primary and every replica connection pool, loads planner statistics
+ * (normally loaded on {@code ApplicationReadyEvent}, which runners precede), then replays the
+ * searches configured under {@code app.map.warmup.searches} (plus a nearby search at each
+ * viewport centre) so query plans are compiled and the mapping code is JIT-compiled. Replayed searches bypass
+ * prefetching, hot-tile tracking and search analytics. Failures are logged and never
+ * block readiness.
+ */
+@Component
+@Slf4j
+public class StartupWarmup implements ApplicationRunner {
+
+    private static final int NEARBY_LIMIT = 20;
+
+    private final WarmupProperties properties;
+    private final ProviderMapService providerMapService;
+    private final ReplicaRoutingDataSource routingDataSource;
+    private final SearchQueryPlanner searchQueryPlanner;
+    private final Timer firstPass;
+    private final Timer lastPass;
+
+    private volatile double durationSeconds;
+
+    public StartupWarmup(WarmupProperties properties, ProviderMapService providerMapService,
+                         ReplicaRoutingDataSource routingDataSource, SearchQueryPlanner searchQueryPlanner,
+                         MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.providerMapService = providerMapService;
+        this.routingDataSource = routingDataSource;
+        this.searchQueryPlanner = searchQueryPlanner;
+        this.firstPass = meterRegistry.timer("map.warmup.search", "pass", "first");
+        this.lastPass = meterRegistry.timer("map.warmup.search", "pass", "last");
+        meterRegistry.gauge("map.warmup.duration.seconds", this, warmup -> warmup.durationSeconds);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        long start = System.nanoTime();
+        // The routing proxy picks the primary outside read-only transactions, so each pool is filled directly
+        for (Map.Entry<Object, DataSource> pool : routingDataSource.getResolvedDataSources().entrySet()) {
+            fillConnectionPool(pool.getKey(), pool.getValue());
+        }
+        // Without statistics every replayed search would be planned spatial-first
+        searchQueryPlanner.refreshStatistics();
+        replaySearches(start + TimeUnit.MILLISECONDS.toNanos(properties.getMaxDurationMs()));
+
+        durationSeconds = (System.nanoTime() - start) / 1e9;
+        log.info("Warm-up finished in {} s: first pass mean {} ms, last pass mean {} ms",
+                String.format("%.2f", durationSeconds),
+                String.format("%.1f", firstPass.mean(TimeUnit.MILLISECONDS)),
+                String.format("%.1f", lastPass.mean(TimeUnit.MILLISECONDS)));
+    }
+
+    /**
+     * Open connections one after another and hold them all, so the pool creates that many
+     * now rather than under load
+     */
+    private void fillConnectionPool(Object name, DataSource dataSource) {
+        int count = properties.getPoolConnections();
+        if (dataSource instanceof HikariDataSource) {
+            // Asking for more than the pool holds would block for the connection timeout
+            count = Math.min(count, ((HikariDataSource) dataSource).getMaximumPoolSize());
+        }
+        List<Connection> connections = new ArrayList<>(count);
+        try {
+            for (int i = 0; i < count; i++) {
+                Connection connection = dataSource.getConnection();
+                connections.add(connection);
+                connection.isValid(2);
+            }
+        } catch (Exception e) {
+            log.warn("Connection pool {} warm-up stopped after {} connections: {}",
+                    name, connections.size(), e.getMessage());
+        } finally {
+            for (Connection connection : connections) {
+                try {
+                    connection.close();
+                } catch (Exception e) {
+                    log.debug("Failed to release warm-up connection: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void replaySearches(long deadline) {
+        int iterations = properties.getIterations();
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            Timer timer = iteration == 0 ? firstPass : iteration == iterations - 1 ? lastPass : null;
+            for (ProviderSearchRequest search : properties.getSearches()) {
+                if (System.nanoTime() > deadline) {
+                    log.warn("Warm-up budget of {} ms spent after {} iterations",
+                            properties.getMaxDurationMs(), iteration);
+                    return;
+                }
+                replay(search, timer);
+            }
+        }
+    }
+
+    private void replay(ProviderSearchRequest search, Timer timer) {
+        long start = System.nanoTime();
+        try {
+            // Untracked, so warm-up searches stay out of analytics and hot-tile counts
+            providerMapService.searchUntracked(search);
+            providerMapService.findNearbyProviders(
+                    (search.getNorthLat() + search.getSouthLat()) / 2,
+                    (search.getEastLng() + search.getWestLng()) / 2,
+                    null, NEARBY_LIMIT);
+        } catch (Exception e) {
+            log.warn("Warm-up search failed: {}", e.getMessage());
+            return;
+        }
+        if (timer != null) {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.healthapp.mapservice.service;
+
+import com.healthapp.mapservice.dto.ProviderSearchRequest;
+import com.healthapp.mapservice.dto.ProviderSearchResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.cloud.client.discovery.event.HeartbeatEvent;
+import org.springframework.cloud.client.serviceregistry.Registration;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Routes viewport searches to the map-service instance that owns their tile.
+ *
+ * Instances registered in Eureka under this service's name form a {@link ConsistentHashRing}.
+ * A search is keyed by the tile containing its viewport centre, at the zoom level the tile
+ * cache uses for that viewport, so each instance caches only its share of tiles. A search
+ * that arrives at the wrong instance is forwarded once, marked with {@value #FORWARDED_HEADER}
+ * so the receiver always serves it. If the owner cannot be reached in time the search is
+ * served locally; if the owner sheds it, the 503 and its Retry-After reach the caller
+ * rather than moving the owner's load onto this instance. The ring is
+ * rebuilt when Eureka reports a membership change, which moves only the departed or new
+ * instance's share of tiles.
+ */
+@Component
+@Slf4j
+public class TileAffinityRouter {
+
+    public static final String FORWARDED_HEADER = "X-Map-Forwarded";
+    private static final String SESSION_HEADER = "X-Client-Session";
+
+    private final ObjectProvider<DiscoveryClient> discoveryClient;
+    private final ObjectProvider<Registration> registration;
+    private final RestTemplate restTemplate;
+
+    private final Counter local;
+    private final Counter forwarded;
+    private final Counter failed;
+    private final Counter shed;
+
+    @Value("${app.map.routing.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.map.routing.virtual-nodes:128}")
+    private int virtualNodes;
+
+    @Value("${spring.application.name}")
+    private String serviceId;
+
+    @Value("${server.servlet.context-path:}")
+    private String contextPath;
+
+    private volatile Membership membership;
+
+    public TileAffinityRouter(ObjectProvider<DiscoveryClient> discoveryClient,
+                              ObjectProvider<Registration> registration,
+                              RestTemplateBuilder restTemplateBuilder,
+                              MeterRegistry meterRegistry,
+                              @Value("${app.map.routing.connect-timeout-ms:200}") long connectTimeoutMs,
+                              @Value("${app.map.routing.read-timeout-ms:3000}") long readTimeoutMs) {
+        this.discoveryClient = discoveryClient;
+        this.registration = registration;
+        this.restTemplate = restTemplateBuilder
+                .setConnectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .setReadTimeout(Duration.ofMillis(readTimeoutMs))
+                .build();
+
+        this.local = meterRegistry.counter("map.routing.requests", "outcome", "local");
+        this.forwarded = meterRegistry.counter("map.routing.requests", "outcome", "forwarded");
+        this.failed = meterRegistry.counter("map.routing.requests", "outcome", "forward_failed");
+        this.shed = meterRegistry.counter("map.routing.requests", "outcome", "owner_shed");
+        meterRegistry.gauge("map.routing.members", this,
+                router -> router.membership != null ? router.membership.ring.members().size() : 0);
+    }
+
+    @EventListener({ApplicationReadyEvent.class, HeartbeatEvent.class})
+    public void refreshMembership() {
+        if (!enabled) {
+            return;
+        }
+        DiscoveryClient client = discoveryClient.getIfAvailable();
+        Registration self = registration.getIfAvailable();
+        if (client == null || self == null) {
+            return;
+        }
+
+        Map<String, URI> instances = new HashMap<>();
+        for (ServiceInstance instance : client.getInstances(serviceId)) {
+            instances.put(instance.getInstanceId(), instance.getUri());
+        }
+        // Until this instance appears in the fetched registry it still owns its own share
+        instances.putIfAbsent(self.getInstanceId(), self.getUri());
+
+        Membership current = membership;
+        if (current != null && current.instances.equals(instances)) {
+            return;
+        }
+        membership = new Membership(self.getInstanceId(), instances, new ConsistentHashRing(instances.keySet(), virtualNodes));
+        log.info("Tile routing ring rebuilt with {} instances", instances.size());
+    }
+
+    /**
+     * Whether this instance owns searches over the given bounds
+     */
+    public boolean isLocal(double westLng, double southLat, double eastLng, double northLat) {
+        Membership current = membership;
+        return current == null || current.self.equals(ownerOf(current, westLng, southLat, eastLng, northLat));
+    }
+
+    /**
+     * Forward a search to the instance owning its tile.
+     * Returns empty when this instance should serve it: routing is off, the search was already
+     * forwarded, this instance is the owner, or the owner could not be reached.
+     *
+     * @throws ServiceOverloadedException if the owner shed the search with 503 or 429
+     */
+    public Optional<ProviderSearchResponse> forward(ProviderSearchRequest request, String sessionId, String forwardedBy) {
+        Membership current = membership;
+        if (current == null || forwardedBy != null) {
+            return Optional.empty();
+        }
+
+        String owner = ownerOf(current, request.getWestLng(), request.getSouthLat(), request.getEastLng(), request.getNorthLat());
+        URI ownerUri = current.instances.get(owner);
+        if (owner == null || owner.equals(current.self) || ownerUri == null) {
+            local.increment();
+            return Optional.empty();
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set(FORWARDED_HEADER, current.self);
+        if (sessionId != null) {
+            headers.set(SESSION_HEADER, sessionId);
+        }
+        try {
+            ProviderSearchResponse response = restTemplate.postForObject(
+                    ownerUri.resolve(contextPath + "/providers/search"),
+                    new HttpEntity<>(request, headers),
+                    ProviderSearchResponse.class);
+            forwarded.increment();
+            return Optional.ofNullable(response);
+        } catch (ResourceAccessException e) {
+            // Connection refused, reset or timed out: the owner is gone or stalled
+            failed.increment();
+            log.debug("Forwarding search to {} failed, serving locally: {}", owner, e.getMessage());
+            return Optional.empty();
+        } catch (HttpStatusCodeException e) {
+            if (e.getStatusCode() != HttpStatus.SERVICE_UNAVAILABLE && e.getStatusCode() != HttpStatus.TOO_MANY_REQUESTS) {
+                throw e;
+            }
+            shed.increment();
+            throw new ServiceOverloadedException("Search shed by tile owner " + owner, retryAfterSeconds(e));
+        }
+    }
+
+    /**
+     * The owner's Retry-After in seconds, or one second when it is absent or an HTTP date
+     */
+    private static long retryAfterSeconds(HttpStatusCodeException e) {
+        String retryAfter = e.getResponseHeaders() != null ? e.getResponseHeaders().getFirst(HttpHeaders.RETRY_AFTER) : null;
+        if (retryAfter != null) {
+            try {
+                return Math.max(1, Long.parseLong(retryAfter.trim()));
+            } catch (NumberFormatException ignored) {
+                // HTTP-date form, not sent by map-service
+            }
+        }
+        return 1;
+    }
+
+    private static String ownerOf(Membership membership, double westLng, double southLat, double eastLng, double northLat) {
+        int zoom = TileKey.zoomFor(westLng, southLat, eastLng, northLat);
+        TileKey tile = TileKey.containing((westLng + eastLng) / 2, (southLat + northLat) / 2, zoom);
+        return membership.ring.ownerOf(tile.toPath());
+    }
+
+    private static final class Membership {
+
+        final String self;
+        final Map<String, URI> instances;
+        final ConsistentHashRing ring;
+
+        Membership(String self, Map<String, URI> instances, ConsistentHashRing ring) {
+            this.self = self;
+            this.instances = instances;
+            this.ring = ring;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.healthapp.mapservice.service;
+
+import lombok.Value;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A cell of the quantized viewport grid.
+ *
+ * At zoom level {@code z} the world is split into square cells of {@code 360 / 2^z}
+ * degrees, indexed from the south-west corner (-90, -180). A viewport is served from
+ * the zoom level whose cells are between half and all of its larger span, so it is
+ * covered by at most three cells along each axis.
+ */
+@Value
+public class TileKey {
+
+    static final int MAX_ZOOM = 20;
+
+    int zoom;
+    int x;
+    int y;
+
+    public double getSize() {
+        return sizeAt(zoom);
+    }
+
+    public double getWestLng() {
+        return -180 + x * getSize();
+    }
+
+    public double getSouthLat() {
+        return -90 + y * getSize();
+    }
+
+    public double getEastLng() {
+        return getWestLng() + getSize();
+    }
+
+    public double getNorthLat() {
+        return getSouthLat() + getSize();
+    }
+
+    /**
+     * Zoom level used for a viewport with the given bounds
+     */
+    public static int zoomFor(double westLng, double southLat, double eastLng, double northLat) {
+        double span = Math.max(northLat - southLat, eastLng - westLng);
+        if (span <= 0) {
+            return MAX_ZOOM;
+        }
+        int zoom = (int) Math.floor(Math.log(360 / span) / Math.log(2)) + 1;
+        return Math.max(0, Math.min(MAX_ZOOM, zoom));
+    }
+
+    /**
+     * Tiles at the given zoom level that together cover the bounds
+     */
+    public static List<TileKey> covering(double westLng, double southLat, double eastLng, double northLat, int zoom) {
+        double size = sizeAt(zoom);
+        int minX = index(westLng + 180, size);
+        int maxX = index(eastLng + 180, size);
+        int minY = index(southLat + 90, size);
+        int maxY = index(northLat + 90, size);
+
+        List<TileKey> tiles = new ArrayList<>((maxX - minX + 1) * (maxY - minY + 1));
+        for (int x = minX; x <= maxX; x++) {
+            for (int y = minY; y <= maxY; y++) {
+                tiles.add(new TileKey(zoom, x, y));
+            }
+        }
+        return tiles;
+    }
+
+    /**
+     * Tiles covering the bounds at the zoom level chosen for them
+     */
+    public static List<TileKey> covering(double westLng, double southLat, double eastLng, double northLat) {
+        return covering(westLng, southLat, eastLng, northLat, zoomFor(westLng, southLat, eastLng, northLat));
+    }
+
+    /**
+     * Tile at the given zoom level containing a point
+     */
+    public static TileKey containing(double lng, double lat, int zoom) {
+        double size = sizeAt(zoom);
+        return new TileKey(zoom, index(lng + 180, size), index(lat + 90, size));
+    }
+
+    /**
+     * Whether two tiles overlap. Tiles nest across zoom levels, so they overlap when the
+     * finer tile lies inside the coarser one.
+     */
+    public boolean overlaps(TileKey other) {
+        if (zoom <= other.zoom) {
+            int shift = other.zoom - zoom;
+            return x == other.x >> shift && y == other.y >> shift;
+        }
+        return other.overlaps(this);
+    }
+
+    /**
+     * Compact {@code zoom/x/y} form used as a routing and message key
+     */
+    public String toPath() {
+        return zoom + "/" + x + "/" + y;
+    }
+
+    public static TileKey fromPath(String path) {
+        String[] parts = path.split("/");
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Invalid tile path: " + path);
+        }
+        return new TileKey(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+    }
+
+    static double sizeAt(int zoom) {
+        return 360.0 / (1 << zoom);
+    }
+
+    static int index(double offset, double size) {
+        return (int) Math.floor(offset / size);
+    }
+}
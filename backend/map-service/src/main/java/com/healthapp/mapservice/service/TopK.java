@@ -0,0 +1,84 @@
+package com.healthapp.mapservice.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the {@code capacity} highest-scoring items seen, in a min-heap, so selecting a
+ * page from n candidates costs O(n log k) time and O(k) memory. Equal scores are
+ * ordered by ascending ID so results are stable across calls.
+ */
+final class TopK<T> {
+
+    private final int capacity;
+    private final PriorityQueue<Entry<T>> heap;
+    private long offered;
+
+    TopK(int capacity) {
+        this.capacity = capacity;
+        this.heap = new PriorityQueue<>(Math.max(1, Math.min(capacity, 1024)));
+    }
+
+    /**
+     * Offer an item; it is kept only if it ranks among the best {@code capacity} so far
+     */
+    void offer(double score, long id, T item) {
+        offered++;
+        if (capacity <= 0) {
+            return;
+        }
+        if (heap.size() < capacity) {
+            heap.add(new Entry<>(score, id, item));
+            return;
+        }
+        Entry<T> worst = heap.peek();
+        if (score > worst.score || (score == worst.score && id < worst.id)) {
+            heap.poll();
+            heap.add(new Entry<>(score, id, item));
+        }
+    }
+
+    /**
+     * Number of items offered, kept or not
+     */
+    long offered() {
+        return offered;
+    }
+
+    /**
+     * Kept items from {@code offset} on, best first
+     */
+    List<T> best(int offset) {
+        List<Entry<T>> entries = new ArrayList<>(heap);
+        entries.sort(Collections.reverseOrder());
+        List<T> items = new ArrayList<>(Math.max(0, entries.size() - offset));
+        for (int i = offset; i < entries.size(); i++) {
+            items.add(entries.get(i).item);
+        }
+        return items;
+    }
+
+    private static final class Entry<T> implements Comparable<Entry<T>> {
+
+        final double score;
+        final long id;
+        final T item;
+
+        Entry(double score, long id, T item) {
+            this.score = score;
+            this.id = id;
+            this.item = item;
+        }
+
+        /**
+         * Worse entries sort first: lower score, then higher ID
+         */
+        @Override
+        public int compareTo(Entry<T> other) {
+            int byScore = Double.compare(score, other.score);
+            return byScore != 0 ? byScore : Long.compare(other.id, id);
+        }
+    }
+}
@@ -0,0 +1,513 @@
+package com.healthapp.mapservice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.healthapp.mapservice.dto.ProviderSearchRequest;
+import com.healthapp.mapservice.dto.ViewportChangeEvent;
+import com.healthapp.mapservice.repository.ProviderLocationRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Pushes provider location changes to clients subscribed to a viewport as server-sent events.
+ *
+ * Changes arrive as {@link ProvidersChangedEvent}s from the {@link EntityCacheEvictor}, so
+ * every instance learns of changes found by any instance's poll and events lag the change by
+ * up to {@code app.map.entity-cache.change-poll-ms}. The changed providers' locations are
+ * reloaded and compared with the state last pushed for them: each location's old and new
+ * positions are looked up in the {@link ViewportSubscriptionIndex}, and every subscription
+ * containing either gets an {@code add}, {@code update} or {@code remove} event depending on
+ * whether the location matched its viewport and filters before and after; locations that did
+ * not change are skipped.
+ *
+ * A provider with no pushed state yet (its first change since streams opened, or after
+ * {@code last-pushed-ttl-seconds}) cannot be diffed, so only the streams around its previous
+ * and new positions get a {@code resync}. Previous positions of every location are kept per
+ * provider, loaded from search_doc when the first stream opens and updated with each change;
+ * until they are loaded, or after changes were missed while no stream was open, every stream
+ * gets the resync instead. Missed changes (a bus resync, a failed reload or a full queue) also
+ * resync every stream; a stream that receives one should search its viewport again.
+ *
+ * Changes are reloaded and fanned out by a single thread. Events then go into each stream's
+ * bounded queue ({@code subscriber-queue-capacity}) and are written by a small pool of sender
+ * threads, one stream at a time per thread, so a slow client delays only itself; a stream
+ * whose queue overflows or whose write fails is closed.
+ */
+@Component
+@Slf4j
+public class ViewportChangeStream {
+
+    private final SearchCandidateLoader searchCandidateLoader;
+    private final ProviderLocationRepository providerLocationRepository;
+    private final DatabaseCircuitBreaker databaseCircuitBreaker;
+    private final TransactionTemplate readOnlyTransaction;
+    private final TransactionTemplate seedTransaction;
+    private final ObjectMapper objectMapper;
+    private final ViewportSubscriptionIndex index = new ViewportSubscriptionIndex();
+    private final Map<Long, ViewportSubscription> subscriptions = new ConcurrentHashMap<>();
+    private final AtomicLong subscriptionIds = new AtomicLong();
+    private final AtomicBoolean resyncPending = new AtomicBoolean();
+    // Locations last pushed per provider, by location ID
+    private final Cache<Long, Map<Long, SearchCandidate>> lastPushed;
+    private final ThreadPoolExecutor executor;
+    private final ThreadPoolExecutor senders;
+    private final int subscriberQueueCapacity;
+    // Bumped whenever changes may have gone untracked, which invalidates the positions
+    private final AtomicLong positionInvalidations = new AtomicLong();
+    private final AtomicBoolean seedScheduled = new AtomicBoolean();
+    // Previous positions per provider as (lat, lng) pairs; confined to the executor thread
+    private Map<Long, double[]> positions;
+    private long positionsGeneration = -1;
+
+    private final Counter added;
+    private final Counter updated;
+    private final Counter removed;
+    private final Counter resyncs;
+    private final Counter droppedWriteFailed;
+    private final Counter droppedQueueFull;
+
+    @Value("${app.map.stream.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.map.stream.max-subscriptions:20000}")
+    private int maxSubscriptions;
+
+    @Value("${app.map.stream.timeout-ms:1800000}")
+    private long timeoutMs;
+
+    @Value("${app.map.stream.retry-after-seconds:30}")
+    private long retryAfterSeconds;
+
+    public ViewportChangeStream(SearchCandidateLoader searchCandidateLoader,
+                                ProviderLocationRepository providerLocationRepository,
+                                DatabaseCircuitBreaker databaseCircuitBreaker,
+                                PlatformTransactionManager transactionManager,
+                                ObjectMapper objectMapper,
+                                MeterRegistry meterRegistry,
+                                @Value("${app.map.stream.queue-capacity:256}") int queueCapacity,
+                                @Value("${app.map.stream.subscriber-queue-capacity:64}") int subscriberQueueCapacity,
+                                @Value("${app.map.stream.sender-threads:4}") int senderThreads,
+                                @Value("${app.map.stream.last-pushed-max-entries:200000}") long lastPushedMaxEntries,
+                                @Value("${app.map.stream.last-pushed-ttl-seconds:3600}") long lastPushedTtlSeconds) {
+        this.searchCandidateLoader = searchCandidateLoader;
+        this.providerLocationRepository = providerLocationRepository;
+        this.databaseCircuitBreaker = databaseCircuitBreaker;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.readOnlyTransaction.setTimeout(databaseCircuitBreaker.getQueryTimeoutSeconds());
+        // Reads every search document, so it runs without the statement deadline
+        this.seedTransaction = new TransactionTemplate(transactionManager);
+        this.seedTransaction.setReadOnly(true);
+        this.objectMapper = objectMapper;
+        this.lastPushed = Caffeine.newBuilder()
+                .maximumSize(lastPushedMaxEntries)
+                .expireAfterWrite(Duration.ofSeconds(lastPushedTtlSeconds))
+                .build();
+        this.executor = new ThreadPoolExecutor(
+                1, 1, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "viewport-stream");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+        // One drain task per stream at most, so the queue is bounded by max-subscriptions
+        this.senders = new ThreadPoolExecutor(
+                senderThreads, senderThreads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "viewport-stream-sender");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.senders.allowCoreThreadTimeOut(true);
+        this.subscriberQueueCapacity = subscriberQueueCapacity;
+
+        this.added = meterRegistry.counter("map.stream.events", "type", "add");
+        this.updated = meterRegistry.counter("map.stream.events", "type", "update");
+        this.removed = meterRegistry.counter("map.stream.events", "type", "remove");
+        this.resyncs = meterRegistry.counter("map.stream.events", "type", "resync");
+        this.droppedWriteFailed = meterRegistry.counter("map.stream.dropped", "reason", "write_failed");
+        this.droppedQueueFull = meterRegistry.counter("map.stream.dropped", "reason", "queue_full");
+        meterRegistry.gauge("map.stream.subscriptions", subscriptions, Map::size);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Open a stream of changes in the request's viewport that pass its filters
+     */
+    public SseEmitter subscribe(ProviderSearchRequest request) {
+        if (!CandidateSearch.supports(request)) {
+            throw new IllegalArgumentException("Viewport streams do not support wildcard or fuzzy search terms");
+        }
+        if (subscriptions.size() >= maxSubscriptions) {
+            throw new ServiceOverloadedException("Viewport stream limit reached", retryAfterSeconds);
+        }
+
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        ViewportSubscription subscription = new ViewportSubscription(
+                subscriptionIds.incrementAndGet(), request, emitter, subscriberQueueCapacity);
+        emitter.onCompletion(() -> unsubscribe(subscription));
+        emitter.onTimeout(() -> unsubscribe(subscription));
+        emitter.onError(e -> unsubscribe(subscription));
+
+        subscriptions.put(subscription.getId(), subscription);
+        index.add(subscription);
+        log.debug("Opened viewport stream {} for {}", subscription.getId(), request);
+        schedulePositionSeed();
+        return emitter;
+    }
+
+    @EventListener
+    public void onProvidersChanged(ProvidersChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        if (event.isResync()) {
+            lastPushed.invalidateAll();
+            positionInvalidations.incrementAndGet();
+            requestResync();
+            return;
+        }
+        if (subscriptions.isEmpty()) {
+            // Nobody to notify; forget the pushed state and positions rather than let them go stale
+            lastPushed.invalidateAll(event.getProviderIds());
+            positionInvalidations.incrementAndGet();
+            return;
+        }
+        List<Long> providerIds = event.getProviderIds();
+        try {
+            executor.execute(() -> push(providerIds));
+        } catch (RejectedExecutionException e) {
+            log.warn("Viewport stream queue full, dropped changes to {} providers", providerIds.size());
+            lastPushed.invalidateAll(providerIds);
+            positionInvalidations.incrementAndGet();
+            resyncPending.set(true);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.map.stream.heartbeat-ms:20000}")
+    public void heartbeat() {
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+        // Comments keep idle connections open through proxies and detect closed or stuck clients
+        subscriptions.values().forEach(subscription -> send(subscription, SseEmitter.event().comment("keepalive")));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        senders.shutdownNow();
+        subscriptions.values().forEach(subscription -> subscription.getEmitter().complete());
+    }
+
+    private void requestResync() {
+        resyncPending.set(true);
+        try {
+            executor.execute(this::resyncIfPending);
+        } catch (RejectedExecutionException e) {
+            // A queued task sends it
+        }
+    }
+
+    private void resyncIfPending() {
+        if (!resyncPending.getAndSet(false)) {
+            return;
+        }
+        log.info("Sending resync to {} viewport streams", subscriptions.size());
+        resync(subscriptions.values());
+    }
+
+    private void resync(Collection<ViewportSubscription> targets) {
+        for (ViewportSubscription subscription : targets) {
+            if (send(subscription, SseEmitter.event().name("resync").data("{}", MediaType.APPLICATION_JSON))) {
+                resyncs.increment();
+            }
+        }
+    }
+
+    private void schedulePositionSeed() {
+        if (positionInvalidations.get() == positionsGeneration || !seedScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(this::seedPositions);
+        } catch (RejectedExecutionException e) {
+            seedScheduled.set(false);
+        }
+    }
+
+    /**
+     * Load the position of every search document; runs on the executor thread
+     */
+    private void seedPositions() {
+        seedScheduled.set(false);
+        long generation = positionInvalidations.get();
+        if (generation == positionsGeneration || subscriptions.isEmpty() || databaseCircuitBreaker.isOpen()) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            Map<Long, double[]> loaded = seedTransaction.execute(status -> {
+                Map<Long, double[]> byProvider = new HashMap<>();
+                try (Stream<Object[]> rows = providerLocationRepository.streamSearchDocPositions()) {
+                    long currentProvider = -1;
+                    List<double[]> current = new ArrayList<>();
+                    for (Iterator<Object[]> it = rows.iterator(); it.hasNext(); ) {
+                        Object[] row = it.next();
+                        long providerId = ((Number) row[0]).longValue();
+                        if (providerId != currentProvider && !current.isEmpty()) {
+                            byProvider.put(currentProvider, flatten(current));
+                            current.clear();
+                        }
+                        currentProvider = providerId;
+                        current.add(new double[]{((Number) row[1]).doubleValue(), ((Number) row[2]).doubleValue()});
+                    }
+                    if (!current.isEmpty()) {
+                        byProvider.put(currentProvider, flatten(current));
+                    }
+                }
+                return byProvider;
+            });
+            positions = loaded;
+            positionsGeneration = generation;
+            log.info("Loaded positions of {} providers for viewport streams in {} ms",
+                    loaded.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (Exception e) {
+            log.warn("Could not load positions for viewport streams: {}", e.getMessage());
+        }
+    }
+
+    private static double[] flatten(List<double[]> points) {
+        double[] flat = new double[points.size() * 2];
+        for (int i = 0; i < points.size(); i++) {
+            flat[2 * i] = points.get(i)[0];
+            flat[2 * i + 1] = points.get(i)[1];
+        }
+        return flat;
+    }
+
+    private void push(List<Long> providerIds) {
+        resyncIfPending();
+        List<SearchCandidate> current;
+        try {
+            current = databaseCircuitBreaker.execute(() -> readOnlyTransaction.execute(
+                    status -> searchCandidateLoader.loadByProviderIds(providerIds)));
+        } catch (Exception e) {
+            log.warn("Reload of {} changed providers for viewport streams failed: {}", providerIds.size(), e.getMessage());
+            lastPushed.invalidateAll(providerIds);
+            positionInvalidations.incrementAndGet();
+            resyncPending.set(true);
+            resyncIfPending();
+            return;
+        }
+
+        Map<Long, Map<Long, SearchCandidate>> byProvider = new HashMap<>();
+        for (SearchCandidate candidate : current) {
+            byProvider.computeIfAbsent(candidate.getProviderId(), id -> new HashMap<>())
+                    .put(candidate.getLocationId(), candidate);
+        }
+        boolean positionsKnown = positions != null && positionsGeneration == positionInvalidations.get();
+        boolean unknown = false;
+        Set<ViewportSubscription> resyncTargets = new LinkedHashSet<>();
+        for (Long providerId : providerIds) {
+            Map<Long, SearchCandidate> before = lastPushed.getIfPresent(providerId);
+            Map<Long, SearchCandidate> after = byProvider.getOrDefault(providerId, Map.of());
+            lastPushed.put(providerId, after);
+            if (before != null) {
+                Set<Long> locationIds = new LinkedHashSet<>(after.keySet());
+                locationIds.addAll(before.keySet());
+                for (Long locationId : locationIds) {
+                    pushLocation(before.get(locationId), after.get(locationId));
+                }
+            } else if (positionsKnown) {
+                // Not diffable, but only streams that could have shown it or can show it now care
+                double[] previous = positions.getOrDefault(providerId, new double[0]);
+                for (int i = 0; i < previous.length; i += 2) {
+                    index.collect(previous[i], previous[i + 1], resyncTargets);
+                }
+                for (SearchCandidate location : after.values()) {
+                    index.collect(location.getLatitude(), location.getLongitude(), resyncTargets);
+                }
+            } else {
+                unknown = true;
+            }
+            if (positionsKnown) {
+                positions.put(providerId, flatten(after.values().stream()
+                        .map(location -> new double[]{location.getLatitude(), location.getLongitude()})
+                        .collect(Collectors.toList())));
+            }
+        }
+        if (unknown) {
+            resyncPending.set(true);
+            resyncIfPending();
+            schedulePositionSeed();
+        } else {
+            resync(resyncTargets);
+        }
+    }
+
+    /**
+     * Send one location's change to the streams whose viewport held it before or holds it now
+     */
+    private void pushLocation(SearchCandidate before, SearchCandidate after) {
+        if (before != null && before.equals(after)) {
+            return;
+        }
+        Set<ViewportSubscription> affected = new LinkedHashSet<>();
+        if (before != null) {
+            index.collect(before.getLatitude(), before.getLongitude(), affected);
+        }
+        if (after != null) {
+            index.collect(after.getLatitude(), after.getLongitude(), affected);
+        }
+        if (affected.isEmpty()) {
+            return;
+        }
+
+        SearchCandidate location = after != null ? after : before;
+        String changed = null;
+        String gone = null;
+        for (ViewportSubscription subscription : affected) {
+            boolean matchedBefore = before != null && subscription.matches(before);
+            if (after != null && subscription.matches(after)) {
+                if (changed == null) {
+                    changed = toJson(location, true);
+                }
+                if (send(subscription, SseEmitter.event().name(matchedBefore ? "update" : "add")
+                        .data(changed, MediaType.APPLICATION_JSON))) {
+                    (matchedBefore ? updated : added).increment();
+                }
+            } else if (matchedBefore) {
+                if (gone == null) {
+                    gone = toJson(location, false);
+                }
+                if (send(subscription, SseEmitter.event().name("remove").data(gone, MediaType.APPLICATION_JSON))) {
+                    removed.increment();
+                }
+            }
+        }
+    }
+
+    private String toJson(SearchCandidate location, boolean withProvider) {
+        ViewportChangeEvent event = ViewportChangeEvent.builder()
+                .locationId(location.getLocationId())
+                .providerId(location.getProviderId())
+                .provider(withProvider ? location.getResponse() : null)
+                .build();
+        try {
+            // Serialized once per change and shared by every stream it is sent to
+            return objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize viewport change", e);
+        }
+    }
+
+    /**
+     * Queue an event for the stream and make sure a sender drains it; never blocks. A stream
+     * whose queue is full has stopped reading and is closed.
+     */
+    private boolean send(ViewportSubscription subscription, SseEmitter.SseEventBuilder event) {
+        if (subscription.isClosed()) {
+            return false;
+        }
+        if (!subscription.offer(event)) {
+            log.debug("Closing viewport stream {}: event queue full", subscription.getId());
+            droppedQueueFull.increment();
+            unsubscribe(subscription);
+            subscription.close();
+            scheduleDrain(subscription);
+            return false;
+        }
+        scheduleDrain(subscription);
+        return true;
+    }
+
+    private void scheduleDrain(ViewportSubscription subscription) {
+        if (!subscription.startDraining()) {
+            return;
+        }
+        try {
+            senders.execute(() -> drain(subscription));
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+            subscription.stopDraining();
+        }
+    }
+
+    /**
+     * Write up to one queue's worth of the stream's events, then yield the sender thread
+     */
+    private void drain(ViewportSubscription subscription) {
+        SseEmitter emitter = subscription.getEmitter();
+        for (int written = 0; written < subscriberQueueCapacity; written++) {
+            if (subscription.isClosed()) {
+                // The emitter is only touched by the draining thread, which may be blocked in a write
+                emitter.complete();
+                return;
+            }
+            SseEmitter.SseEventBuilder event = subscription.poll();
+            if (event == null) {
+                break;
+            }
+            try {
+                emitter.send(event);
+            } catch (Exception e) {
+                log.debug("Closing viewport stream {}: {}", subscription.getId(), e.getMessage());
+                droppedWriteFailed.increment();
+                unsubscribe(subscription);
+                subscription.close();
+                emitter.completeWithError(e);
+                return;
+            }
+        }
+        subscription.stopDraining();
+        // Events queued after the last poll, or a close, while this thread still held the drain
+        if (subscription.hasPending() || subscription.isClosed()) {
+            scheduleDrain(subscription);
+        }
+    }
+
+    private void unsubscribe(ViewportSubscription subscription) {
+        if (subscriptions.remove(subscription.getId(), subscription)) {
+            index.remove(subscription);
+        }
+    }
+}
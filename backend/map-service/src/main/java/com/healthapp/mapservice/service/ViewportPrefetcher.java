@@ -0,0 +1,267 @@
+package com.healthapp.mapservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.healthapp.mapservice.dto.ProviderSearchRequest;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Warms viewport tiles a client session is about to reach.
+ *
+ * Each session (identified by the {@code X-Client-Session} header) keeps its last viewport.
+ * The next viewport is extrapolated from the pan offset and zoom ratio between the last two,
+ * and the tiles covering it are loaded into {@link ViewportTileCache} in the background.
+ *
+ * Prefetching runs on a small pool of low-priority threads with a bounded queue; work that
+ * does not fit is dropped, tiles estimated above {@code app.map.prefetch.max-tile-rows}
+ * are skipped, nothing is prefetched until planner statistics have loaded, and each search
+ * schedules at most {@code app.map.prefetch.max-tiles-per-search}.
+ * Database loads run at background priority under the concurrency limiter and are shed
+ * before any user search.
+ */
+@Component
+@Slf4j
+public class ViewportPrefetcher {
+
+    private static final double MIN_ZOOM_RATIO = 0.25;
+    private static final double MAX_ZOOM_RATIO = 4.0;
+    private static final double MIN_MOVEMENT = 0.05;
+
+    private final ViewportTileCache viewportTileCache;
+    private final SearchQueryPlanner searchQueryPlanner;
+    private final TileAffinityRouter tileAffinityRouter;
+    private final Cache<String, SessionTrack> sessions;
+    private final Set<TileKey> inProgress = ConcurrentHashMap.newKeySet();
+    private final ThreadPoolExecutor executor;
+
+    private final Counter scheduled;
+    private final Counter dropped;
+    private final Counter skipped;
+    private final Counter failed;
+    private final Counter shed;
+
+    @Value("${app.map.prefetch.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.map.prefetch.lookahead:1.0}")
+    private double lookahead;
+
+    @Value("${app.map.prefetch.max-tile-rows:2000}")
+    private double maxTileRows;
+
+    @Value("${app.map.prefetch.max-tiles-per-search:9}")
+    private int maxTilesPerSearch;
+
+    @Value("${app.map.prefetch.idle-reset-ms:10000}")
+    private long idleResetMs;
+
+    public ViewportPrefetcher(ViewportTileCache viewportTileCache,
+                              SearchQueryPlanner searchQueryPlanner,
+                              TileAffinityRouter tileAffinityRouter,
+                              MeterRegistry meterRegistry,
+                              @Value("${app.map.prefetch.max-concurrency:2}") int maxConcurrency,
+                              @Value("${app.map.prefetch.queue-capacity:32}") int queueCapacity,
+                              @Value("${app.map.prefetch.session-ttl-seconds:600}") long sessionTtlSeconds) {
+        this.viewportTileCache = viewportTileCache;
+        this.searchQueryPlanner = searchQueryPlanner;
+        this.tileAffinityRouter = tileAffinityRouter;
+        this.sessions = Caffeine.newBuilder()
+                .expireAfterAccess(Duration.ofSeconds(sessionTtlSeconds))
+                .maximumSize(100_000)
+                .build();
+
+        this.scheduled = meterRegistry.counter("map.prefetch.scheduled");
+        this.dropped = meterRegistry.counter("map.prefetch.skipped", "reason", "queue_full");
+        this.skipped = meterRegistry.counter("map.prefetch.skipped", "reason", "too_large");
+        this.failed = meterRegistry.counter("map.prefetch.failed");
+        this.shed = meterRegistry.counter("map.prefetch.skipped", "reason", "shed");
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                maxConcurrency, maxConcurrency, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "viewport-prefetch-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+        meterRegistry.gauge("map.prefetch.queue", executor, pool -> pool.getQueue().size());
+    }
+
+    /**
+     * Record a foreground search for a session and schedule prefetching of predicted tiles
+     */
+    public void onSearch(String sessionId, ProviderSearchRequest request) {
+        if (!enabled || sessionId == null || sessionId.isBlank()) {
+            return;
+        }
+        // Without statistics the max-tile-rows guard cannot see dense tiles
+        if (!searchQueryPlanner.hasStatistics()) {
+            return;
+        }
+
+        Viewport current = Viewport.of(request, System.currentTimeMillis());
+        Viewport previous = sessions.get(sessionId, id -> new SessionTrack()).advance(current);
+        if (previous == null || current.timestamp - previous.timestamp > idleResetMs) {
+            return;
+        }
+
+        Viewport predicted = predict(previous, current);
+        if (predicted == null) {
+            return;
+        }
+        // Another instance owns the predicted viewport and will cache it when the search arrives
+        if (!tileAffinityRouter.isLocal(predicted.westLng(), predicted.southLat(), predicted.eastLng(), predicted.northLat())) {
+            return;
+        }
+
+        List<TileKey> tiles = TileKey.covering(
+                predicted.westLng(), predicted.southLat(), predicted.eastLng(), predicted.northLat());
+        int budget = maxTilesPerSearch;
+        for (TileKey tile : tiles) {
+            if (budget == 0) {
+                break;
+            }
+            if (viewportTileCache.contains(tile) || inProgress.contains(tile)) {
+                continue;
+            }
+            if (searchQueryPlanner.estimateViewportRows(tile.getWestLng(), tile.getSouthLat(),
+                    tile.getEastLng(), tile.getNorthLat()) > maxTileRows) {
+                skipped.increment();
+                continue;
+            }
+            schedule(tile);
+            budget--;
+        }
+    }
+
+    private void schedule(TileKey tile) {
+        if (!inProgress.add(tile)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    viewportTileCache.load(tile, true);
+                } catch (ServiceOverloadedException | DatabaseUnavailableException e) {
+                    // Prefetching is optional work; a shed or breaker rejection is expected
+                    shed.increment();
+                } catch (Exception e) {
+                    failed.increment();
+                    log.debug("Prefetch of tile {} failed: {}", tile, e.getMessage());
+                } finally {
+                    inProgress.remove(tile);
+                }
+            });
+            scheduled.increment();
+        } catch (RejectedExecutionException e) {
+            dropped.increment();
+            inProgress.remove(tile);
+        }
+    }
+
+    /**
+     * Extrapolate the next viewport from the movement between the last two.
+     * Returns null when the session is not moving.
+     */
+    private Viewport predict(Viewport previous, Viewport current) {
+        if (current.latSpan <= 0 || current.lngSpan <= 0) {
+            return null;
+        }
+        double dLat = current.centerLat - previous.centerLat;
+        double dLng = current.centerLng - previous.centerLng;
+        double zoomRatio = previous.latSpan > 0 ? current.latSpan / previous.latSpan : 1.0;
+        zoomRatio = Math.max(MIN_ZOOM_RATIO, Math.min(MAX_ZOOM_RATIO, zoomRatio));
+
+        double relativeMovement = Math.max(Math.abs(dLat) / current.latSpan, Math.abs(dLng) / current.lngSpan);
+        if (relativeMovement < MIN_MOVEMENT && Math.abs(zoomRatio - 1.0) < MIN_MOVEMENT) {
+            return null;
+        }
+
+        double scale = Math.pow(zoomRatio, lookahead);
+        return new Viewport(
+                current.centerLat + dLat * lookahead,
+                current.centerLng + dLng * lookahead,
+                Math.min(180, current.latSpan * scale),
+                Math.min(360, current.lngSpan * scale),
+                current.timestamp);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Last viewport seen for a session
+     */
+    private static final class SessionTrack {
+
+        private Viewport last;
+
+        synchronized Viewport advance(Viewport current) {
+            Viewport previous = last;
+            last = current;
+            return previous;
+        }
+    }
+
+    private static final class Viewport {
+
+        final double centerLat;
+        final double centerLng;
+        final double latSpan;
+        final double lngSpan;
+        final long timestamp;
+
+        Viewport(double centerLat, double centerLng, double latSpan, double lngSpan, long timestamp) {
+            this.centerLat = centerLat;
+            this.centerLng = centerLng;
+            this.latSpan = latSpan;
+            this.lngSpan = lngSpan;
+            this.timestamp = timestamp;
+        }
+
+        static Viewport of(ProviderSearchRequest request, long timestamp) {
+            return new Viewport(
+                    (request.getNorthLat() + request.getSouthLat()) / 2,
+                    (request.getEastLng() + request.getWestLng()) / 2,
+                    request.getNorthLat() - request.getSouthLat(),
+                    request.getEastLng() - request.getWestLng(),
+                    timestamp);
+        }
+
+        double southLat() {
+            return Math.max(-90, centerLat - latSpan / 2);
+        }
+
+        double northLat() {
+            return Math.min(90, centerLat + latSpan / 2);
+        }
+
+        double westLng() {
+            return Math.max(-180, centerLng - lngSpan / 2);
+        }
+
+        double eastLng() {
+            return Math.min(180, centerLng + lngSpan / 2);
+        }
+    }
+}
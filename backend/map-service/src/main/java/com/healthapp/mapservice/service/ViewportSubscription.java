@@ -0,0 +1,98 @@
+package com.healthapp.mapservice.service;
+
+import com.healthapp.mapservice.dto.ProviderSearchRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * An open viewport stream: the viewport and filters a client subscribed with, the emitter
+ * its events are written to, the bounded queue of events not yet written and the tiles it
+ * is indexed under. At most one thread drains the queue at a time, so events are written
+ * in the order they were queued.
+ */
+final class ViewportSubscription {
+
+    private final long id;
+    private final ProviderSearchRequest request;
+    private final SseEmitter emitter;
+    private final List<TileKey> tiles;
+    private final BlockingQueue<SseEmitter.SseEventBuilder> pending;
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private volatile boolean closed;
+
+    ViewportSubscription(long id, ProviderSearchRequest request, SseEmitter emitter, int queueCapacity) {
+        this.id = id;
+        this.request = request;
+        this.emitter = emitter;
+        this.pending = new ArrayBlockingQueue<>(queueCapacity);
+        this.tiles = TileKey.covering(
+                request.getWestLng(), request.getSouthLat(), request.getEastLng(), request.getNorthLat());
+    }
+
+    long getId() {
+        return id;
+    }
+
+    SseEmitter getEmitter() {
+        return emitter;
+    }
+
+    List<TileKey> getTiles() {
+        return tiles;
+    }
+
+    /**
+     * Queue an event for writing; false when the queue is full or the stream is closed
+     */
+    boolean offer(SseEmitter.SseEventBuilder event) {
+        return !closed && pending.offer(event);
+    }
+
+    SseEmitter.SseEventBuilder poll() {
+        return pending.poll();
+    }
+
+    boolean hasPending() {
+        return !pending.isEmpty();
+    }
+
+    /**
+     * Claim the right to drain the queue; false if another thread holds it
+     */
+    boolean startDraining() {
+        return draining.compareAndSet(false, true);
+    }
+
+    void stopDraining() {
+        draining.set(false);
+    }
+
+    /**
+     * Discard queued events; the draining thread completes the emitter
+     */
+    void close() {
+        closed = true;
+        pending.clear();
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    boolean contains(double latitude, double longitude) {
+        return latitude >= request.getSouthLat() && latitude <= request.getNorthLat()
+                && longitude >= request.getWestLng() && longitude <= request.getEastLng();
+    }
+
+    /**
+     * Whether the location is in the viewport and passes the subscription's filters
+     */
+    boolean matches(SearchCandidate candidate) {
+        return candidate.isWithin(request.getWestLng(), request.getSouthLat(), request.getEastLng(), request.getNorthLat())
+                && CandidateSearch.matches(candidate, request);
+    }
+}
@@ -0,0 +1,64 @@
+package com.healthapp.mapservice.service;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Spatial index of viewport subscriptions.
+ *
+ * Each subscription is registered under the tiles covering its viewport at the zoom level
+ * chosen for it, at most three by three cells. The subscriptions whose viewport may hold a
+ * point are found by looking up the one tile containing the point at each zoom level that
+ * has subscriptions, so a change costs at most {@code MAX_ZOOM + 1} map lookups however many
+ * streams are open, and only subscriptions near the point are tested exactly.
+ */
+final class ViewportSubscriptionIndex {
+
+    private final Map<TileKey, Set<ViewportSubscription>> tiles = new ConcurrentHashMap<>();
+    private final AtomicIntegerArray subscriptionsPerZoom = new AtomicIntegerArray(TileKey.MAX_ZOOM + 1);
+
+    void add(ViewportSubscription subscription) {
+        for (TileKey tile : subscription.getTiles()) {
+            // Added inside compute so a concurrent remove cannot drop the set in between
+            tiles.compute(tile, (key, subscriptions) -> {
+                Set<ViewportSubscription> set = subscriptions != null ? subscriptions : ConcurrentHashMap.newKeySet();
+                set.add(subscription);
+                return set;
+            });
+        }
+        subscriptionsPerZoom.incrementAndGet(subscription.getTiles().get(0).getZoom());
+    }
+
+    void remove(ViewportSubscription subscription) {
+        for (TileKey tile : subscription.getTiles()) {
+            tiles.computeIfPresent(tile, (key, subscriptions) -> {
+                subscriptions.remove(subscription);
+                return subscriptions.isEmpty() ? null : subscriptions;
+            });
+        }
+        subscriptionsPerZoom.decrementAndGet(subscription.getTiles().get(0).getZoom());
+    }
+
+    /**
+     * Add the subscriptions whose viewport contains the point to {@code result}
+     */
+    void collect(double latitude, double longitude, Collection<ViewportSubscription> result) {
+        for (int zoom = 0; zoom <= TileKey.MAX_ZOOM; zoom++) {
+            if (subscriptionsPerZoom.get(zoom) == 0) {
+                continue;
+            }
+            Set<ViewportSubscription> subscriptions = tiles.get(TileKey.containing(longitude, latitude, zoom));
+            if (subscriptions == null) {
+                continue;
+            }
+            for (ViewportSubscription subscription : subscriptions) {
+                if (subscription.contains(latitude, longitude)) {
+                    result.add(subscription);
+                }
+            }
+        }
+    }
+}
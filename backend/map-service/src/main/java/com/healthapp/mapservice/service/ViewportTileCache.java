@@ -0,0 +1,222 @@
+package com.healthapp.mapservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.healthapp.mapservice.dto.ProviderSearchRequest;
+import com.healthapp.mapservice.dto.ProviderSearchResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Node-local cache of search candidates per viewport tile.
+ *
+ * A search is answered from memory when every tile covering its viewport is cached;
+ * otherwise it goes to the database. Tiles are filled from the search snapshot when one
+ * is mapped and from the database otherwise. Tiles expire after
+ * {@code app.map.cache.viewport-ttl-seconds} and are weighted by candidate count; tiles
+ * touched by changed providers are evicted earlier by the {@link EntityCacheEvictor}.
+ */
+@Component
+@Slf4j
+public class ViewportTileCache {
+
+    private final SearchCandidateLoader searchCandidateLoader;
+    private final SearchSnapshotManager searchSnapshotManager;
+    private final RelevanceRanker relevanceRanker;
+    private final DatabaseCircuitBreaker databaseCircuitBreaker;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final TransactionTemplate readOnlyTransaction;
+    private final Cache<TileKey, CachedTile> tiles;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter prefetchedTiles;
+    private final Counter prefetchHits;
+
+    public ViewportTileCache(SearchCandidateLoader searchCandidateLoader,
+                             SearchSnapshotManager searchSnapshotManager,
+                             RelevanceRanker relevanceRanker,
+                             DatabaseCircuitBreaker databaseCircuitBreaker,
+                             AdaptiveConcurrencyLimiter concurrencyLimiter,
+                             PlatformTransactionManager transactionManager,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.map.cache.viewport-ttl-seconds:120}") long ttlSeconds,
+                             @Value("${app.map.cache.max-tile-candidates:200000}") long maxCandidates) {
+        this.searchCandidateLoader = searchCandidateLoader;
+        this.searchSnapshotManager = searchSnapshotManager;
+        this.relevanceRanker = relevanceRanker;
+        this.databaseCircuitBreaker = databaseCircuitBreaker;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.readOnlyTransaction.setTimeout(databaseCircuitBreaker.getQueryTimeoutSeconds());
+        this.tiles = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .maximumWeight(maxCandidates)
+                .weigher((TileKey key, CachedTile tile) -> tile.candidates.size() + 1)
+                .build();
+
+        this.hits = meterRegistry.counter("map.tiles.lookups", "result", "hit");
+        this.misses = meterRegistry.counter("map.tiles.lookups", "result", "miss");
+        this.prefetchedTiles = meterRegistry.counter("map.prefetch.tiles");
+        this.prefetchHits = meterRegistry.counter("map.prefetch.hits");
+        meterRegistry.gauge("map.tiles.cached", tiles, cache -> cache.estimatedSize());
+        meterRegistry.gauge("map.prefetch.hit.ratio", this, ViewportTileCache::prefetchHitRatio);
+    }
+
+    /**
+     * Answer a search from cached tiles if all tiles covering its viewport are present
+     */
+    public Optional<ProviderSearchResponse> search(ProviderSearchRequest request) {
+        if (!CandidateSearch.supports(request)) {
+            return Optional.empty();
+        }
+
+        List<TileKey> keys = TileKey.covering(
+                request.getWestLng(), request.getSouthLat(), request.getEastLng(), request.getNorthLat());
+        List<CachedTile> covering = new ArrayList<>(keys.size());
+        for (TileKey key : keys) {
+            CachedTile tile = tiles.getIfPresent(key);
+            if (tile == null) {
+                misses.increment();
+                return Optional.empty();
+            }
+            covering.add(tile);
+        }
+
+        hits.increment();
+        for (CachedTile tile : covering) {
+            if (tile.prefetched && tile.used.compareAndSet(false, true)) {
+                prefetchHits.increment();
+            }
+        }
+        return Optional.of(CandidateSearch.search(union(covering), request, relevanceRanker));
+    }
+
+    /**
+     * Whether a tile is currently cached
+     */
+    public boolean contains(TileKey key) {
+        return tiles.getIfPresent(key) != null;
+    }
+
+    /**
+     * Whether a tile is missing or expires within the given time
+     */
+    public boolean expiresWithin(TileKey key, Duration window) {
+        return tiles.policy().expireAfterWrite()
+                .map(policy -> {
+                    OptionalLong age = policy.ageOf(key, TimeUnit.NANOSECONDS);
+                    return age.isEmpty()
+                            || policy.getExpiresAfter(TimeUnit.NANOSECONDS) - age.getAsLong() <= window.toNanos();
+                })
+                .orElseGet(() -> !contains(key));
+    }
+
+    /**
+     * Drop cached tiles that overlap any of the given tiles or hold a location of any of the
+     * given providers, which also covers locations that moved out of a tile
+     */
+    public void evict(Collection<TileKey> changedTiles, Collection<Long> providerIds) {
+        if (changedTiles.isEmpty() && providerIds.isEmpty()) {
+            return;
+        }
+        Set<Long> providers = new HashSet<>(providerIds);
+        tiles.asMap().entrySet().removeIf(entry -> overlapsAny(entry.getKey(), changedTiles)
+                || holdsAny(entry.getValue(), providers));
+    }
+
+    public void invalidateAll() {
+        tiles.invalidateAll();
+    }
+
+    /**
+     * Load a tile from the search snapshot, or the database when none is mapped, and cache it.
+     * Loads are speculative, so database loads run at background priority and throw
+     * {@link ServiceOverloadedException} when the limiter has no room for them.
+     */
+    public void load(TileKey key, boolean prefetched) {
+        List<SearchCandidate> candidates = searchSnapshotManager.candidatesInBounds(
+                        key.getWestLng(), key.getSouthLat(), key.getEastLng(), key.getNorthLat())
+                .orElseGet(() -> databaseCircuitBreaker.execute(
+                        () -> concurrencyLimiter.execute(RequestPriority.BACKGROUND,
+                                () -> readOnlyTransaction.execute(status -> searchCandidateLoader.loadInBounds(
+                                        key.getWestLng(), key.getSouthLat(), key.getEastLng(), key.getNorthLat())))));
+
+        tiles.put(key, new CachedTile(candidates, prefetched));
+        if (prefetched) {
+            prefetchedTiles.increment();
+        }
+        log.debug("Cached tile {} with {} candidates (prefetched: {})", key, candidates.size(), prefetched);
+    }
+
+    private static Collection<SearchCandidate> union(List<CachedTile> covering) {
+        if (covering.size() == 1) {
+            return covering.get(0).candidates;
+        }
+        // Locations on a shared tile edge are loaded into both tiles
+        Map<Long, SearchCandidate> byLocation = new LinkedHashMap<>();
+        for (CachedTile tile : covering) {
+            for (SearchCandidate candidate : tile.candidates) {
+                byLocation.putIfAbsent(candidate.getLocationId(), candidate);
+            }
+        }
+        return byLocation.values();
+    }
+
+    private static boolean overlapsAny(TileKey key, Collection<TileKey> changedTiles) {
+        for (TileKey changed : changedTiles) {
+            if (key.overlaps(changed)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean holdsAny(CachedTile tile, Set<Long> providerIds) {
+        if (providerIds.isEmpty()) {
+            return false;
+        }
+        for (SearchCandidate candidate : tile.candidates) {
+            if (providerIds.contains(candidate.getProviderId())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private double prefetchHitRatio() {
+        double loaded = prefetchedTiles.count();
+        return loaded > 0 ? prefetchHits.count() / loaded : 0.0;
+    }
+
+    private static final class CachedTile {
+
+        final List<SearchCandidate> candidates;
+        final boolean prefetched;
+        final AtomicBoolean used = new AtomicBoolean();
+
+        CachedTile(List<SearchCandidate> candidates, boolean prefetched) {
+            this.candidates = candidates;
+            this.prefetched = prefetched;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.healthapp.mapservice.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConsistentHashRingTest {
+
+    private static final int KEYS = 20000;
+
+    @Test
+    void emptyRingOwnsNothing() {
+        assertThat(new ConsistentHashRing(List.of(), 128).ownerOf("8/1/2")).isNull();
+    }
+
+    @Test
+    void ownerDoesNotDependOnMemberOrder() {
+        ConsistentHashRing forward = new ConsistentHashRing(List.of("a", "b", "c"), 64);
+        ConsistentHashRing reversed = new ConsistentHashRing(List.of("c", "b", "a"), 64);
+
+        for (int i = 0; i < 1000; i++) {
+            assertThat(forward.ownerOf(key(i))).isEqualTo(reversed.ownerOf(key(i)));
+        }
+    }
+
+    @Test
+    void keysSpreadRoughlyEvenly() {
+        ConsistentHashRing ring = new ConsistentHashRing(List.of("a", "b", "c", "d"), 128);
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            counts.merge(ring.ownerOf(key(i)), 1, Integer::sum);
+        }
+
+        assertThat(counts).hasSize(4);
+        for (int count : counts.values()) {
+            assertThat(count).isBetween(KEYS / 4 * 7 / 10, KEYS / 4 * 13 / 10);
+        }
+    }
+
+    @Test
+    void addingAMemberOnlyMovesKeysToIt() {
+        ConsistentHashRing before = new ConsistentHashRing(List.of("a", "b", "c"), 128);
+        ConsistentHashRing after = new ConsistentHashRing(List.of("a", "b", "c", "d"), 128);
+
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String was = before.ownerOf(key(i));
+            String is = after.ownerOf(key(i));
+            if (!was.equals(is)) {
+                assertThat(is).isEqualTo("d");
+                moved++;
+            }
+        }
+        assertThat(moved).isBetween(KEYS / 4 * 7 / 10, KEYS / 4 * 13 / 10);
+    }
+
+    @Test
+    void removingAMemberOnlyMovesItsKeys() {
+        ConsistentHashRing before = new ConsistentHashRing(List.of("a", "b", "c"), 128);
+        ConsistentHashRing after = new ConsistentHashRing(List.of("a", "c"), 128);
+
+        for (int i = 0; i < KEYS; i++) {
+            String was = before.ownerOf(key(i));
+            if (!was.equals("b")) {
+                assertThat(after.ownerOf(key(i))).isEqualTo(was);
+            }
+        }
+    }
+
+    @Test
+    void hashIsStable() {
+        assertThat(ConsistentHashRing.hash("12/654/1583")).isEqualTo(ConsistentHashRing.hash("12/654/1583"));
+        assertThat(ConsistentHashRing.hash("12/654/1583")).isNotEqualTo(ConsistentHashRing.hash("12/654/1584"));
+    }
+
+    private static String key(int i) {
+        return "12/" + (i % 150) + "/" + (i / 150);
+    }
+}
@@ -0,0 +1,119 @@
+package com.healthapp.mapservice.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EventRingBufferTest {
+
+    @Test
+    void capacityRoundsUpToAPowerOfTwo() {
+        assertThat(new EventRingBuffer<>(4).capacity()).isEqualTo(4);
+        assertThat(new EventRingBuffer<>(5).capacity()).isEqualTo(8);
+        assertThat(new EventRingBuffer<>(1000).capacity()).isEqualTo(1024);
+    }
+
+    @Test
+    void rejectsOffersWhenFull() {
+        EventRingBuffer<Integer> buffer = new EventRingBuffer<>(4);
+        for (int i = 0; i < 4; i++) {
+            assertThat(buffer.offer(i)).isTrue();
+        }
+
+        assertThat(buffer.offer(4)).isFalse();
+        assertThat(buffer.size()).isEqualTo(4);
+    }
+
+    @Test
+    void drainsInOrderUpToMax() {
+        EventRingBuffer<Integer> buffer = new EventRingBuffer<>(8);
+        for (int i = 0; i < 5; i++) {
+            buffer.offer(i);
+        }
+        List<Integer> drained = new ArrayList<>();
+
+        assertThat(buffer.drainTo(drained, 3)).isEqualTo(3);
+        assertThat(drained).containsExactly(0, 1, 2);
+        assertThat(buffer.drainTo(drained, 10)).isEqualTo(2);
+        assertThat(drained).containsExactly(0, 1, 2, 3, 4);
+        assertThat(buffer.size()).isZero();
+    }
+
+    @Test
+    void reusesSlotsAfterDraining() {
+        EventRingBuffer<Integer> buffer = new EventRingBuffer<>(4);
+        List<Integer> drained = new ArrayList<>();
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 4; i++) {
+                assertThat(buffer.offer(round * 4 + i)).isTrue();
+            }
+            assertThat(buffer.drainTo(drained, 4)).isEqualTo(4);
+        }
+
+        assertThat(drained).hasSize(40);
+        for (int i = 0; i < 40; i++) {
+            assertThat(drained.get(i)).isEqualTo(i);
+        }
+    }
+
+    @Test
+    void concurrentProducersLoseNothingAndKeepTheirOwnOrder() throws Exception {
+        int producers = 4;
+        int perProducer = 20_000;
+        EventRingBuffer<long[]> buffer = new EventRingBuffer<>(256);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < perProducer; i++) {
+                    long[] event = {producer, i};
+                    while (!buffer.offer(event)) {
+                        Thread.yield();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        start.countDown();
+        long[] nextExpected = new long[producers];
+        int outOfOrder = 0;
+        List<long[]> batch = new ArrayList<>();
+        int received = 0;
+        long deadline = System.nanoTime() + 30_000_000_000L;
+        while (received < producers * perProducer && System.nanoTime() < deadline) {
+            batch.clear();
+            int drained = buffer.drainTo(batch, 64);
+            if (drained == 0) {
+                Thread.yield();
+            }
+            received += drained;
+            for (long[] event : batch) {
+                int producer = (int) event[0];
+                if (event[1] != nextExpected[producer]) {
+                    outOfOrder++;
+                }
+                nextExpected[producer] = event[1] + 1;
+            }
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(received).isEqualTo(producers * perProducer);
+        assertThat(outOfOrder).isZero();
+        assertThat(buffer.size()).isZero();
+    }
+}
@@ -0,0 +1,89 @@
+package com.healthapp.mapservice.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class HeavyHitterSketchTest {
+
+    @Test
+    void countsFewKeysExactly() {
+        HeavyHitterSketch<String> sketch = new HeavyHitterSketch<>(4, 1024, 10);
+        add(sketch, "a", 5);
+        add(sketch, "b", 3);
+        add(sketch, "c", 1);
+
+        assertThat(sketch.top(10)).extracting(Map.Entry::getKey).containsExactly("a", "b", "c");
+        assertThat(sketch.top(10)).extracting(Map.Entry::getValue).containsExactly(5.0, 3.0, 1.0);
+        assertThat(sketch.total()).isEqualTo(9.0);
+    }
+
+    @Test
+    void topHonoursTheLimit() {
+        HeavyHitterSketch<Integer> sketch = new HeavyHitterSketch<>(4, 1024, 10);
+        for (int key = 1; key <= 5; key++) {
+            add(sketch, key, key);
+        }
+
+        assertThat(sketch.top(2)).extracting(Map.Entry::getKey).containsExactly(5, 4);
+    }
+
+    @Test
+    void findsHeavyHittersInNoiseWithoutUndercounting() {
+        HeavyHitterSketch<Integer> sketch = new HeavyHitterSketch<>(4, 256, 20);
+        Map<Integer, Integer> exact = new HashMap<>();
+        Random random = new Random(11);
+        for (int i = 0; i < 50_000; i++) {
+            // One add in five goes to one of five hot keys, the rest to a long tail
+            int key = random.nextInt(5) == 0 ? random.nextInt(5) : 100 + random.nextInt(20_000);
+            sketch.add(key);
+            exact.merge(key, 1, Integer::sum);
+        }
+
+        List<Map.Entry<Integer, Double>> top = sketch.top(5);
+        assertThat(top).extracting(Map.Entry::getKey).containsExactlyInAnyOrder(0, 1, 2, 3, 4);
+        for (Map.Entry<Integer, Double> entry : top) {
+            assertThat(entry.getValue()).isGreaterThanOrEqualTo(exact.get(entry.getKey()).doubleValue());
+        }
+    }
+
+    @Test
+    void newHeavyHitterDisplacesTheSmallestTrackedKey() {
+        HeavyHitterSketch<String> sketch = new HeavyHitterSketch<>(4, 1024, 2);
+        add(sketch, "a", 10);
+        add(sketch, "b", 2);
+        add(sketch, "c", 5);
+
+        assertThat(sketch.size()).isEqualTo(2);
+        assertThat(sketch.top(2)).extracting(Map.Entry::getKey).containsExactly("a", "c");
+    }
+
+    @Test
+    void decayScalesCountsAndDropsKeysBelowOne() {
+        HeavyHitterSketch<String> sketch = new HeavyHitterSketch<>(4, 1024, 10);
+        add(sketch, "hot", 8);
+        add(sketch, "cold", 1);
+
+        sketch.decay(0.5);
+
+        assertThat(sketch.top(10)).extracting(Map.Entry::getKey).containsExactly("hot");
+        assertThat(sketch.top(10).get(0).getValue()).isCloseTo(4.0, within(1e-9));
+        assertThat(sketch.total()).isCloseTo(4.5, within(1e-9));
+
+        // Later adds build on the decayed count
+        sketch.add("hot");
+        assertThat(sketch.top(1).get(0).getValue()).isCloseTo(5.0, within(1e-9));
+    }
+
+    private static <K> void add(HeavyHitterSketch<K> sketch, K key, int times) {
+        for (int i = 0; i < times; i++) {
+            sketch.add(key);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.healthapp.mapservice.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RegionPartitionsTest {
+
+    private static final double EARTH_RADIUS_KM = 6371.0088;
+
+    @Test
+    void singleCellBoundsCoverOnlyThatCell() {
+        assertThat(RegionPartitions.covering(10.2, 50.1, 11.8, 51.9))
+                .containsExactly(regionKey(51, 11));
+    }
+
+    @Test
+    void largeBoundsCoverEveryPartitionOnce() {
+        List<Integer> keys = RegionPartitions.covering(-180, -90, 180, 90);
+
+        assertThat(keys).hasSize(RegionPartitions.PARTITIONS).doesNotHaveDuplicates();
+    }
+
+    @Test
+    void radiusReachingPastACellEdgeAtTheEquatorKeepsTheNextRow() {
+        // 110.9 km north of latitude 1 is about latitude 2.003 on the ellipsoid, one row up
+        List<Integer> keys = RegionPartitions.coveringRadius(1.0, 0.5, 110.9);
+
+        assertThat(keys).contains(regionKey(2.003, 0.5));
+    }
+
+    @Test
+    void radiusAroundThePoleCoversEveryLongitude() {
+        List<Integer> keys = RegionPartitions.coveringRadius(89.5, 0, 100);
+
+        for (double lng = -179; lng < 180; lng += 2) {
+            assertThat(keys).contains(regionKey(89.9, lng));
+        }
+    }
+
+    @Test
+    void radiusCoversEveryPointWithinIt() {
+        Random random = new Random(7);
+        for (int i = 0; i < 2000; i++) {
+            double lat = random.nextDouble() * 170 - 85;
+            double lng = random.nextDouble() * 360 - 180;
+            double radiusKm = 1 + random.nextDouble() * 300;
+            List<Integer> keys = RegionPartitions.coveringRadius(lat, lng, radiusKm);
+
+            for (int bearing = 0; bearing < 360; bearing += 15) {
+                double[] point = destination(lat, lng, bearing, radiusKm);
+                assertThat(keys)
+                        .as("(%s, %s) r=%s bearing %s", lat, lng, radiusKm, bearing)
+                        .contains(regionKey(point[0], point[1]));
+            }
+        }
+    }
+
+    /**
+     * Mirrors provider.region_key(lat, lng)
+     */
+    private static int regionKey(double lat, double lng) {
+        int row = (int) Math.floor((lat + 90) / RegionPartitions.CELL_DEGREES);
+        int column = (int) Math.floor((lng + 180) / RegionPartitions.CELL_DEGREES);
+        return Math.floorMod(row * RegionPartitions.CELLS_PER_ROW + column, RegionPartitions.PARTITIONS);
+    }
+
+    private static double[] destination(double lat, double lng, double bearingDegrees, double distanceKm) {
+        double angular = distanceKm / EARTH_RADIUS_KM;
+        double bearing = Math.toRadians(bearingDegrees);
+        double lat1 = Math.toRadians(lat);
+        double lat2 = Math.asin(Math.sin(lat1) * Math.cos(angular)
+                + Math.cos(lat1) * Math.sin(angular) * Math.cos(bearing));
+        double lng2 = Math.toRadians(lng) + Math.atan2(Math.sin(bearing) * Math.sin(angular) * Math.cos(lat1),
+                Math.cos(angular) - Math.sin(lat1) * Math.sin(lat2));
+        double wrapped = Math.toDegrees(lng2);
+        wrapped = ((wrapped + 540) % 360) - 180;
+        return new double[] {Math.toDegrees(lat2), wrapped};
+    }
+}
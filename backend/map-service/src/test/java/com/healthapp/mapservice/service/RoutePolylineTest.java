@@ -0,0 +1,224 @@
+package com.healthapp.mapservice.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RoutePolylineTest {
+
+    // Example from the encoded polyline algorithm documentation
+    private static final String EXAMPLE = "_p~iF~ps|U_ulLnnqC_mqNvxq`@";
+
+    private static final double KM_PER_DEGREE = 111.195;
+
+    @Test
+    void decodesTheReferenceExample() {
+        RoutePolyline route = RoutePolyline.decode(EXAMPLE, 5, 100);
+
+        assertThat(route.size()).isEqualTo(3);
+        assertThat(route.toWkt()).isEqualTo("LINESTRING(-120.200000 38.500000,-120.950000 40.700000,-126.453000 43.252000)");
+    }
+
+    @Test
+    void decodesSixDigitPrecision() {
+        String encoded = encode(new double[][] {{52.123456, 13.654321}, {52.223456, 13.754321}}, 6);
+
+        assertThat(RoutePolyline.decode(encoded, 6, 100).toWkt())
+                .isEqualTo("LINESTRING(13.654321 52.123456,13.754321 52.223456)");
+    }
+
+    @Test
+    void dropsRepeatedVertices() {
+        String encoded = encode(new double[][] {{1, 1}, {1, 1}, {2, 2}, {2, 2}}, 5);
+
+        assertThat(RoutePolyline.decode(encoded, 5, 100).size()).isEqualTo(2);
+    }
+
+    @Test
+    void rejectsMalformedInput() {
+        assertThatThrownBy(() -> RoutePolyline.decode("", 5, 100)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> RoutePolyline.decode(EXAMPLE, 7, 100)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> RoutePolyline.decode("_p~iF~ps|U_", 5, 100))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> RoutePolyline.decode("_p~iF ~ps|U", 5, 100))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> RoutePolyline.decode("_p~iF~ps|U", 5, 100))
+                .hasMessageContaining("two distinct vertices");
+        assertThatThrownBy(() -> RoutePolyline.decode(EXAMPLE, 5, 2)).hasMessageContaining("more than 2");
+    }
+
+    @Test
+    void rejectsCoordinatesOutOfRange() {
+        String encoded = encode(new double[][] {{95, 0}, {96, 0}}, 5);
+
+        assertThatThrownBy(() -> RoutePolyline.decode(encoded, 5, 100)).hasMessageContaining("out of range");
+    }
+
+    @Test
+    void simplifyDropsCollinearVerticesAndKeepsEndpoints() {
+        double[][] points = new double[101][];
+        for (int i = 0; i <= 100; i++) {
+            points[i] = new double[] {40 + i * 0.01, -75 + i * 0.01};
+        }
+        RoutePolyline route = RoutePolyline.decode(encode(points, 5), 5, 1000);
+
+        RoutePolyline simplified = route.simplify(0.01);
+
+        assertThat(simplified.toWkt()).isEqualTo("LINESTRING(-75.000000 40.000000,-74.000000 41.000000)");
+    }
+
+    @Test
+    void simplifiedRouteStaysWithinToleranceOfEveryVertex() {
+        double[][] points = wigglyRoute(2000, 3);
+        RoutePolyline route = RoutePolyline.decode(encode(points, 5), 5, 5000);
+
+        RoutePolyline.Simplified simplified = route.simplify(0.2, 1.0, 101);
+
+        assertThat(simplified.route.size()).isLessThanOrEqualTo(101);
+        assertThat(simplified.toleranceKm).isBetween(0.2, 1.0);
+        double[][] kept = vertices(simplified.route);
+        for (double[] point : points) {
+            assertThat(distanceToRouteKm(point, kept)).isLessThanOrEqualTo(simplified.toleranceKm * 1.01);
+        }
+    }
+
+    @Test
+    void cappedSimplificationKeepsUnsplitRangesWithinTolerance() {
+        double[][] points = wigglyRoute(2000, 7);
+        RoutePolyline route = RoutePolyline.decode(encode(points, 5), 5, 5000);
+
+        RoutePolyline capped = route.simplify(0.2, 5000);
+        RoutePolyline full = route.simplify(0.2);
+
+        assertThat(capped.size()).isGreaterThan(full.size());
+        double[][] kept = vertices(capped);
+        for (double[] point : points) {
+            assertThat(distanceToRouteKm(point, kept)).isLessThanOrEqualTo(0.2 * 1.01);
+        }
+    }
+
+    @Test
+    void denseRoutesStayWithinToleranceAcrossDoublings() {
+        // About 11 m between vertices, so the radial pass does most of the work
+        double[][] points = new double[50_000][];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = new double[] {45 + i * 0.0001, 5 + Math.sin(i / 500.0) * 0.05};
+        }
+        RoutePolyline route = RoutePolyline.decode(encode(points, 5), 5, 50_000);
+
+        RoutePolyline.Simplified simplified = route.simplify(0.01, 2.0, 60);
+
+        assertThat(simplified.route.size()).isLessThanOrEqualTo(60);
+        assertThat(simplified.toleranceKm).isGreaterThan(0.01).isLessThanOrEqualTo(2.0);
+        double[][] kept = vertices(simplified.route);
+        for (int i = 0; i < points.length; i += 7) {
+            assertThat(distanceToRouteKm(points[i], kept)).isLessThanOrEqualTo(simplified.toleranceKm * 1.01);
+        }
+    }
+
+    @Test
+    void simplifyRejectsRoutesThatNeedMoreThanTheMaximumTolerance() {
+        RoutePolyline route = RoutePolyline.decode(encode(wigglyRoute(2000, 3), 5), 5, 5000);
+
+        assertThatThrownBy(() -> route.simplify(0.01, 0.02, 10))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("too detailed");
+    }
+
+    @Test
+    void regionsCoverEveryPointWithinTheBuffer() {
+        Random random = new Random(5);
+        // Crosses the 2-degree region grid in both directions
+        RoutePolyline route = RoutePolyline.decode(
+                encode(new double[][] {{47.9, 7.9}, {50.1, 10.1}, {51.95, 6.05}}, 5), 5, 100);
+        double bufferKm = 10;
+        List<Integer> keys = route.regions(bufferKm);
+        double[][] vertices = vertices(route);
+
+        for (int i = 0; i < 20_000; i++) {
+            double[] point = {47.5 + random.nextDouble() * 5, 5.5 + random.nextDouble() * 5};
+            if (distanceToRouteKm(point, vertices) <= bufferKm) {
+                assertThat(keys).contains(regionKey(point[0], point[1]));
+            }
+        }
+    }
+
+    private static double[][] wigglyRoute(int vertices, long seed) {
+        Random random = new Random(seed);
+        double[][] points = new double[vertices][];
+        double lat = 45;
+        double lng = 5;
+        for (int i = 0; i < vertices; i++) {
+            lat += 0.001 + (random.nextDouble() - 0.5) * 0.004;
+            lng += 0.002 + (random.nextDouble() - 0.5) * 0.004;
+            points[i] = new double[] {Math.round(lat * 1e5) / 1e5, Math.round(lng * 1e5) / 1e5};
+        }
+        return points;
+    }
+
+    private static double[][] vertices(RoutePolyline route) {
+        String wkt = route.toWkt();
+        String[] pairs = wkt.substring("LINESTRING(".length(), wkt.length() - 1).split(",");
+        double[][] vertices = new double[pairs.length][];
+        for (int i = 0; i < pairs.length; i++) {
+            String[] lngLat = pairs[i].split(" ");
+            vertices[i] = new double[] {Double.parseDouble(lngLat[1]), Double.parseDouble(lngLat[0])};
+        }
+        return vertices;
+    }
+
+    /**
+     * Distance from a point to a polyline on a local equirectangular projection
+     */
+    private static double distanceToRouteKm(double[] point, double[][] route) {
+        double cosLat = Math.cos(Math.toRadians(point[0]));
+        double px = point[1] * cosLat;
+        double py = point[0];
+        double nearest = Double.MAX_VALUE;
+        for (int i = 1; i < route.length; i++) {
+            double ax = route[i - 1][1] * cosLat;
+            double ay = route[i - 1][0];
+            double dx = route[i][1] * cosLat - ax;
+            double dy = route[i][0] - ay;
+            double lengthSquared = dx * dx + dy * dy;
+            double t = lengthSquared > 0 ? Math.max(0, Math.min(1, ((px - ax) * dx + (py - ay) * dy) / lengthSquared)) : 0;
+            nearest = Math.min(nearest, Math.hypot(px - (ax + t * dx), py - (ay + t * dy)) * KM_PER_DEGREE);
+        }
+        return nearest;
+    }
+
+    private static int regionKey(double lat, double lng) {
+        int row = (int) Math.floor((lat + 90) / RegionPartitions.CELL_DEGREES);
+        int column = (int) Math.floor((lng + 180) / RegionPartitions.CELL_DEGREES);
+        return Math.floorMod(row * RegionPartitions.CELLS_PER_ROW + column, RegionPartitions.PARTITIONS);
+    }
+
+    private static String encode(double[][] points, int precision) {
+        double factor = Math.pow(10, precision);
+        StringBuilder encoded = new StringBuilder();
+        long lastLat = 0;
+        long lastLng = 0;
+        for (double[] point : points) {
+            long lat = Math.round(point[0] * factor);
+            long lng = Math.round(point[1] * factor);
+            encodeValue(lat - lastLat, encoded);
+            encodeValue(lng - lastLng, encoded);
+            lastLat = lat;
+            lastLng = lng;
+        }
+        return encoded.toString();
+    }
+
+    private static void encodeValue(long value, StringBuilder encoded) {
+        long shifted = value < 0 ? ~(value << 1) : value << 1;
+        while (shifted >= 0x20) {
+            encoded.append((char) ((0x20 | (shifted & 0x1f)) + 63));
+            shifted >>= 5;
+        }
+        encoded.append((char) (shifted + 63));
+    }
+}
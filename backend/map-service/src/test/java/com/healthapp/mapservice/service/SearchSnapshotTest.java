@@ -0,0 +1,249 @@
+package com.healthapp.mapservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.healthapp.mapservice.dto.LocationResponse;
+import com.healthapp.mapservice.dto.ProviderResponse;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SearchSnapshotTest {
+
+    private static final long WATERMARK = 1_700_000_000_000L;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void roundTripsEveryRowField() throws IOException {
+        Path path = write(List.of(
+                candidate(1, 10, 40.0, -74.0, 3, Set.of(5, 2), Set.of(7), true, false, "Ärztehaus Nord"),
+                candidate(2, 11, 39.5, -73.5, null, Set.of(), Set.of(), false, true, "Clinic"),
+                candidate(3, 11, 41.0, -75.0, 4, Set.of(9), Set.of(1, 2, 3), true, true, "Clinic")));
+
+        SearchSnapshot snapshot = SearchSnapshot.open(path);
+        List<SearchCandidate> rows = all(snapshot);
+
+        assertThat(snapshot.getRowCount()).isEqualTo(3);
+        assertThat(snapshot.getWatermarkMillis()).isEqualTo(WATERMARK);
+        assertThat(rows).extracting(SearchCandidate::getLocationId).containsExactly(2L, 1L, 3L);
+
+        SearchCandidate first = rows.get(1);
+        assertThat(first.getProviderId()).isEqualTo(10);
+        assertThat(first.getLatitude()).isEqualTo(40.0);
+        assertThat(first.getLongitude()).isEqualTo(-74.0);
+        assertThat(first.getProviderTypeId()).isEqualTo(3);
+        assertThat(first.getSpecialtyIds()).containsExactlyInAnyOrder(2, 5);
+        assertThat(first.getLanguageIds()).containsExactly(7);
+        assertThat(first.isVerified()).isTrue();
+        assertThat(first.isRegistered()).isFalse();
+        assertThat(first.getProviderNameLower()).isEqualTo("ärztehaus nord");
+        assertThat(first.getLocationNameLower()).isEqualTo("location 1");
+        assertThat(first.getResponse().getName()).isEqualTo("Ärztehaus Nord");
+        assertThat(first.getResponse().getVersion()).isEqualTo(WATERMARK);
+
+        SearchCandidate second = rows.get(0);
+        assertThat(second.getProviderTypeId()).isNull();
+        assertThat(second.getSpecialtyIds()).isEmpty();
+        assertThat(second.getLanguageIds()).isEmpty();
+        assertThat(second.isVerified()).isFalse();
+        assertThat(second.isRegistered()).isTrue();
+
+        assertThat(rows.get(2).getLanguageIds()).containsExactlyInAnyOrder(1, 2, 3);
+    }
+
+    @Test
+    void writesTheDocumentedHeaderAndAlignedSections() throws IOException {
+        List<SearchCandidate> candidates = List.of(
+                candidate(1, 10, 1.0, 1.0, 1, Set.of(1, 2, 3), Set.of(4), false, false, "A"),
+                candidate(2, 20, 2.0, 2.0, 2, Set.of(5), Set.of(), false, false, "B"),
+                candidate(3, 30, 3.0, 3.0, 3, Set.of(), Set.of(6, 7), false, false, "C"));
+        Path path = write(candidates);
+        ByteBuffer file = ByteBuffer.wrap(Files.readAllBytes(path));
+        int rows = candidates.size();
+
+        assertThat(file.getInt(0)).isEqualTo(SearchSnapshot.MAGIC);
+        assertThat(file.getInt(4)).isEqualTo(SearchSnapshot.VERSION);
+        assertThat(file.getLong(16)).isEqualTo(WATERMARK);
+        assertThat(file.getInt(24)).isEqualTo(rows);
+        assertThat(file.getInt(28)).isEqualTo(4);
+        assertThat(file.getInt(32)).isEqualTo(3);
+        long displayBytes = file.getLong(40);
+
+        // Fixed-width columns follow the 64-byte header back to back
+        assertThat(file.getDouble(64)).isEqualTo(1.0);
+        assertThat(file.getDouble(64 + rows * 8)).isEqualTo(1.0);
+        assertThat(file.getLong(64 + rows * 16)).isEqualTo(1L);
+        assertThat(file.getLong(64 + rows * 24 + 16)).isEqualTo(30L);
+        assertThat(file.getInt(64 + rows * 32 + 4)).isEqualTo(2);
+
+        // Each variable-length section starts on an 8-byte boundary with a leading zero offset
+        int specialtyOffsets = align(64 + rows * 37);
+        assertThat(offsets(file, specialtyOffsets, rows)).containsExactly(0, 3, 4, 4);
+        assertThat(file.getInt(specialtyOffsets + (rows + 1) * 4)).isEqualTo(1);
+
+        int languageOffsets = align(specialtyOffsets + (rows + 1) * 4 + 4 * 4);
+        assertThat(offsets(file, languageOffsets, rows)).containsExactly(0, 1, 1, 3);
+        assertThat(file.getInt(languageOffsets + (rows + 1) * 4)).isEqualTo(4);
+
+        int displayOffsets = align(languageOffsets + (rows + 1) * 4 + 3 * 4);
+        int display = displayOffsets + (rows + 1) * 8;
+        assertThat(file.getLong(displayOffsets)).isZero();
+        assertThat(file.getLong(displayOffsets + rows * 8)).isEqualTo(displayBytes);
+        assertThat(file.capacity()).isEqualTo(display + displayBytes);
+
+        int secondStart = (int) file.getLong(displayOffsets + 8);
+        int secondEnd = (int) file.getLong(displayOffsets + 16);
+        byte[] json = Arrays.copyOfRange(file.array(), display + secondStart, display + secondEnd);
+        assertThat(objectMapper.readValue(json, ProviderResponse.class).getName()).isEqualTo("B");
+    }
+
+    @Test
+    void includesRowsOnBothLatitudeEdges() throws IOException {
+        Path path = write(List.of(
+                candidate(1, 1, 9.999999, 0, null, Set.of(), Set.of(), false, false, "below"),
+                candidate(2, 1, 10.0, 0, null, Set.of(), Set.of(), false, false, "south edge"),
+                candidate(3, 1, 10.0, 0, null, Set.of(), Set.of(), false, false, "south edge"),
+                candidate(4, 1, 15.0, 0, null, Set.of(), Set.of(), false, false, "inside"),
+                candidate(5, 1, 20.0, 0, null, Set.of(), Set.of(), false, false, "north edge"),
+                candidate(6, 1, 20.000001, 0, null, Set.of(), Set.of(), false, false, "above")));
+        SearchSnapshot snapshot = SearchSnapshot.open(path);
+
+        assertThat(ids(snapshot, -1, 10.0, 1, 20.0)).containsExactly(2L, 3L, 4L, 5L);
+        assertThat(ids(snapshot, -1, 10.0, 1, 10.0)).containsExactly(2L, 3L);
+        assertThat(ids(snapshot, -1, -90, 1, 9.999999)).containsExactly(1L);
+        assertThat(ids(snapshot, -1, 20.000001, 1, 90)).containsExactly(6L);
+        assertThat(ids(snapshot, -1, 30.0, 1, 40.0)).isEmpty();
+        assertThat(ids(snapshot, 0.5, 0, 1, 90)).isEmpty();
+    }
+
+    @Test
+    void skipsExcludedLocations() throws IOException {
+        Path path = write(List.of(
+                candidate(1, 1, 1.0, 1.0, null, Set.of(), Set.of(), false, false, "A"),
+                candidate(2, 1, 2.0, 2.0, null, Set.of(), Set.of(), false, false, "B")));
+
+        List<SearchCandidate> rows = SearchSnapshot.open(path)
+                .candidatesInBounds(-180, -90, 180, 90, Set.of(1L), objectMapper);
+
+        assertThat(rows).extracting(SearchCandidate::getLocationId).containsExactly(2L);
+    }
+
+    @Test
+    void opensAnEmptySnapshot() throws IOException {
+        SearchSnapshot snapshot = SearchSnapshot.open(write(List.of()));
+
+        assertThat(snapshot.getRowCount()).isZero();
+        assertThat(all(snapshot)).isEmpty();
+    }
+
+    @Test
+    void rejectsTruncatedFiles() throws IOException {
+        byte[] bytes = Files.readAllBytes(write(List.of(
+                candidate(1, 1, 1.0, 1.0, null, Set.of(), Set.of(), false, false, "A"))));
+
+        Path truncated = directory.resolve("truncated.bin");
+        Files.write(truncated, Arrays.copyOf(bytes, bytes.length - 1));
+        assertThatThrownBy(() -> SearchSnapshot.open(truncated))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("truncated");
+
+        Path headerOnly = directory.resolve("header.bin");
+        Files.write(headerOnly, Arrays.copyOf(bytes, 20));
+        assertThatThrownBy(() -> SearchSnapshot.open(headerOnly))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("truncated");
+    }
+
+    @Test
+    void rejectsCorruptHeaders() throws IOException {
+        byte[] bytes = Files.readAllBytes(write(List.of(
+                candidate(1, 1, 1.0, 1.0, null, Set.of(), Set.of(), false, false, "A"))));
+
+        assertThatThrownBy(() -> SearchSnapshot.open(corrupt(bytes, 0, 0x12345678)))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Not a search snapshot");
+        assertThatThrownBy(() -> SearchSnapshot.open(corrupt(bytes, 4, SearchSnapshot.VERSION + 1)))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("version");
+        assertThatThrownBy(() -> SearchSnapshot.open(corrupt(bytes, 24, 2)))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("corrupt");
+        assertThatThrownBy(() -> SearchSnapshot.open(corrupt(bytes, 28, -1)))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("corrupt");
+    }
+
+    private Path write(List<SearchCandidate> candidates) throws IOException {
+        Path path = directory.resolve("snapshot-" + System.nanoTime() + ".bin");
+        try (SearchSnapshot.Writer writer = SearchSnapshot.writer(path, objectMapper)) {
+            for (SearchCandidate candidate : candidates) {
+                writer.add(candidate);
+            }
+            writer.finish(WATERMARK);
+        }
+        return path;
+    }
+
+    private Path corrupt(byte[] bytes, int offset, int value) throws IOException {
+        byte[] copy = bytes.clone();
+        ByteBuffer.wrap(copy).putInt(offset, value);
+        Path path = directory.resolve("corrupt-" + System.nanoTime() + ".bin");
+        Files.write(path, copy);
+        return path;
+    }
+
+    private List<SearchCandidate> all(SearchSnapshot snapshot) throws IOException {
+        return snapshot.candidatesInBounds(-180, -90, 180, 90, Set.of(), objectMapper);
+    }
+
+    private List<Long> ids(SearchSnapshot snapshot, double westLng, double southLat, double eastLng, double northLat)
+            throws IOException {
+        return snapshot.candidatesInBounds(westLng, southLat, eastLng, northLat, Set.of(), objectMapper).stream()
+                .map(SearchCandidate::getLocationId)
+                .collect(Collectors.toList());
+    }
+
+    private static int[] offsets(ByteBuffer file, int start, int rows) {
+        int[] offsets = new int[rows + 1];
+        for (int i = 0; i <= rows; i++) {
+            offsets[i] = file.getInt(start + i * 4);
+        }
+        return offsets;
+    }
+
+    private static int align(int offset) {
+        return (offset + 7) & ~7;
+    }
+
+    private static SearchCandidate candidate(long locationId, long providerId, double latitude, double longitude,
+                                             Integer providerTypeId, Set<Integer> specialties, Set<Integer> languages,
+                                             boolean verified, boolean registered, String name) {
+        ProviderResponse response = ProviderResponse.builder()
+                .id(providerId)
+                .name(name)
+                .locations(List.of(LocationResponse.builder()
+                        .id(locationId)
+                        .name("Location " + locationId)
+                        .latitude(latitude)
+                        .longitude(longitude)
+                        .build()))
+                .build();
+        return new SearchCandidate(locationId, providerId, latitude, longitude, providerTypeId, specialties,
+                languages, verified, registered, name, name.toLowerCase(Locale.ROOT), "location " + locationId, response);
+    }
+}
@@ -0,0 +1,75 @@
+package com.healthapp.mapservice.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TopKTest {
+
+    @Test
+    void keepsHighestScoresBestFirst() {
+        TopK<String> top = new TopK<>(3);
+        top.offer(0.1, 1, "a");
+        top.offer(0.9, 2, "b");
+        top.offer(0.5, 3, "c");
+        top.offer(0.7, 4, "d");
+        top.offer(0.2, 5, "e");
+
+        assertThat(top.best(0)).containsExactly("b", "d", "c");
+        assertThat(top.offered()).isEqualTo(5);
+    }
+
+    @Test
+    void breaksTiesByAscendingId() {
+        TopK<String> top = new TopK<>(2);
+        top.offer(1.0, 30, "thirty");
+        top.offer(1.0, 10, "ten");
+        top.offer(1.0, 20, "twenty");
+
+        assertThat(top.best(0)).containsExactly("ten", "twenty");
+    }
+
+    @Test
+    void bestSkipsTheOffset() {
+        TopK<Integer> top = new TopK<>(4);
+        for (int i = 0; i < 10; i++) {
+            top.offer(i, i, i);
+        }
+
+        assertThat(top.best(2)).containsExactly(7, 6);
+        assertThat(top.best(4)).isEmpty();
+        assertThat(top.best(10)).isEmpty();
+    }
+
+    @Test
+    void zeroCapacityKeepsNothing() {
+        TopK<String> top = new TopK<>(0);
+        top.offer(1.0, 1, "a");
+
+        assertThat(top.best(0)).isEmpty();
+        assertThat(top.offered()).isEqualTo(1);
+    }
+
+    @Test
+    void matchesAFullSortOfRandomInput() {
+        Random random = new Random(42);
+        TopK<Integer> top = new TopK<>(25);
+        List<double[]> all = new ArrayList<>();
+        for (int id = 0; id < 1000; id++) {
+            double score = random.nextInt(50);
+            all.add(new double[] {score, id});
+            top.offer(score, id, id);
+        }
+        all.sort((x, y) -> x[0] != y[0] ? Double.compare(y[0], x[0]) : Double.compare(x[1], y[1]));
+
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            expected.add((int) all.get(i)[1]);
+        }
+        assertThat(top.best(0)).isEqualTo(expected);
+    }
+}
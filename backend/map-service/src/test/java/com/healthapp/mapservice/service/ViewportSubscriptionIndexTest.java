@@ -0,0 +1,94 @@
+package com.healthapp.mapservice.service;
+
+import com.healthapp.mapservice.dto.ProviderSearchRequest;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ViewportSubscriptionIndexTest {
+
+    private final ViewportSubscriptionIndex index = new ViewportSubscriptionIndex();
+
+    @Test
+    void findsSubscriptionsContainingThePoint() {
+        ViewportSubscription berlin = subscribe(1, 13.2, 52.4, 13.6, 52.6);
+        ViewportSubscription germany = subscribe(2, 5.9, 47.3, 15.0, 55.1);
+        subscribe(3, -0.5, 51.3, 0.3, 51.7);
+
+        assertThat(collect(52.52, 13.40)).containsExactlyInAnyOrder(berlin, germany);
+        assertThat(collect(48.14, 11.58)).containsExactly(germany);
+        assertThat(collect(40.71, -74.0)).isEmpty();
+    }
+
+    @Test
+    void includesPointsOnTheViewportEdge() {
+        ViewportSubscription subscription = subscribe(1, 10, 50, 10.5, 50.25);
+
+        assertThat(collect(50.25, 10.5)).containsExactly(subscription);
+        assertThat(collect(50, 10)).containsExactly(subscription);
+        assertThat(collect(50.2500001, 10.5)).isEmpty();
+    }
+
+    @Test
+    void removedSubscriptionsAreNoLongerFound() {
+        ViewportSubscription kept = subscribe(1, 13.2, 52.4, 13.6, 52.6);
+        ViewportSubscription removed = subscribe(2, 13.3, 52.45, 13.5, 52.55);
+
+        index.remove(removed);
+
+        assertThat(collect(52.5, 13.4)).containsExactly(kept);
+        index.remove(kept);
+        assertThat(collect(52.5, 13.4)).isEmpty();
+    }
+
+    @Test
+    void matchesABruteForceScanAcrossZoomLevels() {
+        Random random = new Random(3);
+        List<ViewportSubscription> all = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            double span = Math.pow(10, random.nextDouble() * 4 - 3) * 10;
+            double west = -20 + random.nextDouble() * 40;
+            double south = 30 + random.nextDouble() * 30;
+            all.add(subscribe(i, west, south, west + span, south + span * (0.5 + random.nextDouble())));
+        }
+        for (int i = 0; i < 200; i++) {
+            index.remove(all.remove(random.nextInt(all.size())));
+        }
+
+        for (int i = 0; i < 5000; i++) {
+            double lat = 29 + random.nextDouble() * 45;
+            double lng = -21 + random.nextDouble() * 55;
+            Set<ViewportSubscription> expected = new HashSet<>();
+            for (ViewportSubscription subscription : all) {
+                if (subscription.contains(lat, lng)) {
+                    expected.add(subscription);
+                }
+            }
+            assertThat(new HashSet<>(collect(lat, lng))).isEqualTo(expected);
+        }
+    }
+
+    private ViewportSubscription subscribe(long id, double westLng, double southLat, double eastLng, double northLat) {
+        ProviderSearchRequest request = ProviderSearchRequest.builder()
+                .westLng(westLng)
+                .southLat(southLat)
+                .eastLng(eastLng)
+                .northLat(northLat)
+                .build();
+        ViewportSubscription subscription = new ViewportSubscription(id, request, null, 1);
+        index.add(subscription);
+        return subscription;
+    }
+
+    private List<ViewportSubscription> collect(double lat, double lng) {
+        List<ViewportSubscription> result = new ArrayList<>();
+        index.collect(lat, lng, result);
+        return result;
+    }
+}
@@ -0,0 +1,97 @@
+-- Benchmark: substring vs trigram word-similarity name search on synthetic data.
+--
+-- Usage (defaults to 2 million rows spread over India's bounding box):
+--   psql -d healthapp -v rows=2000000 -f scripts/db/bench/fuzzy-name-search.sql
+--
+-- Builds a search_doc-shaped table in a scratch schema (dropped at the end) with names made
+-- from common hospital words, then compares the substring match map-service uses by default
+-- with the fuzzy (<%) match behind fuzzy=true, within a city-sized viewport and table-wide.
+-- Requires the pg_trgm and postgis extensions.
+
+\set ON_ERROR_STOP on
+\if :{?rows}
+\else
+    \set rows 2000000
+\endif
+\if :{?threshold}
+\else
+    \set threshold 0.5
+\endif
+\timing on
+
+DROP SCHEMA IF EXISTS fuzzy_name_bench CASCADE;
+CREATE SCHEMA fuzzy_name_bench;
+
+CREATE TABLE fuzzy_name_bench.doc (
+    location_id INTEGER PRIMARY KEY,
+    geom GEOMETRY(POINT, 4326) NOT NULL,
+    search_text TEXT NOT NULL
+);
+
+-- Provider and location names built from a few hundred distinct words, points clustered
+-- around 40 city centres
+INSERT INTO fuzzy_name_bench.doc
+SELECT g,
+       ST_SetSRID(ST_MakePoint(c.lng + (random() - 0.5) * 0.6, c.lat + (random() - 0.5) * 0.6), 4326),
+       lower(n.provider_name) || chr(31) || lower(n.location_name)
+FROM generate_series(1, :rows) AS g
+CROSS JOIN LATERAL (
+    SELECT 68 + (hashint4(g % 40) & 2147483647) % 2900 / 100.0 AS lng,
+           8 + (hashint4(g % 40 + 1000) & 2147483647) % 2800 / 100.0 AS lat
+) c
+CROSS JOIN LATERAL (
+    SELECT (ARRAY['Kasturi', 'Apollo', 'Sunrise', 'Lotus', 'Ganga', 'Sai', 'Shree', 'City', 'Metro', 'Care'])
+               [1 + (hashint4(g) & 2147483647) % 10]
+           || ' ' || (hashint4(g + 1) & 2147483647) % 500
+           || ' ' || (ARRAY['Multi Specialty Hospital', 'Multispeciality Hospital', 'Nursing Home',
+                            'Eye Clinic', 'Dental Care', 'Heart Institute', 'Children''s Hospital'])
+               [1 + (hashint4(g + 2) & 2147483647) % 7] AS provider_name,
+           (ARRAY['Main Road', 'Station Road', 'Ring Road', 'MG Road', 'Civil Lines'])
+               [1 + (hashint4(g + 3) & 2147483647) % 5] || ' Branch' AS location_name
+) n;
+
+CREATE INDEX ON fuzzy_name_bench.doc USING GIST(geom);
+CREATE INDEX ON fuzzy_name_bench.doc USING GIN(search_text gin_trgm_ops);
+ANALYZE fuzzy_name_bench.doc;
+
+-- City-sized viewport around the first cluster
+SELECT ST_X(geom) AS lng, ST_Y(geom) AS lat FROM fuzzy_name_bench.doc WHERE location_id = 40 \gset
+\set west (:lng - 0.1)
+\set east (:lng + 0.1)
+\set south (:lat - 0.1)
+\set north (:lat + 0.1)
+
+SELECT set_config('pg_trgm.word_similarity_threshold', :'threshold', false);
+
+-- Exact substring: misses the differently spelled names
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT location_id FROM fuzzy_name_bench.doc
+WHERE ST_Intersects(ST_MakeEnvelope(:west, :south, :east, :north, 4326), geom)
+  AND search_text LIKE '%kasturi multispeciality%'
+ORDER BY location_id LIMIT 20;
+
+-- Fuzzy: matches both spellings, ranked by similarity
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT location_id FROM fuzzy_name_bench.doc
+WHERE ST_Intersects(ST_MakeEnvelope(:west, :south, :east, :north, 4326), geom)
+  AND 'kasturi multispeciality' <% search_text
+ORDER BY word_similarity('kasturi multispeciality', search_text) DESC,
+         similarity('kasturi multispeciality', search_text) DESC, location_id
+LIMIT 20;
+
+-- Match counts in the viewport for both predicates
+SELECT COUNT(*) FILTER (WHERE search_text LIKE '%kasturi multispeciality%') AS substring_matches,
+       COUNT(*) FILTER (WHERE 'kasturi multispeciality' <% search_text) AS fuzzy_matches
+FROM fuzzy_name_bench.doc
+WHERE ST_Intersects(ST_MakeEnvelope(:west, :south, :east, :north, 4326), geom);
+
+-- Table-wide, where the trigram index has to do the filtering
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT COUNT(*) FROM fuzzy_name_bench.doc
+WHERE search_text LIKE '%kasturi multispeciality%';
+
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT COUNT(*) FROM fuzzy_name_bench.doc
+WHERE 'kasturi multispeciality' <% search_text;
+
+DROP SCHEMA fuzzy_name_bench CASCADE;
@@ -0,0 +1,111 @@
+-- Benchmark: region-partitioned vs unpartitioned search_doc on synthetic data.
+--
+-- Usage (defaults to 5 million rows spread over India's bounding box):
+--   psql -d healthapp -v rows=5000000 -f scripts/db/bench/search-doc-partitions.sql
+--
+-- Builds both layouts in a scratch schema (dropped at the end), then compares a
+-- city-sized viewport query, a count over a state-sized viewport and VACUUM of each.
+-- Requires the provider.region_key() function from 07-search-doc-partitions.sql.
+
+\set ON_ERROR_STOP on
+\if :{?rows}
+\else
+    \set rows 5000000
+\endif
+\timing on
+
+DROP SCHEMA IF EXISTS search_doc_bench CASCADE;
+CREATE SCHEMA search_doc_bench;
+
+CREATE TABLE search_doc_bench.flat (
+    location_id INTEGER PRIMARY KEY,
+    geom GEOMETRY(POINT, 4326) NOT NULL,
+    specialty_ids INTEGER[] NOT NULL,
+    is_verified BOOLEAN NOT NULL
+);
+
+CREATE TABLE search_doc_bench.partitioned (
+    region_key SMALLINT NOT NULL,
+    location_id INTEGER NOT NULL,
+    geom GEOMETRY(POINT, 4326) NOT NULL,
+    specialty_ids INTEGER[] NOT NULL,
+    is_verified BOOLEAN NOT NULL,
+    PRIMARY KEY (region_key, location_id)
+) PARTITION BY LIST (region_key);
+
+DO $$
+BEGIN
+    FOR i IN 0..15 LOOP
+        EXECUTE format('CREATE TABLE search_doc_bench.partitioned_r%s PARTITION OF search_doc_bench.partitioned '
+                       'FOR VALUES IN (%s)', i, i);
+    END LOOP;
+END $$;
+
+-- Points clustered around 40 city centres, like real provider locations
+INSERT INTO search_doc_bench.flat
+SELECT g,
+       ST_SetSRID(ST_MakePoint(c.lng + (random() - 0.5) * 0.6, c.lat + (random() - 0.5) * 0.6), 4326),
+       ARRAY[(random() * 50)::INTEGER],
+       random() < 0.3
+FROM generate_series(1, :rows) AS g
+CROSS JOIN LATERAL (
+    SELECT 68 + (hashint4(g % 40) & 2147483647) % 2900 / 100.0 AS lng,
+           8 + (hashint4(g % 40 + 1000) & 2147483647) % 2800 / 100.0 AS lat
+) c;
+
+INSERT INTO search_doc_bench.partitioned
+SELECT provider.region_key(ST_Y(geom), ST_X(geom)), location_id, geom, specialty_ids, is_verified
+FROM search_doc_bench.flat;
+
+CREATE INDEX ON search_doc_bench.flat USING GIST(geom);
+CREATE INDEX ON search_doc_bench.partitioned USING GIST(geom);
+ANALYZE search_doc_bench.flat;
+ANALYZE search_doc_bench.partitioned;
+
+-- City-sized viewport around the first cluster
+SELECT ST_X(geom) AS lng, ST_Y(geom) AS lat FROM search_doc_bench.flat WHERE location_id = 40 \gset
+\set west (:lng - 0.1)
+\set east (:lng + 0.1)
+\set south (:lat - 0.1)
+\set north (:lat + 0.1)
+SELECT string_agg(DISTINCT provider.region_key(y, x)::TEXT, ',') AS regions
+FROM generate_series(:south::NUMERIC, :north::NUMERIC, 0.1) AS y,
+     generate_series(:west::NUMERIC, :east::NUMERIC, 0.1) AS x \gset
+
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT location_id FROM search_doc_bench.flat
+WHERE ST_Intersects(ST_MakeEnvelope(:west, :south, :east, :north, 4326), geom)
+ORDER BY location_id LIMIT 20;
+
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT location_id FROM search_doc_bench.partitioned
+WHERE ST_Intersects(ST_MakeEnvelope(:west, :south, :east, :north, 4326), geom)
+  AND region_key IN (:regions)
+ORDER BY location_id LIMIT 20;
+
+-- State-sized count
+SELECT string_agg(DISTINCT provider.region_key(y, x)::TEXT, ',') AS state_regions
+FROM generate_series((:south - 2)::NUMERIC, (:north + 2)::NUMERIC, 0.1) AS y,
+     generate_series((:west - 2)::NUMERIC, (:east + 2)::NUMERIC, 0.1) AS x \gset
+
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT COUNT(*) FROM search_doc_bench.flat
+WHERE ST_Intersects(ST_MakeEnvelope(:west - 2, :south - 2, :east + 2, :north + 2, 4326), geom);
+
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT COUNT(*) FROM search_doc_bench.partitioned
+WHERE ST_Intersects(ST_MakeEnvelope(:west - 2, :south - 2, :east + 2, :north + 2, 4326), geom)
+  AND region_key IN (:state_regions);
+
+-- Maintenance after churning 5% of rows
+UPDATE search_doc_bench.flat SET is_verified = NOT is_verified WHERE location_id % 20 = 0;
+UPDATE search_doc_bench.partitioned SET is_verified = NOT is_verified WHERE location_id % 20 = 0;
+VACUUM search_doc_bench.flat;
+VACUUM search_doc_bench.partitioned_r0;
+
+SELECT relname, pg_size_pretty(pg_relation_size(oid)) AS size
+FROM pg_class
+WHERE relnamespace = 'search_doc_bench'::regnamespace AND relkind = 'i'
+ORDER BY relname;
+
+DROP SCHEMA search_doc_bench CASCADE;
@@ -0,0 +1,13 @@
+-- Indexes used by the map-service query planner for filter-first and text-first searches
+
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+-- Filter-first: resolve candidate providers from the junction tables
+CREATE INDEX IF NOT EXISTS idx_provider_specialty_specialty ON provider.provider_specialty(specialty_id, provider_id);
+CREATE INDEX IF NOT EXISTS idx_provider_language_language ON provider.provider_language(language_id, provider_id);
+
+-- Candidate providers are joined back to their locations
+CREATE INDEX IF NOT EXISTS idx_location_provider_id ON provider.location(provider_id);
+
+-- Text-first: trigram lookup on location names (provider names use idx_provider_name)
+CREATE INDEX IF NOT EXISTS idx_location_name_trgm ON provider.location USING gin(name gin_trgm_ops);
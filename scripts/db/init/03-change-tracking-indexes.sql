@@ -0,0 +1,5 @@
+-- Indexes used by map-service to find rows changed since a watermark
+-- (search snapshot catch-up and second-level cache eviction)
+
+CREATE INDEX IF NOT EXISTS idx_provider_updated_at ON provider.provider(updated_at);
+CREATE INDEX IF NOT EXISTS idx_location_updated_at ON provider.location(updated_at);
@@ -0,0 +1,162 @@
+-- Denormalized search document, one row per location, maintained by triggers.
+-- map-service viewport searches read this table alone instead of joining
+-- location, provider, provider_specialty and provider_language.
+
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE TABLE IF NOT EXISTS provider.search_doc (
+    location_id INTEGER PRIMARY KEY REFERENCES provider.location(id) ON DELETE CASCADE,
+    provider_id INTEGER NOT NULL,
+    geolocation GEOGRAPHY(POINT, 4326) NOT NULL,
+    -- Same point as geometry so envelope intersection can use a GiST index
+    geom GEOMETRY(POINT, 4326) NOT NULL,
+    provider_name VARCHAR(255) NOT NULL,
+    location_name VARCHAR(255) NOT NULL,
+    provider_type_id INTEGER,
+    is_verified BOOLEAN NOT NULL DEFAULT false,
+    is_registered_user BOOLEAN NOT NULL DEFAULT false,
+    specialty_ids INTEGER[] NOT NULL DEFAULT '{}',
+    language_ids INTEGER[] NOT NULL DEFAULT '{}',
+    -- Lower-case provider and location names separated by a unit separator (chr(31)),
+    -- so a LIKE pattern cannot match across the two names
+    search_text TEXT NOT NULL,
+    updated_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_search_doc_geom ON provider.search_doc USING GIST(geom);
+CREATE INDEX IF NOT EXISTS idx_search_doc_geolocation ON provider.search_doc USING GIST(geolocation);
+CREATE INDEX IF NOT EXISTS idx_search_doc_specialty_ids ON provider.search_doc USING GIN(specialty_ids);
+CREATE INDEX IF NOT EXISTS idx_search_doc_language_ids ON provider.search_doc USING GIN(language_ids);
+CREATE INDEX IF NOT EXISTS idx_search_doc_search_text ON provider.search_doc USING GIN(search_text gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_search_doc_provider_id ON provider.search_doc(provider_id);
+
+-- Rebuild the documents for one location, or for every location of a provider when
+-- p_location_id is NULL
+CREATE OR REPLACE FUNCTION provider.refresh_search_doc(p_provider_id INTEGER, p_location_id INTEGER)
+RETURNS VOID AS $$
+BEGIN
+    INSERT INTO provider.search_doc (
+        location_id, provider_id, geolocation, geom, provider_name, location_name,
+        provider_type_id, is_verified, is_registered_user, specialty_ids, language_ids,
+        search_text, updated_at)
+    SELECT
+        l.id,
+        l.provider_id,
+        l.geolocation,
+        l.geolocation::geometry,
+        p.name,
+        l.name,
+        p.provider_type_id,
+        COALESCE(p.is_verified, false),
+        COALESCE(p.is_registered_user, false),
+        COALESCE((SELECT array_agg(ps.specialty_id ORDER BY ps.specialty_id)
+                  FROM provider.provider_specialty ps WHERE ps.provider_id = p.id), '{}'),
+        COALESCE((SELECT array_agg(pl.language_id ORDER BY pl.language_id)
+                  FROM provider.provider_language pl WHERE pl.provider_id = p.id), '{}'),
+        lower(p.name) || chr(31) || lower(l.name),
+        CURRENT_TIMESTAMP
+    FROM provider.location l
+    JOIN provider.provider p ON p.id = l.provider_id
+    WHERE (p_location_id IS NOT NULL AND l.id = p_location_id)
+       OR (p_location_id IS NULL AND l.provider_id = p_provider_id)
+    ON CONFLICT (location_id) DO UPDATE SET
+        provider_id = EXCLUDED.provider_id,
+        geolocation = EXCLUDED.geolocation,
+        geom = EXCLUDED.geom,
+        provider_name = EXCLUDED.provider_name,
+        location_name = EXCLUDED.location_name,
+        provider_type_id = EXCLUDED.provider_type_id,
+        is_verified = EXCLUDED.is_verified,
+        is_registered_user = EXCLUDED.is_registered_user,
+        specialty_ids = EXCLUDED.specialty_ids,
+        language_ids = EXCLUDED.language_ids,
+        search_text = EXCLUDED.search_text,
+        updated_at = EXCLUDED.updated_at;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION provider.search_doc_location_changed()
+RETURNS TRIGGER AS $$
+BEGIN
+    PERFORM provider.refresh_search_doc(NEW.provider_id, NEW.id);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION provider.search_doc_provider_changed()
+RETURNS TRIGGER AS $$
+BEGIN
+    PERFORM provider.refresh_search_doc(NEW.id, NULL);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Shared by provider_specialty and provider_language; statement-level, so a bulk link edit
+-- refreshes each affected provider once instead of once per link row
+CREATE OR REPLACE FUNCTION provider.search_doc_provider_link_changed()
+RETURNS TRIGGER AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        PERFORM provider.refresh_search_doc(changed.provider_id, NULL)
+        FROM (SELECT DISTINCT provider_id FROM new_links) changed;
+    ELSIF TG_OP = 'DELETE' THEN
+        PERFORM provider.refresh_search_doc(changed.provider_id, NULL)
+        FROM (SELECT DISTINCT provider_id FROM old_links) changed;
+    ELSE
+        PERFORM provider.refresh_search_doc(changed.provider_id, NULL)
+        FROM (SELECT provider_id FROM old_links UNION SELECT provider_id FROM new_links) changed;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS search_doc_location ON provider.location;
+CREATE TRIGGER search_doc_location
+AFTER INSERT OR UPDATE ON provider.location
+FOR EACH ROW EXECUTE PROCEDURE provider.search_doc_location_changed();
+
+DROP TRIGGER IF EXISTS search_doc_provider ON provider.provider;
+CREATE TRIGGER search_doc_provider
+AFTER UPDATE OF name, provider_type_id, is_verified, is_registered_user ON provider.provider
+FOR EACH ROW EXECUTE PROCEDURE provider.search_doc_provider_changed();
+
+DROP TRIGGER IF EXISTS search_doc_provider_specialty ON provider.provider_specialty;
+DROP TRIGGER IF EXISTS search_doc_provider_specialty_insert ON provider.provider_specialty;
+CREATE TRIGGER search_doc_provider_specialty_insert
+AFTER INSERT ON provider.provider_specialty
+REFERENCING NEW TABLE AS new_links
+FOR EACH STATEMENT EXECUTE PROCEDURE provider.search_doc_provider_link_changed();
+
+DROP TRIGGER IF EXISTS search_doc_provider_specialty_update ON provider.provider_specialty;
+CREATE TRIGGER search_doc_provider_specialty_update
+AFTER UPDATE ON provider.provider_specialty
+REFERENCING OLD TABLE AS old_links NEW TABLE AS new_links
+FOR EACH STATEMENT EXECUTE PROCEDURE provider.search_doc_provider_link_changed();
+
+DROP TRIGGER IF EXISTS search_doc_provider_specialty_delete ON provider.provider_specialty;
+CREATE TRIGGER search_doc_provider_specialty_delete
+AFTER DELETE ON provider.provider_specialty
+REFERENCING OLD TABLE AS old_links
+FOR EACH STATEMENT EXECUTE PROCEDURE provider.search_doc_provider_link_changed();
+
+DROP TRIGGER IF EXISTS search_doc_provider_language ON provider.provider_language;
+DROP TRIGGER IF EXISTS search_doc_provider_language_insert ON provider.provider_language;
+CREATE TRIGGER search_doc_provider_language_insert
+AFTER INSERT ON provider.provider_language
+REFERENCING NEW TABLE AS new_links
+FOR EACH STATEMENT EXECUTE PROCEDURE provider.search_doc_provider_link_changed();
+
+DROP TRIGGER IF EXISTS search_doc_provider_language_update ON provider.provider_language;
+CREATE TRIGGER search_doc_provider_language_update
+AFTER UPDATE ON provider.provider_language
+REFERENCING OLD TABLE AS old_links NEW TABLE AS new_links
+FOR EACH STATEMENT EXECUTE PROCEDURE provider.search_doc_provider_link_changed();
+
+DROP TRIGGER IF EXISTS search_doc_provider_language_delete ON provider.provider_language;
+CREATE TRIGGER search_doc_provider_language_delete
+AFTER DELETE ON provider.provider_language
+REFERENCING OLD TABLE AS old_links
+FOR EACH STATEMENT EXECUTE PROCEDURE provider.search_doc_provider_link_changed();
+
+-- Backfill existing locations
+SELECT provider.refresh_search_doc(p.id, NULL) FROM provider.provider p;
@@ -0,0 +1,114 @@
+-- Pre-aggregated provider density for the map-service heatmap.
+-- Location counts per grid cell for zoom levels 0-15, overall and per specialty and
+-- provider type. The grid matches map-service's TileKey: at zoom z cells are
+-- 360 / 2^z degrees, indexed from (-90, -180).
+--
+-- Changes to search_doc are appended to density_grid_delta by a trigger (insert-only,
+-- so writers never contend on shared cells) and folded into density_grid by
+-- provider.apply_density_deltas(), which map-service calls on a schedule.
+
+CREATE TABLE IF NOT EXISTS provider.density_grid (
+    zoom SMALLINT NOT NULL,
+    specialty_id INTEGER NOT NULL,     -- 0 = any specialty
+    provider_type_id INTEGER NOT NULL, -- 0 = any provider type
+    cell_y INTEGER NOT NULL,
+    cell_x INTEGER NOT NULL,
+    location_count INTEGER NOT NULL,
+    PRIMARY KEY (zoom, specialty_id, provider_type_id, cell_y, cell_x)
+);
+
+CREATE TABLE IF NOT EXISTS provider.density_grid_delta (
+    id BIGSERIAL PRIMARY KEY,
+    lng DOUBLE PRECISION NOT NULL,
+    lat DOUBLE PRECISION NOT NULL,
+    specialty_ids INTEGER[] NOT NULL,
+    provider_type_id INTEGER,
+    delta SMALLINT NOT NULL
+);
+
+CREATE OR REPLACE FUNCTION provider.density_grid_track()
+RETURNS TRIGGER AS $$
+BEGIN
+    IF TG_OP = 'UPDATE'
+       AND ST_X(NEW.geom) = ST_X(OLD.geom) AND ST_Y(NEW.geom) = ST_Y(OLD.geom)
+       AND NEW.specialty_ids = OLD.specialty_ids
+       AND NEW.provider_type_id IS NOT DISTINCT FROM OLD.provider_type_id THEN
+        RETURN NULL;
+    END IF;
+    IF TG_OP IN ('UPDATE', 'DELETE') THEN
+        INSERT INTO provider.density_grid_delta (lng, lat, specialty_ids, provider_type_id, delta)
+        VALUES (ST_X(OLD.geom), ST_Y(OLD.geom), OLD.specialty_ids, OLD.provider_type_id, -1);
+    END IF;
+    IF TG_OP IN ('INSERT', 'UPDATE') THEN
+        INSERT INTO provider.density_grid_delta (lng, lat, specialty_ids, provider_type_id, delta)
+        VALUES (ST_X(NEW.geom), ST_Y(NEW.geom), NEW.specialty_ids, NEW.provider_type_id, 1);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS density_grid_search_doc ON provider.search_doc;
+CREATE TRIGGER density_grid_search_doc
+AFTER INSERT OR UPDATE OR DELETE ON provider.search_doc
+FOR EACH ROW EXECUTE PROCEDURE provider.density_grid_track();
+
+-- Fold pending deltas into density_grid, draining at most batch_size delta rows per step so
+-- a large backlog never expands into a single huge aggregate. Returns the number of cells
+-- changed, or -1 when another session is already applying.
+DROP FUNCTION IF EXISTS provider.apply_density_deltas();
+CREATE OR REPLACE FUNCTION provider.apply_density_deltas(batch_size INTEGER DEFAULT 5000)
+RETURNS INTEGER AS $$
+DECLARE
+    changed INTEGER := 0;
+    drained_rows INTEGER;
+    applied_cells INTEGER;
+BEGIN
+    IF NOT pg_try_advisory_xact_lock(hashtext('provider.density_grid')) THEN
+        RETURN -1;
+    END IF;
+
+    LOOP
+        WITH drained AS (
+            DELETE FROM provider.density_grid_delta
+            WHERE ctid IN (SELECT ctid FROM provider.density_grid_delta
+                           LIMIT batch_size FOR UPDATE SKIP LOCKED)
+            RETURNING lng, lat, specialty_ids, provider_type_id, delta
+        ), expanded AS (
+            SELECT z.zoom,
+                   s.specialty_id,
+                   t.provider_type_id,
+                   floor((d.lat + 90) / (360.0 / (1 << z.zoom)))::INTEGER AS cell_y,
+                   floor((d.lng + 180) / (360.0 / (1 << z.zoom)))::INTEGER AS cell_x,
+                   d.delta
+            FROM drained d
+            CROSS JOIN generate_series(0, 15) AS z(zoom)
+            CROSS JOIN LATERAL unnest(array_prepend(0, d.specialty_ids)) AS s(specialty_id)
+            CROSS JOIN LATERAL unnest(CASE WHEN d.provider_type_id IS NULL THEN ARRAY[0]
+                                           ELSE ARRAY[0, d.provider_type_id] END) AS t(provider_type_id)
+        ), applied AS (
+            INSERT INTO provider.density_grid AS g (zoom, specialty_id, provider_type_id, cell_y, cell_x, location_count)
+            SELECT zoom, specialty_id, provider_type_id, cell_y, cell_x, SUM(delta)
+            FROM expanded
+            GROUP BY zoom, specialty_id, provider_type_id, cell_y, cell_x
+            HAVING SUM(delta) <> 0
+            ON CONFLICT (zoom, specialty_id, provider_type_id, cell_y, cell_x)
+            DO UPDATE SET location_count = g.location_count + EXCLUDED.location_count
+            RETURNING 1
+        )
+        SELECT (SELECT count(*) FROM drained), (SELECT count(*) FROM applied)
+        INTO drained_rows, applied_cells;
+
+        changed := changed + applied_cells;
+        EXIT WHEN drained_rows < batch_size;
+    END LOOP;
+
+    RETURN changed;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Backfill from the documents created by 04-search-doc.sql
+INSERT INTO provider.density_grid_delta (lng, lat, specialty_ids, provider_type_id, delta)
+SELECT ST_X(geom), ST_Y(geom), specialty_ids, provider_type_id, 1
+FROM provider.search_doc;
+
+SELECT provider.apply_density_deltas();
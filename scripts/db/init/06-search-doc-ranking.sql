@@ -0,0 +1,62 @@
+-- Ranking attributes for map-service relevance sorting.
+-- Adds the provider's experience to search_doc so relevance-ranked searches can score
+-- every filtered location from search_doc alone and load details for just one page.
+
+ALTER TABLE provider.search_doc ADD COLUMN IF NOT EXISTS experience_years INTEGER;
+
+CREATE OR REPLACE FUNCTION provider.refresh_search_doc(p_provider_id INTEGER, p_location_id INTEGER)
+RETURNS VOID AS $$
+BEGIN
+    INSERT INTO provider.search_doc (
+        location_id, provider_id, geolocation, geom, provider_name, location_name,
+        provider_type_id, is_verified, is_registered_user, specialty_ids, language_ids,
+        search_text, experience_years, updated_at)
+    SELECT
+        l.id,
+        l.provider_id,
+        l.geolocation,
+        l.geolocation::geometry,
+        p.name,
+        l.name,
+        p.provider_type_id,
+        COALESCE(p.is_verified, false),
+        COALESCE(p.is_registered_user, false),
+        COALESCE((SELECT array_agg(ps.specialty_id ORDER BY ps.specialty_id)
+                  FROM provider.provider_specialty ps WHERE ps.provider_id = p.id), '{}'),
+        COALESCE((SELECT array_agg(pl.language_id ORDER BY pl.language_id)
+                  FROM provider.provider_language pl WHERE pl.provider_id = p.id), '{}'),
+        lower(p.name) || chr(31) || lower(l.name),
+        p.experience_years,
+        CURRENT_TIMESTAMP
+    FROM provider.location l
+    JOIN provider.provider p ON p.id = l.provider_id
+    WHERE (p_location_id IS NOT NULL AND l.id = p_location_id)
+       OR (p_location_id IS NULL AND l.provider_id = p_provider_id)
+    ON CONFLICT (location_id) DO UPDATE SET
+        provider_id = EXCLUDED.provider_id,
+        geolocation = EXCLUDED.geolocation,
+        geom = EXCLUDED.geom,
+        provider_name = EXCLUDED.provider_name,
+        location_name = EXCLUDED.location_name,
+        provider_type_id = EXCLUDED.provider_type_id,
+        is_verified = EXCLUDED.is_verified,
+        is_registered_user = EXCLUDED.is_registered_user,
+        specialty_ids = EXCLUDED.specialty_ids,
+        language_ids = EXCLUDED.language_ids,
+        search_text = EXCLUDED.search_text,
+        experience_years = EXCLUDED.experience_years,
+        updated_at = EXCLUDED.updated_at;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS search_doc_provider ON provider.provider;
+CREATE TRIGGER search_doc_provider
+AFTER UPDATE OF name, provider_type_id, is_verified, is_registered_user, experience_years ON provider.provider
+FOR EACH ROW EXECUTE PROCEDURE provider.search_doc_provider_changed();
+
+-- Backfill existing documents
+UPDATE provider.search_doc d
+SET experience_years = p.experience_years
+FROM provider.provider p
+WHERE p.id = d.provider_id
+  AND d.experience_years IS DISTINCT FROM p.experience_years;
@@ -0,0 +1,137 @@
+-- Partition provider.search_doc by region.
+-- A location's region key is its 2-degree grid cell folded onto 16 list partitions, so
+-- neighbouring cells land in different partitions and a viewport touches only the few
+-- partitions its cells map to. map-service computes the same keys for every viewport
+-- (RegionPartitions) and adds region_key IN (...) to each search_doc query, letting
+-- Postgres prune the other partitions and their GiST indexes. Keep the two in sync.
+--
+-- provider.location stays unpartitioned: it is the foreign-key target for search_doc and
+-- other schemas, and a partitioned table's primary key would have to include region_key.
+--
+-- On an existing database the unpartitioned table is copied into the partitioned one and
+-- dropped in the same transaction; re-running the script is a no-op.
+
+CREATE OR REPLACE FUNCTION provider.region_key(lat DOUBLE PRECISION, lng DOUBLE PRECISION)
+RETURNS SMALLINT AS $$
+    SELECT ((floor((lat + 90) / 2)::INTEGER * 180 + floor((lng + 180) / 2)::INTEGER) % 16)::SMALLINT
+$$ LANGUAGE sql IMMUTABLE PARALLEL SAFE;
+
+DO $$
+BEGIN
+    IF EXISTS (
+        SELECT 1 FROM pg_partitioned_table pt
+        JOIN pg_class c ON c.oid = pt.partrelid
+        JOIN pg_namespace n ON n.oid = c.relnamespace
+        WHERE n.nspname = 'provider' AND c.relname = 'search_doc'
+    ) THEN
+        RETURN;
+    END IF;
+
+    ALTER TABLE provider.search_doc RENAME TO search_doc_unpartitioned;
+
+    CREATE TABLE provider.search_doc (
+        region_key SMALLINT NOT NULL,
+        location_id INTEGER NOT NULL REFERENCES provider.location(id) ON DELETE CASCADE,
+        provider_id INTEGER NOT NULL,
+        geolocation GEOGRAPHY(POINT, 4326) NOT NULL,
+        geom GEOMETRY(POINT, 4326) NOT NULL,
+        provider_name VARCHAR(255) NOT NULL,
+        location_name VARCHAR(255) NOT NULL,
+        provider_type_id INTEGER,
+        is_verified BOOLEAN NOT NULL DEFAULT false,
+        is_registered_user BOOLEAN NOT NULL DEFAULT false,
+        specialty_ids INTEGER[] NOT NULL DEFAULT '{}',
+        language_ids INTEGER[] NOT NULL DEFAULT '{}',
+        search_text TEXT NOT NULL,
+        experience_years INTEGER,
+        updated_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP,
+        PRIMARY KEY (region_key, location_id)
+    ) PARTITION BY LIST (region_key);
+
+    FOR i IN 0..15 LOOP
+        EXECUTE format('CREATE TABLE provider.search_doc_r%s PARTITION OF provider.search_doc FOR VALUES IN (%s)', i, i);
+    END LOOP;
+
+    -- density_grid already counts these rows; its trigger is attached after the copy
+    INSERT INTO provider.search_doc (
+        region_key, location_id, provider_id, geolocation, geom, provider_name, location_name,
+        provider_type_id, is_verified, is_registered_user, specialty_ids, language_ids,
+        search_text, experience_years, updated_at)
+    SELECT
+        provider.region_key(ST_Y(geom), ST_X(geom)), location_id, provider_id, geolocation, geom,
+        provider_name, location_name, provider_type_id, is_verified, is_registered_user,
+        specialty_ids, language_ids, search_text, experience_years, updated_at
+    FROM provider.search_doc_unpartitioned;
+
+    DROP TABLE provider.search_doc_unpartitioned;
+END $$;
+
+-- Created on the parent, so each partition gets its own smaller copy
+CREATE INDEX IF NOT EXISTS idx_search_doc_geom ON provider.search_doc USING GIST(geom);
+CREATE INDEX IF NOT EXISTS idx_search_doc_geolocation ON provider.search_doc USING GIST(geolocation);
+CREATE INDEX IF NOT EXISTS idx_search_doc_specialty_ids ON provider.search_doc USING GIN(specialty_ids);
+CREATE INDEX IF NOT EXISTS idx_search_doc_language_ids ON provider.search_doc USING GIN(language_ids);
+CREATE INDEX IF NOT EXISTS idx_search_doc_search_text ON provider.search_doc USING GIN(search_text gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_search_doc_provider_id ON provider.search_doc(provider_id);
+CREATE INDEX IF NOT EXISTS idx_search_doc_location_id ON provider.search_doc(location_id);
+
+DROP TRIGGER IF EXISTS density_grid_search_doc ON provider.search_doc;
+CREATE TRIGGER density_grid_search_doc
+AFTER INSERT OR UPDATE OR DELETE ON provider.search_doc
+FOR EACH ROW EXECUTE PROCEDURE provider.density_grid_track();
+
+-- Rebuild the documents for one location, or for every location of a provider when
+-- p_location_id is NULL. A location that moved to another region is deleted from its old
+-- partition first, since the upsert only matches rows in the new one.
+CREATE OR REPLACE FUNCTION provider.refresh_search_doc(p_provider_id INTEGER, p_location_id INTEGER)
+RETURNS VOID AS $$
+BEGIN
+    DELETE FROM provider.search_doc d
+    USING provider.location l
+    WHERE d.location_id = l.id
+      AND ((p_location_id IS NOT NULL AND l.id = p_location_id)
+           OR (p_location_id IS NULL AND l.provider_id = p_provider_id))
+      AND d.region_key <> provider.region_key(ST_Y(l.geolocation::geometry), ST_X(l.geolocation::geometry));
+
+    INSERT INTO provider.search_doc (
+        region_key, location_id, provider_id, geolocation, geom, provider_name, location_name,
+        provider_type_id, is_verified, is_registered_user, specialty_ids, language_ids,
+        search_text, experience_years, updated_at)
+    SELECT
+        provider.region_key(ST_Y(l.geolocation::geometry), ST_X(l.geolocation::geometry)),
+        l.id,
+        l.provider_id,
+        l.geolocation,
+        l.geolocation::geometry,
+        p.name,
+        l.name,
+        p.provider_type_id,
+        COALESCE(p.is_verified, false),
+        COALESCE(p.is_registered_user, false),
+        COALESCE((SELECT array_agg(ps.specialty_id ORDER BY ps.specialty_id)
+                  FROM provider.provider_specialty ps WHERE ps.provider_id = p.id), '{}'),
+        COALESCE((SELECT array_agg(pl.language_id ORDER BY pl.language_id)
+                  FROM provider.provider_language pl WHERE pl.provider_id = p.id), '{}'),
+        lower(p.name) || chr(31) || lower(l.name),
+        p.experience_years,
+        CURRENT_TIMESTAMP
+    FROM provider.location l
+    JOIN provider.provider p ON p.id = l.provider_id
+    WHERE (p_location_id IS NOT NULL AND l.id = p_location_id)
+       OR (p_location_id IS NULL AND l.provider_id = p_provider_id)
+    ON CONFLICT (region_key, location_id) DO UPDATE SET
+        provider_id = EXCLUDED.provider_id,
+        geolocation = EXCLUDED.geolocation,
+        geom = EXCLUDED.geom,
+        provider_name = EXCLUDED.provider_name,
+        location_name = EXCLUDED.location_name,
+        provider_type_id = EXCLUDED.provider_type_id,
+        is_verified = EXCLUDED.is_verified,
+        is_registered_user = EXCLUDED.is_registered_user,
+        specialty_ids = EXCLUDED.specialty_ids,
+        language_ids = EXCLUDED.language_ids,
+        search_text = EXCLUDED.search_text,
+        experience_years = EXCLUDED.experience_years,
+        updated_at = EXCLUDED.updated_at;
+END;
+$$ LANGUAGE plpgsql;
@@ -0,0 +1,37 @@
+-- Search analytics written by map-service.
+-- Every viewport search is recorded on the request path into an in-memory ring buffer and
+-- flushed here in multi-row inserts by a background writer, so rows arrive in batches a
+-- second or so after the search. Under pressure map-service drops events instead of
+-- slowing searches (map.analytics.dropped), so counts are a lower bound.
+--
+-- Requests are normalized before insert: bounds rounded to 4 decimal places, filter IDs
+-- sorted and de-duplicated, search terms trimmed and lower-cased, and the tile zoom the
+-- viewport maps to recorded so viewports of similar size group together.
+
+CREATE TABLE IF NOT EXISTS analytics.search_event (
+    id BIGSERIAL PRIMARY KEY,
+    occurred_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    source VARCHAR(16) NOT NULL,          -- tile_cache, database, stale or failed
+    zoom SMALLINT NOT NULL,
+    west_lng DOUBLE PRECISION NOT NULL,
+    south_lat DOUBLE PRECISION NOT NULL,
+    east_lng DOUBLE PRECISION NOT NULL,
+    north_lat DOUBLE PRECISION NOT NULL,
+    search_term TEXT,
+    specialty_ids INTEGER[] NOT NULL DEFAULT '{}',
+    provider_type_ids INTEGER[] NOT NULL DEFAULT '{}',
+    language_ids INTEGER[] NOT NULL DEFAULT '{}',
+    verified_only BOOLEAN NOT NULL DEFAULT false,
+    registered_only BOOLEAN NOT NULL DEFAULT false,
+    has_user_location BOOLEAN NOT NULL DEFAULT false,
+    sort_by VARCHAR(16),
+    page INTEGER,
+    page_size INTEGER,
+    include_facets BOOLEAN NOT NULL DEFAULT false,
+    result_count BIGINT,                  -- NULL when the search failed
+    latency_ms REAL NOT NULL
+);
+
+-- Rows are appended in time order, so a BRIN index keeps time-range scans cheap
+CREATE INDEX IF NOT EXISTS idx_search_event_occurred_at
+    ON analytics.search_event USING BRIN(occurred_at);
@@ -0,0 +1,13 @@
+#!/bin/bash
+# Replication role and pg_hba entry for the local streaming replica (docker-compose --profile replica).
+# Runs once, when the primary's data directory is initialized.
+set -e
+
+psql -v ON_ERROR_STOP=1 --username "$POSTGRES_USER" --dbname "$POSTGRES_DB" \
+    -v password="${POSTGRES_REPLICATION_PASSWORD:-replicatorpassword}" <<'EOSQL'
+SELECT format('CREATE ROLE replicator WITH REPLICATION LOGIN PASSWORD %L', :'password')
+WHERE NOT EXISTS (SELECT FROM pg_roles WHERE rolname = 'replicator')
+\gexec
+EOSQL
+
+echo "host replication replicator all scram-sha-256" >> "$PGDATA/pg_hba.conf"
@@ -0,0 +1,6 @@
+-- Index used by map-service to find search_doc rows refreshed since a watermark.
+-- The search_doc triggers rewrite a provider's rows, with a new updated_at, when its
+-- specialty or language links change; neither provider.updated_at nor location.updated_at
+-- moves in that case, so change polls also read search_doc.updated_at.
+
+CREATE INDEX IF NOT EXISTS idx_search_doc_updated_at ON provider.search_doc(updated_at);
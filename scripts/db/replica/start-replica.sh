@@ -0,0 +1,21 @@
+#!/bin/bash
+# Entry point of the postgres-replica service: clone the primary on first start, then run
+# as a hot standby streaming from it. pg_basebackup -R writes primary_conninfo and
+# standby.signal, so pg_is_in_recovery() is true and replication lag is measurable.
+set -euo pipefail
+
+PGDATA="${PGDATA:-/var/lib/postgresql/data}"
+
+if [ ! -s "$PGDATA/PG_VERSION" ]; then
+    echo "Cloning primary ${PRIMARY_HOST} into ${PGDATA}"
+    export PGPASSWORD="${REPLICATION_PASSWORD}"
+    until pg_basebackup -h "${PRIMARY_HOST}" -p 5432 -U "${REPLICATION_USER}" \
+            -D "$PGDATA" -X stream -R --checkpoint=fast; do
+        echo "Primary not ready, retrying"
+        rm -rf "${PGDATA:?}"/*
+        sleep 2
+    done
+    chmod 0700 "$PGDATA"
+fi
+
+exec postgres -c hot_standby=on